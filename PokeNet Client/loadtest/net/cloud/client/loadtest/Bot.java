@@ -0,0 +1,525 @@
+package net.cloud.client.loadtest;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import net.cloud.client.ConfigConstants;
+import net.cloud.client.entity.player.LoginResponse;
+import net.cloud.client.game.action.ButtonActionID;
+import net.cloud.client.nio.bufferable.BufferableInteger;
+import net.cloud.client.nio.packet.LengthPrepender;
+import net.cloud.client.nio.packet.Packet;
+import net.cloud.client.nio.packet.PacketDecoder;
+import net.cloud.client.nio.packet.PacketEncoder;
+import net.cloud.client.nio.packet.ProtocolHandshakeHandler;
+import net.cloud.client.nio.packet.packets.ButtonActionPacket;
+import net.cloud.client.nio.packet.packets.CompositePacket;
+import net.cloud.client.nio.packet.packets.LoginPacket;
+import net.cloud.client.nio.packet.packets.LoginPacket.LoginDataRequestPacket;
+import net.cloud.client.nio.packet.packets.LoginPacket.LoginDataResponsePacket;
+import net.cloud.client.nio.packet.packets.LoginPacket.LoginResponsePacket;
+import net.cloud.client.nio.packet.packets.ResumePacket;
+import net.cloud.client.nio.packet.packets.ResumePacket.ResumeTokenPacket;
+import net.cloud.client.nio.packet.packets.TestPacket;
+import net.cloud.client.util.HashObj;
+import net.cloud.client.util.ResumeToken;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoop;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.util.concurrent.ScheduledFuture;
+
+/**
+ * One pretend player. A bot goes through the same motions as the real client - connect, log in, ask for its data,
+ * then press buttons for a while - but never touches the World or the GUI, so thousands can share one process. <br>
+ * Each session ends one of two ways. Either the bot logs out properly, or it drops the connection without a word
+ * and comes back inside the server's reconnect window with the token from its login, which should get it a
+ * RECONNECT response without the server checking its password. A reconnected bot plays on and logs out properly,
+ * so no session leaves a player stranded on the server. <br>
+ * Everything a bot does happens on the one EventLoop it was given, so none of its state needs guarding.
+ */
+class Bot {
+
+	/** Where a bot is in its session */
+	private enum Phase {
+		/** Waiting before connecting */
+		IDLE,
+		/** Connection attempt in progress */
+		CONNECTING,
+		/** Login packet sent, waiting on the response */
+		LOGGING_IN,
+		/** Login accepted, waiting on the player data */
+		LOADING,
+		/** Logged in and pressing buttons */
+		PLAYING,
+		/** Dropped the connection on purpose, and will be back */
+		DROPPING,
+		/** Logout button pressed, waiting for the server to close the connection */
+		LOGGING_OUT
+	}
+
+	/** Which bot this is */
+	private final int id;
+
+	/** Account name. The accounts mode of LoadTest creates these */
+	private final String username;
+
+	/** Account password */
+	private final HashObj password;
+
+	/** How the test was set up */
+	private final LoadTest.Settings settings;
+
+	/** Where to record everything */
+	private final LoadStats stats;
+
+	/** The thread this bot lives on */
+	private final EventLoop loop;
+
+	/** Connects on that thread and no other */
+	private final Bootstrap bootstrap;
+
+	/** Counted down once the bot has gone through every session */
+	private final CountDownLatch finished;
+
+	/** The current connection, if there is one */
+	private Channel channel;
+
+	/** Where the bot is in its session */
+	private Phase phase;
+
+	/** When the thing being waited on was started, in nanoseconds */
+	private long waitStart;
+
+	/** Whether this connection is coming back from a drop */
+	private boolean reconnecting;
+
+	/** Token from the last login, used to come back after a drop */
+	private ResumeToken resumeToken;
+
+	/** Whether this session has already dropped once */
+	private boolean dropped;
+
+	/** Sessions still to go */
+	private int sessionsLeft;
+
+	/** When each unanswered ping was sent, oldest first. Their sequence numbers count up from oldestPing */
+	private final Deque<Long> pings;
+
+	/** Sequence number of the oldest unanswered ping */
+	private int oldestPing;
+
+	/** Sequence number for the next ping. The server sends it back with the answer */
+	private int nextPing;
+
+	/** Sends pings while playing */
+	private ScheduledFuture<?> pingTask;
+
+	/**
+	 * Create a bot. It won't do anything until started
+	 * @param id Which bot this is. Decides the account name
+	 * @param settings How the test was set up
+	 * @param stats Where to record everything
+	 * @param bootstrap A bootstrap to copy. The copy is pinned to the given loop
+	 * @param loop The thread this bot lives on
+	 * @param finished Counted down once the bot is done
+	 */
+	Bot(int id, LoadTest.Settings settings, LoadStats stats, Bootstrap bootstrap, EventLoop loop, CountDownLatch finished)
+	{
+		this.id = id;
+		this.username = settings.prefix + id;
+		this.password = new HashObj(settings.password);
+		this.settings = settings;
+		this.stats = stats;
+		this.loop = loop;
+		this.bootstrap = bootstrap.clone(loop).handler(new BotChannelInitializer());
+		this.finished = finished;
+		this.phase = Phase.IDLE;
+		this.sessionsLeft = settings.sessions;
+		this.pings = new ArrayDeque<>();
+		this.oldestPing = 0;
+		this.nextPing = 0;
+	}
+
+	/**
+	 * Start the first session after a while. Spreading these out keeps every bot from hitting the server in the same instant
+	 * @param delay Milliseconds to wait
+	 */
+	void start(long delay)
+	{
+		loop.schedule(() -> connect(false), delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Open a new connection
+	 * @param reconnect Whether this is coming back from a drop
+	 */
+	private void connect(boolean reconnect)
+	{
+		phase = Phase.CONNECTING;
+		reconnecting = reconnect;
+		waitStart = System.nanoTime();
+
+		ChannelFuture future;
+		if(settings.sourceAddresses > 1)
+		{
+			// Spread over loopback addresses so the server's per-address limits see many hosts
+			int source = id % settings.sourceAddresses;
+			future = bootstrap.connect(new InetSocketAddress(settings.host, settings.port),
+					new InetSocketAddress("127.0." + (1 + source / 250) + "." + (1 + source % 250), 0));
+		}
+		else {
+			future = bootstrap.connect(settings.host, settings.port);
+		}
+
+		future.addListener((f) -> {
+			if(!f.isSuccess())
+			{
+				stats.fail("connect " + f.cause().getClass().getSimpleName());
+				endSession();
+			}
+		});
+	}
+
+	/**
+	 * The connection is up. Ask to log in
+	 * @param ch The new connection
+	 */
+	private void onConnected(Channel ch)
+	{
+		channel = ch;
+		stats.connect.record(System.nanoTime() - waitStart);
+		stats.connected.incrementAndGet();
+
+		phase = Phase.LOGGING_IN;
+		waitStart = System.nanoTime();
+
+		// Coming back from a drop, the token should be enough. The server only takes it once
+		if(reconnecting && resumeToken != null)
+		{
+			send(new ResumePacket(username, resumeToken));
+			resumeToken = null;
+		}
+		else {
+			send(new LoginPacket(username, password));
+		}
+	}
+
+	/**
+	 * A packet came in. Packets are looked at, never handled, since handling them would reach for the World
+	 * @param packet The packet
+	 */
+	private void onPacket(Packet packet)
+	{
+		if(packet instanceof CompositePacket)
+		{
+			for(Packet p : ((CompositePacket) packet).getPackets())
+			{
+				onPacket(p);
+			}
+		}
+		else if(packet instanceof LoginResponsePacket)
+		{
+			onLoginResponse(((LoginResponsePacket) packet).getResponse());
+		}
+		else if(packet instanceof LoginDataResponsePacket)
+		{
+			onLoggedIn();
+		}
+		else if(packet instanceof ResumeTokenPacket)
+		{
+			resumeToken = ((ResumeTokenPacket) packet).getToken();
+		}
+		else if(packet instanceof TestPacket)
+		{
+			onPingAnswered(((TestPacket) packet).getTestValue());
+		}
+
+		// LogoutPacket needs nothing, the server closes the connection right after it
+	}
+
+	/**
+	 * The server answered the login request
+	 * @param response What it said
+	 */
+	private void onLoginResponse(LoginResponse response)
+	{
+		if(phase != Phase.LOGGING_IN)
+		{
+			stats.fail("login response while " + phase);
+			return;
+		}
+
+		switch(response)
+		{
+		case RECONNECT:
+		case OKAY:
+			// A reconnect that got a fresh login means the server had already given up on us
+			if(reconnecting && response != LoginResponse.RECONNECT)
+			{
+				stats.fail("reconnect treated as new login");
+			}
+
+			phase = Phase.LOADING;
+			send(new LoginDataRequestPacket());
+			break;
+
+		case RESUME_REJECTED:
+			// Still connected, so fall back on the password. Counted, since the token should have been good
+			stats.fail("resume rejected");
+			send(new LoginPacket(username, password));
+			break;
+
+		default:
+			stats.fail("login " + response);
+			phase = Phase.IDLE;
+			channel.close();
+			break;
+		}
+	}
+
+	/**
+	 * The player data arrived, so we're logged in. Play for a while, then end the session
+	 */
+	private void onLoggedIn()
+	{
+		if(phase != Phase.LOADING)
+		{
+			stats.fail("login data while " + phase);
+			return;
+		}
+
+		(reconnecting ? stats.reconnect : stats.login).record(System.nanoTime() - waitStart);
+		stats.loggedIn.incrementAndGet();
+		phase = Phase.PLAYING;
+
+		if(settings.pingRate > 0)
+		{
+			long interval = TimeUnit.SECONDS.toNanos(1) / settings.pingRate;
+			long firstDelay = ThreadLocalRandom.current().nextLong(interval);
+			pingTask = loop.scheduleAtFixedRate(this::ping, firstDelay, interval, TimeUnit.NANOSECONDS);
+		}
+
+		// Play half as long after coming back, so a dropped session lasts about as long as any other
+		long playTime = reconnecting ? settings.sessionLength / 2 : settings.sessionLength;
+		Channel playing = channel;
+		loop.schedule(() -> leave(playing), playTime, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Press the ping button
+	 */
+	private void ping()
+	{
+		if(phase == Phase.PLAYING)
+		{
+			pings.addLast(System.nanoTime());
+			send(new ButtonActionPacket(ButtonActionID.PING, new BufferableInteger(nextPing++)));
+		}
+	}
+
+	/**
+	 * The server answered a ping. Answers come back in order, but the server may drop some of them
+	 * when it can't keep up, so any older pings still waiting never will be answered
+	 * @param sequence Sequence number of the ping being answered
+	 */
+	private void onPingAnswered(int sequence)
+	{
+		// Sent before the pings were last forgotten, or not a ping this bot sent at all
+		if(sequence - oldestPing < 0 || sequence - nextPing >= 0)
+		{
+			return;
+		}
+
+		while(!pings.isEmpty() && oldestPing != sequence)
+		{
+			pings.pollFirst();
+			oldestPing++;
+			stats.fail("ping answer dropped");
+		}
+
+		Long sent = pings.pollFirst();
+		if(sent != null)
+		{
+			oldestPing++;
+			stats.response.record(System.nanoTime() - sent);
+		}
+	}
+
+	/**
+	 * Time's up for this session. Either drop the connection or log out
+	 * @param playing The connection that was playing. If it has gone away meanwhile, there's nothing to do
+	 */
+	private void leave(Channel playing)
+	{
+		if(playing != channel || phase != Phase.PLAYING)
+		{
+			return;
+		}
+
+		stopPlaying();
+
+		if(!dropped && ThreadLocalRandom.current().nextDouble() < settings.dropChance)
+		{
+			// Gone without a word. The server should hold on to us for a little while
+			dropped = true;
+			phase = Phase.DROPPING;
+			channel.close();
+		}
+		else {
+			phase = Phase.LOGGING_OUT;
+			waitStart = System.nanoTime();
+			send(new ButtonActionPacket(ButtonActionID.LOGOUT));
+		}
+	}
+
+	/**
+	 * Stop pressing buttons. Any pings still out there are forgotten
+	 */
+	private void stopPlaying()
+	{
+		if(pingTask != null)
+		{
+			pingTask.cancel(false);
+			pingTask = null;
+		}
+		pings.clear();
+		oldestPing = nextPing;
+
+		stats.loggedIn.decrementAndGet();
+	}
+
+	/**
+	 * The connection closed, whether we meant it to or not
+	 */
+	private void onDisconnected()
+	{
+		stats.connected.decrementAndGet();
+		channel = null;
+
+		switch(phase)
+		{
+		case DROPPING:
+			// Come back before the server's reconnect window runs out
+			loop.schedule(() -> connect(true), settings.reconnectDelay, TimeUnit.MILLISECONDS);
+			return;
+
+		case LOGGING_OUT:
+			stats.logout.record(System.nanoTime() - waitStart);
+			break;
+
+		case PLAYING:
+			stopPlaying();
+			stats.fail("disconnected while playing");
+			break;
+
+		case IDLE:
+			// Closed by us after a failed login, which has already been counted
+			break;
+
+		default:
+			stats.fail("disconnected while " + phase);
+			break;
+		}
+
+		endSession();
+	}
+
+	/**
+	 * Move on to the next session, or finish if that was the last one
+	 */
+	private void endSession()
+	{
+		phase = Phase.IDLE;
+		dropped = false;
+
+		if(--sessionsLeft > 0)
+		{
+			loop.schedule(() -> connect(false), settings.sessionPause, TimeUnit.MILLISECONDS);
+		}
+		else {
+			finished.countDown();
+		}
+	}
+
+	/**
+	 * Write a packet to the server
+	 * @param packet The packet
+	 */
+	private void send(Packet packet)
+	{
+		stats.packetsSent.increment();
+		channel.writeAndFlush(packet, channel.voidPromise());
+	}
+
+	/**
+	 * Same pipeline as the real client, with the bot in place of the PacketHandler
+	 */
+	private class BotChannelInitializer extends ChannelInitializer<SocketChannel> {
+
+		@Override
+		protected void initChannel(SocketChannel ch) throws Exception
+		{
+			ch.pipeline().addLast(
+					new ProtocolHandshakeHandler(),
+					new PacketDecoder(),
+					new BotHandler());
+
+			ch.pipeline().addLast(new LengthPrepender());
+			if(ConfigConstants.COMPRESSION_ENABLED)
+			{
+				ch.pipeline().addLast(LoadTest.COMPRESSOR);
+			}
+			ch.pipeline().addLast(new PacketEncoder());
+		}
+
+	}
+
+	/**
+	 * Passes what happens on the connection along to the bot
+	 */
+	private class BotHandler extends ChannelInboundHandlerAdapter {
+
+		/**
+		 * The handshake has already gone out and put the channel on a version by now, so packets can follow right away
+		 */
+		@Override
+		public void channelActive(ChannelHandlerContext ctx)
+		{
+			onConnected(ctx.channel());
+		}
+
+		@Override
+		public void channelRead(ChannelHandlerContext ctx, Object msg)
+		{
+			stats.packetsReceived.increment();
+			onPacket((Packet) msg);
+		}
+
+		@Override
+		public void channelInactive(ChannelHandlerContext ctx)
+		{
+			onDisconnected();
+		}
+
+		/**
+		 * Count it and close. channelInactive takes it from there
+		 */
+		@Override
+		public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause)
+		{
+			stats.fail("exception " + cause.getClass().getSimpleName());
+			ctx.close();
+		}
+
+	}
+
+}
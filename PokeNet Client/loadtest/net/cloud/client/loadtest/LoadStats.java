@@ -0,0 +1,174 @@
+package net.cloud.client.loadtest;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Everything the bots measure during a load test. Bots run on many event loop threads at once,
+ * so counters are LongAdders and latencies go into synchronized sample lists. Every latency is kept,
+ * which makes the percentiles exact - a few million samples is only tens of megabytes.
+ */
+public class LoadStats {
+
+	/** Nanoseconds in a millisecond, for reporting */
+	private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+	/** From starting to connect until the connection is up */
+	final Samples connect = new Samples("connect");
+
+	/** From sending the login request until the login data arrives */
+	final Samples login = new Samples("login");
+
+	/** Like login, but for a bot coming back after dropping its connection */
+	final Samples reconnect = new Samples("reconnect");
+
+	/** From pressing the ping button until the server answers */
+	final Samples response = new Samples("response");
+
+	/** From pressing the logout button until the server closes the connection */
+	final Samples logout = new Samples("logout");
+
+	/** Packets written by every bot */
+	final LongAdder packetsSent = new LongAdder();
+
+	/** Packets read by every bot. Composites count once */
+	final LongAdder packetsReceived = new LongAdder();
+
+	/** Bots with a connection open right now */
+	final AtomicInteger connected = new AtomicInteger();
+
+	/** Bots logged in right now */
+	final AtomicInteger loggedIn = new AtomicInteger();
+
+	/** Things that went wrong, by what went wrong */
+	private final Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+
+	/**
+	 * Count something going wrong
+	 * @param reason What went wrong. Used as the name in the report
+	 */
+	void fail(String reason)
+	{
+		failures.computeIfAbsent(reason, (r) -> new LongAdder()).increment();
+	}
+
+	/**
+	 * Print a one line summary of how things are right now
+	 * @param out Where to print it
+	 * @param elapsedNanos How long the test has been running
+	 */
+	void printProgress(PrintStream out, long elapsedNanos)
+	{
+		out.println(String.format("[%6.1fs] connected %d, logged in %d, sent %d, received %d, responses %d, failures %d",
+				elapsedNanos / 1e9, connected.get(), loggedIn.get(), packetsSent.sum(), packetsReceived.sum(),
+				response.count(), failures.values().stream().mapToLong(LongAdder::sum).sum()));
+	}
+
+	/**
+	 * Print the final report. Latency lines are whitespace separated columns, so they're easy to pick apart with a script
+	 * @param out Where to print it
+	 * @param elapsedNanos How long the test ran
+	 */
+	void printReport(PrintStream out, long elapsedNanos)
+	{
+		double seconds = elapsedNanos / 1e9;
+
+		out.println();
+		out.println(String.format("%-10s %9s %9s %9s %9s %9s %9s", "latency", "count", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+		for(Samples samples : new Samples[] { connect, login, reconnect, response, logout })
+		{
+			samples.print(out);
+		}
+
+		out.println();
+		out.println(String.format("throughput: sent %.1f packets/s, received %.1f packets/s, %.1f responses/s over %.1fs",
+				packetsSent.sum() / seconds, packetsReceived.sum() / seconds, response.count() / seconds, seconds));
+
+		failures.forEach((reason, count) -> out.println("failure " + reason + ": " + count.sum()));
+	}
+
+	/** Every latency recorded for one kind of operation */
+	static class Samples {
+
+		/** Name in the report */
+		private final String name;
+
+		/** Latencies in nanoseconds. Only the first size entries are used */
+		private long[] nanos;
+
+		/** How many latencies have been recorded */
+		private int size;
+
+		/**
+		 * @param name Name in the report
+		 */
+		Samples(String name)
+		{
+			this.name = name;
+			this.nanos = new long[1024];
+			this.size = 0;
+		}
+
+		/**
+		 * Record a latency
+		 * @param latency How long it took, in nanoseconds
+		 */
+		synchronized void record(long latency)
+		{
+			if(size == nanos.length)
+			{
+				nanos = Arrays.copyOf(nanos, size * 2);
+			}
+
+			nanos[size++] = latency;
+		}
+
+		/**
+		 * @return How many latencies have been recorded
+		 */
+		synchronized int count()
+		{
+			return size;
+		}
+
+		/**
+		 * Print a line with the count and percentiles
+		 * @param out Where to print it
+		 */
+		void print(PrintStream out)
+		{
+			long[] sorted;
+			synchronized(this)
+			{
+				sorted = Arrays.copyOf(nanos, size);
+			}
+			Arrays.sort(sorted);
+
+			out.println(String.format("%-10s %9d %9.2f %9.2f %9.2f %9.2f %9.2f", name, sorted.length,
+					percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99), percentile(sorted, 99.9),
+					sorted.length == 0 ? 0.0 : sorted[sorted.length - 1] / NANOS_PER_MILLI));
+		}
+
+		/**
+		 * @param sorted Latencies, sorted
+		 * @param percentile Between 0 and 100
+		 * @return The latency at that percentile in milliseconds, nearest rank. 0 if there are none
+		 */
+		private static double percentile(long[] sorted, double percentile)
+		{
+			if(sorted.length == 0)
+			{
+				return 0.0;
+			}
+
+			int rank = (int) Math.ceil(sorted.length * percentile / 100.0);
+
+			return sorted[Math.max(0, rank - 1)] / NANOS_PER_MILLI;
+		}
+	}
+
+}
@@ -0,0 +1,220 @@
+package net.cloud.client.loadtest;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import net.cloud.client.nio.packet.PacketCompressor;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+
+/**
+ * Headless load generator. Starts a crowd of Bots against a running server, and prints latency percentiles
+ * and throughput once they're all done. Run with the client's classes and netty on the classpath: <br>
+ * <code>java net.cloud.client.loadtest.LoadTest [accounts] [key=value ...]</code> <br>
+ * The bots need accounts to log in to, and accounts can only be made from the server console. So first run with
+ * <code>accounts</code>, which writes a command script instead of connecting. Put it in the server's
+ * data/scripts/commands and run <code>::cmdscript loadtest</code> on the console. <br>
+ * Keep the server's own limits in mind when sizing a run. By default it takes 8 connections and 1 new connection
+ * a second from any one address, 20 actions a second from any one player, and a few thousand connections overall.
+ * Either raise those in the server's ConfigConstants, or use <code>sources</code> to connect from several
+ * loopback addresses (Linux answers on all of 127/8, other systems may not).
+ */
+public class LoadTest {
+
+	/** The compressor has no per-channel state, so every bot can share it */
+	static final PacketCompressor COMPRESSOR = new PacketCompressor();
+
+	/** Milliseconds between progress lines */
+	private static final long PROGRESS_INTERVAL = 5000;
+
+	/** Static class, no instances */
+	private LoadTest() {}
+
+	/**
+	 * Parse the arguments, then either write the account script or run the test
+	 * @param args Optionally "accounts", then any number of key=value settings. See Settings for the keys
+	 * @throws Exception If the script can't be written or the test is interrupted
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		boolean accounts = args.length > 0 && args[0].equals("accounts");
+		Settings settings = new Settings(args, accounts ? 1 : 0);
+
+		if(accounts)
+		{
+			writeAccountScript(settings);
+		}
+		else {
+			run(settings);
+		}
+	}
+
+	/**
+	 * Write a server command script that creates an account for every bot
+	 * @param settings How many bots, and their names and password
+	 * @throws IOException If the script can't be written
+	 */
+	private static void writeAccountScript(Settings settings) throws IOException
+	{
+		try(PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(settings.script), StandardCharsets.UTF_8)))
+		{
+			for(int i = 0; i < settings.bots; ++i)
+			{
+				out.println("::create_account " + settings.prefix + i + " " + settings.password);
+			}
+		}
+
+		System.out.println("Wrote " + settings.bots + " accounts to " + settings.script);
+	}
+
+	/**
+	 * Start every bot, print progress until they finish, then print the report
+	 * @param settings How the test was set up
+	 * @throws InterruptedException If interrupted while waiting on the bots
+	 */
+	private static void run(Settings settings) throws InterruptedException
+	{
+		EventLoopGroup group = new NioEventLoopGroup(settings.threads);
+		LoadStats stats = new LoadStats();
+		CountDownLatch finished = new CountDownLatch(settings.bots);
+
+		// Every bot copies this and pins the copy to its own loop
+		Bootstrap bootstrap = new Bootstrap();
+		bootstrap.group(group);
+		bootstrap.channel(NioSocketChannel.class);
+		bootstrap.option(ChannelOption.TCP_NODELAY, true);
+		bootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, settings.connectTimeout);
+
+		System.out.println("Starting " + settings.bots + " bots against " + settings.host + ":" + settings.port);
+		long start = System.nanoTime();
+
+		for(int i = 0; i < settings.bots; ++i)
+		{
+			Bot bot = new Bot(i, settings, stats, bootstrap, group.next(), finished);
+			bot.start(settings.bots > 1 ? settings.rampUp * i / (settings.bots - 1) : 0);
+		}
+
+		while(!finished.await(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS))
+		{
+			stats.printProgress(System.out, System.nanoTime() - start);
+		}
+
+		long elapsed = System.nanoTime() - start;
+		group.shutdownGracefully().sync();
+
+		stats.printReport(System.out, elapsed);
+	}
+
+	/**
+	 * Everything that can be set from the command line, as key=value. Times are in milliseconds
+	 */
+	static class Settings {
+
+		/** Server address */
+		final String host;
+
+		/** Server port */
+		final int port;
+
+		/** How many bots */
+		final int bots;
+
+		/** How many times each bot logs in and back out */
+		final int sessions;
+
+		/** How long each session plays for */
+		final long sessionLength;
+
+		/** Pause between one session and the next */
+		final long sessionPause;
+
+		/** Pings each bot sends a second while playing */
+		final int pingRate;
+
+		/** Chance that a session ends by dropping the connection rather than logging out */
+		final double dropChance;
+
+		/** How long a dropped bot waits before reconnecting. The server gives up after 10 seconds */
+		final long reconnectDelay;
+
+		/** Bots start evenly spread over this long */
+		final long rampUp;
+
+		/** Give up on a connection attempt after this long */
+		final int connectTimeout;
+
+		/** How many loopback addresses to connect from. 1 lets the system pick */
+		final int sourceAddresses;
+
+		/** Event loop threads. 0 lets netty pick */
+		final int threads;
+
+		/** Bot usernames are this followed by the bot's number */
+		final String prefix;
+
+		/** Every bot's password */
+		final String password;
+
+		/** Where the accounts mode writes its script */
+		final String script;
+
+		/**
+		 * Read the settings out of the arguments. Anything not given keeps its default
+		 * @param args Command line arguments
+		 * @param from Index of the first key=value argument
+		 * @throws IllegalArgumentException If an argument isn't key=value, or the key is unknown
+		 */
+		Settings(String[] args, int from)
+		{
+			Map<String, String> given = new HashMap<>();
+			for(int i = from; i < args.length; ++i)
+			{
+				int split = args[i].indexOf('=');
+				if(split < 1)
+				{
+					throw new IllegalArgumentException("Expected key=value, got " + args[i]);
+				}
+
+				given.put(args[i].substring(0, split), args[i].substring(split + 1));
+			}
+
+			host = given.getOrDefault("host", "localhost");
+			port = Integer.parseInt(given.getOrDefault("port", "43594"));
+			bots = Integer.parseInt(given.getOrDefault("bots", "100"));
+			sessions = Integer.parseInt(given.getOrDefault("sessions", "3"));
+			sessionLength = Long.parseLong(given.getOrDefault("session", "20000"));
+			sessionPause = Long.parseLong(given.getOrDefault("pause", "1000"));
+			pingRate = Integer.parseInt(given.getOrDefault("pings", "2"));
+			dropChance = Double.parseDouble(given.getOrDefault("drop", "0.3"));
+			reconnectDelay = Long.parseLong(given.getOrDefault("reconnect", "2000"));
+			rampUp = Long.parseLong(given.getOrDefault("ramp", "10000"));
+			connectTimeout = Integer.parseInt(given.getOrDefault("timeout", "5000"));
+			sourceAddresses = Integer.parseInt(given.getOrDefault("sources", "1"));
+			threads = Integer.parseInt(given.getOrDefault("threads", "0"));
+			prefix = given.getOrDefault("prefix", "bot");
+			password = given.getOrDefault("password", "loadtest");
+			script = given.getOrDefault("script", "loadtest.txt");
+
+			// Catch typos, a silently ignored setting makes for a confusing run
+			given.keySet().removeAll(Arrays.asList("host", "port", "bots", "sessions", "session", "pause", "pings",
+					"drop", "reconnect", "ramp", "timeout", "sources", "threads", "prefix", "password", "script"));
+			if(!given.isEmpty())
+			{
+				throw new IllegalArgumentException("Unknown settings " + given.keySet());
+			}
+		}
+
+	}
+
+}
@@ -24,5 +24,17 @@ public class ConfigConstants {
 
 	/** How frequently the current system status will be logged (ms) */
 	public static final int TRACK_TASK_INTERVAL = 10000;
+	
+	/** Whether outgoing packets may be compressed. Incoming compressed packets are always accepted */
+	public static final boolean COMPRESSION_ENABLED = true;
+	
+	/** Packet data (bytes) must be at least this big before compressing it is attempted */
+	public static final int COMPRESSION_THRESHOLD = 256;
+	
+	/** Deflate level, 1 (fastest) to 9 (smallest) */
+	public static final int COMPRESSION_LEVEL = 6;
+	
+	/** Most bytes of chunked packets that may be waiting to be put back together at once. Going over closes the connection */
+	public static final int MAX_REASSEMBLY_BYTES = 2 * 1024 * 1024;
 
 }
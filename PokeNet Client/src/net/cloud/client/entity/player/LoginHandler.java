@@ -7,6 +7,7 @@ import net.cloud.client.Client;
 import net.cloud.client.event.task.TaskEngine;
 import net.cloud.client.game.World;
 import net.cloud.client.game.action.ButtonActionID;
+import net.cloud.client.util.ResumeToken;
 import net.cloud.gfx.Mainframe;
 import net.cloud.gfx.elements.modal.ModalManager;
 import net.cloud.gfx.interfaces.LoginInterface;
@@ -25,6 +26,12 @@ public class LoginHandler {
 	/** The most recently passed in callback function for showing a message regarding login */
 	private static Optional<Consumer<String>> currentMessageCallback = Optional.empty();
 	
+	/** Who the held resume token belongs to */
+	private static String resumeUsername;
+	
+	/** Token from our last login, which lets us come back after dropping without the server checking our password */
+	private static ResumeToken resumeToken;
+	
 	/**
 	 * Attempt the beginning of the login process. This involves connecting to the server, and 
 	 * sending the login credentials. From there, the server should reply with whether or not 
@@ -64,8 +71,15 @@ public class LoginHandler {
 		// At this point, we've connected to the server.
 		World.instance().getPlayer().setLoginState(LoginState.CONNECTED);
 		
-		// Ship our login request off to the server
-		World.instance().getPlayer().getPacketSender().sendLogin();
+		// Ship our login request off to the server. If we dropped out of this account, try the short way back in first
+		ResumeToken token = takeResumeToken(username);
+		if(token != null)
+		{
+			World.instance().getPlayer().getPacketSender().sendResume(token);
+		}
+		else {
+			World.instance().getPlayer().getPacketSender().sendLogin();
+		}
 		
 		// Prepare a task which will time-out and abort login if we're still just CONNECTED (server never replied...)
 		TaskEngine.instance().submitDelayed(TIMEOUT, () ->
@@ -130,6 +144,9 @@ public class LoginHandler {
 		// We're about to move to logged out, then null the player - do this for completeness
 		World.instance().getPlayer().setLoginState(LoginState.LOGGING_OUT);
 		
+		// The server has let go of us, so the token is no good anymore
+		holdResumeToken(null, null);
+		
 		// Close the connection
 		World.instance().getPlayer().setLoginState(LoginState.LOGGED_OUT);
 		Client.instance().nettyClient().disconnect();
@@ -193,6 +210,31 @@ public class LoginHandler {
 		ModalManager.instance().displayMessage("Disconnect", "You disconnected from the server. You may try to reconnect.");
 	}
 	
+	/**
+	 * Keep the token the server gave us, so we can resume if we drop. Replaces any token held before
+	 * @param username The player the token is for
+	 * @param token The token, or null to forget the held one
+	 */
+	public static synchronized void holdResumeToken(String username, ResumeToken token)
+	{
+		resumeUsername = username;
+		resumeToken = token;
+	}
+	
+	/**
+	 * Hand over the held token, if it's for the given player. The server only takes a token once, 
+	 * so it's forgotten either way
+	 * @param username The player logging in
+	 * @return The token, or null if there isn't one for them
+	 */
+	private static synchronized ResumeToken takeResumeToken(String username)
+	{
+		ResumeToken token = (resumeToken != null && resumeUsername.equalsIgnoreCase(username)) ? resumeToken : null;
+		holdResumeToken(null, null);
+		
+		return token;
+	}
+	
 	/**
 	 * Displays the message in some way. This is the most recent way defined by graphical code, which informs 
 	 * this handler how to display login response messages... if that makes any sense. 
@@ -19,6 +19,12 @@ public enum LoginResponse {
 	OKAY,
 	
 	/** Special response for okay while reconnecting */
-	RECONNECT;
+	RECONNECT,
+	
+	/** The server has too many logins in progress, try again shortly */
+	SERVER_BUSY,
+	
+	/** The resume token didn't match, log in with a password instead */
+	RESUME_REJECTED;
 
 }
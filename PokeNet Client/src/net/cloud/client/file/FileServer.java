@@ -1,6 +1,9 @@
 package net.cloud.client.file;
 
 import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import net.cloud.client.event.shutdown.ShutdownHook;
 import net.cloud.client.event.shutdown.ShutdownService;
@@ -16,7 +19,8 @@ import net.cloud.client.file.address.FileAddressBuilder;
  * The file server accepts a FileRequest and will attempt to fulfill it. 
  * This occurs through a chain of classes and calls behind this facade of sorts. <br>
  * Create a FileRequest object and submit it here.  The request can then be waited upon 
- * or a listener can be attached to it which will be acted on when the request is fulfilled.<br>
+ * or a listener can be attached to it which will be acted on when the request is fulfilled. 
+ * Or submit it with submitAsync() to get a future for the file, and chain on what comes next without blocking.<br>
  * An example of the usage to obtain a BufferedReader on a file:<br>
  * <code>
  * BufferedReaderRequest req = new BufferedReaderRequest(FileAddressBuilder.newBuilder().createCommandScriptAddress("echo"));<br>
@@ -95,11 +99,70 @@ public class FileServer implements ShutdownService {
 		fileServerThread.submit(request);
 	}
 	
+	/**
+	 * Submit a FileRequest to the server, and get a future for its file descriptor rather than waiting on it. 
+	 * The future completes on the File Server's thread as soon as the request is handled, so anything chained on 
+	 * without an executor should be quick. If the request could not be submitted, the future fails with that.
+	 * @param request The FileRequest to submit
+	 * @param <T> The type of the file descriptor object. Should be inferred from the request.
+	 * @return A future for the file descriptor, which fails with a FileRequestException if it couldn't be had
+	 */
+	public <T> CompletableFuture<T> submitAsync(FileRequest<T> request)
+	{
+		CompletableFuture<T> file = request.toFuture();
+		
+		try {
+			submit(request);
+		} catch (FileRequestException e) {
+			// It'll never be handled, so it's never going to finish by itself
+			file.completeExceptionally(e);
+		}
+		
+		return file;
+	}
+	
+	/**
+	 * Submit a FileRequest to the server, and get a future for its file descriptor that completes on the given executor. 
+	 * Use this when what's chained on is slow, or has to happen on a certain thread, so it doesn't hold up the File Server's thread.
+	 * @param request The FileRequest to submit
+	 * @param executor Where the future is completed, and so where anything chained on without an executor runs
+	 * @param <T> The type of the file descriptor object. Should be inferred from the request.
+	 * @return A future for the file descriptor, which fails with a FileRequestException if it couldn't be had, 
+	 * or a RejectedExecutionException if the executor wouldn't take it
+	 */
+	public <T> CompletableFuture<T> submitAsync(FileRequest<T> request, Executor executor)
+	{
+		CompletableFuture<T> handedOff = new CompletableFuture<>();
+		
+		submitAsync(request).whenComplete((file, ex) ->
+		{
+			try {
+				executor.execute(() ->
+				{
+					if(ex != null)
+					{
+						handedOff.completeExceptionally(ex);
+					}
+					else
+					{
+						handedOff.complete(file);
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				// Nowhere to hand it off to, so it ends here
+				handedOff.completeExceptionally(e);
+			}
+		});
+		
+		return handedOff;
+	}
+	
 	/**
 	 * Slightly different that submitting a request and waiting for it, this convenience 
 	 * method will actually use the calling thread to fulfill the request rather than 
 	 * relying on the file server thread. This should only be faster, since the calling thread 
-	 * would just be waiting anyways and the file server thread may be busy.
+	 * would just be waiting anyways and the file server thread may be busy. 
+	 * It does tie up the calling thread for the whole load, so use submitAsync() from anything that mustn't block.
 	 * @param request The request to submit and wait on
 	 * @param <T> The type of the file descriptor object. Should be inferred from the request.
 	 * @return The file descriptor that is being requested
@@ -110,7 +173,7 @@ public class FileServer implements ShutdownService {
 		// Throw it straight to the handler
 		request.handle(requestHandler);
 		
-		// Wait just in case. Most likely will be no wait.
+		// The request has finished by now, so this won't wait. It just hands back any exception
 		request.waitForRequest();
 		
 		return request.getFileDescriptor();
@@ -8,6 +8,9 @@ package net.cloud.client.game.action;
 public enum ButtonActionID {
 	
 	/** The logout button, telling us the player wants to log out */
-	LOGOUT;
+	LOGOUT,
+	
+	/** Not a real button. The server answers with a TestPacket right away, so load testing bots can time a round trip */
+	PING;
 
 }
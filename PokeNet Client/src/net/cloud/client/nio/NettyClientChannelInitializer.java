@@ -1,13 +1,14 @@
 package net.cloud.client.nio;
 
-import net.cloud.client.nio.packet.PacketConstants;
+import net.cloud.client.ConfigConstants;
+import net.cloud.client.nio.packet.LengthPrepender;
+import net.cloud.client.nio.packet.PacketCompressor;
 import net.cloud.client.nio.packet.PacketDecoder;
 import net.cloud.client.nio.packet.PacketEncoder;
 import net.cloud.client.nio.packet.PacketHandler;
+import net.cloud.client.nio.packet.ProtocolHandshakeHandler;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
-import io.netty.handler.codec.LengthFieldPrepender;
 
 /**
  * Top level class for the channel initializer. It's a specialized ChannelInboundAdapter
@@ -15,6 +16,9 @@ import io.netty.handler.codec.LengthFieldPrepender;
  * Afterwards, this is removed from the channel pipeline.
  */
 public class NettyClientChannelInitializer extends ChannelInitializer<SocketChannel> {
+	
+	/** The compressor has no per-channel state, so it can be shared */
+	private static final PacketCompressor COMPRESSOR = new PacketCompressor();
 
 	/**
 	 * Initialize a channel pipeline, which will send packets through various decoders and then a PacketHandler, 
@@ -23,21 +27,19 @@ public class NettyClientChannelInitializer extends ChannelInitializer<SocketChan
 	@Override
 	protected void initChannel(SocketChannel ch) throws Exception
 	{
-		// Inbound handlers
+		// Inbound handlers. The handshake goes first and leaves once the version is settled, the decoder does its own framing
 		ch.pipeline().addLast(
-				new LengthFieldBasedFrameDecoder(
-					PacketConstants.MAX_PACKET_LENGTH, 
-					PacketConstants.LENGTH_FIELD_OFFSET,
-					PacketConstants.LENGTH_FIELD_LENGTH, 
-					PacketConstants.LENGTH_FIELD_ADJUSTMENT, 
-					PacketConstants.BYTES_TO_STRIP),
+				new ProtocolHandshakeHandler(),
 				new PacketDecoder(),
 				new PacketHandler());
 
-		// Outbound handlers
-		ch.pipeline().addLast(
-				new LengthFieldPrepender(PacketConstants.LENGTH_FIELD_LENGTH),
-				new PacketEncoder());
+		// Outbound handlers. Compression goes between the two, when it's turned on
+		ch.pipeline().addLast(new LengthPrepender());
+		if(ConfigConstants.COMPRESSION_ENABLED)
+		{
+			ch.pipeline().addLast(COMPRESSOR);
+		}
+		ch.pipeline().addLast(new PacketEncoder());
 	}
 
 }
@@ -0,0 +1,174 @@
+package net.cloud.client.nio.bufferable;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Variable length integers. Seven bits go in each byte, lowest first, and the high bit of a byte is set when
+ * there's another byte to follow. So small values take a single byte, and no int takes more than five. <br>
+ * Negative numbers are huge when looked at unsigned, so signed values are ZigZag encoded first -
+ * 0, -1, 1, -2, 2... become 0, 1, 2, 3, 4... - which keeps small negative numbers small too.
+ */
+public class VarInt {
+
+	/** The most bytes an int can take up */
+	public static final int MAX_SIZE = 5;
+
+	/** Bits of the value held in each byte */
+	private static final int BITS_PER_BYTE = 7;
+
+	/** The bits of a byte holding part of the value */
+	private static final int VALUE_MASK = 0x7F;
+
+	/** The bit of a byte saying another byte follows */
+	private static final int CONTINUE_BIT = 0x80;
+
+	/** Static class, no instances */
+	private VarInt() {}
+
+	/**
+	 * Write an int. It's treated as unsigned, so negative values always take all five bytes
+	 * @param buffer The buffer to write to
+	 * @param value The value to write
+	 */
+	public static void write(ByteBuf buffer, int value)
+	{
+		while((value & ~VALUE_MASK) != 0)
+		{
+			buffer.writeByte((value & VALUE_MASK) | CONTINUE_BIT);
+			value >>>= BITS_PER_BYTE;
+		}
+
+		buffer.writeByte(value);
+	}
+
+	/**
+	 * Read an int
+	 * @param buffer The buffer to read from
+	 * @return The value that was read
+	 * @throws BufferableException If the value runs longer than an int can be
+	 */
+	public static int read(ByteBuf buffer) throws BufferableException
+	{
+		int value = 0;
+
+		for(int shift = 0; shift < MAX_SIZE * BITS_PER_BYTE; shift += BITS_PER_BYTE)
+		{
+			int b = buffer.readByte();
+			value |= (b & VALUE_MASK) << shift;
+
+			if((b & CONTINUE_BIT) == 0)
+			{
+				return value;
+			}
+		}
+
+		throw new BufferableException("VarInt longer than " + MAX_SIZE + " bytes", buffer.readerIndex());
+	}
+
+	/**
+	 * Read an int at the given position, without moving the reader index
+	 * @param buffer The buffer to read from
+	 * @param index Where the value starts
+	 * @return The value at that position
+	 * @throws BufferableException If the value runs longer than an int can be
+	 */
+	public static int get(ByteBuf buffer, int index) throws BufferableException
+	{
+		int value = 0;
+
+		for(int i = 0; i < MAX_SIZE; ++i)
+		{
+			int b = buffer.getByte(index + i);
+			value |= (b & VALUE_MASK) << (i * BITS_PER_BYTE);
+
+			if((b & CONTINUE_BIT) == 0)
+			{
+				return value;
+			}
+		}
+
+		throw new BufferableException("VarInt longer than " + MAX_SIZE + " bytes", index);
+	}
+
+	/**
+	 * Find out how long the value at the reader index is, if all of it has arrived
+	 * @param buffer The buffer to look in
+	 * @return How many bytes the value takes up, or 0 if it isn't all readable yet
+	 * @throws BufferableException If the value runs longer than an int can be
+	 */
+	public static int peekSize(ByteBuf buffer) throws BufferableException
+	{
+		int readable = Math.min(buffer.readableBytes(), MAX_SIZE);
+
+		for(int i = 0; i < readable; ++i)
+		{
+			if((buffer.getByte(buffer.readerIndex() + i) & CONTINUE_BIT) == 0)
+			{
+				return i + 1;
+			}
+		}
+
+		if(readable == MAX_SIZE)
+		{
+			throw new BufferableException("VarInt longer than " + MAX_SIZE + " bytes", buffer.readerIndex());
+		}
+
+		return 0;
+	}
+
+	/**
+	 * @param value A value that's going to be written
+	 * @return How many bytes it will take up
+	 */
+	public static int sizeOf(int value)
+	{
+		int size = 1;
+		while((value & ~VALUE_MASK) != 0)
+		{
+			value >>>= BITS_PER_BYTE;
+			size++;
+		}
+
+		return size;
+	}
+
+	/**
+	 * Write a signed int, ZigZag encoded so small negative numbers stay small
+	 * @param buffer The buffer to write to
+	 * @param value The value to write
+	 */
+	public static void writeSigned(ByteBuf buffer, int value)
+	{
+		write(buffer, zigZag(value));
+	}
+
+	/**
+	 * Read a signed int written by writeSigned
+	 * @param buffer The buffer to read from
+	 * @return The value that was read
+	 * @throws BufferableException If the value runs longer than an int can be
+	 */
+	public static int readSigned(ByteBuf buffer) throws BufferableException
+	{
+		return unZigZag(read(buffer));
+	}
+
+	/**
+	 * @param value A signed value
+	 * @return The value with its sign moved to the lowest bit
+	 */
+	public static int zigZag(int value)
+	{
+		return (value << 1) ^ (value >> 31);
+	}
+
+	/**
+	 * @param value A ZigZag encoded value
+	 * @return The original signed value
+	 */
+	public static int unZigZag(int value)
+	{
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+}
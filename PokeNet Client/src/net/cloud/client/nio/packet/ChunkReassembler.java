@@ -0,0 +1,146 @@
+package net.cloud.client.nio.packet;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import net.cloud.client.nio.bufferable.BufferableException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+
+/**
+ * Puts packets that the server sent in chunks (see the server's PacketChunker) back together.
+ * Chunks of several packets may be mixed in with each other and with regular packets, but the chunks of
+ * any one packet arrive in order. Each packet gets a buffer the size of the whole thing up front, and the
+ * buffers waiting to be filled are capped in total, so the server can't make the client hold onto any amount. <br>
+ * One per channel. Only used from the channel's event loop, so nothing is synchronized.
+ */
+public class ChunkReassembler {
+
+	/** Packets being put back together, by stream id */
+	private final Map<Integer, Stream> streams;
+
+	/** Most bytes that may be held for unfinished packets at once */
+	private final int maxBytes;
+
+	/** Bytes held for unfinished packets right now */
+	private int heldBytes;
+
+	/**
+	 * Create a reassembler that holds at most the given number of bytes for unfinished packets
+	 * @param maxBytes Cap on the total length of the packets being put back together
+	 */
+	public ChunkReassembler(int maxBytes)
+	{
+		this.streams = new HashMap<>();
+		this.maxBytes = maxBytes;
+		this.heldBytes = 0;
+	}
+
+	/**
+	 * Add a chunk to the packet it belongs to. The buffer should be positioned just after the CHUNK opcode,
+	 * and is read to its end.
+	 * @param chunk The chunk header and a piece of the packet
+	 * @param version The protocol version the header was written with
+	 * @param alloc Allocator for the buffer the packet is put together in
+	 * @return The whole packet (opcode and data) if this was its last chunk, otherwise null. The caller owns it
+	 * @throws TooLongFrameException If there isn't room left under the cap for a new packet
+	 * @throws CorruptedFrameException If the chunk doesn't fit with the ones before it
+	 * @throws BufferableException If the chunk header is malformed
+	 */
+	public ByteBuf add(ByteBuf chunk, ProtocolVersion version, ByteBufAllocator alloc) throws TooLongFrameException, CorruptedFrameException, BufferableException
+	{
+		int id = version.readInt(chunk);
+		int sequence = version.readInt(chunk);
+		int totalLength = version.readInt(chunk);
+
+		Stream stream = streams.get(id);
+		if(sequence == 0)
+		{
+			if(stream != null)
+			{
+				throw new CorruptedFrameException("Chunked packet " + id + " started twice");
+			}
+
+			// Checked against what's left, so a bogus length can't make it allocate anything
+			if(totalLength <= 0 || totalLength > maxBytes - heldBytes)
+			{
+				throw new TooLongFrameException("Chunked packet of " + totalLength + " bytes, with " + heldBytes + " of " + maxBytes + " held already");
+			}
+
+			stream = new Stream(alloc.buffer(totalLength, totalLength));
+			streams.put(id, stream);
+			heldBytes += totalLength;
+		}
+		else if(stream == null || sequence != stream.nextSequence || totalLength != stream.data.capacity())
+		{
+			throw new CorruptedFrameException("Chunk " + sequence + " of packet " + id + " out of place");
+		}
+
+		if(chunk.readableBytes() > stream.data.writableBytes())
+		{
+			throw new CorruptedFrameException("Chunks of packet " + id + " add up to more than " + totalLength + " bytes");
+		}
+
+		stream.data.writeBytes(chunk);
+		stream.nextSequence++;
+
+		if(stream.data.isWritable())
+		{
+			return null;
+		}
+
+		// All here. It's the caller's now
+		streams.remove(id);
+		heldBytes -= totalLength;
+
+		return stream.data;
+	}
+
+	/**
+	 * @return Bytes held for unfinished packets right now
+	 */
+	public int heldBytes()
+	{
+		return heldBytes;
+	}
+
+	/**
+	 * Let go of every unfinished packet. Called when the channel is done with
+	 */
+	public void release()
+	{
+		for(Stream stream : streams.values())
+		{
+			stream.data.release();
+		}
+
+		streams.clear();
+		heldBytes = 0;
+	}
+
+
+	/**
+	 * A packet being put back together
+	 */
+	private static class Stream {
+
+		/** Room for the whole packet, filled as chunks arrive */
+		private final ByteBuf data;
+
+		/** Sequence number the next chunk should have */
+		private int nextSequence;
+
+		/**
+		 * @param data Room for the whole packet
+		 */
+		private Stream(ByteBuf data)
+		{
+			this.data = data;
+			this.nextSequence = 0;
+		}
+
+	}
+
+}
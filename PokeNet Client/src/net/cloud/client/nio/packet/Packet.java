@@ -24,6 +24,18 @@ public interface Packet {
 	 */
 	public void encode(ByteBuf buffer) throws BufferableException;
 	
+	/**
+	 * Packs the Packet into a ByteBuf for a channel speaking the given protocol version. 
+	 * Packets with integer fields override this, the rest are the same in every version.
+	 * @param buffer The ByteBuf that data will be placed into, from the current position
+	 * @param version The protocol version of the channel
+	 * @throws BufferableException If there is an issue encoding a Bufferable object
+	 */
+	public default void encode(ByteBuf buffer, ProtocolVersion version) throws BufferableException
+	{
+		encode(buffer);
+	}
+	
 	/**
 	 * Decodes the Packet. Takes the data and creates a copy of the specific Packet 
 	 * implementing class.  The Packet returned is a <i>copy</i> with the members 
@@ -34,6 +46,19 @@ public interface Packet {
 	 */
 	public Packet decode(ByteBuf data) throws BufferableException;
 	
+	/**
+	 * Decodes the Packet from a channel speaking the given protocol version. 
+	 * Packets with integer fields override this, the rest are the same in every version.
+	 * @param data The data required for the Packet, assumed to be without header.
+	 * @param version The protocol version of the channel
+	 * @return A copy of the Packet deserialized to reflect the provided data
+	 * @throws BufferableException If there is an issue decoding a Bufferable object
+	 */
+	public default Packet decode(ByteBuf data, ProtocolVersion version) throws BufferableException
+	{
+		return decode(data);
+	}
+	
 	/**
 	 * Executes whatever action the Packet needs to take, to take action on the information 
 	 * stored in it.  Split from the decoding process, but assumes the Packet has been 
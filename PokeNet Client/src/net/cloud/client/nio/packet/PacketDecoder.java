@@ -2,38 +2,135 @@ package net.cloud.client.nio.packet;
 
 import java.util.List;
 
+import net.cloud.client.ConfigConstants;
 import net.cloud.client.nio.packet.packets.PacketManager;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.TooLongFrameException;
 
 /**
  * Will wait until a packet has been entirely received, and then 
  * create a Packet, which will then decode itself.  
- * The decoded packet is added to the pipeline for handling. 
+ * The decoded packet is added to the pipeline for handling. <br>
+ * Framing is done here as well, since the length field is a VarInt under V2 and netty's frame decoder 
+ * only knows fixed width ones. How the length and opcode are read depends on the channel's ProtocolVersion. 
+ * Compressed packets (see PacketCompressor) are inflated before being decoded. <br>
+ * Packets too big for one frame come in as CHUNK packets. Those are put back together by a ChunkReassembler, 
+ * and the whole packet is decoded once the last chunk is in.
  */
 public class PacketDecoder extends ByteToMessageDecoder {
+	
+	/** Puts chunked packets back together */
+	private final ChunkReassembler reassembler = new ChunkReassembler(ConfigConstants.MAX_REASSEMBLY_BYTES);
 
 	/**
-	 * Figure out which packet is coming through the pipeline (by reading its opcode) 
-	 * then pass it off to the PacketManager
+	 * Wait for a whole packet to arrive, read its header, then pass the rest off to the PacketManager
+	 * @throws TooLongFrameException If the length field is over the maximum packet length
 	 */
 	@Override
 	protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception
 	{
-		// Before this in the pipeline was a length based decoder, so now we need to figure out which Packet 
-		// to create, create it, and pass it on to the PacketHandler, which is next in the pipeline.
+		ProtocolVersion version = ProtocolVersion.of(ctx.channel());
 		
-		// This method occasionally has an empty buffer provided to it.  Need at least the opcode.
-		if(in.readableBytes() <= PacketConstants.OPCODE_LENGTH) {
+		// Need the whole length field before we know anything
+		int lengthFieldSize = version.peekLengthFieldSize(in);
+		if(lengthFieldSize == 0)
+		{
 			return;
 		}
 		
-		// Read the opcode of the Packet
-		short opcode = in.readShort();
+		// Peek at the length, nothing is consumed until the entire packet is here
+		int start = in.readerIndex();
+		int length = version.getLength(in) + PacketConstants.LENGTH_FIELD_ADJUSTMENT;
 		
+		if(length > PacketConstants.MAX_PACKET_LENGTH)
+		{
+			throw new TooLongFrameException("Packet length " + length + " exceeds " + PacketConstants.MAX_PACKET_LENGTH);
+		}
+		
+		if(in.readableBytes() < lengthFieldSize + length)
+		{
+			return;
+		}
+		
+		int end = start + lengthFieldSize + length;
+		in.skipBytes(lengthFieldSize);
+		
+		// A frame too short to have an opcode is just skipped
+		if(length < (version == ProtocolVersion.V1 ? PacketConstants.OPCODE_LENGTH : 1))
+		{
+			in.readerIndex(end);
+			return;
+		}
+		
+		// Packets see their own data and nothing past it
+		int writerIndex = in.writerIndex();
+		in.writerIndex(end);
+		
+		try {
+			// Read the opcode of the Packet
+			short opcode = version.readOpcode(in);
+			
+			if(opcode != PacketConstants.CHUNK)
+			{
+				decodePacket(ctx, version, opcode, in, out);
+			}
+			else {
+				// Nothing to decode until the last chunk of the packet arrives
+				ByteBuf packet = reassembler.add(in, version, ctx.alloc());
+				
+				if(packet != null)
+				{
+					try {
+						decodePacket(ctx, version, version.readOpcode(packet), packet, out);
+					} finally {
+						packet.release();
+					}
+				}
+			}
+		} finally {
+			// Whatever the packet left unread, the next one starts at the end of this one
+			in.writerIndex(writerIndex);
+			in.readerIndex(end);
+		}
+	}
+
+	/**
+	 * Decode a packet, once its opcode has been read
+	 * @param ctx Context to allocate from
+	 * @param version The protocol version of the channel
+	 * @param opcode The opcode, possibly with the compressed flag
+	 * @param in The data of the packet
+	 * @param out Where the decoded packet goes
+	 * @throws Exception If the data could not be inflated, or the packet could not be decoded
+	 */
+	private void decodePacket(ChannelHandlerContext ctx, ProtocolVersion version, short opcode, ByteBuf in, List<Object> out) throws Exception
+	{
 		// Now that we have the opcode, we can create a specific instance of a Packet
-		out.add(PacketManager.decodeCopy(opcode, in));
+		if((opcode & PacketConstants.COMPRESSED_FLAG) == 0)
+		{
+			out.add(PacketManager.decodeCopy(opcode, in, version));
+		}
+		else {
+			// The data has to be inflated first
+			ByteBuf data = PacketInflater.inflate(in, version, ctx.alloc());
+			
+			try {
+				out.add(PacketManager.decodeCopy((short) (opcode & ~PacketConstants.COMPRESSED_FLAG), data, version));
+			} finally {
+				data.release();
+			}
+		}
+	}
+	
+	/**
+	 * Let go of any packets that were only part way there
+	 */
+	@Override
+	protected void handlerRemoved0(ChannelHandlerContext ctx) throws Exception
+	{
+		reassembler.release();
 	}
 
 }
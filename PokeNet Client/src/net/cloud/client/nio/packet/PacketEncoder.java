@@ -13,17 +13,19 @@ public class PacketEncoder extends MessageToByteEncoder<Packet> {
 
 	/**
 	 * Encodes the given packet into the given byte buffer. 
-	 * The packet's opcode is appended before the packet's data
+	 * The packet's opcode is appended before the packet's data, both as the channel's protocol version has them
 	 */
 	@Override
 	protected void encode(ChannelHandlerContext ctx, Packet msg, ByteBuf out) throws Exception
 	{
+		ProtocolVersion version = ProtocolVersion.of(ctx.channel());
+		
 		// Packet's opcode goes into a header before its data
-		out.writeShort(msg.getOpcode());
+		version.writeOpcode(out, msg.getOpcode(), false);
 
 		// All this needs to do is have the Packet write bytes into the buffer
 		try {
-			msg.encode(out);
+			msg.encode(out, version);
 		} catch(Exception e) {
 			// We could let the exception go beyond this method, but since we're favoring a VoidPromise 
 			// and no future listener, exceptions otherwise go silent.
@@ -6,6 +6,7 @@ import net.cloud.client.game.action.ButtonActionID;
 import net.cloud.client.nio.bufferable.Bufferable;
 import net.cloud.client.nio.packet.packets.*;
 import net.cloud.client.nio.packet.packets.LoginPacket.LoginDataRequestPacket;
+import net.cloud.client.util.ResumeToken;
 
 /**
  * Typical factory class, meant to create Packets. 
@@ -53,6 +54,17 @@ public class PacketFactory {
 		return loginPacket;
 	}
 	
+	/**
+	 * Create a ResumePacket, asking the server to pick our session back up with the token 
+	 * it gave us, instead of logging in with a password. Uses the World Player's username. 
+	 * @param token The token from our last login
+	 * @return A resume packet
+	 */
+	public ResumePacket createResume(ResumeToken token)
+	{
+		return new ResumePacket(World.instance().getPlayer().getUsername(), token);
+	}
+	
 	/**
 	 * Create a login data request packet
 	 * @return A login data request packet
@@ -4,6 +4,7 @@ import net.cloud.client.game.action.ButtonActionID;
 import net.cloud.client.nio.bufferable.Bufferable;
 import net.cloud.client.nio.packet.Packet;
 import net.cloud.client.nio.packet.PacketFactory;
+import net.cloud.client.util.ResumeToken;
 import io.netty.channel.Channel;
 
 /**
@@ -128,6 +129,38 @@ public class PacketSender {
 		this.writeLogin().send();
 	}
 	
+	/**
+	 * Only creates and returns a Packet. For a description of the packet, see<br>
+	 * {@link PacketFactory#createResume(ResumeToken)}
+	 * @param token The token from our last login
+	 * @return The packet
+	 */
+	public Packet createResume(ResumeToken token)
+	{
+		return packetFactory.createResume(token);
+	}
+	/**
+	 * Writes, but does not send a packet. For a description of the packet, see<br>
+	 * {@link PacketFactory#createResume(ResumeToken)}
+	 * @param token The token from our last login
+	 * @return The packet
+	 */
+	public PacketSender writeResume(ResumeToken token)
+	{
+		write(createResume(token));
+		
+		return this;
+	}
+	/**
+	 * Writes and sends a packet. For a description of the packet, see<br>
+	 * {@link PacketFactory#createResume(ResumeToken)}
+	 * @param token The token from our last login
+	 */
+	public void sendResume(ResumeToken token)
+	{
+		this.writeResume(token).send();
+	}
+	
 	/**
 	 * Only creates and returns a Packet. For a description of the packet, see<br>
 	 * {@link PacketFactory#createLoginDataRequest()}
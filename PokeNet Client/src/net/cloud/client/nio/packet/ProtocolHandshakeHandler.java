@@ -0,0 +1,67 @@
+package net.cloud.client.nio.packet;
+
+import java.util.List;
+
+import net.cloud.client.logging.Logger;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+
+/**
+ * First handler on the channel. As soon as the connection is up, asks the server for the newest ProtocolVersion 
+ * this client knows. The channel is put on that version right away, since the server switches as soon as it reads 
+ * the handshake, and the server's reply settles which version it really is. 
+ * Once the reply is in, this handler removes itself and anything else already received goes on to the decoder.
+ */
+public class ProtocolHandshakeHandler extends ByteToMessageDecoder {
+
+	/**
+	 * Send the handshake before anything else can be written
+	 */
+	@Override
+	public void channelActive(ChannelHandlerContext ctx) throws Exception
+	{
+		ctx.channel().attr(ProtocolVersion.KEY).set(ProtocolVersion.LATEST);
+		
+		// Written from here, so it skips the packet encoders on its way out
+		ByteBuf handshake = ctx.alloc().buffer(ProtocolVersion.HANDSHAKE_LENGTH);
+		handshake.writeByte(ProtocolVersion.HANDSHAKE_MAGIC);
+		handshake.writeByte(ProtocolVersion.LATEST.number());
+		ctx.writeAndFlush(handshake, ctx.voidPromise());
+		
+		super.channelActive(ctx);
+	}
+
+	/**
+	 * Wait for the server's reply, and put the channel on whichever version it picked
+	 */
+	@Override
+	protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception
+	{
+		if(in.readableBytes() < ProtocolVersion.HANDSHAKE_LENGTH)
+		{
+			return;
+		}
+		
+		if(in.readByte() != ProtocolVersion.HANDSHAKE_MAGIC)
+		{
+			Logger.instance().logMessage("Server did not answer the protocol handshake");
+			ctx.close();
+			return;
+		}
+		
+		int picked = in.readUnsignedByte();
+		ProtocolVersion version = ProtocolVersion.negotiate(picked);
+		
+		if(version == null || version.number() != picked)
+		{
+			Logger.instance().logMessage("Server picked unknown protocol version " + picked);
+			ctx.close();
+			return;
+		}
+		
+		ctx.channel().attr(ProtocolVersion.KEY).set(version);
+		ctx.pipeline().remove(this);
+	}
+
+}
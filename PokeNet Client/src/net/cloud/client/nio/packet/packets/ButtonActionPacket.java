@@ -5,6 +5,7 @@ import net.cloud.client.game.action.ButtonActionID;
 import net.cloud.client.nio.bufferable.Bufferable;
 import net.cloud.client.nio.bufferable.BufferableException;
 import net.cloud.client.nio.packet.PacketConstants;
+import net.cloud.client.nio.packet.ProtocolVersion;
 import net.cloud.client.nio.packet.SendOnlyPacket;
 
 /**
@@ -55,9 +56,21 @@ public class ButtonActionPacket extends SendOnlyPacket {
 
 	@Override
 	public void encode(ByteBuf buffer) throws BufferableException
+	{
+		encode(buffer, ProtocolVersion.V1);
+	}
+	
+	@Override
+	public void encode(ByteBuf buffer, ProtocolVersion version) throws BufferableException
 	{
 		// First and foremost, write the ID
-		buffer.writeInt(buttonID.ordinal());
+		version.writeInt(buffer, buttonID.ordinal());
+		
+		if(version != ProtocolVersion.V1)
+		{
+			encodeArgs(buffer, version);
+			return;
+		}
 
 		// Now are there any arguments we need to worry about?
 		if(args != null && args.length > 0)
@@ -95,5 +108,36 @@ public class ButtonActionPacket extends SendOnlyPacket {
 			buffer.writeInt(0);
 		}
 	}
+	
+	/**
+	 * Write the argument count, length, and the arguments themselves with VarInt fields. 
+	 * The length field's size depends on the length, so the arguments are written somewhere else first
+	 * @param buffer Where to write the arguments
+	 * @param version The protocol version being written
+	 * @throws BufferableException If an argument could not be saved
+	 */
+	private void encodeArgs(ByteBuf buffer, ProtocolVersion version) throws BufferableException
+	{
+		if(args == null || args.length == 0)
+		{
+			version.writeInt(buffer, 0);
+			version.writeInt(buffer, 0);
+			return;
+		}
+		
+		ByteBuf saved = buffer.alloc().buffer();
+		try {
+			for(Bufferable arg : args)
+			{
+				arg.save(saved);
+			}
+			
+			version.writeInt(buffer, args.length);
+			version.writeInt(buffer, saved.readableBytes());
+			buffer.writeBytes(saved);
+		} finally {
+			saved.release();
+		}
+	}
 
 }
@@ -9,13 +9,16 @@ import net.cloud.client.entity.player.Player;
 import net.cloud.client.nio.bufferable.BufferableException;
 import net.cloud.client.nio.packet.Packet;
 import net.cloud.client.nio.packet.PacketConstants;
+import net.cloud.client.nio.packet.ProtocolVersion;
 
 /**
  * A CompositePacket is a Packet made up of other Packets. 
  * This is useful for sending several packets together, and assuring 
  * they will arrive in a determinate order and be handled in that order. 
  * The behavior of each individual packet is the same, and they happen 
- * in the order they are composed in. 
+ * in the order they are composed in. <br>
+ * Each composed packet goes in with its own length and opcode, so it can be 
+ * decoded from a slice of exactly its own data. The count and lengths are written as the channel's ProtocolVersion has them.
  */
 public class CompositePacket implements Packet {
 	
@@ -40,6 +43,14 @@ public class CompositePacket implements Packet {
 		// and any that may follow it
 		Arrays.stream(others).forEach(p -> packets.add(p));
 	}
+	
+	/**
+	 * @return The packets this one is composed of, in order. Not to be modified
+	 */
+	public List<Packet> getPackets()
+	{
+		return packets;
+	}
 
 	@Override
 	public short getOpcode()
@@ -54,47 +65,97 @@ public class CompositePacket implements Packet {
 	 */
 	@Override
 	public void encode(ByteBuf buffer) throws BufferableException
+	{
+		encode(buffer, ProtocolVersion.V1);
+	}
+	
+	@Override
+	public void encode(ByteBuf buffer, ProtocolVersion version) throws BufferableException
 	{
 		// Place the number of packets first (may not be necessary, but clears things up)
-		buffer.writeInt(packets.size());
+		version.writeInt(buffer, packets.size());
 		
 		// Encode each packet into the composite, back to back
 		for(Packet p : packets)
 		{
+			if(version != ProtocolVersion.V1)
+			{
+				encodeVarComponent(p, buffer, version);
+				continue;
+			}
+			
+			// The length isn't known until the packet is done. Come back to it
+			int lengthIndex = buffer.writerIndex();
+			buffer.writeShort(0);
+			
 			// Need the opcode manually written so we can decode it
 			// WARNING: This circumvents PacketEncoder
 			buffer.writeShort(p.getOpcode());
 			
 			// And then it can place its data into the buffer
 			p.encode(buffer);
+			
+			buffer.setShort(lengthIndex, buffer.writerIndex() - lengthIndex - PacketConstants.LENGTH_FIELD_LENGTH);
+		}
+	}
+	
+	/**
+	 * Write a single composed packet with a VarInt length field. The field's size depends on the length, 
+	 * so the packet is encoded somewhere else first
+	 * @param packet The packet to write
+	 * @param buffer Where to write it
+	 * @param version The protocol version being written
+	 * @throws BufferableException If encoding a Bufferable object fails
+	 */
+	private static void encodeVarComponent(Packet packet, ByteBuf buffer, ProtocolVersion version) throws BufferableException
+	{
+		ByteBuf body = buffer.alloc().buffer();
+		try {
+			// WARNING: This circumvents PacketEncoder
+			version.writeOpcode(body, packet.getOpcode(), false);
+			packet.encode(body, version);
+			
+			version.writeLength(buffer, body.readableBytes());
+			buffer.writeBytes(body);
+		} finally {
+			body.release();
 		}
 	}
 
 	/**
 	 * Decode the packet, by decoding each of the packets this one is composed of. 
 	 * Do note that this circumvents PacketDecoder, so each 'composed packet' 
-	 * does not go through the channel pipeline. 
+	 * does not go through the channel pipeline. Each packet decodes from a slice of just its own data.
 	 * @throws BufferableException One of the packets failed to decode a Bufferable object
 	 */
 	@Override
 	public Packet decode(ByteBuf data) throws BufferableException
+	{
+		return decode(data, ProtocolVersion.V1);
+	}
+	
+	@Override
+	public Packet decode(ByteBuf data, ProtocolVersion version) throws BufferableException
 	{
 		// Sorta different - create a blank Packet and initialize its list
 		CompositePacket newPacket = new CompositePacket();
 		newPacket.packets = new LinkedList<Packet>();
 		
 		// Find out how many packets this one is composed of
-		int numPackets = data.readInt();
+		int numPackets = version.readInt(data);
 		
 		// Each packet should decode itself and consume no more of the data, until data is gone
 		for(int i = 0; i < numPackets; ++i)
 		{
+			// Slice off this packet's length worth of data. No copying, and it can't read into the next one
+			ByteBuf component = data.readSlice(version == ProtocolVersion.V1 ? data.readUnsignedShort() : version.readInt(data));
+			
 			// Need the opcode so we know what Packet we're dealing with
 			// WARNING: This circumvents PacketDecoder
-			short opCode = data.readShort();
+			short opCode = version.readOpcode(component);
 			
 			// Then hand it off to PacketManager, which deals with decoding
-			newPacket.packets.add(PacketManager.decodeCopy(opCode, data));
+			newPacket.packets.add(PacketManager.decodeCopy(opCode, component, version));
 		}
 		
 		return newPacket;
@@ -1,6 +1,7 @@
 package net.cloud.client.nio.packet.packets;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import net.cloud.client.Client;
 import net.cloud.client.entity.player.LoginHandler;
 import net.cloud.client.entity.player.LoginState;
@@ -9,6 +10,7 @@ import net.cloud.client.logging.Logger;
 import net.cloud.client.nio.bufferable.BufferableException;
 import net.cloud.client.nio.packet.Packet;
 import net.cloud.client.nio.packet.PacketConstants;
+import net.cloud.client.nio.packet.ProtocolVersion;
 import net.cloud.client.nio.packet.ReceiveOnlyPacket;
 import net.cloud.client.nio.packet.SendOnlyPacket;
 import net.cloud.client.util.HashObj;
@@ -80,6 +82,14 @@ public class LoginPacket extends SendOnlyPacket {
 		{
 			this.response = response;
 		}
+		
+		/**
+		 * @return The server's response to the login request
+		 */
+		public LoginResponse getResponse()
+		{
+			return response;
+		}
 
 		@Override
 		public short getOpcode()
@@ -89,9 +99,15 @@ public class LoginPacket extends SendOnlyPacket {
 
 		@Override
 		public Packet decode(ByteBuf data) throws BufferableException
+		{
+			return decode(data, ProtocolVersion.V1);
+		}
+		
+		@Override
+		public Packet decode(ByteBuf data, ProtocolVersion version) throws BufferableException
 		{
 			// The response was encoded as its ordinal
-			return new LoginResponsePacket(LoginResponse.values()[data.readInt()]);
+			return new LoginResponsePacket(LoginResponse.values()[version.readInt(data)]);
 		}
 
 		/**
@@ -133,6 +149,16 @@ public class LoginPacket extends SendOnlyPacket {
 				succeed(player, "Reconnecting. Please wait...");
 				break;
 				
+			case SERVER_BUSY:
+				fail(player, "The server is busy. Please try again shortly");
+				break;
+				
+			case RESUME_REJECTED:
+				// Still connected, so log in the long way instead
+				LoginHandler.message("Logging in. Please wait...");
+				player.getPacketSender().sendLogin();
+				break;
+				
 			default:
 				fail(player, "Unknown response from server.");
 				
@@ -209,25 +235,45 @@ public class LoginPacket extends SendOnlyPacket {
 		@Override
 		public void encode(ByteBuf buffer) throws BufferableException
 		{
-			// We got nothing. Do a dummy write
-			buffer.writeInt(-1);
+			encode(buffer, ProtocolVersion.V1);
+		}
+		
+		@Override
+		public void encode(ByteBuf buffer, ProtocolVersion version)
+		{
+			// We got nothing. V1 can't send an empty packet, so do a dummy write
+			if(version == ProtocolVersion.V1)
+			{
+				buffer.writeInt(-1);
+			}
 		}
 		
 	}
 	
 	
 	/**
-	 * We've gotten the login data we need! This is the last packet in the login process.
+	 * We've gotten the login data we need! This is the last packet in the login process. 
+	 * Decoding only keeps the data, it's restored into the player once the packet is handled. 
+	 * That way decoding doesn't depend on there being a player in the World.
 	 */
 	public static class LoginDataResponsePacket extends ReceiveOnlyPacket {
 		
-		/** The player that is logging in. We're going to send them all of their data */
-		private Player player;
+		/** The player's data as the server sent it, waiting to be restored */
+		private byte[] playerData;
 		
 		// In the future, expect additions here. There will be map data and more to send as well.
 		
 		/** Prototype constructor */
 		public LoginDataResponsePacket() {}
+		
+		/**
+		 * Create a packet holding the given player data
+		 * @param playerData The player's data as the server sent it
+		 */
+		public LoginDataResponsePacket(byte[] playerData)
+		{
+			this.playerData = playerData;
+		}
 
 		@Override
 		public short getOpcode()
@@ -238,15 +284,11 @@ public class LoginPacket extends SendOnlyPacket {
 		@Override
 		public Packet decode(ByteBuf data) throws BufferableException
 		{
-			LoginDataResponsePacket packet = new LoginDataResponsePacket();
+			// The data buffer goes back to the decoder, so the player data is copied out of it
+			byte[] playerData = new byte[data.readableBytes()];
+			data.readBytes(playerData);
 			
-			// For locality, we'll bring in the world player
-			this.player = World.instance().getPlayer();
-			
-			// Read in the player data
-			player.restore(data);
-			
-			return packet;
+			return new LoginDataResponsePacket(playerData);
 		}
 
 		@Override
@@ -259,7 +301,15 @@ public class LoginPacket extends SendOnlyPacket {
 				return;
 			}
 			
-			// The player was loaded during decode. But this is like saying we're logged in, now
+			// Read in the player data
+			try {
+				player.restore(Unpooled.wrappedBuffer(playerData));
+			} catch (BufferableException e) {
+				Logger.instance().logException("Could not restore player data from login", e);
+				return;
+			}
+			
+			// The player is loaded. This is like saying we're logged in, now
 			player.setLoginState(LoginState.LOGGED_IN);
 			
 			// It may not be visible for long, but show a message anyways
@@ -6,6 +6,7 @@ import net.cloud.client.entity.player.Player;
 import net.cloud.client.nio.bufferable.BufferableException;
 import net.cloud.client.nio.packet.Packet;
 import net.cloud.client.nio.packet.PacketConstants;
+import net.cloud.client.nio.packet.ProtocolVersion;
 import net.cloud.client.nio.packet.ReceiveOnlyPacket;
 
 /**
@@ -22,8 +23,17 @@ public class LogoutPacket extends ReceiveOnlyPacket {
 	@Override
 	public Packet decode(ByteBuf data) throws BufferableException
 	{
-		// Read the dummy int
-		data.readInt();
+		return decode(data, ProtocolVersion.V1);
+	}
+	
+	@Override
+	public Packet decode(ByteBuf data, ProtocolVersion version)
+	{
+		// Read the dummy int. Only V1 has one
+		if(version == ProtocolVersion.V1)
+		{
+			data.readInt();
+		}
 		
 		return new LogoutPacket();
 	}
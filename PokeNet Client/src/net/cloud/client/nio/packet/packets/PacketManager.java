@@ -4,9 +4,11 @@ import io.netty.buffer.ByteBuf;
 import net.cloud.client.nio.bufferable.BufferableException;
 import net.cloud.client.nio.packet.Packet;
 import net.cloud.client.nio.packet.PacketConstants;
+import net.cloud.client.nio.packet.ProtocolVersion;
 import net.cloud.client.nio.packet.packets.LoginPacket.LoginResponsePacket;
 import net.cloud.client.nio.packet.packets.LoginPacket.LoginDataRequestPacket;
 import net.cloud.client.nio.packet.packets.LoginPacket.LoginDataResponsePacket;
+import net.cloud.client.nio.packet.packets.ResumePacket.ResumeTokenPacket;
 import net.cloud.client.nio.packet.packets.ShowMessageDialogPacket;
 
 /**
@@ -32,6 +34,7 @@ public class PacketManager {
 		packets[PacketConstants.SHOW_MSG_DIALOG] = new ShowMessageDialogPacket();
 		packets[PacketConstants.BUTTON_ACTION] = new ButtonActionPacket();
 		packets[PacketConstants.LOGOUT] = new LogoutPacket();
+		packets[PacketConstants.RESUME_TOKEN] = new ResumeTokenPacket();
 	}
 	
 	/**
@@ -44,6 +47,20 @@ public class PacketManager {
 	 * @throws IllegalArgumentException The packet opcode is unknown
 	 */
 	public static Packet decodeCopy(short opcode, ByteBuf data) throws IllegalArgumentException, BufferableException
+	{
+		return decodeCopy(opcode, data, ProtocolVersion.V1);
+	}
+	
+	/**
+	 * Returns a new Packet, which aligns with the given opcode, decoded as the given protocol version has it.
+	 * @param opcode The 2 byte opcode of the packet
+	 * @param data The rest of the data (excluding length and opcode header)
+	 * @param version The protocol version the data was written with
+	 * @return A Packet of the right class, deserialized from the data
+	 * @throws BufferableException There was an issue decoding a Bufferable object
+	 * @throws IllegalArgumentException The packet opcode is unknown
+	 */
+	public static Packet decodeCopy(short opcode, ByteBuf data, ProtocolVersion version) throws IllegalArgumentException, BufferableException
 	{
 		// Make sure the opcode is valid
 		if(opcode < 0 || opcode >= packets.length) {
@@ -53,7 +70,7 @@ public class PacketManager {
 		// Get a decoded packet using the existing prototype
 		if(packets[opcode] != null)
 		{
-			return packets[opcode].decode(data);
+			return packets[opcode].decode(data, version);
 		}
 		else {
 			throw new IllegalArgumentException("Packet " + opcode + " does not exist");
@@ -0,0 +1,107 @@
+package net.cloud.client.nio.packet.packets;
+
+import io.netty.buffer.ByteBuf;
+import net.cloud.client.entity.player.LoginHandler;
+import net.cloud.client.entity.player.Player;
+import net.cloud.client.nio.bufferable.BufferableException;
+import net.cloud.client.nio.packet.Packet;
+import net.cloud.client.nio.packet.PacketConstants;
+import net.cloud.client.nio.packet.ReceiveOnlyPacket;
+import net.cloud.client.nio.packet.SendOnlyPacket;
+import net.cloud.client.util.ResumeToken;
+import net.cloud.client.util.StringUtil;
+
+/**
+ * Sent in place of a LoginPacket when we're coming back after dropping, and still have the token from
+ * our last login. The server answers with a LoginResponsePacket - RECONNECT if the token was good,
+ * or RESUME_REJECTED, in which case we log in with our password instead.
+ */
+public class ResumePacket extends SendOnlyPacket {
+
+	/** Username of the player trying to resume */
+	private String username;
+
+	/** The token we were given */
+	private ResumeToken token;
+
+	/** Default constructor leaves all data fields default or null */
+	public ResumePacket() {}
+
+	/**
+	 * Create a ResumePacket which presents the given token
+	 * @param username Username of the player
+	 * @param token The token we were given
+	 */
+	public ResumePacket(String username, ResumeToken token)
+	{
+		this.username = username;
+		this.token = token;
+	}
+
+	@Override
+	public short getOpcode()
+	{
+		return PacketConstants.RESUME;
+	}
+
+	@Override
+	public void encode(ByteBuf buffer) throws BufferableException
+	{
+		StringUtil.writeStringToBuffer(username, buffer);
+
+		token.save(buffer);
+	}
+
+
+	/**
+	 * The server sends us this along with our login data. We hold on to the token, in case we drop
+	 */
+	public static class ResumeTokenPacket extends ReceiveOnlyPacket {
+
+		/** The token we were given */
+		private ResumeToken token;
+
+		/** For prototype */
+		public ResumeTokenPacket() {}
+
+		/**
+		 * Create a packet holding the given token
+		 * @param token The token
+		 */
+		public ResumeTokenPacket(ResumeToken token)
+		{
+			this.token = token;
+		}
+
+		/**
+		 * @return The token we were given
+		 */
+		public ResumeToken getToken()
+		{
+			return token;
+		}
+
+		@Override
+		public short getOpcode()
+		{
+			return PacketConstants.RESUME_TOKEN;
+		}
+
+		@Override
+		public Packet decode(ByteBuf data) throws BufferableException
+		{
+			return new ResumeTokenPacket(ResumeToken.createFrom(data));
+		}
+
+		/**
+		 * Keep the token, along with who it's for
+		 */
+		@Override
+		public void handlePacket(Player player)
+		{
+			LoginHandler.holdResumeToken(player.getUsername(), token);
+		}
+
+	}
+
+}
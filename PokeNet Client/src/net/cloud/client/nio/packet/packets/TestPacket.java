@@ -4,7 +4,9 @@ import io.netty.buffer.ByteBuf;
 import net.cloud.client.entity.player.Player;
 import net.cloud.client.logging.Logger;
 import net.cloud.client.nio.packet.Packet;
+import net.cloud.client.nio.bufferable.BufferableException;
 import net.cloud.client.nio.packet.PacketConstants;
+import net.cloud.client.nio.packet.ProtocolVersion;
 
 /** Packet for testing stuff. Like a box of chocolates, never know what it's gonna do */
 public class TestPacket implements Packet {
@@ -37,18 +39,38 @@ public class TestPacket implements Packet {
 	@Override
 	public void encode(ByteBuf buffer)
 	{
-		// Write some data
-		buffer.writeInt(testValue);
+		encode(buffer, ProtocolVersion.V1);
+	}
+	
+	@Override
+	public void encode(ByteBuf buffer, ProtocolVersion version)
+	{
+		// Write some data. The default value is negative, hence signed
+		version.writeSignedInt(buffer, testValue);
 
 		Logger.writer().println("Test packet encoded");
 		Logger.writer().flush();
 	}
 
 	@Override
-	public Packet decode(ByteBuf data)
+	public Packet decode(ByteBuf data) throws BufferableException
+	{
+		return decode(data, ProtocolVersion.V1);
+	}
+	
+	@Override
+	public Packet decode(ByteBuf data, ProtocolVersion version) throws BufferableException
 	{
 		// This needs to create a new TestPacket, with the same data as it had when it was encoded
-		return new TestPacket(data.readInt());
+		return new TestPacket(version.readSignedInt(data));
+	}
+
+	/**
+	 * @return The test value
+	 */
+	public int getTestValue()
+	{
+		return testValue;
 	}
 
 	/** Displays a message about the packet */
@@ -0,0 +1,59 @@
+package net.cloud.client.util;
+
+import io.netty.buffer.ByteBuf;
+
+import net.cloud.client.nio.bufferable.Bufferable;
+import net.cloud.client.nio.bufferable.BufferableException;
+
+/**
+ * A token the server hands us once we're logged in. If we drop, presenting it gets us back into the same session
+ * without sending our password, so long as we come back before the server gives up on us. The server makes these,
+ * we only hold on to them. This object is immutable.
+ */
+public final class ResumeToken implements Bufferable {
+
+	/** Bytes in a token */
+	public static final int LENGTH = 16;
+
+	/** The token itself */
+	private byte[] token;
+
+	/**
+	 * Constructor for deserialization to use
+	 */
+	private ResumeToken() {}
+
+	/**
+	 * Create a new ResumeToken by deserializing it from the given buffer
+	 * @param buffer The buffer the data is in
+	 * @return A new ResumeToken
+	 * @throws BufferableException Shouldn't be thrown
+	 */
+	public static ResumeToken createFrom(ByteBuf buffer) throws BufferableException
+	{
+		ResumeToken newToken = new ResumeToken();
+		newToken.restore(buffer);
+
+		return newToken;
+	}
+
+	/**
+	 * Writes the token's bytes. Will not throw BufferableException
+	 */
+	@Override
+	public void save(ByteBuf buffer) throws BufferableException
+	{
+		buffer.writeBytes(token);
+	}
+
+	/**
+	 * Reads a token's bytes. Will not throw BufferableException
+	 */
+	@Override
+	public void restore(ByteBuf buffer) throws BufferableException
+	{
+		token = new byte[LENGTH];
+		buffer.readBytes(token);
+	}
+
+}
@@ -1,10 +1,13 @@
 package net.cloud.client.util;
 
 import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.text.DecimalFormat;
 import java.util.regex.Pattern;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 
 /**
  * Contains, as the name implies, String utility functions.
@@ -14,6 +17,12 @@ public class StringUtil {
 	/** The line terminator character */
 	public static final char TERMINATOR = 0;
 	
+	/** Character set strings are written in. The server writes the same, and for ASCII it's one byte per char like always */
+	public static final Charset CHARSET = StandardCharsets.UTF_8;
+	
+	/** The terminator, as it appears in a buffer */
+	private static final byte TERMINATOR_BYTE = (byte) TERMINATOR;
+	
 	/** Re-usable pattern for alphanumeric regular expressions */
 	private static final Pattern ALPHA_NUMERIC = Pattern.compile("[a-zA-Z0-9_]+");
 	
@@ -82,36 +91,62 @@ public class StringUtil {
 	 * The string terminator is the TERMINATOR constant character.
 	 * @param buffer The Buffer to read from.
 	 * @return The String of chars from the start pos to the pos of the first TERMINATOR char.
+	 * @throws IndexOutOfBoundsException If there is no terminator before the limit
 	 */
 	public static String getFromBuffer(ByteBuffer buffer)
 	{
-		StringBuilder builder = new StringBuilder();
-		char c = (char) buffer.get();
+		// ByteBuffer has nothing to search with, but at least nothing is copied while looking
+		int start = buffer.position();
+		int end = start;
+		while(buffer.get(end) != TERMINATOR_BYTE)
+		{
+			end++;
+		}
 		
-		while(c != TERMINATOR) {
-			builder.append(c);
-			c = (char) buffer.get();
+		String string;
+		if(buffer.hasArray())
+		{
+			string = new String(buffer.array(), buffer.arrayOffset() + start, end - start, CHARSET);
+		}
+		else {
+			byte[] bytes = new byte[end - start];
+			buffer.get(bytes);
+			string = new String(bytes, CHARSET);
 		}
 		
-		return builder.toString();
+		buffer.position(end + 1);
+		
+		return string;
 	}
 	
 	/** 
 	 * A variant that uses the Netty ByteBuf rather than the NIO ByteBuffer
 	 * @param buffer The buffer to read the string from
 	 * @return A string from the data in the buffer
+	 * @throws IndexOutOfBoundsException If there is no terminator in the readable bytes
 	 */
 	public static String getFromBuffer(ByteBuf buffer)
 	{
-		StringBuilder builder = new StringBuilder();
-		char c = (char) buffer.readByte();
+		int length = buffer.bytesBefore(TERMINATOR_BYTE);
+		if(length < 0)
+		{
+			throw new IndexOutOfBoundsException("No string terminator in " + buffer.readableBytes() + " readable bytes");
+		}
 		
-		while(c != TERMINATOR) {
-			builder.append(c);
-			c = (char) buffer.readByte();
+		int index = buffer.readerIndex();
+		String string;
+		if(buffer.hasArray())
+		{
+			// Straight out of the backing array, no intermediate copy
+			string = new String(buffer.array(), buffer.arrayOffset() + index, length, CHARSET);
+		}
+		else {
+			string = buffer.toString(index, length, CHARSET);
 		}
 		
-		return builder.toString();
+		buffer.skipBytes(length + 1);
+		
+		return string;
 	}
 	
 	/**
@@ -122,26 +157,23 @@ public class StringUtil {
 	 */
 	public static void writeStringToBuffer(String string, ByteBuffer buffer)
 	{
-		for(int i = 0; i < string.length(); ++i) {
-			buffer.put((byte) string.charAt(i));
-		}
-		
-		buffer.put((byte) TERMINATOR);
+		buffer.put(string.getBytes(CHARSET));
+		buffer.put(TERMINATOR_BYTE);
 	}
 	
 	/**
 	 * Write a String to a ByteBuf, terminating it with TERMINATOR.  
-	 * This can be in turn read back with <code>StringUtil.getFromBuffer(ByteBuffer)</code>
+	 * This can be in turn read back with <code>StringUtil.getFromBuffer(ByteBuf)</code>
 	 * @param string The text to write
 	 * @param buffer The buffer to write to.
 	 */
 	public static void writeStringToBuffer(String string, ByteBuf buffer)
 	{
-		for(int i = 0; i < string.length(); ++i) {
-			buffer.writeByte((byte) string.charAt(i));
-		}
+		// Bulk encode straight into the buffer. Unpaired surrogates come out as '?', same as utf8Length counts them
+		buffer.ensureWritable(utf8Length(string) + 1);
+		ByteBufUtil.writeUtf8(buffer, string);
 		
-		buffer.writeByte((byte) TERMINATOR);
+		buffer.writeByte(TERMINATOR_BYTE);
 	}
 	
 	/**
@@ -150,7 +182,45 @@ public class StringUtil {
 	 */
 	public static int getNumBytesInString(String string)
 	{
-		return string.length() + 1;
+		return utf8Length(string) + 1;
+	}
+	
+	/**
+	 * Work out how long a string is in UTF-8, without encoding it
+	 * @param string The string
+	 * @return How many bytes it encodes to
+	 */
+	private static int utf8Length(String string)
+	{
+		int length = string.length();
+		int bytes = length;
+		
+		for(int i = 0; i < length; ++i)
+		{
+			char c = string.charAt(i);
+			if(c < 0x80)
+			{
+				continue;
+			}
+			
+			if(c < 0x800)
+			{
+				bytes += 1;
+			}
+			else if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(string.charAt(i + 1)))
+			{
+				// The pair is 4 bytes, for 2 chars
+				bytes += 2;
+				i++;
+			}
+			else if(!Character.isSurrogate(c))
+			{
+				bytes += 2;
+			}
+			// An unpaired surrogate is replaced with a single '?' by the encoder
+		}
+		
+		return bytes;
 	}
 	
 	/**
@@ -1,6 +1,7 @@
 package net.cloud;
 
 import net.cloud.client.file.FileSuite;
+import net.cloud.client.nio.ChunkReassemblerTest;
 import net.cloud.client.task.TaskSuite;
 import net.cloud.client.util.UtilSuite;
 import net.cloud.gfx.GfxSuite;
@@ -14,7 +15,9 @@ import org.junit.runners.Suite.SuiteClasses;
 	UtilSuite.class,
 	TaskSuite.class,
 	FileSuite.class,
-	GfxSuite.class
+	GfxSuite.class,
+	
+	ChunkReassemblerTest.class
 })
 public class AllTests {
 	// Nothing goes here. Annotations are all we need
@@ -4,6 +4,12 @@ import static org.junit.Assert.*;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 
 import net.cloud.client.file.FileRequestException;
 import net.cloud.client.file.FileServer;
@@ -68,4 +74,50 @@ public class FileServerTest {
 		}
 	}
 
+	
+	/** Test getting a future for a request and chaining the read onto it */
+	@Test
+	public void testSubmitAsync() throws InterruptedException, ExecutionException {
+		BufferedReaderRequest req = new BufferedReaderRequest(new FileAddress("./data/test/test_file.txt"));
+		
+		// Read the line on whichever thread finishes the request
+		String readLine = FileServer.instance().submitAsync(req).thenApply((br) ->
+		{
+			try (BufferedReader in = br) {
+				return in.readLine();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}).get();
+		
+		assertEquals("This is a known text file useful for testing", readLine);
+	}
+	
+	/** Test that a future for a missing file fails, even when handed off to another thread */
+	@Test
+	public void testMissingFileSubmitAsync() throws InterruptedException {
+		BufferedReaderRequest req = new BufferedReaderRequest(new FileAddress("./data/test/nonexistant.txt"));
+		ExecutorService pool = Executors.newSingleThreadExecutor((r) -> new Thread(r, "Hand Off"));
+		AtomicReference<String> completedOn = new AtomicReference<>();
+		
+		// Note where the future gets completed. Chaining on afterwards could run on this thread if it's already done
+		Executor executor = (r) -> pool.execute(() ->
+		{
+			completedOn.set(Thread.currentThread().getName());
+			r.run();
+		});
+		
+		try {
+			FileServer.instance().submitAsync(req, executor).get();
+			
+			fail("Exception expected in testMissingFileSubmitAsync()");
+		} catch (ExecutionException e) {
+			// The request's own exception is what comes out, after being moved off the file server
+			assertTrue(e.getCause() instanceof FileRequestException);
+			assertEquals("Hand Off", completedOn.get());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
 }
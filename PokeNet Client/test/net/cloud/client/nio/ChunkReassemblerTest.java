@@ -0,0 +1,109 @@
+package net.cloud.client.nio;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.handler.codec.TooLongFrameException;
+import net.cloud.client.nio.packet.ChunkReassembler;
+import net.cloud.client.nio.packet.PacketConstants;
+import net.cloud.client.nio.packet.ProtocolVersion;
+
+import org.junit.Test;
+
+/** Packets the server sent in chunks are put back together, however their chunks are mixed up */
+public class ChunkReassemblerTest {
+
+	/**
+	 * Some random bytes, standing in for an encoded packet
+	 * @param length How many bytes
+	 * @return The packet
+	 */
+	private static ByteBuf packet(int length)
+	{
+		byte[] bytes = new byte[length];
+		new Random(length).nextBytes(bytes);
+
+		return Unpooled.wrappedBuffer(bytes);
+	}
+
+	/**
+	 * Make the chunk the server would send, minus the CHUNK opcode
+	 * @param version The protocol version to write the header with
+	 * @param id The stream id
+	 * @param sequence The sequence number
+	 * @param packet The whole packet
+	 * @return The header, then this chunk's piece of the packet
+	 */
+	private static ByteBuf chunk(ProtocolVersion version, int id, int sequence, ByteBuf packet)
+	{
+		int offset = sequence * PacketConstants.CHUNK_DATA_LENGTH;
+		int length = Math.min(packet.readableBytes() - offset, PacketConstants.CHUNK_DATA_LENGTH);
+
+		ByteBuf chunk = Unpooled.buffer();
+		version.writeInt(chunk, id);
+		version.writeInt(chunk, sequence);
+		version.writeInt(chunk, packet.readableBytes());
+		chunk.writeBytes(packet, packet.readerIndex() + offset, length);
+
+		return chunk;
+	}
+
+	@Test
+	public void testInterleaved() throws Exception {
+		ChunkReassembler reassembler = new ChunkReassembler(1024 * 1024);
+		ProtocolVersion version = ProtocolVersion.V2;
+
+		// Three chunks and two chunks
+		ByteBuf first = packet(3 * PacketConstants.CHUNK_DATA_LENGTH - 100);
+		ByteBuf second = packet(2 * PacketConstants.CHUNK_DATA_LENGTH);
+
+		// Taking turns, the way PacketChunker sends them
+		assertNull(reassembler.add(chunk(version, 0, 0, first), version, UnpooledByteBufAllocator.DEFAULT));
+		assertNull(reassembler.add(chunk(version, 1, 0, second), version, UnpooledByteBufAllocator.DEFAULT));
+		assertEquals(first.readableBytes() + second.readableBytes(), reassembler.heldBytes());
+		assertNull(reassembler.add(chunk(version, 0, 1, first), version, UnpooledByteBufAllocator.DEFAULT));
+
+		ByteBuf secondOut = reassembler.add(chunk(version, 1, 1, second), version, UnpooledByteBufAllocator.DEFAULT);
+		assertTrue(ByteBufUtil.equals(second, secondOut));
+		assertEquals(first.readableBytes(), reassembler.heldBytes());
+
+		ByteBuf firstOut = reassembler.add(chunk(version, 0, 2, first), version, UnpooledByteBufAllocator.DEFAULT);
+		assertTrue(ByteBufUtil.equals(first, firstOut));
+		assertEquals(0, reassembler.heldBytes());
+
+		firstOut.release();
+		secondOut.release();
+	}
+
+	@Test
+	public void testOversizedTotal() throws Exception {
+		ChunkReassembler reassembler = new ChunkReassembler(3 * PacketConstants.CHUNK_DATA_LENGTH);
+		ProtocolVersion version = ProtocolVersion.V1;
+
+		// Too big on its own
+		try {
+			reassembler.add(chunk(version, 0, 0, packet(4 * PacketConstants.CHUNK_DATA_LENGTH)), version, UnpooledByteBufAllocator.DEFAULT);
+			fail("Packet bigger than the cap was taken");
+		} catch (TooLongFrameException e) {
+			assertEquals(0, reassembler.heldBytes());
+		}
+
+		// Fits on its own, but not alongside one already started
+		assertNull(reassembler.add(chunk(version, 1, 0, packet(2 * PacketConstants.CHUNK_DATA_LENGTH)), version, UnpooledByteBufAllocator.DEFAULT));
+		try {
+			reassembler.add(chunk(version, 2, 0, packet(2 * PacketConstants.CHUNK_DATA_LENGTH)), version, UnpooledByteBufAllocator.DEFAULT);
+			fail("Packets adding up to more than the cap were taken");
+		} catch (TooLongFrameException e) {
+			assertEquals(2 * PacketConstants.CHUNK_DATA_LENGTH, reassembler.heldBytes());
+		}
+
+		reassembler.release();
+		assertEquals(0, reassembler.heldBytes());
+	}
+
+}
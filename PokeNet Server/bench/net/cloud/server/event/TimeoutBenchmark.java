@@ -0,0 +1,261 @@
+package net.cloud.server.event;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+
+/**
+ * Compares the timing wheel the TimeoutService uses against the ScheduledThreadPoolExecutor the TaskEngine uses,
+ * for the kind of load a connection storm puts on them - a great many timeouts, nearly all cancelled before they
+ * go off. Each round schedules that many timeouts (configured the same way the services are), cancels most of them,
+ * and reports how long each took, and how many tasks the scheduler is still holding on to afterwards. <br>
+ * Arguments (all optional): pending timeouts, fraction cancelled, rounds. <br>
+ * Not part of the regular test run. Run it by hand, ie
+ * <code>java -cp bin:netty.jar net.cloud.server.event.TimeoutBenchmark 100000 0.95 5</code>
+ */
+public class TimeoutBenchmark {
+
+	/** How many timeouts are scheduled per round, if not given */
+	private static final int DEFAULT_TIMEOUTS = 100_000;
+
+	/** How many of them are cancelled, if not given */
+	private static final double DEFAULT_CANCELLED = 0.95;
+
+	/** How many measured rounds there are per scheduler, if not given. One warm up round is always run first */
+	private static final int DEFAULT_ROUNDS = 5;
+
+	/** Delay on every timeout (ms). Long enough that none go off during a round, like LoginHandler.TIMEOUT */
+	private static final long DELAY = 60_000;
+
+	/** Tick duration of the wheel (ms), as in ConfigConstants.TIMEOUT_TICK_DURATION */
+	private static final long TICK_DURATION = 100;
+
+	/** Number of slots on the wheel, as in ConfigConstants.TIMEOUT_WHEEL_SIZE */
+	private static final int WHEEL_SIZE = 512;
+
+	/**
+	 * Run the benchmark against both schedulers
+	 * @param args pending timeouts, fraction cancelled, rounds
+	 */
+	public static void main(String[] args)
+	{
+		int timeouts = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_TIMEOUTS;
+		double cancelled = args.length > 1 ? Double.parseDouble(args[1]) : DEFAULT_CANCELLED;
+		int rounds = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_ROUNDS;
+
+		System.out.println("timeouts=" + timeouts + " cancelled=" + cancelled + " rounds=" + rounds);
+
+		for(Scheduler scheduler : Scheduler.values())
+		{
+			// The first round is just to get the JIT going
+			runRound(scheduler, timeouts, cancelled);
+
+			for(int round = 1; round <= rounds; round++)
+			{
+				Result result = runRound(scheduler, timeouts, cancelled);
+
+				System.out.println(String.format("%-5s round %d: schedule %7.1f ns/op | cancel %7.1f ns/op | %7d still queued",
+						scheduler, round, result.scheduleNanosPerOp(timeouts), result.cancelNanosPerOp(timeouts, cancelled), result.stillQueued));
+			}
+		}
+	}
+
+	/**
+	 * Schedule the timeouts, then cancel most of them, timing both
+	 * @param scheduler Which scheduler to use
+	 * @param timeouts How many timeouts to schedule
+	 * @param cancelled Fraction of them to cancel
+	 * @return How it went
+	 */
+	private static Result runRound(Scheduler scheduler, int timeouts, double cancelled)
+	{
+		Handle handle = scheduler.create();
+		Object[] pending = new Object[timeouts];
+		int toCancel = (int) (timeouts * cancelled);
+
+		long start = System.nanoTime();
+		for(int i = 0; i < timeouts; ++i)
+		{
+			pending[i] = handle.schedule(DELAY);
+		}
+		long scheduled = System.nanoTime();
+
+		// Cancel in the order they were made, the way logins move on in roughly the order they connected
+		for(int i = 0; i < toCancel; ++i)
+		{
+			handle.cancel(pending[i]);
+		}
+		long done = System.nanoTime();
+
+		// Give the wheel a couple ticks to sweep cancelled timeouts out. The executor never does until they're due
+		sleep(3 * TICK_DURATION);
+		Result result = new Result(scheduled - start, done - scheduled, handle.queued());
+
+		handle.stop();
+		return result;
+	}
+
+	/**
+	 * Sleep, without caring if it's cut short
+	 * @param millis How long
+	 */
+	private static void sleep(long millis)
+	{
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/** The schedulers that are compared */
+	private enum Scheduler {
+
+		/** The timing wheel behind TimeoutService */
+		WHEEL {
+			@Override
+			Handle create()
+			{
+				HashedWheelTimer timer = new HashedWheelTimer(TICK_DURATION, TimeUnit.MILLISECONDS, WHEEL_SIZE);
+				timer.start();
+
+				return new Handle() {
+					@Override
+					public Object schedule(long delay)
+					{
+						return timer.newTimeout((timeout) -> {}, delay, TimeUnit.MILLISECONDS);
+					}
+
+					@Override
+					public void cancel(Object timeout)
+					{
+						((Timeout) timeout).cancel();
+					}
+
+					@Override
+					public long queued()
+					{
+						return timer.pendingTimeouts();
+					}
+
+					@Override
+					public void stop()
+					{
+						timer.stop();
+					}
+				};
+			}
+		},
+
+		/** The heap-based executor behind TaskEngine */
+		HEAP {
+			@Override
+			Handle create()
+			{
+				ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(2);
+
+				return new Handle() {
+					@Override
+					public Object schedule(long delay)
+					{
+						return executor.schedule(() -> {}, delay, TimeUnit.MILLISECONDS);
+					}
+
+					@Override
+					public void cancel(Object future)
+					{
+						((ScheduledFuture<?>) future).cancel(false);
+					}
+
+					@Override
+					public long queued()
+					{
+						return executor.getQueue().size();
+					}
+
+					@Override
+					public void stop()
+					{
+						executor.shutdownNow();
+					}
+				};
+			}
+		};
+
+		/**
+		 * @return A new, running scheduler of this kind
+		 */
+		abstract Handle create();
+	}
+
+	/** The few things a round does with a scheduler */
+	private interface Handle {
+
+		/**
+		 * @param delay How long until it goes off (ms)
+		 * @return Something that can be passed to cancel
+		 */
+		Object schedule(long delay);
+
+		/**
+		 * @param timeout Something schedule returned
+		 */
+		void cancel(Object timeout);
+
+		/**
+		 * @return How many tasks the scheduler is holding on to
+		 */
+		long queued();
+
+		/** Stop the scheduler and drop everything in it */
+		void stop();
+	}
+
+	/** What was measured in a round */
+	private static class Result {
+
+		/** Time taken to schedule everything (ns) */
+		private final long scheduleNanos;
+
+		/** Time taken to cancel (ns) */
+		private final long cancelNanos;
+
+		/** How many tasks were still queued after cancelling */
+		private final long stillQueued;
+
+		/**
+		 * @param scheduleNanos Time taken to schedule everything (ns)
+		 * @param cancelNanos Time taken to cancel (ns)
+		 * @param stillQueued How many tasks were still queued after cancelling
+		 */
+		Result(long scheduleNanos, long cancelNanos, long stillQueued)
+		{
+			this.scheduleNanos = scheduleNanos;
+			this.cancelNanos = cancelNanos;
+			this.stillQueued = stillQueued;
+		}
+
+		/**
+		 * @param timeouts How many timeouts were scheduled
+		 * @return Average time to schedule one (ns)
+		 */
+		double scheduleNanosPerOp(int timeouts)
+		{
+			return (double) scheduleNanos / timeouts;
+		}
+
+		/**
+		 * @param timeouts How many timeouts were scheduled
+		 * @param cancelled Fraction of them that were cancelled
+		 * @return Average time to cancel one (ns)
+		 */
+		double cancelNanosPerOp(int timeouts, double cancelled)
+		{
+			return cancelNanos / Math.max(1.0, timeouts * cancelled);
+		}
+	}
+
+}
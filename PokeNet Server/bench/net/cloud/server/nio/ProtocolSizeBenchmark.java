@@ -0,0 +1,151 @@
+package net.cloud.server.nio;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import net.cloud.server.entity.player.LoginResponse;
+import net.cloud.server.nio.packet.LengthPrepender;
+import net.cloud.server.nio.packet.Packet;
+import net.cloud.server.nio.packet.PacketConstants;
+import net.cloud.server.nio.packet.PacketEncoder;
+import net.cloud.server.nio.packet.ProtocolVersion;
+import net.cloud.server.nio.packet.packets.CompositePacket;
+import net.cloud.server.nio.packet.packets.LoginPacket.LoginResponsePacket;
+import net.cloud.server.nio.packet.packets.LogoutPacket;
+import net.cloud.server.nio.packet.packets.ShowMessageDialogPacket;
+import net.cloud.server.nio.packet.packets.TestPacket;
+
+/**
+ * Prints how many bytes each packet takes on the wire - length field, opcode and data - under every protocol version.
+ * Packets the server sends go through the same encoders a channel would use. The ones only the client sends
+ * are written out by hand, field for field the way the client's packets write them. Compression is left out,
+ * so the numbers are only the header and field encoding. <br>
+ * Not part of the regular test run. Run it by hand, ie
+ * <code>java -cp bin:netty.jar net.cloud.server.nio.ProtocolSizeBenchmark</code>
+ */
+public class ProtocolSizeBenchmark {
+
+	/**
+	 * Print the table
+	 * @param args Unused
+	 * @throws Exception If a packet could not be encoded
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		Map<String, Function<ProtocolVersion, Integer>> packets = new LinkedHashMap<>();
+
+		packets.put("Test (value 5)", (v) -> sent(new TestPacket(5), v));
+		packets.put("LoginResponse", (v) -> sent(new LoginResponsePacket(LoginResponse.OKAY), v));
+		packets.put("Logout", (v) -> sent(new LogoutPacket(), v));
+		packets.put("ShowMessageDialog", (v) -> sent(new ShowMessageDialogPacket("Login", "Welcome back!"), v));
+		packets.put("Composite (response + dialog)", (v) -> sent(new CompositePacket(
+				new LoginResponsePacket(LoginResponse.OKAY), new ShowMessageDialogPacket("Login", "Welcome back!")), v));
+		packets.put("LoginDataRequest (client)", ProtocolSizeBenchmark::dataRequest);
+		packets.put("ButtonAction, no args (client)", (v) -> buttonAction(v, 0, 0));
+		packets.put("ButtonAction, 2 int args (client)", (v) -> buttonAction(v, 2, 8));
+
+		System.out.printf("%-36s", "Packet");
+		for(ProtocolVersion version : ProtocolVersion.values())
+		{
+			System.out.printf("%8s", version);
+		}
+		System.out.println();
+
+		int[] totals = new int[ProtocolVersion.values().length];
+		for(Map.Entry<String, Function<ProtocolVersion, Integer>> packet : packets.entrySet())
+		{
+			System.out.printf("%-36s", packet.getKey());
+			for(ProtocolVersion version : ProtocolVersion.values())
+			{
+				int size = packet.getValue().apply(version);
+				totals[version.ordinal()] += size;
+
+				System.out.printf("%8d", size);
+			}
+			System.out.println();
+		}
+
+		System.out.printf("%-36s", "Total");
+		for(int total : totals)
+		{
+			System.out.printf("%8d", total);
+		}
+		System.out.println();
+	}
+
+	/**
+	 * Run a packet out through the length prepender and encoder
+	 * @param packet The packet to send
+	 * @param version The version the channel is on
+	 * @return Bytes that would have gone to the socket
+	 */
+	private static int sent(Packet packet, ProtocolVersion version)
+	{
+		EmbeddedChannel channel = new EmbeddedChannel(new LengthPrepender(), new PacketEncoder());
+		channel.attr(ProtocolVersion.KEY).set(version);
+		channel.writeOutbound(packet);
+
+		int bytes = 0;
+		ByteBuf part;
+		while((part = (ByteBuf) channel.readOutbound()) != null)
+		{
+			bytes += part.readableBytes();
+			part.release();
+		}
+		channel.finish();
+
+		return bytes;
+	}
+
+	/**
+	 * @param version The version the channel is on
+	 * @return Bytes a login data request takes, with the frame around it
+	 */
+	private static int dataRequest(ProtocolVersion version)
+	{
+		ByteBuf data = Unpooled.buffer();
+		version.writeOpcode(data, PacketConstants.LOGIN_DATA_REQUEST, false);
+		if(version == ProtocolVersion.V1)
+		{
+			data.writeInt(-1);
+		}
+
+		return framed(data, version);
+	}
+
+	/**
+	 * @param version The version the channel is on
+	 * @param args How many arguments the button has
+	 * @param argsLength Bytes the arguments take up
+	 * @return Bytes a button action takes, with the frame around it
+	 */
+	private static int buttonAction(ProtocolVersion version, int args, int argsLength)
+	{
+		ByteBuf data = Unpooled.buffer();
+		version.writeOpcode(data, PacketConstants.BUTTON_ACTION, false);
+		version.writeInt(data, 3);
+		version.writeInt(data, args);
+		version.writeInt(data, argsLength);
+		data.writeZero(argsLength);
+
+		return framed(data, version);
+	}
+
+	/**
+	 * @param data Opcode and data of a packet
+	 * @param version The version the channel is on
+	 * @return The size of the packet with its length field
+	 */
+	private static int framed(ByteBuf data, ProtocolVersion version)
+	{
+		int length = data.readableBytes();
+		data.release();
+
+		return version.lengthFieldSize(length) + length;
+	}
+
+}
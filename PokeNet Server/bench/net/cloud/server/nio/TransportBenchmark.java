@@ -0,0 +1,281 @@
+package net.cloud.server.nio;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * Compares connection and data throughput of the NIO and native epoll transports on the same machine.
+ * A server is started with each transport in turn (configured the same way NettyServer would be), then a set
+ * of local clients using the same transport connect to it and each push a stream of small messages. <br>
+ * Arguments (all optional): connections, messages per connection, message size in bytes, rounds. <br>
+ * Not part of the regular test run. Run it by hand, ie
+ * <code>java -cp bin:netty.jar net.cloud.server.nio.TransportBenchmark 1000 1000 64 3</code>
+ */
+public class TransportBenchmark {
+
+	/** How many connections are opened per round, if not given */
+	private static final int DEFAULT_CONNECTIONS = 1000;
+
+	/** How many messages each connection sends, if not given */
+	private static final int DEFAULT_MESSAGES = 1000;
+
+	/** Size of each message in bytes, if not given */
+	private static final int DEFAULT_MESSAGE_SIZE = 64;
+
+	/** How many measured rounds there are per transport, if not given. One warm up round is always run first */
+	private static final int DEFAULT_ROUNDS = 3;
+
+	/** Messages are written this many at a time before flushing, like a busy tick would */
+	private static final int WRITES_PER_FLUSH = 16;
+
+	/**
+	 * Run the benchmark for every transport available on this machine
+	 * @param args connections, messages per connection, message size, rounds
+	 * @throws Exception If the server or clients could not be started
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		int connections = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CONNECTIONS;
+		int messages = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_MESSAGES;
+		int size = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_MESSAGE_SIZE;
+		int rounds = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_ROUNDS;
+
+		System.out.println("connections=" + connections + " messages=" + messages + " size=" + size + " rounds=" + rounds);
+
+		for(Transport transport : Transport.values())
+		{
+			// Epoll only shows up when it can actually be used
+			if(transport == Transport.EPOLL && Transport.select(true) != Transport.EPOLL)
+			{
+				System.out.println(transport + ": not available on this machine");
+				continue;
+			}
+
+			// The first round is just to get the JIT going
+			runRound(transport, connections, messages, size);
+
+			for(int round = 1; round <= rounds; round++)
+			{
+				Result result = runRound(transport, connections, messages, size);
+
+				System.out.println(String.format("%-5s round %d: connect %8.0f conn/s | transfer %8.1f MB/s, %10.0f msg/s",
+						transport, round, result.connectionsPerSecond(connections), result.megabytesPerSecond(connections, messages, size),
+						result.messagesPerSecond(connections, messages)));
+			}
+		}
+	}
+
+	/**
+	 * Start a server, connect every client to it, have each send its messages, then shut everything down
+	 * @param transport The transport for both the server and clients
+	 * @param connections How many clients there are
+	 * @param messages How many messages each client sends
+	 * @param size The size of each message
+	 * @return How long connecting and transferring took
+	 * @throws Exception If something could not be started
+	 */
+	private static Result runRound(Transport transport, int connections, int messages, int size) throws Exception
+	{
+		NetworkConfig config = new NetworkConfig(transport == Transport.EPOLL, 1, 0, 1024, true, 0, 0, 64 * 1024, 32 * 1024, "pooled");
+
+		EventLoopGroup bossGroup = transport.newEventLoopGroup(1);
+		EventLoopGroup workerGroup = transport.newEventLoopGroup(0);
+		EventLoopGroup clientGroup = transport.newEventLoopGroup(0);
+
+		CountDownLatch accepted = new CountDownLatch(connections);
+		long expectedBytes = (long) connections * messages * size;
+		CountingHandler counter = new CountingHandler(expectedBytes);
+
+		try {
+			// Server side is set up just like NettyServer would, with only the pipeline swapped out
+			ServerBootstrap serverBootstrap = new ServerBootstrap();
+			serverBootstrap.group(bossGroup, workerGroup);
+			serverBootstrap.channel(transport.serverChannelClass());
+			serverBootstrap.childHandler(new ChannelInitializer<Channel>() {
+				@Override
+				protected void initChannel(Channel ch)
+				{
+					ch.pipeline().addLast(counter);
+					accepted.countDown();
+				}
+			});
+			NettyServer.configure(serverBootstrap, config);
+
+			Channel serverChannel = serverBootstrap.bind(new InetSocketAddress("127.0.0.1", 0)).sync().channel();
+			InetSocketAddress address = (InetSocketAddress) serverChannel.localAddress();
+
+			Bootstrap clientBootstrap = new Bootstrap();
+			clientBootstrap.group(clientGroup);
+			clientBootstrap.channel(transport.socketChannelClass());
+			clientBootstrap.option(ChannelOption.TCP_NODELAY, true);
+			clientBootstrap.handler(new ChannelInitializer<Channel>() {
+				@Override
+				protected void initChannel(Channel ch)
+				{
+					// Clients only write. Nothing needs to be in the pipeline
+				}
+			});
+
+			// Connection phase. All connects go out at once, done once the server has accepted every one
+			long connectStart = System.nanoTime();
+			List<ChannelFuture> connects = new ArrayList<>(connections);
+			for(int i = 0; i < connections; i++)
+			{
+				connects.add(clientBootstrap.connect(address));
+			}
+			List<Channel> clients = new ArrayList<>(connections);
+			for(ChannelFuture connect : connects)
+			{
+				clients.add(connect.sync().channel());
+			}
+			accepted.await();
+			long connectNanos = System.nanoTime() - connectStart;
+
+			// Transfer phase. Every client sends the same bytes, shared the same way a broadcast is
+			ByteBuf message = PooledByteBufAllocator.DEFAULT.buffer(size);
+			message.writeZero(size);
+
+			long transferStart = System.nanoTime();
+			for(Channel client : clients)
+			{
+				client.eventLoop().execute(() ->
+				{
+					for(int m = 1; m <= messages; m++)
+					{
+						client.write(message.duplicate().retain(), client.voidPromise());
+						if(m % WRITES_PER_FLUSH == 0)
+						{
+							client.flush();
+						}
+					}
+					client.flush();
+				});
+			}
+			counter.await();
+			long transferNanos = System.nanoTime() - transferStart;
+
+			message.release();
+
+			for(Channel client : clients)
+			{
+				client.close();
+			}
+			serverChannel.close().sync();
+
+			return new Result(connectNanos, transferNanos);
+		} finally {
+			clientGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS).sync();
+			workerGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS).sync();
+			bossGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS).sync();
+		}
+	}
+
+
+	/**
+	 * Counts every byte the server receives, across all connections, and lets the benchmark
+	 * know when everything has arrived
+	 */
+	@Sharable
+	private static class CountingHandler extends ChannelInboundHandlerAdapter {
+
+		/** Bytes received so far */
+		private final LongAdder received = new LongAdder();
+
+		/** Bytes that will have been received once every client is done */
+		private final long expected;
+
+		/** Released once every byte has arrived */
+		private final CountDownLatch done = new CountDownLatch(1);
+
+		/**
+		 * @param expected How many bytes to wait for
+		 */
+		public CountingHandler(long expected)
+		{
+			this.expected = expected;
+		}
+
+		@Override
+		public void channelRead(ChannelHandlerContext ctx, Object msg)
+		{
+			received.add(((ByteBuf) msg).readableBytes());
+			ReferenceCountUtil.release(msg);
+
+			if(received.sum() >= expected)
+			{
+				done.countDown();
+			}
+		}
+
+		/**
+		 * Wait until every byte has been received
+		 * @throws InterruptedException If interrupted while waiting
+		 */
+		public void await() throws InterruptedException
+		{
+			done.await();
+		}
+
+	}
+
+
+	/**
+	 * The timings for one round
+	 */
+	private static class Result {
+
+		/** Time from the first connect to the last accept */
+		private final long connectNanos;
+
+		/** Time from the first write to the last byte received */
+		private final long transferNanos;
+
+		/**
+		 * @param connectNanos Time spent connecting
+		 * @param transferNanos Time spent transferring
+		 */
+		public Result(long connectNanos, long transferNanos)
+		{
+			this.connectNanos = connectNanos;
+			this.transferNanos = transferNanos;
+		}
+
+		/** @return Connections established per second */
+		public double connectionsPerSecond(int connections)
+		{
+			return connections / (connectNanos / 1e9);
+		}
+
+		/** @return Megabytes transferred per second */
+		public double megabytesPerSecond(int connections, int messages, int size)
+		{
+			return ((double) connections * messages * size / (1024 * 1024)) / (transferNanos / 1e9);
+		}
+
+		/** @return Messages transferred per second */
+		public double messagesPerSecond(int connections, int messages)
+		{
+			return ((double) connections * messages) / (transferNanos / 1e9);
+		}
+
+	}
+
+}
@@ -0,0 +1,46 @@
+import io.netty.buffer.ByteBuf;
+
+import net.cloud.server.entity.player.Player;
+import net.cloud.server.game.action.ButtonAction;
+import net.cloud.server.game.action.ButtonActionID;
+import net.cloud.server.nio.bufferable.Bufferable;
+import net.cloud.server.nio.bufferable.BufferableException;
+import net.cloud.server.nio.bufferable.BufferableInteger;
+
+/**
+ * An action that does nothing but answer. There's no such button in the client,
+ * load testing bots press it to time a round trip through the world thread
+ */
+public class PingButtonAction extends ButtonAction {
+
+	/** Calls the super constructor */
+	public PingButtonAction(ButtonActionID id)
+	{
+		super(id);
+	}
+
+	/**
+	 * The ping's sequence number, a BufferableInteger. Older bots send nothing
+	 */
+	@Override
+	public void decodeArgs(Bufferable[] args, ByteBuf data) throws BufferableException
+	{
+		if(args != null && args.length > 0)
+		{
+			args[0] = BufferableInteger.createFrom(data);
+		}
+	}
+
+	/**
+	 * Answer with a TestPacket holding the ping's sequence number. TestPackets may be dropped when the
+	 * client isn't keeping up, so the bot needs the number to tell which ping an answer goes with
+	 */
+	@Override
+	public void handle(Player player, Bufferable[] args) throws Exception
+	{
+		int sequence = args != null && args.length > 0 ? ((BufferableInteger) args[0]).get() : 0;
+
+		player.getPacketSender().sendTestPacket(sequence);
+	}
+
+}
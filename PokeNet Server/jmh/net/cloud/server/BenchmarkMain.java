@@ -0,0 +1,51 @@
+package net.cloud.server;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks under jmh/. Unlike the ones under bench/, these are measured by JMH - forked JVMs,
+ * warmup, and error bars - so numbers from two commits can actually be compared. <br>
+ * Compile src and jmh together with netty, jmh-core and jmh-generator-annprocess on the classpath. The annotation
+ * processor is picked up by javac on its own, and generates the benchmark classes next to ours. Then, from the
+ * server directory so the benchmarks can find ./data: <br>
+ * <code>java -cp bin-jmh:netty.jar:jmh-core.jar:... net.cloud.server.BenchmarkMain [jmh options] [regex]</code> <br>
+ * Any of JMH's usual options work, ie <code>-f 3 -wi 10 PacketCodec</code>. Results are written as JSON to
+ * jmh-result.json unless -rf or -rff say otherwise. Name the file after the commit, ie
+ * <code>-rff jmh-$(git rev-parse --short HEAD).json</code>, and two runs can be lined up side by side.
+ */
+public class BenchmarkMain {
+
+	/** Where results go if the command line doesn't say */
+	private static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+	/** Static class, no instances */
+	private BenchmarkMain() {}
+
+	/**
+	 * Run the benchmarks
+	 * @param args JMH command line options, and regexes for which benchmarks to run. None runs everything
+	 * @throws Exception If the options are bad, or JMH fails to run
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		CommandLineOptions given = new CommandLineOptions(args);
+		OptionsBuilder options = new OptionsBuilder();
+		options.parent(given);
+
+		// Machine readable unless asked for something else
+		if(!given.getResultFormat().hasValue())
+		{
+			options.resultFormat(ResultFormatType.JSON);
+		}
+		if(!given.getResult().hasValue())
+		{
+			options.result(DEFAULT_RESULT_FILE);
+		}
+
+		new Runner(options.build()).run();
+	}
+
+}
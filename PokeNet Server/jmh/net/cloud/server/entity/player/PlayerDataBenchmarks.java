@@ -0,0 +1,97 @@
+package net.cloud.server.entity.player;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.cloud.server.util.ConnectionInfo;
+import net.cloud.server.util.HashObj;
+import net.cloud.server.util.StringUtil;
+
+/**
+ * Serializing a player's save data and reading it back. This is what every save and every login does,
+ * apart from the file itself. The player has a last login, like any account that has logged in before.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayerDataBenchmarks {
+
+	/** The player being saved */
+	private Player player;
+
+	/** The player being restored into */
+	private Player target;
+
+	/** Holds the player's save data */
+	private ByteBuf buf;
+
+	/**
+	 * Write save data by hand, since a last login can only be had from a real connection. Restoring it gives
+	 * a player to save from
+	 */
+	@Setup
+	public void setup()
+	{
+		buf = Unpooled.buffer();
+		StringUtil.writeStringToBuffer("Ash_Ketchum", buf);
+		new HashObj("pikachu").save(buf);
+		buf.writeBoolean(true);
+		new ConnectionInfo("127.0.0.1").save(buf);
+
+		player = PlayerFactory.createPlayerForDataUpdate("Ash_Ketchum");
+		player.restore(buf);
+
+		target = PlayerFactory.createPlayerForDataUpdate("Ash_Ketchum");
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		buf.release();
+	}
+
+	@Benchmark
+	public ByteBuf save()
+	{
+		buf.clear();
+		player.save(buf);
+
+		return buf;
+	}
+
+	@Benchmark
+	public Player restore()
+	{
+		buf.readerIndex(0);
+		target.restore(buf);
+
+		return target;
+	}
+
+	/** What a login reads to check the password, before the rest */
+	@Benchmark
+	public Player restoreUserAndPass()
+	{
+		buf.readerIndex(0);
+		target.restoreUserAndPass(buf);
+
+		return target;
+	}
+
+}
@@ -0,0 +1,103 @@
+package net.cloud.server.entity.player.save;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Saves per second through the player store, with and without forcing them to disk. Each thread saves and waits
+ * for its save to be done, like a burst of players logging out at once. Durable saves share a sync with whatever
+ * else arrived within the sync delay, so more threads should mean more saves per sync. Unlike the other
+ * benchmarks, this one is about the disk, so run it on the disk the server really uses (see java.io.tmpdir).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class PlayerStoreBenchmarks {
+
+	/** How many different players are saved. Compaction doesn't run, so this only changes the index size */
+	private static final int PLAYERS = 1000;
+
+	/** Bytes of save data for each player, a little over what a real one takes now */
+	private static final int DATA_SIZE = 256;
+
+	/** Whether saves wait to be forced to disk */
+	@Param({ "false", "true" })
+	public boolean durable;
+
+	/** How long a sync waits for more saves to join it (ms) */
+	@Param({ "2" })
+	public long syncDelay;
+
+	/** Temp folder the segments go in */
+	private Path directory;
+
+	/** What's being saved to */
+	private PlayerStore store;
+
+	/** The save data. Only read from, so every thread can share it */
+	private ByteBuf data;
+
+	/**
+	 * Open a fresh store in a temp folder
+	 * @throws IOException If it can't be created
+	 */
+	@Setup
+	public void setup() throws IOException
+	{
+		directory = Files.createTempDirectory("benchPlayerStore");
+		store = new PlayerStore(directory, 64 * 1024 * 1024, durable, syncDelay);
+
+		data = Unpooled.wrappedBuffer(new byte[DATA_SIZE]);
+	}
+
+	/**
+	 * Close the store and delete its segments
+	 * @throws IOException If they can't be closed or deleted
+	 */
+	@TearDown
+	public void tearDown() throws IOException
+	{
+		store.close();
+
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory))
+		{
+			for(Path file : files)
+			{
+				Files.delete(file);
+			}
+		}
+		Files.delete(directory);
+	}
+
+	@Benchmark
+	public void save() throws Exception
+	{
+		store.save("Player" + ThreadLocalRandom.current().nextInt(PLAYERS), data).get();
+	}
+
+}
@@ -0,0 +1,123 @@
+package net.cloud.server.file.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading files out of a cache, one at a time and as a region. The cache in data/test only holds five ints,
+ * which says little about real files, so a cache is written to temp files first. Its files are all the same
+ * size. The OS will have it all in its page cache, so this is the cost of the calls and copies, not of the disk.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheTableBenchmarks {
+
+	/** How many files are in the cache */
+	private static final int FILES = 256;
+
+	/** Bytes in each file */
+	@Param({ "64", "4096" })
+	public int fileSize;
+
+	/** How many files a region holds */
+	@Param({ "16" })
+	public int regionFiles;
+
+	/** Temp table file */
+	private File tableFile;
+
+	/** Temp cache file */
+	private File cacheFile;
+
+	/** The open table file */
+	private RandomAccessFile table;
+
+	/** The open cache file */
+	private RandomAccessFile cache;
+
+	/** What's being read from */
+	private CacheTable cacheTable;
+
+	/** Which file to get next. Walks through them all, so it isn't always the same one */
+	private int next;
+
+	/**
+	 * Write out the cache and its table, then open them
+	 * @throws IOException If the temp files can't be written
+	 */
+	@Setup
+	public void setup() throws IOException
+	{
+		tableFile = File.createTempFile("benchCacheTable", ".dat");
+		cacheFile = File.createTempFile("benchCache", ".dat");
+
+		try (
+				RandomAccessFile t = new RandomAccessFile(tableFile, "rw");
+				RandomAccessFile c = new RandomAccessFile(cacheFile, "rw")
+		) {
+			byte[] data = new byte[fileSize];
+			for(int i = 0; i < FILES; ++i)
+			{
+				t.writeLong(c.getFilePointer());
+
+				data[0] = (byte) i;
+				c.write(data);
+			}
+		}
+
+		table = new RandomAccessFile(tableFile, "r");
+		cache = new RandomAccessFile(cacheFile, "r");
+		cacheTable = new CacheTable(table, cache);
+	}
+
+	/**
+	 * Close and delete the temp files
+	 * @throws IOException If they can't be closed
+	 */
+	@TearDown
+	public void tearDown() throws IOException
+	{
+		table.close();
+		cache.close();
+
+		tableFile.delete();
+		cacheFile.delete();
+	}
+
+	@Benchmark
+	public CachedFile getFile() throws IOException
+	{
+		next = (next + 1) % FILES;
+
+		return cacheTable.getFile(next);
+	}
+
+	/** The region starts anywhere it fits, and runs through regionFiles files */
+	@Benchmark
+	public CachedFileRegion getFileRegion() throws IOException
+	{
+		next = (next + 1) % (FILES - regionFiles + 1);
+
+		return cacheTable.getFileRegion(next, next + regionFiles - 1);
+	}
+
+}
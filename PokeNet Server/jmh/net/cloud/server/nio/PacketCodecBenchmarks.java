@@ -0,0 +1,267 @@
+package net.cloud.server.nio;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import net.cloud.server.entity.player.LoginResponse;
+import net.cloud.server.entity.player.PlayerFactory;
+import net.cloud.server.nio.bufferable.BufferableException;
+import net.cloud.server.nio.packet.LengthPrepender;
+import net.cloud.server.nio.packet.Packet;
+import net.cloud.server.nio.packet.PacketConstants;
+import net.cloud.server.nio.packet.PacketDecoder;
+import net.cloud.server.nio.packet.PacketEncoder;
+import net.cloud.server.nio.packet.ProtocolVersion;
+import net.cloud.server.nio.packet.packets.CompositePacket;
+import net.cloud.server.nio.packet.packets.LoginPacket.LoginDataResponsePacket;
+import net.cloud.server.nio.packet.packets.LoginPacket.LoginResponsePacket;
+import net.cloud.server.nio.packet.packets.LogoutPacket;
+import net.cloud.server.nio.packet.packets.ShowMessageDialogPacket;
+import net.cloud.server.nio.packet.packets.TestPacket;
+import net.cloud.server.util.HashObj;
+import net.cloud.server.util.StringUtil;
+
+/**
+ * Every packet through the codec, the way the server sees it. The server only ever sends some packets and only
+ * ever receives the others, so each packet is timed going the one way it really goes: packets the server sends
+ * are encoded through the LengthPrepender and PacketEncoder, and packets the client sends are decoded from whole
+ * frames by the PacketDecoder. Frames are written by hand, field for field the way the client writes them. <br>
+ * Composites skip the PacketEncoder, the same as when PacketSender writes them - they're encoded into a
+ * CompositeByteBuf with encodeComposite, and only that goes through the LengthPrepender. <br>
+ * Everything is done under each protocol version. Compression is left out, that has its own cost to measure.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PacketCodecBenchmarks {
+
+	/** Which protocol version the channels are on */
+	@Param({ "V1", "V2" })
+	public ProtocolVersion version;
+
+	/** Length prepender and encoder, like a channel's outbound side */
+	private EmbeddedChannel outbound;
+
+	/** Decoder, like a channel's inbound side */
+	private EmbeddedChannel inbound;
+
+	/** Packets the server sends */
+	private Packet test, loginResponse, logout, dialog, loginData;
+
+	/** Sent the way PacketSender sends it, not through the PacketEncoder */
+	private CompositePacket composite;
+
+	/** Frames for packets the client sends */
+	private ByteBuf loginFrame, dataRequestFrame, buttonFrame, buttonArgsFrame;
+
+	/**
+	 * Put both channels on the version, and build everything that gets sent or received
+	 */
+	@Setup
+	public void setup()
+	{
+		outbound = new EmbeddedChannel(new LengthPrepender(), new PacketEncoder());
+		outbound.attr(ProtocolVersion.KEY).set(version);
+		inbound = new EmbeddedChannel(new PacketDecoder());
+		inbound.attr(ProtocolVersion.KEY).set(version);
+
+		test = new TestPacket(5);
+		loginResponse = new LoginResponsePacket(LoginResponse.OKAY);
+		logout = new LogoutPacket();
+		dialog = new ShowMessageDialogPacket("Login", "Welcome back!");
+		loginData = new LoginDataResponsePacket(PlayerFactory.createNewPlayer("Ash_Ketchum", "pikachu"));
+		composite = new CompositePacket(loginData, dialog);
+
+		// Login - username and password hash
+		ByteBuf login = opcode(PacketConstants.LOGIN);
+		StringUtil.writeStringToBuffer("Ash_Ketchum", login);
+		new HashObj("pikachu").save(login);
+		loginFrame = frame(login);
+
+		// Data request - nothing, apart from V1's dummy int
+		ByteBuf dataRequest = opcode(PacketConstants.LOGIN_DATA_REQUEST);
+		if(version == ProtocolVersion.V1)
+		{
+			dataRequest.writeInt(-1);
+		}
+		dataRequestFrame = frame(dataRequest);
+
+		buttonFrame = frame(buttonAction(0, 0));
+		buttonArgsFrame = frame(buttonAction(2, 8));
+	}
+
+	/**
+	 * Let go of the frames and anything left in the channels
+	 */
+	@TearDown
+	public void tearDown()
+	{
+		outbound.finishAndReleaseAll();
+		inbound.finishAndReleaseAll();
+
+		loginFrame.release();
+		dataRequestFrame.release();
+		buttonFrame.release();
+		buttonArgsFrame.release();
+	}
+
+	@Benchmark
+	public int encodeTest()
+	{
+		return sent(test);
+	}
+
+	@Benchmark
+	public int encodeLoginResponse()
+	{
+		return sent(loginResponse);
+	}
+
+	@Benchmark
+	public int encodeLogout()
+	{
+		return sent(logout);
+	}
+
+	@Benchmark
+	public int encodeShowMessageDialog()
+	{
+		return sent(dialog);
+	}
+
+	@Benchmark
+	public int encodeLoginDataResponse()
+	{
+		return sent(loginData);
+	}
+
+	/** What the server sends at login - the player's data, with a welcome dialog */
+	@Benchmark
+	public int encodeComposite() throws BufferableException
+	{
+		return sent(composite.encodeComposite(outbound.alloc(), version));
+	}
+
+	@Benchmark
+	public Packet decodeLogin()
+	{
+		return received(loginFrame);
+	}
+
+	@Benchmark
+	public Packet decodeLoginDataRequest()
+	{
+		return received(dataRequestFrame);
+	}
+
+	@Benchmark
+	public Packet decodeButtonAction()
+	{
+		return received(buttonFrame);
+	}
+
+	@Benchmark
+	public Packet decodeButtonActionWithArgs()
+	{
+		return received(buttonArgsFrame);
+	}
+
+	/**
+	 * Write a packet out through the encoders, and throw away what comes out the other side
+	 * @param packet The packet to send, or a buffer it has already been encoded to
+	 * @return Bytes that would have gone to the socket
+	 */
+	private int sent(Object packet)
+	{
+		outbound.writeOutbound(packet);
+
+		int bytes = 0;
+		ByteBuf part;
+		while((part = (ByteBuf) outbound.readOutbound()) != null)
+		{
+			bytes += part.readableBytes();
+			part.release();
+		}
+
+		return bytes;
+	}
+
+	/**
+	 * Feed a frame to the decoder, and take the packet that comes out. The packet is discarded and recycled,
+	 * as the PacketHandler would after handling it, so pooled packets are timed with their pool working
+	 * @param frame The frame. Left as it is, so it can be fed again
+	 * @return The packet
+	 */
+	private Packet received(ByteBuf frame)
+	{
+		inbound.writeInbound(frame.retainedDuplicate());
+
+		Packet packet = (Packet) inbound.readInbound();
+		packet.discard();
+		packet.recycle();
+
+		return packet;
+	}
+
+	/**
+	 * @param opcode Opcode of a packet
+	 * @return A new buffer with just the opcode in it
+	 */
+	private ByteBuf opcode(short opcode)
+	{
+		ByteBuf data = Unpooled.buffer();
+		version.writeOpcode(data, opcode, false);
+
+		return data;
+	}
+
+	/**
+	 * @param args How many arguments the button has
+	 * @param argsLength Bytes the arguments take up
+	 * @return Opcode and data of a button action
+	 */
+	private ByteBuf buttonAction(int args, int argsLength)
+	{
+		ByteBuf data = opcode(PacketConstants.BUTTON_ACTION);
+		version.writeInt(data, 0);
+		version.writeInt(data, args);
+		version.writeInt(data, argsLength);
+		data.writeZero(argsLength);
+
+		return data;
+	}
+
+	/**
+	 * Put a length field in front of a packet
+	 * @param data Opcode and data of a packet. Released
+	 * @return The whole frame
+	 */
+	private ByteBuf frame(ByteBuf data)
+	{
+		ByteBuf frame = Unpooled.buffer();
+		version.writeLength(frame, data.readableBytes());
+		frame.writeBytes(data);
+		data.release();
+
+		return frame;
+	}
+
+}
@@ -0,0 +1,106 @@
+package net.cloud.server.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Hashing a password and checking one against another. Every login does a hash and a comparison,
+ * and every save and load moves a hash in or out of a buffer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashObjBenchmarks {
+
+	/** The password everything is hashed from */
+	private static final String PASSWORD = "pikachu123";
+
+	/** A hash of the password */
+	private HashObj hash;
+
+	/** Another hash of the same password */
+	private HashObj same;
+
+	/** A hash of something else */
+	private HashObj different;
+
+	/** Holds a saved hash */
+	private ByteBuf buf;
+
+	@Setup
+	public void setup()
+	{
+		hash = new HashObj(PASSWORD);
+		same = new HashObj(PASSWORD);
+		different = new HashObj("charmander456");
+
+		buf = Unpooled.buffer();
+		hash.save(buf);
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		buf.release();
+	}
+
+	@Benchmark
+	public HashObj construct()
+	{
+		return new HashObj(PASSWORD);
+	}
+
+	/** Hashes the string first, like a login does */
+	@Benchmark
+	public boolean equivalentToString()
+	{
+		return hash.equivalentTo(PASSWORD);
+	}
+
+	@Benchmark
+	public boolean equivalentToSame()
+	{
+		return hash.equivalentTo(same);
+	}
+
+	@Benchmark
+	public boolean equivalentToDifferent()
+	{
+		return hash.equivalentTo(different);
+	}
+
+	@Benchmark
+	public ByteBuf save()
+	{
+		buf.clear();
+		hash.save(buf);
+
+		return buf;
+	}
+
+	@Benchmark
+	public HashObj createFrom()
+	{
+		buf.readerIndex(0);
+
+		return HashObj.createFrom(buf);
+	}
+
+}
@@ -0,0 +1,166 @@
+package net.cloud.server.util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Writing and reading terminated strings, in both kinds of buffer StringUtil works with.
+ * Each benchmark writes or reads one string, from the start of its buffer.
+ * The legacy ones are the old byte at a time way, copied in here as it was so there's something to compare to.
+ * It only handled ASCII, so it mangles the last string - the timing still counts.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringUtilBenchmarks {
+
+	/** A username, a chat sized message, and one that isn't all ASCII */
+	@Param({ "Ash_Ketchum", "Welcome back! You have 3 new messages waiting in your inbox.", "Pok\u00e9mon Center" })
+	public String string;
+
+	/** Netty buffer, written to and read from */
+	private ByteBuf buf;
+
+	/** NIO buffer, written to and read from */
+	private ByteBuffer nioBuf;
+
+	/**
+	 * Size the buffers for the string, and write it into each so there's something to read
+	 */
+	@Setup
+	public void setup()
+	{
+		int size = StringUtil.getNumBytesInString(string);
+
+		buf = Unpooled.buffer(size);
+		StringUtil.writeStringToBuffer(string, buf);
+
+		nioBuf = ByteBuffer.allocate(size);
+		StringUtil.writeStringToBuffer(string, nioBuf);
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		buf.release();
+	}
+
+	@Benchmark
+	public ByteBuf writeByteBuf()
+	{
+		buf.clear();
+		StringUtil.writeStringToBuffer(string, buf);
+
+		return buf;
+	}
+
+	@Benchmark
+	public ByteBuf legacyWriteByteBuf()
+	{
+		buf.clear();
+		legacyWrite(string, buf);
+
+		return buf;
+	}
+
+	@Benchmark
+	public String readByteBuf()
+	{
+		buf.readerIndex(0);
+
+		return StringUtil.getFromBuffer(buf);
+	}
+
+	@Benchmark
+	public String legacyReadByteBuf()
+	{
+		buf.readerIndex(0);
+
+		return legacyRead(buf);
+	}
+
+	/** Usernames are read this way, so they share the one String */
+	@Benchmark
+	public String readInternedByteBuf()
+	{
+		buf.readerIndex(0);
+
+		return StringUtil.getInternedFromBuffer(buf);
+	}
+
+	@Benchmark
+	public ByteBuffer writeByteBuffer()
+	{
+		nioBuf.clear();
+		StringUtil.writeStringToBuffer(string, nioBuf);
+
+		return nioBuf;
+	}
+
+	@Benchmark
+	public String readByteBuffer()
+	{
+		nioBuf.position(0);
+
+		return StringUtil.getFromBuffer(nioBuf);
+	}
+
+	/** Done before every write, to size the buffer */
+	@Benchmark
+	public int numBytes()
+	{
+		return StringUtil.getNumBytesInString(string);
+	}
+
+	/**
+	 * How StringUtil used to write to a ByteBuf
+	 * @param string The text to write
+	 * @param buffer The buffer to write to
+	 */
+	private static void legacyWrite(String string, ByteBuf buffer)
+	{
+		for(int i = 0; i < string.length(); ++i) {
+			buffer.writeByte((byte) string.charAt(i));
+		}
+
+		buffer.writeByte((byte) StringUtil.TERMINATOR);
+	}
+
+	/**
+	 * How StringUtil used to read from a ByteBuf
+	 * @param buffer The buffer to read the string from
+	 * @return A string from the data in the buffer
+	 */
+	private static String legacyRead(ByteBuf buffer)
+	{
+		StringBuilder builder = new StringBuilder();
+		char c = (char) buffer.readByte();
+
+		while(c != StringUtil.TERMINATOR) {
+			builder.append(c);
+			c = (char) buffer.readByte();
+		}
+
+		return builder.toString();
+	}
+
+}
@@ -27,11 +27,145 @@ public class ConfigConstants {
 	
 	/** Number of threads the task engine will have available for running tasks */
 	public static final int THREAD_POOL_SIZE = 2;
+	
+	/** How often the timeout service's wheel moves on a slot (ms). Timeouts may go off up to this much late */
+	public static final int TIMEOUT_TICK_DURATION = 100;
+	
+	/** Number of slots on the timeout service's wheel. Should cover the usual timeout length in one turn */
+	public static final int TIMEOUT_WHEEL_SIZE = 512;
 
 	/** How frequently the current system status will be logged (ms) */
 	public static final int STAT_TASK_INTERVAL = 10000;
 	
 	/** How frequently the server will save all players */
 	public static final int SAVE_INTERVAL = 30000;
+	
+	/** How many groups players are split into for saving. One group is saved at a time, spread evenly over the save interval */
+	public static final int SAVE_BUCKETS = 30;
+	
+	/** Length of a single game tick (ms). Queued packets are handled once per tick */
+	public static final int TICK_RATE = 50;
+	
+	/** How many packets a single connection may have waiting for the next tick before it is disconnected */
+	public static final int INBOUND_QUEUE_CAPACITY = 64;
+	
+	/** Login, login data and logout packets a connection may send per second, on average */
+	public static final double RATE_LOGIN_PER_SECOND = 1;
+	
+	/** Login, login data and logout packets a connection may send in a burst */
+	public static final int RATE_LOGIN_BURST = 5;
+	
+	/** Button action packets a connection may send per second, on average */
+	public static final double RATE_ACTION_PER_SECOND = 20;
+	
+	/** Button action packets a connection may send in a burst */
+	public static final int RATE_ACTION_BURST = 40;
+	
+	/** Any other packets a connection may send per second, on average */
+	public static final double RATE_GENERAL_PER_SECOND = 20;
+	
+	/** Any other packets a connection may send in a burst */
+	public static final int RATE_GENERAL_BURST = 40;
+	
+	/** Longest a connection may stay unwritable (ms) before it is disconnected as a slow reader */
+	public static final int SLOW_READER_TIMEOUT = 10000;
+	
+	/** Most bytes that may be waiting to be written to a connection before it is disconnected as a slow reader */
+	public static final int MAX_PENDING_WRITE_BYTES = 1024 * 1024;
+	
+	/** Most connections the server allows at once. Any more are closed as soon as they're accepted */
+	public static final int MAX_CONNECTIONS = 10000;
+	
+	/** Most players that may be in the world at once. Each has a slot, whose index must fit in 2 bytes */
+	public static final int MAX_PLAYERS = 10000;
+	
+	/** Most connections a single address may have open at once */
+	public static final int MAX_CONNECTIONS_PER_ADDRESS = 8;
+	
+	/** Connections a single address may make per second, on average */
+	public static final double CONNECT_RATE_PER_ADDRESS = 1;
+	
+	/** Connections a single address may make in a burst */
+	public static final int CONNECT_BURST_PER_ADDRESS = 10;
+	
+	/** How often addresses that have gone quiet are forgotten by the admission handler (ms) */
+	public static final int ADMISSION_SWEEP_INTERVAL = 60000;
+	
+	/** Number of lanes the file server handles requests in, each with its own thread. Requests for one file stay in one lane */
+	public static final int FILE_SERVER_LANES = 4;
+	
+	/** Number of threads dedicated to reading save files and checking credentials during login */
+	public static final int LOGIN_THREADS = 2;
+	
+	/** How many logins may be in progress at once. Any more are told the server is busy */
+	public static final int MAX_CONCURRENT_LOGINS = 32;
+	
+	/** Bytes a player store segment may reach before saves move on to a new one */
+	public static final int PLAYER_STORE_SEGMENT_SIZE = 64 * 1024 * 1024;
+	
+	/** How often the player store looks for segments to compact (ms) */
+	public static final int PLAYER_STORE_COMPACT_INTERVAL = 60000;
+	
+	/** A full player store segment is compacted once no more than this fraction of it is current */
+	public static final double PLAYER_STORE_COMPACT_THRESHOLD = 0.5;
+	
+	/** Whether a player save only counts as done once it has been forced to disk. Costs a sync for each batch of saves */
+	public static final boolean PLAYER_STORE_DURABLE = true;
+	
+	/** How long the player store waits for more saves to share a sync with (ms). The most a sync adds to a save */
+	public static final int PLAYER_STORE_SYNC_DELAY = 10;
+	
+	/** Longest a requested flush may be held back to batch it with others (ms). 0 means the end of the event loop iteration */
+	public static final int FLUSH_MAX_DELAY = 0;
+	
+	/** Once this many bytes are waiting to go out on a channel, a requested flush happens right away */
+	public static final int FLUSH_BYTE_THRESHOLD = 8192;
+	
+	// The network settings below are only defaults. Each can be overridden at runtime, see NetworkConfig
+	
+	/** Use the native epoll transport when it's available (Linux), rather than NIO */
+	public static final boolean NET_PREFER_NATIVE = true;
+	
+	/** Threads accepting new connections. One is plenty with a single bound port */
+	public static final int NET_BOSS_THREADS = 1;
+	
+	/** Threads handling I/O for connections. 0 uses Netty's default of twice the core count */
+	public static final int NET_WORKER_THREADS = 0;
+	
+	/** Pending connections the OS will hold before refusing more */
+	public static final int NET_BACKLOG = 128;
+	
+	/** Turn off Nagle's algorithm. Writes are already batched by the flush consolidation */
+	public static final boolean NET_TCP_NODELAY = true;
+	
+	/** Socket send buffer size (bytes). 0 leaves it to the OS */
+	public static final int NET_SEND_BUFFER_SIZE = 0;
+	
+	/** Socket receive buffer size (bytes). 0 leaves it to the OS */
+	public static final int NET_RECEIVE_BUFFER_SIZE = 0;
+	
+	/** Bytes waiting to be written before a channel is considered unwritable */
+	public static final int NET_WRITE_BUFFER_HIGH_WATER_MARK = 64 * 1024;
+	
+	/** Bytes waiting to be written before an unwritable channel is writable again */
+	public static final int NET_WRITE_BUFFER_LOW_WATER_MARK = 32 * 1024;
+	
+	/** Buffer allocator for channels: "pooled" or "unpooled" */
+	public static final String NET_ALLOCATOR = "pooled";
+	
+	/** Whether outgoing packets may be compressed. Incoming compressed packets are always accepted */
+	public static final boolean COMPRESSION_ENABLED = true;
+	
+	/** Packet data (bytes) must be at least this big before compressing it is attempted */
+	public static final int COMPRESSION_THRESHOLD = 256;
+	
+	/** Deflate level, 1 (fastest) to 9 (smallest) */
+	public static final int COMPRESSION_LEVEL = 6;
+	
+	/** Biggest packet (bytes) that may be sent in chunks. Anything over MAX_PACKET_LENGTH is chunked */
+	public static final int MAX_CHUNKED_LENGTH = 1024 * 1024;
+	
+	/** Chunk data (bytes) sent per flush before other packets get their turn on the channel */
+	public static final int CHUNK_BYTES_PER_FLUSH = 16 * 1024;
 
 }
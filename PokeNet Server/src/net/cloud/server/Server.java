@@ -3,10 +3,14 @@ package net.cloud.server;
 import java.time.Clock;
 import java.time.ZoneId;
 
+import net.cloud.server.entity.player.LoginPipeline;
+import net.cloud.server.entity.player.save.PlayerStore;
 import net.cloud.server.event.command.CommandService;
 import net.cloud.server.event.shutdown.ShutdownHandler;
 import net.cloud.server.event.task.TaskEngine;
+import net.cloud.server.event.task.TimeoutService;
 import net.cloud.server.file.FileServer;
+import net.cloud.server.game.GameEngine;
 import net.cloud.server.game.action.ActionManager;
 import net.cloud.server.logging.Logger;
 import net.cloud.server.nio.NettyServer;
@@ -98,11 +102,17 @@ public class Server {
 
 	/**
 	 * Start the sub-services the main thread is responsible for. 
-	 * These include the Netty Server, a CommandService listening on the console, 
-	 * the Task Engine, the file server, and the logging system.
+	 * These include the Game Engine, the Netty Server, a CommandService listening on the console, 
+	 * the Task Engine, the Timeout Service, the player store, the file server, and the logging system.
 	 */
 	private void startServices()
 	{
+		// Player data has to be read back in before anyone can log in. Opening the store does that
+		PlayerStore playerStore = PlayerStore.instance();
+		
+		// The game engine needs to be ticking before any connections come in
+		GameEngine gameEngine = GameEngine.instance();
+		
 		// Start the Netty server
 		NettyServer nettyServer = null;
 		try {
@@ -115,6 +125,12 @@ public class Server {
 			Logger.instance().logException("Could not start server. Shutting down.", e);
 			System.exit(1);
 		}
+		
+		// Once the network is down nothing new will be queued, so the engine is next to stop
+		shutdownHandler.addHook(gameEngine.getShutdownHook());
+		
+		// No more logins will be coming in either
+		shutdownHandler.addHook(LoginPipeline.instance().getShutdownHook());
 
 		// Start a CommandService on the standard in and out
 		CommandService consoleCommandService = new CommandService(IOUtil.SYS_IN, Logger.writer());
@@ -125,6 +141,12 @@ public class Server {
 		// Grab the TaskEngine, put its shutdown hook in here
 		shutdownHandler.addHook(TaskEngine.instance().getShutdownHook());
 		
+		// Login timeouts are kept by the TimeoutService
+		shutdownHandler.addHook(TimeoutService.instance().getShutdownHook());
+		
+		// Saves made while everything else was stopping are written out before the store closes
+		shutdownHandler.addHook(playerStore.getShutdownHook());
+		
 		// The FileServer is another service we'll start here
 		shutdownHandler.addHook(FileServer.instance().getShutdownHook());
 		
@@ -1,14 +1,11 @@
 package net.cloud.server.entity.player;
 
-import java.io.IOException;
-
-import net.cloud.server.entity.player.save.PlayerLoadException;
-import net.cloud.server.entity.player.save.PlayerLoadHandler;
 import net.cloud.server.entity.player.save.PlayerSaveException;
-import net.cloud.server.event.task.TaskEngine;
+import net.cloud.server.event.task.TimeoutService;
+import net.cloud.server.game.GameEngine;
 import net.cloud.server.game.World;
 import net.cloud.server.logging.Logger;
-import net.cloud.server.util.HashObj;
+import net.cloud.server.nio.packet.PacketSender;
 
 /**
  * Plain old static handler class.  Encapsulates a good chunk of the code the server uses 
@@ -23,40 +20,28 @@ public class LoginHandler {
 	public static final long RECONNECT_TIMEOUT = 10_000;
 	
 	/**
-	 * Determine what the appropriate response is for when someone is trying to login with the given 
-	 * username and password. Checks to make sure the account exists, the password matches, and that the 
-	 * account is not already logged in.
-	 * @param player The player object that is going to be logged into
-	 * @param username The supposed username
-	 * @param password The supposed password
-	 * @return A LoginResponse suitable to whatever conditions are or are not met
+	 * Determine the response for a login whose credentials have already been checked, based on who is already 
+	 * in the world. Checks that the account is not already logged in, or partway through logging in, and whether 
+	 * they are reconnecting. This looks at the world, so it should only be called from the world thread.
+	 * @param username The username being logged into
+	 * @return ALREADY_LOGGED_IN, SERVER_BUSY, RECONNECT, or OKAY
 	 */
-	public static LoginResponse validationResponseFor(Player player, String username, HashObj password)
+	public static LoginResponse worldResponseFor(String username)
 	{
-		// To check the password, we need to pull data into the player object
-		PlayerLoadHandler loader = new PlayerLoadHandler(player);
-		try {
-			loader.loadUserAndPass(username);
-		} catch (PlayerLoadException | IOException e) {
-			// Well, either the account didn't exist or some file error occurred. We sort of mask the underlying issue
-			return LoginResponse.INVALID_CREDENTIALS;
-		}
-		
-		// Now we have data in the player object. Do the password from the data and given password match?
-		if(!player.getPassword().equivalentTo(password))
+		// So far so good, but is the account already logged in?
+		if(World.instance().getPlayerMap().hasUsername(username))
 		{
-			// They do not - so of course, wrong information
-			return LoginResponse.INVALID_CREDENTIALS;
+			// A player already in the world, or on their way in, has the same username
+			return LoginResponse.ALREADY_LOGGED_IN;
 		}
 		
-		// So far so good, but is the account already logged in?
-		if(World.instance().getPlayerMap().hasMatchingPlayer((p) -> p.getUsername().equalsIgnoreCase(username)))
+		// Every slot in the world is spoken for
+		if(World.instance().getPlayerMap().isFull())
 		{
-			// A player already in the world has the same username
-			return LoginResponse.ALREADY_LOGGED_IN;
+			return LoginResponse.SERVER_BUSY;
 		}
 		
-		// We're going to load data next. New connection and reconnect are a tad different.
+		// New connection and reconnect are a tad different.
 		Player dcPlayer = World.instance().getDisconnectMap().get(username);
 		if(dcPlayer != null)
 		{
@@ -64,19 +49,24 @@ public class LoginHandler {
 			return LoginResponse.RECONNECT;
 		}
 		else {
-			// We're going to need to load this player's data from file
-			try {
-				loader.loadFromFile();
-				
-				return LoginResponse.OKAY;
-			} catch (Exception e) {
-				// This is not a happy thing. The player's data couldn't be loaded. Worth a global notice
-				Logger.instance().logException("Player load failed during login", e);
-				return LoginResponse.BAD_DATA;
-			}
+			// The player's data was already loaded by the login pipeline
+			return LoginResponse.OKAY;
 		}
 	}
 	
+	/**
+	 * Send a login response to the player. The write is done on the channel's own event loop, 
+	 * so the calling thread (usually the world thread) doesn't wait on anything.
+	 * @param player The player to send the response to
+	 * @param response The response to send
+	 */
+	public static void sendResponse(Player player, LoginResponse response)
+	{
+		PacketSender sender = player.getPacketSender();
+		
+		sender.channel().eventLoop().execute(() -> sender.sendLoginResponse(response));
+	}
+	
 	/**
 	 * Aborts the connection the player is using. Consider this a forceful disconnect, there is 
 	 * not attempt to save the player data. Useful for when the login process fails.
@@ -84,16 +74,19 @@ public class LoginHandler {
 	 */
 	public static void abortConnection(Player player)
 	{
-		// We'll remove the player from the global list immediately
+		// We'll remove the player from the global list immediately. If they hadn't got that far, they may still hold their username
 		World.instance().getPlayerMap().remove(player.getPacketSender().channel());
+		World.instance().getPlayerMap().release(player);
 		
-		// And then disconnect the channel that player was connected on
-		try {
-			player.getPacketSender().channel().close().sync();
-		} catch (InterruptedException e) {
+		// And then disconnect the channel that player was connected on. This is called from the world thread, so no waiting on it
+		player.getPacketSender().channel().close().addListener((f) ->
+		{
 			// There's not much we can do if the channel does not close, except shout about it
-			Logger.instance().logException("Could not close channel while aborting newly connected player.", e);
-		}
+			if(!f.isSuccess())
+			{
+				Logger.instance().logException("Could not close channel while aborting newly connected player.", f.cause());
+			}
+		});
 	}
 	
 	/**
@@ -112,8 +105,8 @@ public class LoginHandler {
 		// So we're going to proceed. Tell the client to run its end of the logout procedure
 		player.setLoginState(LoginState.LOGGING_OUT);
 		
-		// Once this packet actually sends, we'll resume the process
-		player.getPacketSender().sendLogout(player, LoginHandler::resumeLogout);
+		// Once this packet actually sends, we'll resume the process. The listener fires on a netty thread, so hop back over
+		player.getPacketSender().sendLogout(player, (p) -> GameEngine.instance().submit(() -> resumeLogout(p)));
 	}
 	
 	/**
@@ -164,7 +157,7 @@ public class LoginHandler {
 		World.instance().getDisconnectMap().place(player);
 		
 		// Start a timer, they only have so long to reconnect before it's a done deal
-		TaskEngine.instance().submitDelayed(RECONNECT_TIMEOUT, () -> doReconnectFailed(player));
+		player.getChannelConfig().setLoginTimeout(TimeoutService.instance().schedule(RECONNECT_TIMEOUT, () -> doReconnectFailed(player)));
 	}
 	
 	/**
@@ -209,6 +202,9 @@ public class LoginHandler {
 			return;
 		}
 
+		// They never made it back into the world, so the username they reserved is free again
+		World.instance().getPlayerMap().release(player);
+
 		// Tell the player they failed to reconnect
 		player.onReconnectFailed();
 
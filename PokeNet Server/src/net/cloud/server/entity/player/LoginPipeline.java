@@ -0,0 +1,272 @@
+package net.cloud.server.entity.player;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import io.netty.buffer.ByteBuf;
+import net.cloud.server.ConfigConstants;
+import net.cloud.server.entity.player.save.PlayerLoadException;
+import net.cloud.server.entity.player.save.PlayerLoadHandler;
+import net.cloud.server.event.shutdown.ShutdownHook;
+import net.cloud.server.event.shutdown.ShutdownService;
+import net.cloud.server.event.shutdown.hooks.LoginPipelineShutdownHook;
+import net.cloud.server.game.GameEngine;
+import net.cloud.server.logging.Logger;
+import net.cloud.server.tracking.StatTracker;
+import net.cloud.server.util.HashObj;
+
+/**
+ * Works out the response to a login request without tying up a netty thread or the world thread.
+ * The save file is read once, the password is checked, and the rest of the player is restored -
+ * all on a small dedicated pool of login threads. Only the final check against the players already
+ * in the world is done on the world thread. <br>
+ * There is a limit on how many logins can be in progress at once. Past that limit, a login is
+ * answered with SERVER_BUSY straight away, rather than piling up behind a slow disk.
+ */
+public class LoginPipeline implements ShutdownService {
+
+	/** Singleton instance */
+	private static volatile LoginPipeline instance;
+
+	/** The threads that do the file reading and checking */
+	private final ThreadPoolExecutor loginExecutor;
+
+	/** One permit for each login that may be in progress at once */
+	private final Semaphore loginPermits;
+
+	/** The hook to stop the login threads */
+	private ShutdownHook shutdownHook;
+
+	/** Private constructor. Creates the login threads */
+	private LoginPipeline()
+	{
+		// Each login only ever has one stage waiting at a time, so the queue never needs to be larger than the permit count
+		AtomicInteger threadCount = new AtomicInteger(0);
+		loginExecutor = new ThreadPoolExecutor(
+				ConfigConstants.LOGIN_THREADS, ConfigConstants.LOGIN_THREADS,
+				0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(ConfigConstants.MAX_CONCURRENT_LOGINS),
+				(runnable) -> new Thread(runnable, "Login Thread " + threadCount.incrementAndGet()));
+
+		loginPermits = new Semaphore(ConfigConstants.MAX_CONCURRENT_LOGINS);
+
+		shutdownHook = new LoginPipelineShutdownHook(loginExecutor);
+	}
+
+	/**
+	 * Obtain a reference to the LoginPipeline, which login requests can be submitted to
+	 * @return The singleton LoginPipeline instance
+	 */
+	public static LoginPipeline instance()
+	{
+		if(instance == null)
+		{
+			synchronized(LoginPipeline.class)
+			{
+				if(instance == null)
+				{
+					instance = new LoginPipeline();
+				}
+			}
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Start working out the response to a login request. The returned future completes on the world thread
+	 * (or right away, if the server is too busy), so whatever is chained on to it may change the world.
+	 * When the response is OKAY, the given player will have been fully loaded.
+	 * @param player The player object that is going to be logged into
+	 * @param username The supposed username
+	 * @param password The supposed password
+	 * @return A future which will complete with the LoginResponse suitable to the request
+	 */
+	public CompletableFuture<LoginResponse> submit(Player player, String username, HashObj password)
+	{
+		// Too many logins going already. Turn this one away rather than having it wait
+		if(!loginPermits.tryAcquire())
+		{
+			StatTracker.instance().updateLoginsRejected();
+			return CompletableFuture.completedFuture(LoginResponse.SERVER_BUSY);
+		}
+
+		long start = System.nanoTime();
+		PlayerLoadHandler loader = new PlayerLoadHandler(player);
+
+		try {
+			return CompletableFuture
+					.supplyAsync(() -> timed(LoginStage.LOOKUP, () -> lookup(loader, username)), loginExecutor)
+					.thenApplyAsync((data) -> timed(LoginStage.VERIFY, () -> verify(loader, player, password, data)), loginExecutor)
+					.thenApplyAsync((data) -> timed(LoginStage.LOAD, () -> load(loader, data)), loginExecutor)
+					.handleAsync((loaded, ex) -> timed(LoginStage.WORLD_CHECK, () -> respond(username, ex)), GameEngine.instance()::submit)
+					.whenComplete((response, ex) ->
+					{
+						// Done one way or another. Let another login through
+						loginPermits.release();
+						StatTracker.instance().updateLoginTime(LoginStage.TOTAL, System.nanoTime() - start);
+					});
+		} catch (RejectedExecutionException e) {
+			// The login threads are shutting down
+			loginPermits.release();
+			return CompletableFuture.completedFuture(LoginResponse.SERVER_BUSY);
+		}
+	}
+
+	/**
+	 * Read the player's save data in. Takes place on a login thread.
+	 * @param loader The load handler for the player logging in
+	 * @param username The supposed username
+	 * @return A buffer with the whole save file
+	 */
+	private ByteBuf lookup(PlayerLoadHandler loader, String username)
+	{
+		try {
+			return loader.readSaveData(username);
+		} catch (PlayerLoadException | IOException e) {
+			// Well, either the account didn't exist or some file error occurred. We sort of mask the underlying issue
+			throw new LoginRejectedException(LoginResponse.INVALID_CREDENTIALS);
+		}
+	}
+
+	/**
+	 * Check the password against the saved one. Takes place on a login thread.
+	 * @param loader The load handler for the player logging in
+	 * @param player The player logging in
+	 * @param password The supposed password
+	 * @param data The save data from the lookup
+	 * @return The same save data, so it can be passed along to the next stage
+	 */
+	private ByteBuf verify(PlayerLoadHandler loader, Player player, HashObj password, ByteBuf data)
+	{
+		// Put the username and password into the player object, so they can be compared
+		loader.loadUserAndPass(data);
+
+		if(!player.getPassword().equivalentTo(password))
+		{
+			throw new LoginRejectedException(LoginResponse.INVALID_CREDENTIALS);
+		}
+
+		return data;
+	}
+
+	/**
+	 * Restore the rest of the player from the save data. Takes place on a login thread.
+	 * Done before the world check - if it turns out they're reconnecting, this copy is simply not used.
+	 * @param loader The load handler for the player logging in
+	 * @param data The save data from the lookup
+	 * @return Always true. The stage only exists for its effect on the player
+	 */
+	private Boolean load(PlayerLoadHandler loader, ByteBuf data)
+	{
+		try {
+			loader.loadFrom(data);
+
+			return true;
+		} catch (PlayerLoadException e) {
+			// This is not a happy thing. The player's data couldn't be loaded. Worth a global notice
+			Logger.instance().logException("Player load failed during login", e);
+			throw new LoginRejectedException(LoginResponse.BAD_DATA);
+		}
+	}
+
+	/**
+	 * Decide on the final response. Takes place on the world thread, so the check against the players in
+	 * the world can't be raced by another login.
+	 * @param username The username being logged into
+	 * @param ex The exception a previous stage failed with, or null if they all went fine
+	 * @return The response for the login request
+	 */
+	private LoginResponse respond(String username, Throwable ex)
+	{
+		if(ex == null)
+		{
+			return LoginHandler.worldResponseFor(username);
+		}
+
+		// Stages wrap what they throw
+		Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+
+		if(cause instanceof LoginRejectedException)
+		{
+			return ((LoginRejectedException) cause).getResponse();
+		}
+		else if(cause instanceof RejectedExecutionException)
+		{
+			// The next stage couldn't be queued up
+			return LoginResponse.SERVER_BUSY;
+		}
+		else {
+			Logger.instance().logException("Unexpected exception during login", cause);
+			return LoginResponse.BAD_DATA;
+		}
+	}
+
+	/**
+	 * Run a stage, recording the time it takes whether or not it succeeds
+	 * @param stage Which stage this is
+	 * @param body The work the stage does
+	 * @return Whatever the stage produced
+	 */
+	private static <T> T timed(LoginStage stage, Supplier<T> body)
+	{
+		long start = System.nanoTime();
+		try {
+			return body.get();
+		} finally {
+			StatTracker.instance().updateLoginTime(stage, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Obtain the ShutdownHook for the LoginPipeline. It is created along with the pipeline,
+	 * so a NPE is not a concern. Shutting down stops the login threads.
+	 */
+	@Override
+	public ShutdownHook getShutdownHook() throws NullPointerException
+	{
+		return shutdownHook;
+	}
+
+
+	/**
+	 * Thrown by a stage to end the login early, with the response that should be given
+	 */
+	private static class LoginRejectedException extends RuntimeException {
+
+		/** Generated serial ID */
+		private static final long serialVersionUID = -3140425046271379155L;
+
+		/** The response the login should end with */
+		private final LoginResponse response;
+
+		/**
+		 * @param response The response the login should end with
+		 */
+		public LoginRejectedException(LoginResponse response)
+		{
+			// No stack trace needed, this is a normal outcome
+			super(response.name(), null, false, false);
+
+			this.response = response;
+		}
+
+		/**
+		 * @return The response the login should end with
+		 */
+		public LoginResponse getResponse()
+		{
+			return response;
+		}
+
+	}
+
+}
@@ -19,6 +19,12 @@ public enum LoginResponse {
 	OKAY,
 	
 	/** Special response for okay while reconnecting */
-	RECONNECT;
+	RECONNECT,
+	
+	/** Too many logins are already in progress. Kept after the others so their ordinals stay the same */
+	SERVER_BUSY,
+	
+	/** The session could not be resumed with the token given. The client may still log in with its password */
+	RESUME_REJECTED;
 
 }
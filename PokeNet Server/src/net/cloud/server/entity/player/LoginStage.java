@@ -0,0 +1,24 @@
+package net.cloud.server.entity.player;
+
+/**
+ * The stages a login request moves through in the LoginPipeline.
+ * Mostly here so the time spent in each one can be tracked separately.
+ */
+public enum LoginStage {
+
+	/** Finding and reading the player's save data */
+	LOOKUP,
+
+	/** Checking the given password against the saved one */
+	VERIFY,
+
+	/** Restoring the rest of the player's data */
+	LOAD,
+
+	/** Back on the world thread, checking the player against who is already in the world */
+	WORLD_CHECK,
+
+	/** The whole thing, from the login request to the decision on a response */
+	TOTAL;
+
+}
@@ -11,7 +11,10 @@ public enum LoginState {
 	/** A new player - just connected */
 	CONNECTED,
 	
-	/** They have sent their username and password */
+	/** They have sent their username and password, which are being checked */
+	VALIDATING,
+	
+	/** Their username and password have been checked and are correct */
 	VERIFIED,
 	
 	/** They're logged into the game */
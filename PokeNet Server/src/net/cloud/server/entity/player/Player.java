@@ -10,10 +10,12 @@ import io.netty.buffer.ByteBuf;
 import net.cloud.server.entity.Entity;
 import net.cloud.server.entity.player.save.PlayerSaveException;
 import net.cloud.server.entity.player.save.PlayerSaveHandler;
+import net.cloud.server.game.PlayerSlotTable;
 import net.cloud.server.nio.bufferable.Bufferable;
 import net.cloud.server.nio.packet.PacketSender;
 import net.cloud.server.util.ConnectionInfo;
 import net.cloud.server.util.HashObj;
+import net.cloud.server.util.ResumeToken;
 import net.cloud.server.util.StringUtil;
 
 /**
@@ -36,6 +38,18 @@ public class Player extends Entity implements Bufferable {
 	/** This player's save handler. They should hold onto it, it may save them one day... */
 	private transient Optional<PlayerSaveHandler> saveHandler;
 	
+	/** Lets the player resume their session if they drop. Null until they're logged in, and after it's used */
+	private transient ResumeToken resumeToken;
+	
+	/** Index of the slot this player has in the world, or NO_SLOT when they aren't in it */
+	private transient int slot = PlayerSlotTable.NO_SLOT;
+	
+	/** Goes up each time the saved data changes. Changes are made on the world thread */
+	private transient volatile long dataVersion;
+	
+	/** The data version the latest finished save was made from. Equal to dataVersion when nothing needs saving */
+	private transient volatile long savedVersion;
+	
 	/** The player's username. */
 	private String username;
 	
@@ -110,6 +124,8 @@ public class Player extends Entity implements Bufferable {
 	public void setUsername(String username)
 	{
 		this.username = username;
+		
+		markDirty();
 	}
 
 	/** @return The player's password */
@@ -122,6 +138,8 @@ public class Player extends Entity implements Bufferable {
 	public void setPassword(String password)
 	{
 		this.password = new HashObj(password);
+		
+		markDirty();
 	}
 	
 	/** @return The LoginState for this player. Ie, which step of login process they are in */
@@ -171,6 +189,39 @@ public class Player extends Entity implements Bufferable {
 		this.packetSender = packetSender;
 	}
 	
+	/**
+	 * @return Index of this player's slot in the world, or PlayerSlotTable.NO_SLOT when they aren't in it. 
+	 * Unique among players in the world, but may be given to someone else once this player leaves
+	 */
+	public int getSlot()
+	{
+		return slot;
+	}
+	
+	/**
+	 * @param slot Index of this player's slot in the world, or PlayerSlotTable.NO_SLOT
+	 */
+	public void setSlot(int slot)
+	{
+		this.slot = slot;
+	}
+	
+	/**
+	 * @return The token that lets this player resume their session. May be null
+	 */
+	public ResumeToken getResumeToken()
+	{
+		return resumeToken;
+	}
+	
+	/**
+	 * @param resumeToken The token that lets this player resume their session, or null for none
+	 */
+	public void setResumeToken(ResumeToken resumeToken)
+	{
+		this.resumeToken = resumeToken;
+	}
+	
 	/**
 	 * @return When the player was last logged in. null if they never have been.
 	 */
@@ -187,12 +238,52 @@ public class Player extends Entity implements Bufferable {
 	{
 		// We pull the address from the channel we're connected with - known to have an InetSocketAddress
 		this.lastLogin = new ConnectionInfo(getPacketSender().channel().remoteAddress().getAddress().getHostAddress());
+		
+		markDirty();
 	}
 	
 	/**
-	 * Save this player's data to file. Serializing data is done on the calling thread, writing to the file 
-	 * is done on the File Server. 
-	 * @throws PlayerSaveException If the data could not be saved. Not thrown if file could not be written. 
+	 * Note that some of the saved data has changed, so the player needs saving again. 
+	 * Anything that changes a non-transient field should call this, on the world thread.
+	 */
+	public void markDirty()
+	{
+		dataVersion = dataVersion + 1;
+	}
+	
+	/**
+	 * @return True if the data has changed since the version the latest finished save was made from
+	 */
+	public boolean isDirty()
+	{
+		return dataVersion != savedVersion;
+	}
+	
+	/**
+	 * @return The current version of the saved data. Taken just before serializing, to hand back to <code>markSaved</code>
+	 */
+	public long getDataVersion()
+	{
+		return dataVersion;
+	}
+	
+	/**
+	 * Note that a save made from the given data version has finished. An older save finishing late 
+	 * won't make the player look cleaner than they are.
+	 * @param version The data version the save was made from
+	 */
+	public void markSaved(long version)
+	{
+		if(version > savedVersion)
+		{
+			savedVersion = version;
+		}
+	}
+	
+	/**
+	 * Save this player's data to the PlayerStore. Serializing data is done on the calling thread, writing it out 
+	 * is done on the store's thread. 
+	 * @throws PlayerSaveException If the data could not be saved. Not thrown if it could not be written. 
 	 */
 	public void saveToFile() throws PlayerSaveException
 	{
@@ -231,8 +322,8 @@ public class Player extends Entity implements Bufferable {
 	@Override
 	public void restore(ByteBuf buffer)
 	{
-		// Username and password
-		username = StringUtil.getFromBuffer(buffer);
+		// Username and password. Only restored once the password has checked out, so it's safe to intern
+		username = StringUtil.getInternedFromBuffer(buffer);
 		password = HashObj.createFrom(buffer);
 		
 		// Read last login flag to check if null, restore it if we have it
@@ -256,10 +347,26 @@ public class Player extends Entity implements Bufferable {
 	 */
 	public void restoreUserAndPass(RandomAccessFile raf) throws IOException
 	{
-		// Use variants that operate directly on the RAF
+		// Use variants that operate directly on the RAF. Not interned until the password has been checked
 		username = StringUtil.getFromRAF(raf);
 		
 		password = HashObj.createFrom(raf);
 	}
+	
+	/**
+	 * Restore only the username and password from a buffer holding the player's save data. 
+	 * The buffer's reader index is left alone, so the same buffer can be used to fully restore the player afterwards.
+	 * After this method returns, only the username and password fields will have been set.
+	 * @param buffer The save data, from the beginning
+	 */
+	public void restoreUserAndPass(ByteBuf buffer)
+	{
+		// Work on a duplicate so that the indices of the original are not moved
+		ByteBuf data = buffer.duplicate();
+		
+		// Not interned until the password has been checked, and the player is fully restored
+		username = StringUtil.getFromBuffer(data);
+		password = HashObj.createFrom(data);
+	}
 
 }
@@ -1,7 +1,7 @@
 package net.cloud.server.entity.player;
 
-import net.cloud.server.event.task.voidtasks.CancellableVoidTask;
 import net.cloud.server.nio.packet.PacketHandler;
+import io.netty.util.Timeout;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.GenericFutureListener;
 
@@ -13,12 +13,15 @@ public class PlayerChannelConfig {
 	/** Channel listener for when the channel is closed, to handle disconnects */
 	private GenericFutureListener<Future<? super Void>> dcListener;
 	
-	/** Task to time out when the player fails to move past connected */
-	private CancellableVoidTask connectTimeoutTask;
+	/** Times out the login state the player is in now, if they don't move past it. Null when there isn't one */
+	private Timeout loginTimeout;
 	
 	/** PacketHandler in the channel pipeline */
 	private PacketHandler packetHandler;
 	
+	/** Whether a session resume has been tried on this connection. Only one try is allowed */
+	private boolean resumeAttempted;
+	
 	/**
 	 * Default constructor leaves all fields null
 	 */
@@ -41,19 +44,34 @@ public class PlayerChannelConfig {
 	}
 
 	/**
-	 * @return Task to time out when the player fails to move past connected
+	 * @return Times out the login state the player is in now, if they don't move past it. May be null
+	 */
+	public Timeout getLoginTimeout()
+	{
+		return loginTimeout;
+	}
+
+	/**
+	 * Set the timeout for the login state the player is in now. Only one is kept at a time, 
+	 * so the one for the previous state is cancelled.
+	 * @param loginTimeout Times out the login state the player is in now, if they don't move past it
 	 */
-	public CancellableVoidTask getConnectTimeoutTask()
+	public void setLoginTimeout(Timeout loginTimeout)
 	{
-		return connectTimeoutTask;
+		cancelLoginTimeout();
+		this.loginTimeout = loginTimeout;
 	}
 
 	/**
-	 * @param connectTimeoutTask Task to time out when the player fails to move past connected
+	 * Cancel the login timeout, if there is one. The player has moved on, so it would do nothing anyways
 	 */
-	public void setConnectTimeoutTask(CancellableVoidTask connectTimeoutTask)
+	public void cancelLoginTimeout()
 	{
-		this.connectTimeoutTask = connectTimeoutTask;
+		if(loginTimeout != null)
+		{
+			loginTimeout.cancel();
+			loginTimeout = null;
+		}
 	}
 
 	/**
@@ -71,5 +89,21 @@ public class PlayerChannelConfig {
 	{
 		this.packetHandler = packetHandler;
 	}
+
+	/**
+	 * @return Whether a session resume has been tried on this connection
+	 */
+	public boolean isResumeAttempted()
+	{
+		return resumeAttempted;
+	}
+
+	/**
+	 * @param resumeAttempted Whether a session resume has been tried on this connection
+	 */
+	public void setResumeAttempted(boolean resumeAttempted)
+	{
+		this.resumeAttempted = resumeAttempted;
+	}
 	
 }
@@ -3,8 +3,7 @@ package net.cloud.server.entity.player;
 import net.cloud.server.entity.player.LoginState;
 import net.cloud.server.entity.player.Player;
 import net.cloud.server.entity.player.save.PlayerSaveException;
-import net.cloud.server.file.FileServer;
-import net.cloud.server.file.address.FileAddressBuilder;
+import net.cloud.server.entity.player.save.PlayerStore;
 import net.cloud.server.logging.Logger;
 import net.cloud.server.nio.packet.PacketSender;
 import net.cloud.server.util.StringUtil;
@@ -83,8 +82,8 @@ public class PlayerFactory {
 	 */
 	private static boolean accountExists(String username)
 	{
-		// Not per say a formal request to the file server. But we maintain going through its file space. 
-		return FileServer.instance().fileExists(FileAddressBuilder.createPlayerDataAddress(username));
+		// The store knows every account that has ever been saved
+		return PlayerStore.instance().contains(username);
 	}
 	
 	/**
@@ -1,19 +1,13 @@
 package net.cloud.server.entity.player.save;
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import net.cloud.server.entity.player.Player;
-import net.cloud.server.file.FileRequestException;
-import net.cloud.server.file.FileServer;
-import net.cloud.server.file.address.FileAddressBuilder;
-import net.cloud.server.file.request.RandomAccessFileLoadRequest;
 import net.cloud.server.nio.bufferable.BufferableException;
 
 /**
- * A class to handle loading a player's data from file storage. Handles the extra complexity of loading from a file, 
+ * A class to handle loading a player's data from the PlayerStore. Handles the extra complexity of loading from storage, 
  * as compared to just deserializing. 
  */
 public class PlayerLoadHandler {
@@ -32,7 +26,7 @@ public class PlayerLoadHandler {
 	}
 	
 	/**
-	 * Restore a player's data. This is not for loading from a file. Instead, it's an optional route to 
+	 * Restore a player's data. This is not for loading from storage. Instead, it's an optional route to 
 	 * <code>player.restore(buffer)</code>. Of course, rather than create this just for that, just call the 
 	 * method in player. 
 	 * @param buffer The buffer the data is in
@@ -44,138 +38,85 @@ public class PlayerLoadHandler {
 	}
 	
 	/**
-	 * Load a player's data from the save file. This does not validate the player's credentials. Instead, it will 
+	 * Load a player's data from the store. This does not validate the player's credentials. Instead, it will 
 	 * take an existing player object and have the rest of the information restored to the save state. This only needs 
 	 * to be done once near the end of login. It will also tell the player that it has been loaded, so that it will 
 	 * be ready for saving. <br>
 	 * All of the work is done on the calling thread, so this does not return until the player has been completely 
 	 * and successfully loaded. If something goes wrong, an exception <b>will</b> be thrown. 
-	 * @throws PlayerLoadException If the player data could not be restored for some reason
+	 * @throws PlayerLoadException If the player data could not be read or restored for some reason
 	 */
 	public void loadFromFile() throws PlayerLoadException
 	{
-		// Try-with-resources to the File Server. Neat. So the all important file will be closed when we're done
-		try (RandomAccessFile dataFile = getSaveFile(player.getUsername())) 
-		{
-			loadFromFile(dataFile);
-		} 
-		catch(IOException e) {
-			// Only occurs when the file could not be closed. So... re-throw I guess. It'd probably become an issue going forward.
-			throw new PlayerLoadException(player, "Player save file could not be closed. Unsafe to proceed.", e);
+		try {
+			loadFrom(readSaveData(player.getUsername()));
+		} catch(IOException e) {
+			// There was nothing saved for them. Nothing to be done but re-throw
+			throw new PlayerLoadException(player, "Player has no save data.", e);
 		}
 	}
 	
 	/**
-	 * Load a player's data from the provided save file. This does not validate the player's credentials. Instead, it will 
-	 * take an existing player object and have the rest of the information restored to the save state. This only needs 
-	 * to be done once near the end of login. It will also tell the player that it has been loaded, so that it will 
-	 * be ready for saving. <br>
-	 * All of the work is done on the calling thread, so this does not return until the player has been completely 
-	 * and successfully loaded. If something goes wrong, an exception <b>will</b> be thrown. 
-	 * @param dataFile An open file to read player save data from
-	 * @throws PlayerLoadException If the player data could not be restored for some reason
+	 * The player this handler is created for will have its username and password set from the save data 
+	 * for the player with the given username. Only the username and password are set. 
+	 * If there is no save data matching the username, then an IO exception is thrown immediately - 
+	 * nothing is read.
+	 * Regardless of the exception, assume it is unsafe to proceed. It is unknown whether the username and/or/neither 
+	 * password have actually been set.
+	 * @param username Username of the player
+	 * @throws PlayerLoadException Save data could not be read
+	 * @throws IOException Save data did not exist
 	 */
-	public void loadFromFile(RandomAccessFile dataFile) throws PlayerLoadException
+	public void loadUserAndPass(String username) throws PlayerLoadException, IOException
 	{
-		// Read in the data
-		byte[] data = getFileBytes(player, dataFile);
-		
-		// Wrap the array into a ByteBuf
-		ByteBuf nettyBuffer = Unpooled.wrappedBuffer(data);
-
-		// Have the player object go through deserialization - not on a different thread
-		restorePlayerData(nettyBuffer);
-
-		// At the end of all the loading, tell the player they have been restored and are now ready to save data
-		player.finishedLoading();
+		loadUserAndPass(readSaveData(username));
 	}
 	
 	/**
-	 * The player this handler is created for will have its username and password set from the data in the data 
-	 * file for the player with the given username. Only the username and password are set. 
-	 * If there is no such player save matching the username, then an IO exception is thrown immediately - 
-	 * no file is opened and nothing is read.
-	 * Regardless of the exception, assume it is unsafe to proceed. It is unknown whether the username and/or/neither 
-	 * password have actually been set.
+	 * Read all of the save data for the given username into a buffer. The store is read only once, 
+	 * so the same buffer can be used to check the credentials and then load the player. <br>
+	 * This waits on the disk, so it should not be called from a netty thread or the world thread.
 	 * @param username Username of the player
-	 * @throws PlayerLoadException Save file could not be found
-	 * @throws IOException Save file did not exist, could not be read from, or could not be closed
+	 * @return A buffer containing all of the player's save data
+	 * @throws PlayerLoadException If the save data could not be read
+	 * @throws IOException Save data did not exist
 	 */
-	public void loadUserAndPass(String username) throws PlayerLoadException, IOException
+	public ByteBuf readSaveData(String username) throws PlayerLoadException, IOException
 	{
-		// Check to see if there is save data for the requested player
-		if(!saveFileExists(username))
+		// Don't bother if it isn't there
+		if(!PlayerStore.instance().contains(username))
 		{
-			// Since it does not exist, we don't want to proceed. Rather than return false, make it easy on the caller
-			throw new IOException("No player save file for: " + username);
+			throw new IOException("No player save data for: " + username);
 		}
 		
-		// Try-with-resources to the File Server. Neat. So the all important file will be closed when we're done
-		try (RandomAccessFile dataFile = getSaveFile(username)) 
-		{
-			loadUserAndPass(dataFile);
+		try {
+			return PlayerStore.instance().read(username);
+		} catch (IOException e) {
+			throw new PlayerLoadException(player, "Could not read player's save data", e);
 		}
 	}
 	
 	/**
-	 * The player this handler is created for will have its username and password set from the data in the file. 
-	 * This assumes the file has just been opened and the pointer is at the beginning.
-	 * @param dataFile The player data
-	 * @throws IOException If the file could not be read
+	 * The player this handler is created for will have its username and password set from the save data in the buffer. 
+	 * The buffer is not modified, so it can be passed along to <code>loadFrom(buffer)</code> afterwards.
+	 * @param data The player's save data, as from <code>readSaveData(username)</code>
 	 */
-	public void loadUserAndPass(RandomAccessFile dataFile) throws IOException
+	public void loadUserAndPass(ByteBuf data)
 	{
-		// We'll have the player only load its username and password
-		player.restoreUserAndPass(dataFile);
+		player.restoreUserAndPass(data);
 	}
 	
 	/**
-	 * Check to see if there is a save file matching the given username
-	 * @param username The player data to look for
-	 * @return True if there is a save file
-	 */
-	private boolean saveFileExists(String username)
-	{
-		return FileServer.instance().fileExists(FileAddressBuilder.createPlayerDataAddress(username));
-	}
-	
-	/**
-	 * Obtain a RAF from the File Server for the player's save data. Waits until the request has been served. 
-	 * @param username Username of the player
-	 * @return A RAF from the File Server for the player's save data
-	 * @throws PlayerLoadException If the request could not be served
-	 */
-	private RandomAccessFile getSaveFile(String username) throws PlayerLoadException
-	{
-		// Get a RAF to the save data
-		RandomAccessFileLoadRequest req = new RandomAccessFileLoadRequest(FileAddressBuilder.createPlayerDataAddress(username));
-		try {
-			return FileServer.instance().submitAndWaitForDescriptor(req);
-		} catch (FileRequestException e) {
-			// Re-throw. Code below this should be able to safely assume file is not null
-			throw new PlayerLoadException(player, "Could not obtain player's save data", e);
-		}
-	}
-	
-	/**
-	 * Obtain a byte array with the contents of the file
-	 * @param player The player whose file we're looking into
-	 * @param dataFile The file to read the player data from
-	 * @return A byte array containing the data from the file
-	 * @throws PlayerLoadException If the file could not be read
+	 * Load a player's data from save data that has already been read in. Like <code>loadFromFile()</code>, 
+	 * the player is told it has been loaded once this is done, so it will be ready for saving.
+	 * @param data The player's save data, as from <code>readSaveData(username)</code>
+	 * @throws PlayerLoadException If the player data could not be restored for some reason
 	 */
-	private byte[] getFileBytes(Player player, RandomAccessFile dataFile) throws PlayerLoadException
+	public void loadFrom(ByteBuf data) throws PlayerLoadException
 	{
-		// Read all of the bytes into an array
-		try {
-			byte[] data = new byte[(int) dataFile.length()];
-			
-			dataFile.read(data);
-			
-			return data;
-		} catch(IOException e) {
-			throw new PlayerLoadException(player, "Could not read data file", e);
-		}
+		restorePlayerData(data);
+		
+		player.finishedLoading();
 	}
 	
 	/**
@@ -3,26 +3,95 @@ package net.cloud.server.entity.player.save;
 import net.cloud.server.entity.player.LoginState;
 import net.cloud.server.entity.player.Player;
 import net.cloud.server.event.task.voidtasks.CancellableVoidTask;
+import net.cloud.server.game.GameEngine;
 import net.cloud.server.game.World;
 import net.cloud.server.logging.Logger;
+import net.cloud.server.tracking.StatTracker;
 
 /**
  * A task which is designed to be run periodically for the lifetime of the server. 
- * Each time the task executes, all of the players currently logged into the server 
- * will have their data saved. If any of them cannot be successfully saved, the task 
- * will continue past and report the error. 
+ * Players are split into buckets by their slot in the world, and each time the task executes,
+ * the logged in players in the next bucket have their data saved. So with the task running once per bucket
+ * each save interval, everyone is saved once an interval without all of the saves landing at once.
+ * Players whose data hasn't changed since their last save are skipped. If any of them cannot be successfully
+ * saved, the task will continue past and report the error. <br>
+ * The task is scheduled on the TaskEngine, but the saving itself is handed to the world thread. Player data only
+ * changes there, so each player is serialized along with the data version it actually matches.
  */
 public class PlayerSaveTask extends CancellableVoidTask {
 
+	/** How many buckets players are split into */
+	private final int buckets;
+	
+	/** The bucket that will be saved on the next execution */
+	private int nextBucket;
+	
+	/** Saves started during the current execution. Only touched on the world thread */
+	private int written;
+	
+	/** Players passed over during the current execution, for having nothing new to save. Only touched on the world thread */
+	private int skipped;
+	
+	/**
+	 * Create a task which saves one bucket of players each time it executes
+	 * @param buckets How many buckets to split players into. 1 saves everyone every time
+	 * @throws IllegalArgumentException If there isn't at least one bucket
+	 */
+	public PlayerSaveTask(int buckets) throws IllegalArgumentException
+	{
+		if(buckets < 1)
+		{
+			throw new IllegalArgumentException("Need at least one save bucket, not " + buckets);
+		}
+		
+		this.buckets = buckets;
+		this.nextBucket = 0;
+	}
+	
 	/**
-	 * Go through all of the players currently logged in and try to save their data. 
-	 * If the save fails, report the issue and carry on. 
+	 * Move on to the next bucket, and have the world thread save it
 	 */
 	@Override
 	public void execute()
 	{
+		int bucket = nextBucket;
+		nextBucket = (bucket + 1) % buckets;
+		
+		GameEngine.instance().submit(() -> saveBucket(bucket));
+	}
+	
+	/**
+	 * Go through the players currently logged in whose turn it is, and try to save their data.
+	 * If the save fails, report the issue and carry on. Must be called on the world thread
+	 * @param bucket The bucket to save
+	 */
+	private void saveBucket(int bucket)
+	{
+		written = 0;
+		skipped = 0;
+		
 		// The list takes care of conditional complexities. We just tell it what to do.
-		World.instance().getPlayerMap().forAllLoggedIn(this::attemptSave);
+		World.instance().getPlayerMap().forAllLoggedIn((p) ->
+		{
+			if(bucketOf(p.getSlot(), buckets) == bucket)
+			{
+				attemptSave(p);
+			}
+		});
+		
+		StatTracker.instance().updatePlayerSaves(written, skipped);
+	}
+	
+	/**
+	 * Work out which bucket a player is saved with. Slots are handed out from the front,
+	 * so going by slot keeps the buckets about the same size.
+	 * @param slot The player's slot in the world
+	 * @param buckets How many buckets there are
+	 * @return The bucket, from 0 up to but not including buckets
+	 */
+	public static int bucketOf(int slot, int buckets)
+	{
+		return Math.floorMod(slot, buckets);
 	}
 	
 	/**
@@ -44,7 +113,15 @@ public class PlayerSaveTask extends CancellableVoidTask {
 				return;
 			}
 			
+			// Nothing has changed since the last save, so it would write the same thing over again
+			if(!p.isDirty())
+			{
+				++skipped;
+				return;
+			}
+			
 			p.saveToFile();
+			++written;
 		} catch (PlayerSaveException e) {
 			// Didn't work so report the issue. End of the exception chain
 			Logger.instance().logException("Task could not save player data", e);
@@ -0,0 +1,978 @@
+package net.cloud.server.entity.player.save;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.cloud.server.ConfigConstants;
+import net.cloud.server.event.shutdown.ShutdownHook;
+import net.cloud.server.event.shutdown.ShutdownService;
+import net.cloud.server.event.shutdown.hooks.PlayerStoreShutdownHook;
+import net.cloud.server.file.address.AddressConstants;
+import net.cloud.server.logging.Logger;
+
+/**
+ * Where every player's save data is kept. Rather than a file for each player that's rewritten in full on every save,
+ * saves are appended to a log. The log is split into segments of about the same size, and an index in memory says
+ * where the latest record for each username is. So a save is one append to the end of the log, and a load is one read. <br>
+ * Each save leaves the one before it behind as garbage. Once enough of a full segment is garbage, the records in it
+ * that are still current are copied to the end of the log, and the segment is deleted. <br>
+ * The index isn't saved anywhere. On start up, the segments are read through in order to build it back up. Each
+ * record has a checksum, so one that was cut short by a crash is noticed, and the log is cut off before it.
+ * Until that has finished once, the player files left over from before the store existed are brought in. <br>
+ * A durable store only counts a save as done once it has been forced to disk. Forcing is slow, so rather than force
+ * after every save, the first save to need it schedules a sync a short delay later, and every save appended by then
+ * is done when that one sync is. Since a record is either all there with a good checksum or dropped, a save made
+ * during a crash leaves the one before it as the latest, the same as writing a temp file and renaming it over. <br>
+ * Appends, syncs and compaction all happen on the one store thread, so they never race. Reads may happen on any thread.
+ */
+public class PlayerStore implements ShutdownService {
+
+	/** Bytes before a record's body. The body length, then the checksum of the body */
+	private static final int HEADER_LENGTH = 8;
+
+	/** Bytes before the username in a record's body, giving its length */
+	private static final int NAME_LENGTH_LENGTH = 2;
+
+	/** Largest body a record may have. A header claiming more is taken to be garbage */
+	private static final int MAX_BODY_LENGTH = 1 << 20;
+
+	/** Longest username a record can hold, in UTF-8 bytes. Its length has to fit in NAME_LENGTH_LENGTH */
+	private static final int MAX_NAME_LENGTH = 0xFFFF;
+
+	/** Left in the folder once the old player files have all been brought in */
+	private static final String IMPORTED_MARKER = "imported";
+
+	/** Start of a segment's file name. The segment id follows */
+	private static final String SEGMENT_PREFIX = "segment-";
+
+	/** End of a segment's file name */
+	private static final String SEGMENT_SUFFIX = ".log";
+
+	/** How long shutting down will wait on saves that are still queued (ms) */
+	private static final long CLOSE_WAIT = 10000;
+
+	/** Singleton instance */
+	private static volatile PlayerStore instance;
+
+	/** The folder the segments are in */
+	private final Path directory;
+
+	/** Once a segment reaches this many bytes, appends move on to a new one */
+	private final long segmentSize;
+
+	/** Latest record for each lowercase username. Only changed on the store thread */
+	private final ConcurrentHashMap<String, Location> index;
+
+	/** Every segment, by id. Only touched on the store thread */
+	private final TreeMap<Integer, Segment> segments;
+
+	/** The segment being appended to */
+	private Segment active;
+
+	/** Whether a save is only done once it has been forced to disk */
+	private final boolean durable;
+
+	/** How long a sync waits for more saves to join it before forcing (ms). The most a sync adds to a save */
+	private final long syncDelay;
+
+	/** Saves appended but not yet forced to disk, waiting to hear they're done. Guarded by its own lock, since closing may give up on the store thread */
+	private final List<CompletableFuture<Void>> unsynced;
+
+	/** Segments written to since they were last forced to disk. Store thread only */
+	private final Set<Segment> dirtySegments;
+
+	/** The sync that's coming, if there is one, so saves join it rather than schedule another. Store thread only */
+	private ScheduledFuture<?> scheduledSync;
+
+	/** Set once the store starts closing. Nothing more is scheduled, as closing syncs whatever is left */
+	private volatile boolean closing;
+
+	/** Set just before the segments are closed. Saves the store thread gets to after that fail. Set under unsynced's lock */
+	private volatile boolean closed;
+
+	/** The one thread appends, syncs and compaction happen on */
+	private final ScheduledExecutorService storeExecutor;
+
+	/** The hook to finish writing and close the store */
+	private ShutdownHook shutdownHook;
+
+	/**
+	 * Open a store which isn't durable. Saves are done once they're written, and left to the OS to put on disk.
+	 * @param directory The folder the segments are in. Created if it doesn't exist
+	 * @param segmentSize Bytes a segment may reach before a new one is started
+	 * @throws IOException If the segments could not be opened or read
+	 */
+	public PlayerStore(Path directory, long segmentSize) throws IOException
+	{
+		this(directory, segmentSize, false, 0);
+	}
+
+	/**
+	 * Open the store in the given folder, reading whatever segments are already there to build the index.
+	 * No compaction is scheduled - that's left to whoever opens it.
+	 * @param directory The folder the segments are in. Created if it doesn't exist
+	 * @param segmentSize Bytes a segment may reach before a new one is started
+	 * @param durable Whether a save is only done once it has been forced to disk
+	 * @param syncDelay How long a sync waits for more saves to join it (ms). Unused if not durable
+	 * @throws IOException If the segments could not be opened or read
+	 */
+	public PlayerStore(Path directory, long segmentSize, boolean durable, long syncDelay) throws IOException
+	{
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.durable = durable;
+		this.syncDelay = syncDelay;
+		this.index = new ConcurrentHashMap<>();
+		this.segments = new TreeMap<>();
+		this.unsynced = new ArrayList<>();
+		this.dirtySegments = new HashSet<>();
+
+		Files.createDirectories(directory);
+		recover();
+
+		// A cancelled sync is taken out of the queue, so it won't hold up closing until its delay is up
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, (runnable) -> new Thread(runnable, "Player Store Thread"));
+		executor.setRemoveOnCancelPolicy(true);
+		this.storeExecutor = executor;
+		this.shutdownHook = new PlayerStoreShutdownHook(this);
+	}
+
+	/**
+	 * Obtain a reference to the PlayerStore. The first call opens it, which reads through the whole log,
+	 * so it's best done on start up. Old player files are brought in if that hasn't finished before, and compaction
+	 * is scheduled to run periodically.
+	 * @return The singleton PlayerStore instance
+	 * @throws UncheckedIOException If the store could not be opened. There's no going on without it
+	 */
+	public static PlayerStore instance() throws UncheckedIOException
+	{
+		if(instance == null)
+		{
+			synchronized(PlayerStore.class)
+			{
+				if(instance == null)
+				{
+					try {
+						PlayerStore store = new PlayerStore(Paths.get(AddressConstants.SPACE_PLAYER_STORE), ConfigConstants.PLAYER_STORE_SEGMENT_SIZE,
+								ConfigConstants.PLAYER_STORE_DURABLE, ConfigConstants.PLAYER_STORE_SYNC_DELAY);
+
+						if(!store.imported())
+						{
+							store.importFiles(Paths.get(AddressConstants.SPACE_PLAYER_DATA));
+						}
+
+						store.scheduleCompaction(ConfigConstants.PLAYER_STORE_COMPACT_INTERVAL, ConfigConstants.PLAYER_STORE_COMPACT_THRESHOLD);
+
+						instance = store;
+					} catch (IOException e) {
+						throw new UncheckedIOException("Could not open the player store", e);
+					}
+				}
+			}
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Save a player's data, replacing whatever was saved for them before. The record is put together on the calling
+	 * thread, and appended on the store thread. The buffer is read from but not modified, and may be let go of
+	 * once this returns.
+	 * @param username The player's username
+	 * @param data The player's serialized data
+	 * @return A future which completes once the record is in the log and the index points to it, and if the store
+	 * is durable, once it has been forced to disk. Fails straight away if the username or data is too big for a record
+	 */
+	public CompletableFuture<Void> save(String username, ByteBuf data)
+	{
+		CompletableFuture<Void> done = new CompletableFuture<>();
+
+		// Recovery stops at a record it can't make sense of, so one like this would lose every save after it
+		ByteBuffer record;
+		try {
+			record = encode(username, data);
+		} catch (IOException e) {
+			done.completeExceptionally(e);
+			return done;
+		}
+		String key = key(username);
+
+		try {
+			storeExecutor.execute(() ->
+			{
+				// Closing gave up waiting on the queue, and the segments are gone
+				if(closed)
+				{
+					done.completeExceptionally(new ClosedChannelException());
+					return;
+				}
+
+				try {
+					append(key, record);
+				} catch (IOException e) {
+					done.completeExceptionally(e);
+					return;
+				}
+
+				if(durable)
+				{
+					awaitSync(done);
+				}
+				else {
+					done.complete(null);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			// The store has been closed
+			done.completeExceptionally(e);
+		}
+
+		return done;
+	}
+
+	/**
+	 * Read the latest saved data for a player. Done on the calling thread. Waits on the disk,
+	 * so it should not be called from a netty thread or the world thread.
+	 * @param username The player's username. Case doesn't matter
+	 * @return A buffer holding only the player's data
+	 * @throws IOException If there is no data for the player, or it could not be read
+	 */
+	public ByteBuf read(String username) throws IOException
+	{
+		String key = key(username);
+
+		Location location = index.get(key);
+		while(true)
+		{
+			if(location == null)
+			{
+				throw new IOException("No saved data for: " + username);
+			}
+
+			try {
+				return location.read();
+			} catch (ClosedChannelException e) {
+				// Compaction moved the record and deleted its segment while we were on the way. Try where it went
+				Location moved = index.get(key);
+				if(moved == location)
+				{
+					throw e;
+				}
+				location = moved;
+			}
+		}
+	}
+
+	/**
+	 * @param username A player's username. Case doesn't matter
+	 * @return True if there is saved data for the player
+	 */
+	public boolean contains(String username)
+	{
+		return index.containsKey(key(username));
+	}
+
+	/**
+	 * @return How many players have saved data
+	 */
+	public int size()
+	{
+		return index.size();
+	}
+
+	/**
+	 * @return How many segments make up the log. Only accurate once queued appends have finished
+	 */
+	public int segmentCount()
+	{
+		return segments.size();
+	}
+
+	/**
+	 * @return True once importFiles(Path) has finished, in this store's folder, at any point
+	 */
+	public boolean imported()
+	{
+		return Files.exists(directory.resolve(IMPORTED_MARKER));
+	}
+
+	/**
+	 * Bring in player files from the one-file-per-player days. Each file's name is the username.
+	 * Files are only read, never changed or deleted. Waits until they've all been appended and forced to disk,
+	 * then leaves a marker in the store's folder, so imported() knows it doesn't need doing again. <br>
+	 * Players already in the store are skipped. Either an import that didn't finish brought them in,
+	 * or they have saved since, and either way the store's copy is at least as new as the file. 
+	 * Files too big for a record are logged and left out.
+	 * @param fileDirectory The folder the player files are in. Nothing is brought in if it doesn't exist
+	 * @return How many files were brought in
+	 * @throws IOException If the folder or a file could not be read, or the records not appended
+	 */
+	public int importFiles(Path fileDirectory) throws IOException
+	{
+		List<CompletableFuture<Void>> saves = new ArrayList<>();
+		if(Files.isDirectory(fileDirectory))
+		{
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(fileDirectory, "*." + AddressConstants.EXT_P_DATA))
+			{
+				for(Path file : files)
+				{
+					String name = file.getFileName().toString();
+					String username = name.substring(0, name.length() - AddressConstants.EXT_P_DATA.length() - 1);
+
+					if(contains(username))
+					{
+						continue;
+					}
+
+					// One too big for a record never will fit. Better to leave it out than hold up every start up
+					CompletableFuture<Void> saved = save(username, Unpooled.wrappedBuffer(Files.readAllBytes(file)));
+					if(saved.isCompletedExceptionally() && !closing)
+					{
+						Logger.instance().logMessage("[NOTICE] Player file " + name + " is too big for the player store, and was left out");
+						continue;
+					}
+					saves.add(saved);
+				}
+			}
+		}
+
+		try {
+			CompletableFuture.allOf(saves.toArray(new CompletableFuture<?>[saves.size()])).get();
+
+			// The marker can't be on disk before what it vouches for, durable or not
+			CompletableFuture.runAsync(() ->
+			{
+				try {
+					forceSegments();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}, storeExecutor).get();
+		} catch (InterruptedException | ExecutionException | RejectedExecutionException e) {
+			throw new IOException("Could not bring player files into the store", e);
+		}
+
+		if(!imported())
+		{
+			Files.createFile(directory.resolve(IMPORTED_MARKER));
+			syncDirectory();
+		}
+
+		Logger.instance().logMessage("Brought " + saves.size() + " player files into the player store");
+		return saves.size();
+	}
+
+	/**
+	 * Have compaction run periodically on the store thread
+	 * @param interval Time between runs (ms)
+	 * @param threshold A full segment is compacted once no more than this fraction of it is current
+	 */
+	public void scheduleCompaction(long interval, double threshold)
+	{
+		storeExecutor.scheduleWithFixedDelay(() ->
+		{
+			try {
+				compactSegments(threshold);
+			} catch (IOException e) {
+				Logger.instance().logException("Player store compaction failed", e);
+			}
+		}, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Run compaction once, on the store thread, after whatever appends are already queued
+	 * @param threshold A full segment is compacted once no more than this fraction of it is current
+	 * @return A future which completes with how many segments were compacted away
+	 */
+	public CompletableFuture<Integer> compact(double threshold)
+	{
+		return CompletableFuture.supplyAsync(() ->
+		{
+			try {
+				return compactSegments(threshold);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}, storeExecutor);
+	}
+
+	/**
+	 * Stop taking saves, wait for the queued ones to be appended, force everything to disk, then close every segment.
+	 * Compaction that hasn't started yet is dropped. If the queue takes too long, or this thread is interrupted,
+	 * saves that haven't been forced yet fail rather than wait on a sync that won't come.
+	 * @throws IOException If a segment could not be closed
+	 */
+	public void close() throws IOException
+	{
+		closing = true;
+
+		try {
+			// Saves already waiting on a sync get it now, rather than once the delay is up
+			storeExecutor.execute(this::sync);
+		} catch (RejectedExecutionException e) {
+			// Already closed
+		}
+
+		storeExecutor.shutdown();
+
+		try {
+			if(storeExecutor.awaitTermination(CLOSE_WAIT, TimeUnit.MILLISECONDS))
+			{
+				// The store thread is gone, so this thread can take over. Saves still waiting on a sync get it now
+				sync();
+			}
+			else {
+				Logger.instance().logMessage("[NOTICE] Player store closed with saves still queued");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		// Nothing left waiting on a sync if there was one. Otherwise, whatever is won't get one now
+		failUnsynced(new ClosedChannelException());
+
+		for(Segment segment : segments.values())
+		{
+			segment.channel.close();
+		}
+	}
+
+	/**
+	 * Obtain the ShutdownHook for the PlayerStore. It is created along with the store,
+	 * so a NPE is not a concern. Shutting down writes out queued saves and closes the log.
+	 */
+	@Override
+	public ShutdownHook getShutdownHook() throws NullPointerException
+	{
+		return shutdownHook;
+	}
+
+	/**
+	 * Put a record on the end of the log, and point the index at it. Store thread only
+	 * @param key Lowercase username
+	 * @param record The whole record, ready to write
+	 * @throws IOException If the record could not be written
+	 */
+	private void append(String key, ByteBuffer record) throws IOException
+	{
+		int length = record.remaining();
+		int dataOffset = HEADER_LENGTH + NAME_LENGTH_LENGTH + (record.getShort(record.position() + HEADER_LENGTH) & 0xFFFF);
+
+		// Move on to a fresh segment rather than go over. A record bigger than a whole segment gets one to itself
+		if(active.size > 0 && active.size + length > segmentSize)
+		{
+			active = openSegment(active.id + 1);
+		}
+
+		long position = active.size;
+		writeFully(active.channel, record, position);
+		active.size += length;
+		dirtySegments.add(active);
+
+		point(key, new Location(active, position, length, dataOffset));
+	}
+
+	/**
+	 * Have a save wait for the next sync, scheduling one if there isn't one coming. Store thread only
+	 * @param done The save's future, completed once the sync is
+	 */
+	private void awaitSync(CompletableFuture<Void> done)
+	{
+		boolean closedAlready;
+		synchronized(unsynced)
+		{
+			closedAlready = closed;
+			if(!closedAlready)
+			{
+				unsynced.add(done);
+			}
+		}
+
+		// Closed while it was being appended. There won't be another sync
+		if(closedAlready)
+		{
+			done.completeExceptionally(new ClosedChannelException());
+			return;
+		}
+
+		// Once closing, the store syncs after the store thread is done, which covers this save
+		if(scheduledSync == null && !closing)
+		{
+			try {
+				scheduledSync = storeExecutor.schedule(this::sync, syncDelay, TimeUnit.MILLISECONDS);
+			} catch (RejectedExecutionException e) {
+				// Closed in the meantime. Same as above
+			}
+		}
+	}
+
+	/**
+	 * Force every segment written to since the last sync, then tell the saves waiting on it they're done.
+	 * Store thread only, or once it has stopped
+	 */
+	private void sync()
+	{
+		// This covers everything the scheduled one would have, whether or not this is it
+		if(scheduledSync != null)
+		{
+			scheduledSync.cancel(false);
+			scheduledSync = null;
+		}
+
+		List<CompletableFuture<Void>> waiting;
+		synchronized(unsynced)
+		{
+			waiting = new ArrayList<>(unsynced);
+			unsynced.clear();
+		}
+
+		try {
+			forceSegments();
+		} catch (IOException e) {
+			waiting.forEach((done) -> done.completeExceptionally(e));
+			return;
+		}
+
+		waiting.forEach((done) -> done.complete(null));
+	}
+
+	/**
+	 * Mark the store closed, and fail every save still waiting on a sync. Any thread
+	 * @param cause Why they failed
+	 */
+	private void failUnsynced(IOException cause)
+	{
+		List<CompletableFuture<Void>> waiting;
+		synchronized(unsynced)
+		{
+			closed = true;
+			waiting = new ArrayList<>(unsynced);
+			unsynced.clear();
+		}
+
+		waiting.forEach((done) -> done.completeExceptionally(cause));
+	}
+
+	/**
+	 * Force every segment written to since they were last forced. Metadata is included, since a record
+	 * can't be found again without the file's length. Store thread only, or once it has stopped
+	 * @throws IOException If a segment could not be forced. The ones left are tried again next time
+	 */
+	private void forceSegments() throws IOException
+	{
+		for(Segment segment : dirtySegments)
+		{
+			segment.channel.force(true);
+		}
+
+		dirtySegments.clear();
+	}
+
+	/**
+	 * Force the folder itself to disk, so a segment file that was just created is sure to be found after a crash.
+	 * Not every platform allows it, in which case nothing is done.
+	 */
+	private void syncDirectory()
+	{
+		try (FileChannel folder = FileChannel.open(directory, StandardOpenOption.READ))
+		{
+			folder.force(true);
+		} catch (IOException e) {
+			// Nothing more can be done here. The data is still forced, only the file's name may not be
+		}
+	}
+
+	/**
+	 * Copy what's still current out of any full segment that's mostly garbage, then delete the segment. Store thread only
+	 * @param threshold A full segment is compacted once no more than this fraction of it is current
+	 * @return How many segments were compacted away
+	 * @throws IOException If a record could not be copied, or a segment deleted
+	 */
+	private int compactSegments(double threshold) throws IOException
+	{
+		Set<Segment> victims = new HashSet<>();
+		for(Segment segment : segments.values())
+		{
+			if(segment != active && segment.liveBytes <= segment.size * threshold)
+			{
+				victims.add(segment);
+			}
+		}
+
+		if(victims.isEmpty())
+		{
+			return 0;
+		}
+
+		// Records are copied as they are, so they can still be checked against their checksum when read
+		for(Map.Entry<String, Location> entry : index.entrySet())
+		{
+			Location location = entry.getValue();
+			if(victims.contains(location.segment))
+			{
+				append(entry.getKey(), location.readRecord());
+			}
+		}
+
+		// The copies have to be on disk before the only other copy is deleted, durable or not
+		forceSegments();
+
+		// Nothing points into them now. Readers that were already on their way will look again
+		for(Segment segment : victims)
+		{
+			segments.remove(segment.id);
+			segment.channel.close();
+			Files.delete(segment.path);
+		}
+
+		return victims.size();
+	}
+
+	/**
+	 * Open every segment already in the folder, oldest first, and build the index from their records.
+	 * Appends carry on in the newest segment, or a new one if there are none.
+	 * @throws IOException If a segment could not be opened or read
+	 */
+	private void recover() throws IOException
+	{
+		List<Integer> ids = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX))
+		{
+			for(Path file : files)
+			{
+				String name = file.getFileName().toString();
+				try {
+					ids.add(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+				} catch (NumberFormatException e) {
+					Logger.instance().logMessage("[NOTICE] Ignoring stray file in player store: " + name);
+				}
+			}
+		}
+		ids.sort(null);
+
+		for(int i = 0; i < ids.size(); ++i)
+		{
+			Segment segment = openSegment(ids.get(i));
+			replay(segment, i == ids.size() - 1);
+			active = segment;
+		}
+
+		if(active == null)
+		{
+			active = openSegment(1);
+		}
+	}
+
+	/**
+	 * Read through a segment's records, pointing the index at each. Stops at the first record that doesn't check out.
+	 * Only the newest segment can have been cut short by a crash, so only it is cut off there.
+	 * @param segment The segment to read
+	 * @param newest Whether it's the newest segment
+	 * @throws IOException If the segment could not be read
+	 */
+	private void replay(Segment segment, boolean newest) throws IOException
+	{
+		long end = segment.channel.size();
+		long position = 0;
+		ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+
+		while(position + HEADER_LENGTH <= end)
+		{
+			header.clear();
+			readFully(segment.channel, header, position);
+			int bodyLength = header.getInt(0);
+
+			if(bodyLength < NAME_LENGTH_LENGTH || bodyLength > MAX_BODY_LENGTH || position + HEADER_LENGTH + bodyLength > end)
+			{
+				break;
+			}
+
+			ByteBuffer body = ByteBuffer.allocate(bodyLength);
+			readFully(segment.channel, body, position + HEADER_LENGTH);
+			int nameLength = body.getShort(0) & 0xFFFF;
+
+			if(checksum(body.array(), 0, bodyLength) != header.getInt(4) || NAME_LENGTH_LENGTH + nameLength > bodyLength)
+			{
+				break;
+			}
+
+			String username = new String(body.array(), NAME_LENGTH_LENGTH, nameLength, StandardCharsets.UTF_8);
+			int length = HEADER_LENGTH + bodyLength;
+			point(key(username), new Location(segment, position, length, HEADER_LENGTH + NAME_LENGTH_LENGTH + nameLength));
+
+			position += length;
+		}
+
+		if(position < end)
+		{
+			Logger.instance().logMessage("[NOTICE] Player store segment " + segment.id + " has a bad record at " + position
+					+ ". " + (end - position) + " bytes after it are dropped");
+
+			if(newest)
+			{
+				segment.channel.truncate(position);
+			}
+		}
+
+		segment.size = position;
+	}
+
+	/**
+	 * Point the index at a new record for the username, keeping track of how much of each segment is current
+	 * @param key Lowercase username
+	 * @param location Where the new record is
+	 */
+	private void point(String key, Location location)
+	{
+		Location old = index.put(key, location);
+		if(old != null)
+		{
+			old.segment.liveBytes -= old.length;
+		}
+
+		location.segment.liveBytes += location.length;
+	}
+
+	/**
+	 * Open the segment with the given id, creating its file if need be, and add it to the list
+	 * @param id The segment's id
+	 * @return The open segment
+	 * @throws IOException If the file could not be opened
+	 */
+	private Segment openSegment(int id) throws IOException
+	{
+		Path path = directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+		boolean created = !Files.exists(path);
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+		if(created && durable)
+		{
+			syncDirectory();
+		}
+
+		Segment segment = new Segment(id, path, channel);
+		segment.size = channel.size();
+		segments.put(id, segment);
+
+		return segment;
+	}
+
+	/**
+	 * Put together a whole record: body length, checksum, then the body - username length, username, and data
+	 * @param username The player's username
+	 * @param data The player's serialized data. Not modified
+	 * @return The record, ready to be written
+	 * @throws IOException If the username or data is too big to fit in a record
+	 */
+	private static ByteBuffer encode(String username, ByteBuf data) throws IOException
+	{
+		byte[] name = username.getBytes(StandardCharsets.UTF_8);
+		if(name.length > MAX_NAME_LENGTH)
+		{
+			throw new IOException("Username is too long to save: " + name.length + " bytes");
+		}
+
+		// Data near the int limit would overflow the sum, so the data is checked on its own
+		int bodyLength = NAME_LENGTH_LENGTH + name.length + data.readableBytes();
+		if(data.readableBytes() > MAX_BODY_LENGTH || bodyLength > MAX_BODY_LENGTH)
+		{
+			throw new IOException("Player data for " + username + " is too big to save: " + data.readableBytes() + " bytes");
+		}
+
+		ByteBuffer record = ByteBuffer.allocate(HEADER_LENGTH + bodyLength);
+		record.putInt(bodyLength);
+		record.putInt(0);
+		record.putShort((short) name.length);
+		record.put(name);
+		data.getBytes(data.readerIndex(), record);
+
+		record.putInt(4, checksum(record.array(), HEADER_LENGTH, bodyLength));
+		record.flip();
+
+		return record;
+	}
+
+	/**
+	 * @param username A username
+	 * @return What the username is indexed by
+	 */
+	private static String key(String username)
+	{
+		return username.toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * @param bytes Where the data is
+	 * @param offset Where it starts
+	 * @param length How long it is
+	 * @return CRC32 of the data
+	 */
+	private static int checksum(byte[] bytes, int offset, int length)
+	{
+		CRC32 crc = new CRC32();
+		crc.update(bytes, offset, length);
+
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Fill the buffer from the channel, starting at the given position. Safe for many threads at once
+	 * @param channel Where to read from
+	 * @param buffer What to fill
+	 * @param position Where in the channel to start
+	 * @throws IOException If the channel ends first, or could not be read
+	 */
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+	{
+		while(buffer.hasRemaining())
+		{
+			int read = channel.read(buffer, position);
+			if(read < 0)
+			{
+				throw new IOException("Player store segment ended early");
+			}
+			position += read;
+		}
+	}
+
+	/**
+	 * Write all of the buffer to the channel, starting at the given position
+	 * @param channel Where to write to
+	 * @param buffer What to write
+	 * @param position Where in the channel to start
+	 * @throws IOException If the channel could not be written
+	 */
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+	{
+		while(buffer.hasRemaining())
+		{
+			position += channel.write(buffer, position);
+		}
+	}
+
+
+	/**
+	 * One file of the log. Its size and how much of it is current are only touched on the store thread
+	 */
+	private static class Segment {
+
+		/** Segments are numbered in the order they were started */
+		private final int id;
+
+		/** The segment's file */
+		private final Path path;
+
+		/** Open on the file for as long as the segment is around */
+		private final FileChannel channel;
+
+		/** Bytes of records in the segment */
+		private long size;
+
+		/** Bytes of records the index still points to */
+		private long liveBytes;
+
+		/**
+		 * @param id The segment's number
+		 * @param path The segment's file
+		 * @param channel Open on the file
+		 */
+		public Segment(int id, Path path, FileChannel channel)
+		{
+			this.id = id;
+			this.path = path;
+			this.channel = channel;
+		}
+
+	}
+
+
+	/**
+	 * Where a record is in the log. Immutable, so any thread can read through one
+	 */
+	private static class Location {
+
+		/** The segment the record is in */
+		private final Segment segment;
+
+		/** Where in the segment the record starts */
+		private final long position;
+
+		/** Bytes in the whole record */
+		private final int length;
+
+		/** Where in the record the player data starts */
+		private final int dataOffset;
+
+		/**
+		 * @param segment The segment the record is in
+		 * @param position Where in the segment the record starts
+		 * @param length Bytes in the whole record
+		 * @param dataOffset Where in the record the player data starts
+		 */
+		public Location(Segment segment, long position, int length, int dataOffset)
+		{
+			this.segment = segment;
+			this.position = position;
+			this.length = length;
+			this.dataOffset = dataOffset;
+		}
+
+		/**
+		 * @return The whole record, checked against its checksum
+		 * @throws IOException If it could not be read, or doesn't check out
+		 */
+		public ByteBuffer readRecord() throws IOException
+		{
+			ByteBuffer record = ByteBuffer.allocate(length);
+			readFully(segment.channel, record, position);
+
+			if(checksum(record.array(), HEADER_LENGTH, length - HEADER_LENGTH) != record.getInt(4))
+			{
+				throw new IOException("Player store record at " + position + " in segment " + segment.id + " is corrupt");
+			}
+
+			record.flip();
+			return record;
+		}
+
+		/**
+		 * @return Just the player data from the record
+		 * @throws IOException If it could not be read, or doesn't check out
+		 */
+		public ByteBuf read() throws IOException
+		{
+			ByteBuffer record = readRecord();
+
+			return Unpooled.wrappedBuffer(record.array(), dataOffset, length - dataOffset);
+		}
+
+	}
+
+}
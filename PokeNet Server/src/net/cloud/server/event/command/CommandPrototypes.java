@@ -19,6 +19,7 @@ public class CommandPrototypes {
 	static
 	{
 		// These are alphabetized. Yay order!
+		prototypes.put("announce", new AnnounceCommand());
 		prototypes.put("cmdscript", new CmdScriptCommand());
 		prototypes.put("create_account", new CreateAccountCommand());
 		prototypes.put("echo", new EchoCommand());
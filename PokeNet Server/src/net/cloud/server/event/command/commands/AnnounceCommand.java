@@ -0,0 +1,76 @@
+package net.cloud.server.event.command.commands;
+
+import java.util.Optional;
+
+import net.cloud.server.event.command.Command;
+import net.cloud.server.event.command.argument.ArgumentPrototypes;
+import net.cloud.server.event.command.parameter.OptionalParameter;
+import net.cloud.server.event.command.parameter.RequiredParameter;
+import net.cloud.server.game.GameEngine;
+import net.cloud.server.game.World;
+import net.cloud.server.nio.packet.packets.ShowMessageDialogPacket;
+
+/**
+ * A command which shows a message dialog to every player that is logged in. 
+ * The message is required, and the dialog's title may optionally be given. 
+ * Goes out as a broadcast, so it's encoded once no matter how many players are online.
+ */
+public class AnnounceCommand extends AbstractCommand {
+	
+	/** Title used on the dialog when one is not given */
+	private static final String DEFAULT_TITLE = "announcement";
+	
+	/** The optional parameters this command could possibly accept */
+	private static OptionalParameter<?>[] allOptParams = 
+	{
+		new OptionalParameter<String>("t", "title", ArgumentPrototypes.STRING)
+	};
+	
+	/** The parameters this command must have provided to it */
+	private static RequiredParameter<?>[] allReqParams =
+	{
+		new RequiredParameter<String>(ArgumentPrototypes.STRING)
+	};
+	
+	/** Create an empty prototype command */
+	public AnnounceCommand()
+	{
+		super();
+	}
+
+	/** Create a new dynamically binded instance */
+	@Override
+	public Command newPrototypedInstance()
+	{
+		return new AnnounceCommand();
+	}
+
+	/** @return A message saying the announcement has gone out */
+	@Override
+	public String doCommand()
+	{
+		String message = super.<String>getReqParam(0).getArgValue();
+		
+		Optional<OptionalParameter<String>> titleParam = super.getOptParam("title");
+		String title = titleParam.isPresent() ? titleParam.get().getArgValue() : DEFAULT_TITLE;
+		
+		// Broadcast from the world thread, so it goes out with the rest of the tick's packets
+		ShowMessageDialogPacket packet = new ShowMessageDialogPacket(title, message);
+		GameEngine.instance().submit(() -> World.instance().getPlayerMap().broadcastLoggedIn(packet));
+		
+		return "Announcement sent.";
+	}
+
+	@Override
+	protected OptionalParameter<?>[] getAllOptionalParameters()
+	{
+		return allOptParams;
+	}
+
+	@Override
+	protected RequiredParameter<?>[] getAllRequiredParameters()
+	{
+		return allReqParams;
+	}
+
+}
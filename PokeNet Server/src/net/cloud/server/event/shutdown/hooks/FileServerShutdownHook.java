@@ -13,22 +13,17 @@ import net.cloud.server.file.FileServerThread;
  */
 public class FileServerShutdownHook implements ShutdownHook {
 	
-	/** The thread executing the file server logic loop */
-	private Thread thread;
-	
-	/** The object with the logic loop code */
-	private FileServerThread fileServerThread;
+	/** The file server's lanes, each with a logic loop */
+	private FileServerThread[] lanes;
 
 	/**
-	 * Create a shutdown hook for the File Server. The thread is interrupted and 
-	 * the file server object has its flag set.
-	 * @param thread The thread executing the file server logic loop
-	 * @param fileServerThread The object with the logic loop code
+	 * Create a shutdown hook for the File Server. Each lane has its flag set, 
+	 * and its thread stops once the requests already queued are done.
+	 * @param lanes The file server's lanes
 	 */
-	public FileServerShutdownHook(Thread thread, FileServerThread fileServerThread)
+	public FileServerShutdownHook(FileServerThread[] lanes)
 	{
-		this.thread = thread;
-		this.fileServerThread = fileServerThread;
+		this.lanes = lanes;
 	}
 
 	/**
@@ -43,13 +38,15 @@ public class FileServerShutdownHook implements ShutdownHook {
 		out.println("Shutting down file server");
 		out.flush();
 		
-		// Try to interrupt the thread
+		// Stop each lane taking requests. They'll finish what they have and stop on their own
 		try {
-			fileServerThread.setRunning(false);
-			thread.interrupt();
+			for(FileServerThread lane : lanes)
+			{
+				lane.setRunning(false);
+			}
 		} catch (Exception e) {
 			// Chain exceptions
-			throw new ShutdownException("Could not interrupt command service thread", e);
+			throw new ShutdownException("Could not stop file server lanes", e);
 		}
 		
 		out.println("File server shut down");
@@ -0,0 +1,45 @@
+package net.cloud.server.event.shutdown.hooks;
+
+import java.io.PrintWriter;
+import java.util.concurrent.ScheduledExecutorService;
+
+import net.cloud.server.event.shutdown.ShutdownException;
+import net.cloud.server.event.shutdown.ShutdownHook;
+
+/**
+ * A ShutdownHook designed to stop the game engine.
+ * When this hook completes, no more ticks will be started,
+ * though a tick that is already running will be allowed to finish.
+ */
+public class GameEngineShutdownHook implements ShutdownHook {
+
+	/** The executor the world thread belongs to */
+	private ScheduledExecutorService worldExecutor;
+
+	/**
+	 * Create a shutdown hook for the GameEngine
+	 * @param worldExecutor The executor the engine is running ticks on
+	 */
+	public GameEngineShutdownHook(ScheduledExecutorService worldExecutor)
+	{
+		this.worldExecutor = worldExecutor;
+	}
+
+	/**
+	 * Stop the game engine. Returns immediately, rather than waiting for a running tick to complete.
+	 * @param out A PrintWriter to which status information will be output
+	 */
+	@Override
+	public void shutdown(PrintWriter out) throws ShutdownException
+	{
+		out.println("Shutting down Game Engine");
+		out.flush();
+
+		// Stops the periodic tick as well as any pending work
+		worldExecutor.shutdown();
+
+		out.println("Game Engine shut down");
+		out.flush();
+	}
+
+}
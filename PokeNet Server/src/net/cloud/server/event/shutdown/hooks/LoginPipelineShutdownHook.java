@@ -0,0 +1,44 @@
+package net.cloud.server.event.shutdown.hooks;
+
+import java.io.PrintWriter;
+import java.util.concurrent.ExecutorService;
+
+import net.cloud.server.event.shutdown.ShutdownException;
+import net.cloud.server.event.shutdown.ShutdownHook;
+
+/**
+ * A ShutdownHook designed to stop the login pipeline.
+ * When this hook completes, no new logins will be accepted,
+ * but the ones already in progress will be allowed to finish.
+ */
+public class LoginPipelineShutdownHook implements ShutdownHook {
+
+	/** The executor the login stages run on */
+	private ExecutorService loginExecutor;
+
+	/**
+	 * Create a shutdown hook for the LoginPipeline
+	 * @param loginExecutor The executor the pipeline is running login stages on
+	 */
+	public LoginPipelineShutdownHook(ExecutorService loginExecutor)
+	{
+		this.loginExecutor = loginExecutor;
+	}
+
+	/**
+	 * Stop the login threads. Returns immediately, rather than waiting for logins in progress.
+	 * @param out A PrintWriter to which status information will be output
+	 */
+	@Override
+	public void shutdown(PrintWriter out) throws ShutdownException
+	{
+		out.println("Shutting down Login Pipeline");
+		out.flush();
+
+		loginExecutor.shutdown();
+
+		out.println("Login Pipeline shut down");
+		out.flush();
+	}
+
+}
@@ -0,0 +1,49 @@
+package net.cloud.server.event.shutdown.hooks;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import net.cloud.server.entity.player.save.PlayerStore;
+import net.cloud.server.event.shutdown.ShutdownException;
+import net.cloud.server.event.shutdown.ShutdownHook;
+
+/**
+ * A ShutdownHook designed to close the player store.
+ * Saves that were already queued are written out first, so this waits on them.
+ * Once it completes, no more saves will be accepted.
+ */
+public class PlayerStoreShutdownHook implements ShutdownHook {
+
+	/** The store to close */
+	private PlayerStore store;
+
+	/**
+	 * Create a shutdown hook for a PlayerStore
+	 * @param store The store to close
+	 */
+	public PlayerStoreShutdownHook(PlayerStore store)
+	{
+		this.store = store;
+	}
+
+	/**
+	 * Write out queued saves, then close the store.
+	 * @param out A PrintWriter to which status information will be output
+	 */
+	@Override
+	public void shutdown(PrintWriter out) throws ShutdownException
+	{
+		out.println("Shutting down Player Store");
+		out.flush();
+
+		try {
+			store.close();
+		} catch (IOException e) {
+			throw new ShutdownException("Could not close the player store", e);
+		}
+
+		out.println("Player Store shut down");
+		out.flush();
+	}
+
+}
@@ -0,0 +1,44 @@
+package net.cloud.server.event.shutdown.hooks;
+
+import java.io.PrintWriter;
+
+import net.cloud.server.event.shutdown.ShutdownException;
+import net.cloud.server.event.shutdown.ShutdownHook;
+import io.netty.util.Timer;
+
+/**
+ * A ShutdownHook designed to stop the timeout service.
+ * When this hook completes, no timeouts will go off,
+ * including any that were still waiting.
+ */
+public class TimeoutServiceShutdownHook implements ShutdownHook {
+
+	/** The timer the timeouts are scheduled on */
+	private Timer timer;
+
+	/**
+	 * Create a shutdown hook for the TimeoutService
+	 * @param timer The timer the service is scheduling timeouts on
+	 */
+	public TimeoutServiceShutdownHook(Timer timer)
+	{
+		this.timer = timer;
+	}
+
+	/**
+	 * Stop the timer. Timeouts that were waiting are dropped.
+	 * @param out A PrintWriter to which status information will be output
+	 */
+	@Override
+	public void shutdown(PrintWriter out) throws ShutdownException
+	{
+		out.println("Shutting down Timeout Service");
+		out.flush();
+
+		int dropped = timer.stop().size();
+
+		out.println("Timeout Service shut down (" + dropped + " timeouts dropped)");
+		out.flush();
+	}
+
+}
@@ -0,0 +1,98 @@
+package net.cloud.server.event.task;
+
+import java.util.concurrent.TimeUnit;
+
+import net.cloud.server.ConfigConstants;
+import net.cloud.server.event.shutdown.ShutdownHook;
+import net.cloud.server.event.shutdown.ShutdownService;
+import net.cloud.server.event.shutdown.hooks.TimeoutServiceShutdownHook;
+import net.cloud.server.event.task.voidtasks.VoidTask;
+import net.cloud.server.game.GameEngine;
+import net.cloud.server.logging.Logger;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+
+/**
+ * The TimeoutService keeps track of the many short timeouts there are during login - one for every connection,
+ * and more as the player moves through the login states. Most of them are cancelled long before they'd go off. <br>
+ * The TaskEngine keeps its tasks in a heap, so each one costs a log(n) insert, and a cancelled one stays queued until
+ * its time comes. This service uses a timing wheel instead, so scheduling and cancelling are both constant time,
+ * and a cancelled timeout is dropped the next time the wheel goes by. The trade off is that a timeout may go off up to
+ * one tick (TIMEOUT_TICK_DURATION) late, which is fine for something measured in seconds. <br>
+ * Timeouts run their task on the world thread, so they may look at and change game state.
+ */
+public class TimeoutService implements ShutdownService {
+
+	/** Singleton instance */
+	private static volatile TimeoutService instance;
+
+	/** The wheel the timeouts are kept on. It has a single thread of its own that advances it */
+	private final HashedWheelTimer timer;
+
+	/** The hook to stop the service */
+	private ShutdownHook shutdownHook;
+
+	/** Private constructor. Creates and starts the timer */
+	private TimeoutService()
+	{
+		timer = new HashedWheelTimer((runnable) -> new Thread(runnable, "Timeout Thread"),
+				ConfigConstants.TIMEOUT_TICK_DURATION, TimeUnit.MILLISECONDS, ConfigConstants.TIMEOUT_WHEEL_SIZE);
+		timer.start();
+
+		shutdownHook = new TimeoutServiceShutdownHook(timer);
+
+		Logger.writer().println("Timeout Service now running");
+		Logger.writer().flush();
+	}
+
+	/**
+	 * Obtain a reference to the TimeoutService, which can be used to schedule timeouts
+	 * @return The singleton TimeoutService instance
+	 */
+	public static TimeoutService instance()
+	{
+		if(instance == null)
+		{
+			synchronized(TimeoutService.class)
+			{
+				if(instance == null)
+				{
+					instance = new TimeoutService();
+				}
+			}
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Run a task on the world thread once some time has passed, unless the timeout is cancelled first
+	 * @param delay How long to wait (ms)
+	 * @param task The task to run when the time is up
+	 * @return The timeout, which may be used to cancel it
+	 */
+	public Timeout schedule(long delay, VoidTask task)
+	{
+		return timer.newTimeout((timeout) -> GameEngine.instance().submit(task::execute), delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @return How many timeouts are waiting to go off, including cancelled ones not yet cleared off the wheel
+	 */
+	public long pendingTimeouts()
+	{
+		return timer.pendingTimeouts();
+	}
+
+	/**
+	 * Obtain the ShutdownHook for the TimeoutService.
+	 * The hook is created when the object is created, and so NPE shouldn't be an issue.
+	 * Shutting down the service stops the timer. Timeouts that have not gone off yet never will.
+	 */
+	@Override
+	public ShutdownHook getShutdownHook() throws NullPointerException
+	{
+		return shutdownHook;
+	}
+
+}
@@ -6,9 +6,9 @@ import net.cloud.server.entity.player.Player;
 
 /**
  * A task which will check to see if a player is still in the connected stage, 
- * and abort the connection if they are.
+ * and abort the connection if they are. Meant for the TimeoutService, which runs it on the world thread.
  */
-public class ConnectTimeoutTask extends CancellableVoidTask {
+public class ConnectTimeoutTask implements VoidTask {
 	
 	/** The player that just connected */
 	private final Player newPlayer;
@@ -30,6 +30,13 @@ public class ConnectTimeoutTask extends CancellableVoidTask {
 			// Since they are, we never got a login request from the client
 			LoginHandler.abortConnection(newPlayer);
 		}
+		// Or did they send one, but we're still working out the response?
+		else if(newPlayer.getLoginState() == LoginState.VALIDATING)
+		{
+			// Took too long. The response will be ignored when it finally shows up
+			newPlayer.setLoginState(LoginState.LOGIN_FAILED);
+			LoginHandler.abortConnection(newPlayer);
+		}
 	}
 
 }
@@ -1,7 +1,11 @@
 package net.cloud.server.file;
 
 import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
+import net.cloud.server.ConfigConstants;
 import net.cloud.server.event.shutdown.ShutdownHook;
 import net.cloud.server.event.shutdown.ShutdownService;
 import net.cloud.server.event.shutdown.hooks.FileServerShutdownHook;
@@ -15,13 +19,17 @@ import net.cloud.server.file.request.handler.RequestHandler;
  * The file server accepts a FileRequest and will attempt to fulfill it. 
  * This occurs through a chain of classes and calls behind this facade of sorts. <br>
  * Create a FileRequest object and submit it here.  The request can then be waited upon 
- * or a listener can be attached to it which will be acted on when the request is fulfilled.<br>
+ * or a listener can be attached to it which will be acted on when the request is fulfilled. 
+ * Or submit it with submitAsync() to get a future for the file, and chain on what comes next without blocking.<br>
  * An example of the usage to obtain a BufferedReader on a file:<br>
  * <code>
  * BufferedReaderRequest req = new BufferedReaderRequest(FileAddressBuilder.newBuilder().createCommandScriptAddress("echo"));<br>
  * req.waitForRequest();<br>
  * BufferedReader fileReader = req.getFileDescriptor();<br>
  * </code>
+ * Requests are handled by a number of lanes, each with its own thread. All requests for the same file go to the same 
+ * lane, so they are handled in the order they were submitted, while requests for other files carry on in parallel. 
+ * Within a lane, more urgent requests go first - see RequestPriority. <br>
  * @see FileRequest
  * @see FileAddressBuilder
  */
@@ -33,11 +41,8 @@ public class FileServer implements ShutdownService {
 	/** An instance of RequestHandler to delegate request to */
 	private RequestHandler requestHandler;
 	
-	/** The thread that the logic loop is running on */
-	private Thread logicThread;
-	
-	/** The Runnable object the thread is executing */
-	private FileServerThread fileServerThread;
+	/** The lanes requests are handled in. Each runs its logic loop on its own thread */
+	private FileServerThread[] lanes;
 	
 	/** The hook to stop the File Server */
 	private ShutdownHook shutdownHook;
@@ -48,13 +53,16 @@ public class FileServer implements ShutdownService {
 		// Initialize our own request handler
 		this.requestHandler = new RequestHandler();
 		
-		// Start up a thread running the logic loop
-		fileServerThread = new FileServerThread(requestHandler);
-		logicThread = new Thread(fileServerThread);
-		logicThread.start();
+		// Start up a thread running the logic loop for each lane
+		lanes = new FileServerThread[ConfigConstants.FILE_SERVER_LANES];
+		for(int i = 0; i < lanes.length; ++i)
+		{
+			lanes[i] = new FileServerThread(i, requestHandler);
+			new Thread(lanes[i], "File Server Lane " + i).start();
+		}
 		
 		// Create a shutdown hook to stop this process
-		shutdownHook = new FileServerShutdownHook(logicThread, fileServerThread);
+		shutdownHook = new FileServerShutdownHook(lanes);
 	}
 	
 	/**
@@ -81,21 +89,100 @@ public class FileServer implements ShutdownService {
 	/**
 	 * Submit a FileRequest to the server, so that it is eventually 
 	 * handled and assigned a file descriptor. When it is handled, 
-	 * if there is a listener attached, the listener will also be called.
+	 * if there is a listener attached, the listener will also be called. 
+	 * It's handled after any request for the same file that was submitted before it.
 	 * @param request The FileRequest to submit
 	 * @throws FileRequestException If the request could not be submitted
 	 */
 	public void submit(FileRequest<?> request) throws FileRequestException
 	{
-		// Delegate the submission to the logic object
-		fileServerThread.submit(request);
+		// Delegate the submission to the lane for the file
+		lanes[laneFor(request.address(), lanes.length)].submit(request);
+	}
+	
+	/**
+	 * Work out which lane requests for a file go to. The same file always goes to the same lane.
+	 * @param address The location of the file
+	 * @param laneCount How many lanes there are
+	 * @return The lane's index
+	 */
+	public static int laneFor(FileAddress address, int laneCount)
+	{
+		return Math.floorMod(address.hashCode(), laneCount);
+	}
+	
+	/**
+	 * @return How many lanes the server handles requests in
+	 */
+	public int laneCount()
+	{
+		return lanes.length;
+	}
+	
+	/**
+	 * Submit a FileRequest to the server, and get a future for its file descriptor rather than waiting on it. 
+	 * The future completes on the lane's thread as soon as the request is handled, so anything chained on 
+	 * without an executor should be quick. If the request could not be submitted, the future fails with that.
+	 * @param request The FileRequest to submit
+	 * @param <T> The type of the file descriptor object. Should be inferred from the request.
+	 * @return A future for the file descriptor, which fails with a FileRequestException if it couldn't be had
+	 */
+	public <T> CompletableFuture<T> submitAsync(FileRequest<T> request)
+	{
+		CompletableFuture<T> file = request.toFuture();
+		
+		try {
+			submit(request);
+		} catch (FileRequestException e) {
+			// It'll never be handled, so it's never going to finish by itself
+			file.completeExceptionally(e);
+		}
+		
+		return file;
+	}
+	
+	/**
+	 * Submit a FileRequest to the server, and get a future for its file descriptor that completes on the given executor. 
+	 * Use this when what's chained on is slow, or has to happen on a certain thread, so it doesn't hold up the lane's thread.
+	 * @param request The FileRequest to submit
+	 * @param executor Where the future is completed, and so where anything chained on without an executor runs
+	 * @param <T> The type of the file descriptor object. Should be inferred from the request.
+	 * @return A future for the file descriptor, which fails with a FileRequestException if it couldn't be had, 
+	 * or a RejectedExecutionException if the executor wouldn't take it
+	 */
+	public <T> CompletableFuture<T> submitAsync(FileRequest<T> request, Executor executor)
+	{
+		CompletableFuture<T> handedOff = new CompletableFuture<>();
+		
+		submitAsync(request).whenComplete((file, ex) ->
+		{
+			try {
+				executor.execute(() ->
+				{
+					if(ex != null)
+					{
+						handedOff.completeExceptionally(ex);
+					}
+					else
+					{
+						handedOff.complete(file);
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				// Nowhere to hand it off to, so it ends here
+				handedOff.completeExceptionally(e);
+			}
+		});
+		
+		return handedOff;
 	}
 	
 	/**
 	 * Slightly different that submitting a request and waiting for it, this convenience 
 	 * method will actually use the calling thread to fulfill the request rather than 
-	 * relying on the file server thread. This should only be faster, since the calling thread 
-	 * would just be waiting anyways and the file server thread may be busy.
+	 * relying on the file server's lanes. This should only be faster, since the calling thread 
+	 * would just be waiting anyways and the lane may be busy. It isn't ordered with requests submitted to the lanes. 
+	 * It does tie up the calling thread for the whole load, so use submitAsync() from anything that mustn't block.
 	 * @param request The request to submit and wait on
 	 * @param <T> The type of the file descriptor object. Should be inferred from the request.
 	 * @return The file descriptor that is being requested
@@ -106,7 +193,7 @@ public class FileServer implements ShutdownService {
 		// Throw it straight to the handler
 		request.handle(requestHandler);
 		
-		// Wait just in case. Most likely will be no wait.
+		// The request has finished by now, so this won't wait. It just hands back any exception
 		request.waitForRequest();
 		
 		return request.getFileDescriptor();
@@ -1,88 +1,244 @@
 package net.cloud.server.file;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
 
+import net.cloud.server.file.address.FileAddress;
 import net.cloud.server.file.request.FileRequest;
+import net.cloud.server.file.request.RequestPriority;
 import net.cloud.server.file.request.handler.RequestHandler;
 import net.cloud.server.logging.Logger;
+import net.cloud.server.tracking.StatTracker;
 
 /**
- * Contains the logic loop for the File Server.  Takes care of pulling 
- * requests out in turn and handing them off for handling.
+ * Contains the logic loop for one lane of the File Server.  Takes care of pulling
+ * requests out in turn and handing them off for handling. <br>
+ * Each lane has a queue for each priority, and always takes from the most urgent one that has anything in it.
+ * Requests for the same file always go to the same lane, and come out in the order they went in - a request
+ * that would overtake an earlier one for its file is queued at that one's priority instead.
  */
 public class FileServerThread implements Runnable {
 	
 	/** Flag to determine if the logic loop should be running */
 	private volatile boolean running;
 	
+	/** Which lane this is, for stats */
+	private final int lane;
+	
 	/** The object we use to handle requests */
 	private RequestHandler requestHandler;
 	
-	/** We'll use a blocking queue to handle request storage for us */
-	private BlockingQueue<FileRequest<?>> requestQueue;
-
-	public FileServerThread(RequestHandler requestHandler)
+	/** A queue for each priority, by ordinal. Guarded by this object's lock */
+	private final ArrayDeque<Queued>[] queues;
+	
+	/** For each file with requests queued, how many are at each priority. Guarded by this object's lock */
+	private final Map<FileAddress, int[]> queuedFor;
+	
+	/** Requests queued altogether. Guarded by this object's lock */
+	private int depth;
+	
+	/**
+	 * Create a lane. It does nothing until it's run on a thread
+	 * @param lane Which lane this is
+	 * @param requestHandler What requests are handled with
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public FileServerThread(int lane, RequestHandler requestHandler)
 	{
 		// Start with the flag true
 		this.running = true;
 		
+		this.lane = lane;
 		this.requestHandler = requestHandler;
 		
-		// Using a LinkedBlockingQueue. It's unbounded and will block when empty
-		requestQueue = new LinkedBlockingQueue<>();
+		queues = new ArrayDeque[RequestPriority.values().length];
+		for(int i = 0; i < queues.length; ++i)
+		{
+			queues[i] = new ArrayDeque<>();
+		}
+		queuedFor = new HashMap<>();
 	}
-
+	
+	/**
+	 * Handle requests until told to stop. Whatever is already queued at that point is still handled,
+	 * since it might be some saving to finish up.
+	 */
 	@Override
 	public void run()
 	{
-		// Only go while the running flag is set
-		while(running && !Thread.currentThread().isInterrupted())
+		while(true)
 		{
+			Queued next;
 			try {
-				// Thankfully the blocking queue takes care of waiting for us
-				FileRequest<?> nextRequest = requestQueue.take();
-				
-				// So now we'll utilize double dispatch to handle the request dynamically
-				nextRequest.handle(requestHandler);
+				next = take();
 			} catch (InterruptedException e) {
-				// It's even so kind as to throw an InterruptedException (ruddy BufferedReader...)
+				// Only stopping takes us out of the loop
 				Logger.instance().logException("FileServerThread interrupted", e);
+				continue;
+			}
+			
+			// Stopped, and nothing left to do
+			if(next == null)
+			{
+				return;
 			}
+			
+			long start = System.nanoTime();
+			
+			// So now we'll utilize double dispatch to handle the request dynamically
+			try {
+				next.request.handle(requestHandler);
+			} catch (RuntimeException e) {
+				// Don't let one bad request take the lane down with it, or leave anything waiting on it forever
+				Logger.instance().logException("File request could not be handled", e);
+				next.request.notifyHandleException(new FileRequestException("File request could not be handled", e));
+			}
+			
+			StatTracker.instance().updateFileRequest(lane, start - next.submitted, System.nanoTime() - start);
 		}
-
 	}
 	
 	/**
-	 * Submit a request to eventually be handled by the logic loop. 
+	 * Submit a request to eventually be handled by the logic loop.
 	 * @param request The request to eventually handle
 	 * @throws FileRequestException If the request could not be accepted
 	 */
 	public void submit(FileRequest<?> request) throws FileRequestException
 	{
-		// Only accept submissions while we're running
-		if(!running)
+		int queued;
+		synchronized(this)
 		{
-			throw new FileRequestException("File server is not running");
+			// Only accept submissions while we're running
+			if(!running)
+			{
+				throw new FileRequestException("File server is not running");
+			}
+			
+			int[] counts = queuedFor.computeIfAbsent(request.address(), (a) -> new int[queues.length]);
+			
+			// Don't overtake anything queued for the same file. Go no higher than the least urgent of those
+			int priority = request.getPriority().ordinal();
+			for(int i = counts.length - 1; i > priority; --i)
+			{
+				if(counts[i] > 0)
+				{
+					priority = i;
+					break;
+				}
+			}
+			
+			queues[priority].add(new Queued(request, priority));
+			counts[priority]++;
+			queued = ++depth;
+			
+			notify();
 		}
 		
-		// Submit it to the queue.
-		try {
-			requestQueue.add(request);
-		} catch (Exception e) {
-			// It could not be added. Re-throw with the cause
-			throw new FileRequestException("Could not add request", e);
+		StatTracker.instance().updateFileQueueDepth(lane, queued);
+	}
+	
+	/**
+	 * Wait for the next request to handle. Package visible, so the order can be tested without a thread
+	 * @return The most urgent request queued, or null if the lane has stopped and there are none left
+	 * @throws InterruptedException If interrupted while waiting
+	 */
+	synchronized Queued take() throws InterruptedException
+	{
+		while(depth == 0)
+		{
+			if(!running)
+			{
+				return null;
+			}
+			
+			wait();
+		}
+		
+		for(ArrayDeque<Queued> queue : queues)
+		{
+			Queued next = queue.poll();
+			if(next != null)
+			{
+				int[] counts = queuedFor.get(next.request.address());
+				if(--counts[next.priority] == 0 && isEmpty(counts))
+				{
+					queuedFor.remove(next.request.address());
+				}
+				--depth;
+				
+				return next;
+			}
 		}
+		
+		// Depth says there's something, so we won't get here
+		throw new IllegalStateException("File server lane " + lane + " lost track of its queue");
+	}
+	
+	/**
+	 * @return How many requests are waiting in this lane
+	 */
+	public synchronized int depth()
+	{
+		return depth;
 	}
 	
 	/**
-	 * Set the running flag. Once this is false, it cannot be undone. 
-	 * The logic loop will be stopped.
+	 * Set the running flag. Once this is false, it cannot be undone.
+	 * No more requests are accepted, and the logic loop stops once it has handled those already queued.
 	 * @param runningFlag What to set the flag to.
 	 */
-	public void setRunning(boolean runningFlag)
+	public synchronized void setRunning(boolean runningFlag)
 	{
 		this.running = runningFlag;
+		
+		// Wake the loop so it notices
+		notifyAll();
+	}
+	
+	/**
+	 * @param counts Requests queued for a file, at each priority
+	 * @return True if there are none at any priority
+	 */
+	private static boolean isEmpty(int[] counts)
+	{
+		for(int count : counts)
+		{
+			if(count != 0)
+			{
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	
+	/**
+	 * A request waiting in a lane, and when it got there
+	 */
+	static class Queued {
+		
+		/** The request itself */
+		final FileRequest<?> request;
+		
+		/** The priority it's actually queued at, by ordinal. May be less urgent than it asked for */
+		final int priority;
+		
+		/** System.nanoTime() when it was queued */
+		final long submitted;
+		
+		/**
+		 * @param request The request being queued
+		 * @param priority The priority it's queued at, by ordinal
+		 */
+		Queued(FileRequest<?> request, int priority)
+		{
+			this.request = request;
+			this.priority = priority;
+			this.submitted = System.nanoTime();
+		}
+	
 	}
 
 }
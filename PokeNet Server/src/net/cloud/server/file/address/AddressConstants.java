@@ -20,6 +20,9 @@ public class AddressConstants {
 	/** Location of player save files */
 	public static final String SPACE_PLAYER_DATA = "./data/players/";
 	
+	/** Location of the player store's log segments */
+	public static final String SPACE_PLAYER_STORE = "./data/playerstore/";
+	
 	/** Location of XML data files */
 	public static final String SPACE_XML_DATA = "./data/resources/xml/";
 	
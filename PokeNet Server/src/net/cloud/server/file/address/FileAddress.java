@@ -42,5 +42,42 @@ public class FileAddress {
 	{
 		return Paths.get(path);
 	}
+	
+	/**
+	 * Two addresses are equal if they are for the same file, even when the paths are written differently. 
+	 * Links aren't followed, since the file may not exist yet.
+	 */
+	@Override
+	public boolean equals(Object other)
+	{
+		if(this == other)
+		{
+			return true;
+		}
+		if(!(other instanceof FileAddress))
+		{
+			return false;
+		}
+		
+		return normalPath().equals(((FileAddress) other).normalPath());
+	}
+	
+	/**
+	 * Addresses for the same file have the same hash. The File Server uses this to keep requests 
+	 * for one file in order.
+	 */
+	@Override
+	public int hashCode()
+	{
+		return normalPath().hashCode();
+	}
+	
+	/**
+	 * @return The path as an absolute path, with any . and .. taken out
+	 */
+	private Path normalPath()
+	{
+		return getPath().toAbsolutePath().normalize();
+	}
 
 }
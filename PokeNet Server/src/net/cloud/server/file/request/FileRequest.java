@@ -1,16 +1,19 @@
 package net.cloud.server.file.request;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import net.cloud.server.file.FileRequestException;
 import net.cloud.server.file.address.FileAddress;
 import net.cloud.server.file.request.handler.RequestHandler;
 import net.cloud.server.file.request.listener.FileRequestListener;
+import net.cloud.server.logging.Logger;
 
 /**
  * Base class for all file request.  Deals with the shared behavior 
  * of allowing a thread to block until the request has been served 
- * and is ready.<br>
+ * and is ready, or of handing back a future to chain on instead.<br>
  * A FileRequest object is what is submitted to the FileServer 
  * to ask for a file related object to be created and prepared. It will 
  * contain the way of accessing the file's information.
@@ -19,8 +22,8 @@ import net.cloud.server.file.request.listener.FileRequestListener;
  */
 public abstract class FileRequest<T> {
 	
-	/** True only once the request has been served and is ready to be acted on */
-	private volatile boolean readyFlag = false;
+	/** Completed once the request has been served, or exceptionally if it couldn't be. Waiting, listeners and futures all go through this */
+	private final CompletableFuture<T> future;
 	
 	/** Refers to the file this request is seeking */
 	private final FileAddress address;
@@ -32,7 +35,10 @@ public abstract class FileRequest<T> {
 	private FileRequestListener<T> listener;
 	
 	/** If an exception happened during handling the request, this is it */
-	private FileRequestException handleException;
+	private volatile FileRequestException handleException;
+	
+	/** How soon the File Server should get to this request */
+	private RequestPriority priority;
 	
 	/**
 	 * Create a new request which is not ready but will request the file 
@@ -41,8 +47,9 @@ public abstract class FileRequest<T> {
 	 */
 	public FileRequest(FileAddress address)
 	{
-		this.readyFlag = false;
+		this.future = new CompletableFuture<>();
 		this.address = address;
+		this.priority = RequestPriority.LOAD;
 	}
 	
 	/**
@@ -63,27 +70,13 @@ public abstract class FileRequest<T> {
 	 */
 	public void waitForRequest() throws FileRequestException
 	{
-		// Typical wait loop
-		if((!readyFlag || fileDescriptor == null) && (handleException == null))
-		{
-			synchronized(this)
-			{
-				while((!readyFlag || fileDescriptor == null) && (handleException == null))
-				{
-					try {
-						this.wait();
-					} catch (InterruptedException e) {
-						// The waiting thread was interrupted. Who knows what it'll do next.
-						// Notify it that the request may not be ready, anyways
-						throw new FileRequestException("Wait was interrupted. File may not be ready.");
-					}
-				}
-			}
-		}
-		
-		// Being here means this request is ready or an exception happened during handling
-		if(handleException != null)
-		{
+		try {
+			future.get();
+		} catch (InterruptedException e) {
+			// The waiting thread was interrupted. Who knows what it'll do next.
+			// Notify it that the request may not be ready, anyways
+			throw new FileRequestException("Wait was interrupted. File may not be ready.");
+		} catch (ExecutionException e) {
 			// Unfortunately handling the request resulted in an exception. Re-throw it.
 			throw handleException;
 		}
@@ -91,6 +84,32 @@ public abstract class FileRequest<T> {
 		// Getting here implies all is good. The wait is over!
 	}
 	
+	/**
+	 * Get a future for the file descriptor, to chain whatever should happen next onto rather than waiting. 
+	 * It fails with the FileRequestException if the request could not be handled. <br>
+	 * Anything chained on without an executor runs on the thread that finishes the request, which is usually 
+	 * the File Server's, so keep it quick. Each call gives a separate future, so completing or cancelling one 
+	 * doesn't affect the request.
+	 * @return A future for the object representing the file
+	 */
+	public CompletableFuture<T> toFuture()
+	{
+		CompletableFuture<T> copy = new CompletableFuture<>();
+		future.whenComplete((file, ex) ->
+		{
+			if(ex != null)
+			{
+				copy.completeExceptionally(ex);
+			}
+			else
+			{
+				copy.complete(file);
+			}
+		});
+		
+		return copy;
+	}
+	
 	/**
 	 * Notify all threads waiting on this request to complete that it 
 	 * is ready and can be acted on. <br>
@@ -98,17 +117,8 @@ public abstract class FileRequest<T> {
 	 */
 	public void notifyReady()
 	{
-		synchronized(this)
-		{
-			// Update the ready flag
-			this.readyFlag = true;
-			
-			// Notify anything waiting on this request that it's ready
-			this.notifyAll();
-		}
-
-		// Call the listener's method if we need to
-		this.notifyListenerThatRequestIsReady();
+		// Wakes anything waiting and runs whatever was chained on, the listener included
+		future.complete(fileDescriptor);
 	}
 	
 	/**
@@ -119,17 +129,11 @@ public abstract class FileRequest<T> {
 	 */
 	public void notifyHandleException(FileRequestException ex)
 	{
-		synchronized(this)
-		{
-			// Set the exception, acts as a flag that it happened
-			this.handleException = ex;
-		
-			// Notify anyone waiting that they should stop
-			this.notifyAll();
-		}
+		// Set the exception first, so it's there for anyone who hears the request is done
+		this.handleException = ex;
 		
-		// Call the listener's exception method
-		this.notifyListenerOfException();
+		// Notify anyone waiting that they should stop, and the listener
+		future.completeExceptionally(ex);
 	}
 	
 	/**
@@ -141,6 +145,24 @@ public abstract class FileRequest<T> {
 		return address;
 	}
 	
+	/**
+	 * @return How soon the File Server should get to this request
+	 */
+	public RequestPriority getPriority()
+	{
+		return priority;
+	}
+	
+	/**
+	 * Set how soon the File Server should get to this request. Only has an effect before it's submitted. 
+	 * Loads that something is waiting on, like a login, should be URGENT.
+	 * @param priority How soon to get to the request
+	 */
+	public void setPriority(RequestPriority priority)
+	{
+		this.priority = priority;
+	}
+	
 	/**
 	 * Obtain the object representing the file this request was for. 
 	 * This object will not be assigned until the request has been successfully 
@@ -179,12 +201,41 @@ public abstract class FileRequest<T> {
 	/**
 	 * Attach a listener to this request so that whenever it has been served and is 
 	 * ready, the listener is called to take whatever action it specifies. 
-	 * This will overwrite any existing listener.
+	 * This will overwrite any existing listener. It's called on the thread that finishes the request, 
+	 * or straight away if the request is already done.
 	 * @param listener The listener specifying action to take when this request is ready
 	 */
 	public void attachListener(FileRequestListener<T> listener)
 	{
+		boolean first = (this.listener == null);
 		this.listener = listener;
+		
+		// Only chain on once. Whichever listener is attached by the time the request is done gets called
+		if(first)
+		{
+			future.whenComplete((file, ex) -> callListener(ex));
+		}
+	}
+	
+	/**
+	 * Call the listener for however the request turned out. A listener throwing shouldn't stop 
+	 * the rest of what's chained on, so it's just logged.
+	 * @param ex The exception from handling the request, or null if it's ready
+	 */
+	private void callListener(Throwable ex)
+	{
+		try {
+			if(ex == null)
+			{
+				notifyListenerThatRequestIsReady();
+			}
+			else
+			{
+				notifyListenerOfException();
+			}
+		} catch (RuntimeException e) {
+			Logger.instance().logException("FileRequestListener threw an exception", e);
+		}
 	}
 	
 	/**
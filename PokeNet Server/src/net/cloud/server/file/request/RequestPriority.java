@@ -0,0 +1,20 @@
+package net.cloud.server.file.request;
+
+/**
+ * How soon a FileRequest should be handled, compared to the others waiting in the same lane of the File Server. 
+ * A lane always handles the most urgent request it has first. Declared from most to least urgent. <br>
+ * Priority never lets a request overtake one for the same file that was submitted before it. 
+ * A request that would is handled at the priority of the one it would have overtaken instead.
+ */
+public enum RequestPriority {
+	
+	/** Something is blocked until this is done, like a login */
+	URGENT,
+	
+	/** Loading a file. Loads default to this */
+	LOAD,
+	
+	/** Writing out a file that nothing is waiting on. Saves default to this */
+	BACKGROUND;
+	
+}
@@ -13,12 +13,15 @@ import net.cloud.server.file.address.FileAddress;
 public abstract class SaveRequest<T> extends FileRequest<T> {
 
 	/**
-	 * Simply calls the super constructor. See {@link FileRequest#FileRequest(FileAddress)}
+	 * Calls the super constructor, see {@link FileRequest#FileRequest(FileAddress)}. 
+	 * Saves are background work unless given a priority otherwise.
 	 * @param address The location of the file we want to request
 	 */
 	public SaveRequest(FileAddress address)
 	{
 		super(address);
+		
+		setPriority(RequestPriority.BACKGROUND);
 	}
 
 }
@@ -1,5 +1,6 @@
 package net.cloud.server.game;
 
+import java.util.Locale;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 
@@ -42,7 +43,7 @@ public class DisconnectedPlayerMap {
 	 */
 	public Player get(String username)
 	{
-		return players.get(username.toLowerCase());
+		return players.get(username.toLowerCase(Locale.ROOT));
 	}
 	
 	/**
@@ -51,7 +52,7 @@ public class DisconnectedPlayerMap {
 	 */
 	public void place(Player player)
 	{
-		players.put(player.getUsername().toLowerCase(), player);
+		players.put(player.getUsername().toLowerCase(Locale.ROOT), player);
 	}
 	
 	/**
@@ -61,7 +62,7 @@ public class DisconnectedPlayerMap {
 	 */
 	public Player remove(String username)
 	{
-		return players.remove(username.toLowerCase());
+		return players.remove(username.toLowerCase(Locale.ROOT));
 	}
 	
 	/**
@@ -0,0 +1,214 @@
+package net.cloud.server.game;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.cloud.server.ConfigConstants;
+import net.cloud.server.event.shutdown.ShutdownHook;
+import net.cloud.server.event.shutdown.ShutdownService;
+import net.cloud.server.event.shutdown.hooks.GameEngineShutdownHook;
+import net.cloud.server.logging.Logger;
+import net.cloud.server.nio.packet.PacketHandler;
+import net.cloud.server.nio.packet.PacketSender;
+import net.cloud.server.tracking.StatTracker;
+
+/**
+ * The GameEngine drives the world forward, one tick at a time. It owns a single world thread,
+ * and anything that changes game state is meant to happen on that thread. <br>
+ * Netty workers no longer handle packets themselves. They decode a packet and place it in the
+ * queue belonging to that connection's PacketHandler. Once per tick, the world thread drains every
+ * queue, in the order the connections were made, so that handling is deterministic and never
+ * competes with socket reads. <br>
+ * Other threads (listeners, timeouts) can hand work over to the world thread via <code>submit(...)</code>
+ */
+public class GameEngine implements ShutdownService {
+
+	/** Singleton instance */
+	private static volatile GameEngine instance;
+
+	/** A single thread executor. Ticks and submitted work are all run on it, so they never overlap */
+	private final ScheduledExecutorService worldExecutor;
+
+	/** Every connection that may have packets for us, ordered by when they connected */
+	private final ConcurrentSkipListMap<Long, PacketHandler> connections;
+
+	/** Hands out the keys for the connection map. Always increasing, so order is preserved */
+	private final AtomicLong nextConnectionID;
+
+	/** Senders that have had packets sent during the current tick. Only touched on the world thread */
+	private final List<PacketSender> dirtySenders;
+	
+	/** The thread the world executor runs on. Set once the executor creates it */
+	private volatile Thread worldThread;
+
+	/** The hook to stop the engine */
+	private ShutdownHook shutdownHook;
+
+	/** Private constructor. Creates the world thread and starts ticking */
+	private GameEngine()
+	{
+		connections = new ConcurrentSkipListMap<>();
+		nextConnectionID = new AtomicLong(0);
+		dirtySenders = new ArrayList<>();
+
+		// Only ever one thread. We keep track of it so callers can tell if they're already on it
+		worldExecutor = Executors.newSingleThreadScheduledExecutor((runnable) ->
+		{
+			worldThread = new Thread(runnable, "World Thread");
+			return worldThread;
+		});
+
+		// Fixed rate - a slow tick will be followed right away by the next one to catch up
+		worldExecutor.scheduleAtFixedRate(this::tick, ConfigConstants.TICK_RATE, ConfigConstants.TICK_RATE, TimeUnit.MILLISECONDS);
+
+		shutdownHook = new GameEngineShutdownHook(worldExecutor);
+
+		Logger.writer().println("Game Engine now running");
+		Logger.writer().flush();
+	}
+
+	/**
+	 * Obtain a reference to the GameEngine, which runs the world thread
+	 * @return The singleton GameEngine instance
+	 */
+	public static GameEngine instance()
+	{
+		if(instance == null)
+		{
+			synchronized(GameEngine.class)
+			{
+				if(instance == null)
+				{
+					instance = new GameEngine();
+				}
+			}
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Register a connection's PacketHandler so that its queued packets are handled each tick.
+	 * Connections are handled in the order they were registered.
+	 * The handler is dropped on its own once its channel has closed and its queue is empty.
+	 * @param handler The PacketHandler for a new connection
+	 */
+	public void register(PacketHandler handler)
+	{
+		connections.put(nextConnectionID.getAndIncrement(), handler);
+	}
+
+	/**
+	 * Run some code on the world thread. It will run in between ticks, never during one.
+	 * Use this from other threads whenever the code is going to change game state.
+	 * @param task The code to run on the world thread
+	 */
+	public void submit(Runnable task)
+	{
+		worldExecutor.execute(() ->
+		{
+			// An exception would otherwise vanish inside the executor
+			try {
+				task.run();
+			} catch (Exception e) {
+				Logger.instance().logException("Exception while running task on world thread", e);
+			}
+			
+			// Anything the task sent goes out now, rather than waiting on the next tick
+			flushDirtySenders();
+		});
+	}
+
+	/**
+	 * Check if the calling thread is the world thread
+	 * @return True if the caller is running on the world thread
+	 */
+	public boolean inWorldThread()
+	{
+		return Thread.currentThread() == worldThread;
+	}
+
+	/**
+	 * Have a PacketSender flushed once the current tick (or task) is done. 
+	 * Must be called from the world thread. The sender is responsible for only asking once.
+	 * @param sender A sender that has written packets which have not been flushed
+	 */
+	public void flushLater(PacketSender sender)
+	{
+		dirtySenders.add(sender);
+	}
+	
+	/**
+	 * A single tick. Every connection gets its queued packets handled, in order.
+	 * Timing information is passed along to the StatTracker afterwards.
+	 */
+	private void tick()
+	{
+		long start = System.nanoTime();
+
+		// Any exception escaping this method would stop the ticks for good
+		try {
+			handleAllPackets();
+		} catch (Exception e) {
+			Logger.instance().logException("Exception during game tick", e);
+		}
+		
+		// Everything sent this tick goes out in one flush per channel
+		flushDirtySenders();
+
+		StatTracker.instance().updateTickTime(System.nanoTime() - start);
+	}
+
+	/**
+	 * Go through each connection in order and have it handle the packets it had waiting.
+	 * Closed connections are removed once their last packets have been handled.
+	 */
+	private void handleAllPackets()
+	{
+		Iterator<PacketHandler> it = connections.values().iterator();
+		while(it.hasNext())
+		{
+			PacketHandler handler = it.next();
+
+			// Check closed before draining. Anything queued before it closed is then guaranteed to be drained.
+			boolean closed = handler.isClosed();
+
+			handler.handleQueuedPackets();
+
+			if(closed)
+			{
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Flush every sender that had packets written since the last time this was done
+	 */
+	private void flushDirtySenders()
+	{
+		for(PacketSender sender : dirtySenders)
+		{
+			sender.flush();
+		}
+		
+		dirtySenders.clear();
+	}
+	
+	/**
+	 * Obtain the ShutdownHook for the GameEngine. It is created along with the engine,
+	 * so a NPE is not a concern. Shutting down stops the ticks.
+	 */
+	@Override
+	public ShutdownHook getShutdownHook() throws NullPointerException
+	{
+		return shutdownHook;
+	}
+
+}
@@ -0,0 +1,172 @@
+package net.cloud.server.game;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import net.cloud.server.entity.player.Player;
+
+/**
+ * A fixed number of slots which players in the world sit in. Each player gets a small index for as long as
+ * they're in the world, which fits in 2 bytes, and can stand in for them wherever a username would be bulky. <br>
+ * Going over every player is a walk along a plain array, up to the highest slot ever handed out, with nothing
+ * allocated along the way. Slots that are let go of go on a free list and are handed out again before any new ones. <br>
+ * Claiming and releasing slots is synchronized. Looking players up and going over them is not, and may happen
+ * on any thread - a player claimed or released meanwhile may or may not be seen.
+ */
+public class PlayerSlotTable {
+
+	/** Slot index of a player that doesn't have one */
+	public static final int NO_SLOT = -1;
+
+	/** Most slots a table may have, so an index always fits in an unsigned short */
+	public static final int MAX_CAPACITY = 0xFFFF;
+
+	/** The players, by slot index. Empty slots are null */
+	private final AtomicReferenceArray<Player> slots;
+
+	/** Slots that have been released, waiting to be handed out again. Used as a stack */
+	private final int[] freeSlots;
+
+	/** How many slots are on the free list */
+	private int freeCount;
+
+	/** One past the highest slot ever handed out. Nothing at or past here needs looking at */
+	private volatile int highWater;
+
+	/** How many slots are taken */
+	private volatile int size;
+
+	/**
+	 * Create a table with the given number of slots, all of them empty
+	 * @param capacity How many players the table can hold
+	 * @throws IllegalArgumentException If the capacity is not positive, or more than MAX_CAPACITY
+	 */
+	public PlayerSlotTable(int capacity) throws IllegalArgumentException
+	{
+		if(capacity <= 0 || capacity > MAX_CAPACITY)
+		{
+			throw new IllegalArgumentException("Slot table capacity out of range: " + capacity);
+		}
+
+		slots = new AtomicReferenceArray<>(capacity);
+		freeSlots = new int[capacity];
+	}
+
+	/**
+	 * Give the player a slot. Released slots are reused first, so the taken ones stay packed toward the front
+	 * @param player The player that needs a slot
+	 * @return The index of the slot they were given
+	 * @throws IllegalStateException If every slot is taken
+	 */
+	public synchronized int claim(Player player) throws IllegalStateException
+	{
+		int slot;
+		if(freeCount > 0)
+		{
+			slot = freeSlots[--freeCount];
+		}
+		else if(highWater < slots.length())
+		{
+			slot = highWater;
+			highWater = slot + 1;
+		}
+		else {
+			throw new IllegalStateException("No free player slots. Capacity is " + slots.length());
+		}
+
+		slots.set(slot, player);
+		size = size + 1;
+
+		return slot;
+	}
+
+	/**
+	 * Empty the slot, if the given player is the one in it, and make it free for someone else
+	 * @param slot The index of the slot
+	 * @param player The player that was in it
+	 * @return True if they were in the slot and now aren't, false if the slot was not theirs
+	 */
+	public synchronized boolean release(int slot, Player player)
+	{
+		if(slot < 0 || slot >= highWater || !slots.compareAndSet(slot, player, null))
+		{
+			return false;
+		}
+
+		freeSlots[freeCount++] = slot;
+		size = size - 1;
+
+		return true;
+	}
+
+	/**
+	 * Look up the player in a slot
+	 * @param slot The index of the slot
+	 * @return The player in the slot, or null if it's empty or out of range
+	 */
+	public Player get(int slot)
+	{
+		if(slot < 0 || slot >= highWater)
+		{
+			return null;
+		}
+
+		return slots.get(slot);
+	}
+
+	/**
+	 * Perform the given action on each player in the table, in slot order.
+	 * If an exception is thrown, the iteration will abruptly stop.
+	 * @param action What to do with each Player
+	 */
+	public void forEach(Consumer<Player> action)
+	{
+		int end = highWater;
+		for(int i = 0; i < end; ++i)
+		{
+			Player p = slots.get(i);
+			if(p != null)
+			{
+				action.accept(p);
+			}
+		}
+	}
+
+	/**
+	 * Find the first player, in slot order, matching the condition
+	 * @param condition The condition with which to match players
+	 * @return The first matching Player, or null if none match
+	 */
+	public Player search(Predicate<Player> condition)
+	{
+		int end = highWater;
+		for(int i = 0; i < end; ++i)
+		{
+			Player p = slots.get(i);
+			if(p != null && condition.test(p))
+			{
+				return p;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * @return How many slots are taken
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @return How many slots there are altogether
+	 */
+	public int capacity()
+	{
+		return slots.length();
+	}
+
+}
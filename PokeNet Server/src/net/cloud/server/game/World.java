@@ -35,9 +35,10 @@ public class World {
 		// Initialize the map of disconnected players
 		disconnectMap = new DisconnectedPlayerMap();
 		
-		// Now that we have the list of players, can safely kick off the saving task
-		saveTask = new PlayerSaveTask();
-		TaskEngine.instance().scheduleImmediate(ConfigConstants.SAVE_INTERVAL, saveTask);
+		// Now that we have the list of players, can safely kick off the saving task. It runs once per bucket each interval,
+		// and hands each bucket to the world thread to save
+		saveTask = new PlayerSaveTask(ConfigConstants.SAVE_BUCKETS);
+		TaskEngine.instance().scheduleImmediate(ConfigConstants.SAVE_INTERVAL / ConfigConstants.SAVE_BUCKETS, saveTask);
 	}
 	
 	/**
@@ -1,21 +1,35 @@
 package net.cloud.server.game;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 
+import java.util.Locale;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
+import net.cloud.server.ConfigConstants;
 import net.cloud.server.entity.player.LoginState;
 import net.cloud.server.entity.player.Player;
+import net.cloud.server.logging.Logger;
+import net.cloud.server.nio.bufferable.BufferableException;
+import net.cloud.server.nio.packet.Packet;
+import net.cloud.server.nio.packet.PacketCompressor;
+import net.cloud.server.nio.packet.PacketEncoder;
+import net.cloud.server.nio.packet.ProtocolVersion;
 import net.cloud.server.tracking.StatTracker;
-import net.cloud.server.util.function.ConsumerFilter;
 
 /**
  * An object designed to store all of the players that are currently connected to the server. 
  * Maintains a mapping from the Channel to the Player object, and provides facilities for 
  * adding and removing (analogous to logging in and out) as well as obtaining a Player and 
- * performing some action on all or a specific subset of Players. 
+ * performing some action on all or a specific subset of Players. <br>
+ * Players are also indexed by their username, ignoring case, so finding out whether an account is 
+ * already online doesn't mean looking at everyone. A username can be reserved for a player who is 
+ * partway through logging in, so a second login for the same account is turned away until they either 
+ * make it into the map or give up. <br>
+ * Each player in the map also has a slot in a PlayerSlotTable. Going over all the players walks the slots, 
+ * rather than the hash map.
  */
 public class WorldPlayerMap {
 	
@@ -28,18 +42,32 @@ public class WorldPlayerMap {
 	/** Essentially how many threads can concurrently access map. Keep as low as possible. */
 	private static final int MAP_SHARDS = 2;
 	
-	/** How many players should be online before bulk actions become parallel */
-	private static final long PARALLELISM_THRESHOLD = Long.MAX_VALUE;
-	
 	/** Stores a mapping from the channel the player is connected with to the player itself */
 	private ConcurrentHashMap<Channel, Player> players;
 	
+	/** The players in the map, each in their own slot */
+	private PlayerSlotTable slots;
+	
+	/** Lowercase username to the player holding it, whether they're in the map or have only reserved it */
+	private ConcurrentHashMap<String, Player> usernames;
+	
 	/**
-	 * Creates a new map ready to put players in. 
+	 * Creates a new map ready to put players in. Room for as many as the config allows
 	 */
 	public WorldPlayerMap()
 	{
+		this(ConfigConstants.MAX_PLAYERS);
+	}
+	
+	/**
+	 * Creates a new map ready to put players in
+	 * @param capacity The most players that may be in the map at once
+	 */
+	public WorldPlayerMap(int capacity)
+	{
+		slots = new PlayerSlotTable(capacity);
 		players = new ConcurrentHashMap<>(INITIAL_CAPACITY, LOAD_FACTOR, MAP_SHARDS);
+		usernames = new ConcurrentHashMap<>(INITIAL_CAPACITY, LOAD_FACTOR, MAP_SHARDS);
 	}
 	
 	/**
@@ -53,6 +81,77 @@ public class WorldPlayerMap {
 		return players.get(channel);
 	}
 	
+	/**
+	 * Find the player holding the given username, ignoring case. This may be a player who has only reserved 
+	 * the username, and is still logging in.
+	 * @param username The username to look for
+	 * @return The player holding the username, or null if nobody is
+	 */
+	public Player get(String username)
+	{
+		return usernames.get(username.toLowerCase(Locale.ROOT));
+	}
+	
+	/**
+	 * Find a player in the world by their slot index
+	 * @param slot The index of the slot
+	 * @return The player in that slot, or null if there isn't one
+	 */
+	public Player get(int slot)
+	{
+		return slots.get(slot);
+	}
+	
+	/**
+	 * Whether there's no room for anyone else to log in. Usernames that are only reserved count, 
+	 * since those players are on their way into a slot. Check before reserving
+	 * @return True if no more players may be let in
+	 */
+	public boolean isFull()
+	{
+		return usernames.size() >= slots.capacity();
+	}
+	
+	/**
+	 * Check whether anyone holds the given username, ignoring case. Includes players still logging in 
+	 * who have reserved it. Doesn't look through the players, so it's cheap however many are online.
+	 * @param username The username to look for
+	 * @return True if the username is taken
+	 */
+	public boolean hasUsername(String username)
+	{
+		return usernames.containsKey(username.toLowerCase(Locale.ROOT));
+	}
+	
+	/**
+	 * Claim the player's username for them while they finish logging in. Until they're placed in the map 
+	 * or the reservation is released, nobody else can hold the same username. 
+	 * @param player The player logging in, whose username is already set
+	 * @return True if the username is now theirs, false if someone else already has it
+	 */
+	public boolean reserve(Player player)
+	{
+		Player holder = usernames.putIfAbsent(player.getUsername().toLowerCase(Locale.ROOT), player);
+		
+		return holder == null || holder == player;
+	}
+	
+	/**
+	 * Give up the player's username, if they're the one holding it. For players that reserved a username 
+	 * and then didn't make it into the map. Removing a player from the map releases their username already.
+	 * @param player The player that is no longer logging in
+	 */
+	public void release(Player player)
+	{
+		// Players turned away early on never had a username set, let alone reserved
+		if(player.getUsername() == null)
+		{
+			return;
+		}
+		
+		usernames.remove(player.getUsername().toLowerCase(Locale.ROOT), player);
+	}
+	
 	/**
 	 * Search for a player in this map based on the given predicate condition. This will look through all 
 	 * of the players in the world until a match is found. If no match is found, null is returned. If a match 
@@ -62,12 +161,7 @@ public class WorldPlayerMap {
 	 */
 	public Player search(Predicate<Player> condition)
 	{
-		// Search through all players
-		return players.searchValues(PARALLELISM_THRESHOLD, (p) ->
-		{
-			// Checking to see if a player matches the condition
-			return condition.test(p) ? p : null;
-		});
+		return slots.search(condition);
 	}
 	
 	/**
@@ -84,13 +178,17 @@ public class WorldPlayerMap {
 	
 	/**
 	 * Place a Player into the World. (So they are in the global list of players) 
-	 * This needs to be done as part of logging in, early on
+	 * This needs to be done as part of logging in, early on. Their username becomes theirs, 
+	 * taking over from any reservation they made for it, and they're given a slot.
 	 * @param channel The Channel linking the player and server
 	 * @param player The new Player that just connected
+	 * @throws IllegalStateException If there's no slot for them. Logins are checked with isFull first, so this shouldn't happen
 	 */
-	public void place(Channel channel, Player player)
+	public void place(Channel channel, Player player) throws IllegalStateException
 	{
+		player.setSlot(slots.claim(player));
 		players.put(channel, player);
+		usernames.put(player.getUsername().toLowerCase(Locale.ROOT), player);
 		
 		// Report that the number of players online has changed.
 		StatTracker.instance().updatePlayersOnline(+1);
@@ -99,12 +197,24 @@ public class WorldPlayerMap {
 	/**
 	 * Remove a player from the global list. If you don't directly have the channel, 
 	 * recall the Player object has a PacketSender which has the Channel. 
-	 * This should be done on log out and to clean up inactive connections. 
+	 * This should be done on log out and to clean up inactive connections. Their username and slot are freed up as well.
 	 * @param channel The Channel the player is connected with
 	 */
 	public void remove(Channel channel)
 	{
-		players.remove(channel);
+		Player removed = players.remove(channel);
+		
+		// Connections that never made it into the world have nothing to remove
+		if(removed == null)
+		{
+			return;
+		}
+		
+		// Only if it's still theirs. The username must not be let go out from under whoever holds it now
+		usernames.remove(removed.getUsername().toLowerCase(Locale.ROOT), removed);
+		
+		slots.release(removed.getSlot(), removed);
+		removed.setSlot(PlayerSlotTable.NO_SLOT);
 		
 		// Report that the number of players online has changed.
 		StatTracker.instance().updatePlayersOnline(-1);
@@ -114,12 +224,12 @@ public class WorldPlayerMap {
 	 * Perform the given action on all players, regardless of whether they are 
 	 * still logging in, logged in, or disconnected but still in the map. Null values 
 	 * should not be encountered, so null checks should not be needed. If an exception is 
-	 * thrown, the iteration will abruptly stop. 
+	 * thrown, the iteration will abruptly stop. Players are gone over in slot order.
 	 * @param action What to do with each Player
 	 */
 	public void forAll(Consumer<Player> action)
 	{
-		players.forEachValue(PARALLELISM_THRESHOLD, action);
+		slots.forEach(action);
 	}
 	
 	/**
@@ -128,36 +238,139 @@ public class WorldPlayerMap {
 	 */
 	public void forAllLoggedIn(Consumer<Player> action)
 	{
-		players.forEachValue(PARALLELISM_THRESHOLD, new LoggedInFilter(action));
+		slots.forEach((p) ->
+		{
+			if(p.getLoginState() == LoginState.LOGGED_IN)
+			{
+				action.accept(p);
+			}
+		});
 	}
 	
 	/**
-	 * Specialized consumer which will only pass on the accept call if the player 
-	 * is logged in. 
+	 * @return How many players are in the map
 	 */
-	private static class LoggedInFilter extends ConsumerFilter<Player> {
-
-		/**
-		 * Create a new filter that will call the given consumer's accept method only if 
-		 * the player is logged in. 
-		 * @param consumer The composed consumer
-		 */
-		public LoggedInFilter(Consumer<Player> consumer)
+	public int size()
+	{
+		return slots.size();
+	}
+	
+	/**
+	 * Send a packet to every player in the map, regardless of login state. 
+	 * The packet is encoded only once, and every channel is given the same bytes.
+	 * @param packet The packet to send to everyone
+	 */
+	public void broadcast(Packet packet)
+	{
+		broadcast(packet, (p) -> true);
+	}
+	
+	/**
+	 * Send a packet to every player that is currently logged into the game. 
+	 * The packet is encoded only once, and every channel is given the same bytes.
+	 * @param packet The packet to send to all logged in players
+	 */
+	public void broadcastLoggedIn(Packet packet)
+	{
+		broadcast(packet, (p) -> p.getLoginState() == LoginState.LOGGED_IN);
+	}
+	
+	/**
+	 * Send a packet to every player matching the condition. The packet is encoded only once per protocol version 
+	 * in use, into a reference counted buffer, and compressed once if it's big enough. Each matching channel is written a retained duplicate of the one 
+	 * for its version, so no matter how many players there are, there's one encoding and one copy of the data for each.
+	 * @param packet The packet to send
+	 * @param condition Which players should receive the packet
+	 */
+	public void broadcast(Packet packet, Predicate<Player> condition)
+	{
+		// Filled in the first time a player on that version comes up. Slots are walked on this thread, so no need to guard it
+		Encoding[] encodings = new Encoding[ProtocolVersion.values().length];
+		
+		// Each channel holds its own reference until the write completes. Ours are let go at the end regardless
+		try {
+			slots.forEach((p) ->
+			{
+				if(condition.test(p))
+				{
+					Encoding encoding = encodingFor(packet, ProtocolVersion.of(p.getPacketSender().channel()), encodings);
+					if(encoding != null)
+					{
+						p.getPacketSender().sendEncoded(encoding.buffer);
+						encoding.channels++;
+					}
+				}
+			});
+		} finally {
+			for(Encoding encoding : encodings)
+			{
+				if(encoding != null)
+				{
+					// A packet for every channel it went out to, same as if they'd been sent one at a time
+					StatTracker.instance().updatePacketEncoded(packet.getOpcode(), encoding.length, encoding.channels, encoding.nanos);
+					encoding.buffer.release();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Get the packet encoded for the given version, encoding it if nobody has yet
+	 * @param packet The packet being broadcast
+	 * @param version The protocol version it's needed in
+	 * @param encodings The encodings so far, by version ordinal
+	 * @return The encoded packet, or null if it could not be encoded
+	 */
+	private Encoding encodingFor(Packet packet, ProtocolVersion version, Encoding[] encodings)
+	{
+		if(encodings[version.ordinal()] == null)
 		{
-			super(consumer);
+			try {
+				long start = System.nanoTime();
+				ByteBuf encoded = PacketEncoder.encodeShared(packet, version);
+				long nanos = System.nanoTime() - start;
+				int length = encoded.readableBytes();
+				
+				// Compressed here once, so each channel doesn't do it over again
+				ByteBuf buffer = ConfigConstants.COMPRESSION_ENABLED ? PacketCompressor.compressShared(encoded, version) : encoded;
+				encodings[version.ordinal()] = new Encoding(buffer, length, nanos);
+			} catch (BufferableException e) {
+				Logger.instance().logException("Could not encode packet for broadcast", e);
+			}
 		}
-
+		
+		return encodings[version.ordinal()];
+	}
+	
+	
+	/**
+	 * A broadcast packet encoded for one protocol version, and how many channels it has gone out to
+	 */
+	private static class Encoding {
+		
+		/** The packet, ready to write. Compressed if it was big enough */
+		private final ByteBuf buffer;
+		
+		/** Bytes it was encoded to, before any compression */
+		private final int length;
+		
+		/** How long encoding took */
+		private final long nanos;
+		
+		/** Channels it has been written to */
+		private int channels;
+		
 		/**
-		 * Allows the method call through only if the given player object is logged in
-		 * @param p The player to apply the accept method to
+		 * @param buffer The packet, ready to write
+		 * @param length Bytes it was encoded to, before any compression
+		 * @param nanos How long encoding took
 		 */
-		@Override
-		public void accept(Player p)
+		private Encoding(ByteBuf buffer, int length, long nanos)
 		{
-			if(p.getLoginState() == LoginState.LOGGED_IN)
-			{
-				passFilter(p);
-			}
+			this.buffer = buffer;
+			this.length = length;
+			this.nanos = nanos;
+			this.channels = 0;
 		}
 		
 	}
@@ -8,7 +8,10 @@ package net.cloud.server.game.action;
 public enum ButtonActionID implements ActionEnum {
 	
 	/** The logout button, telling us the player wants to log out */
-	LOGOUT("Logout");
+	LOGOUT("Logout"),
+	
+	/** Not a real button. Answered with a TestPacket right away, so load testing bots can time a round trip */
+	PING("Ping");
 	
 	/** File name */
 	private final String canonicalName;
@@ -0,0 +1,226 @@
+package net.cloud.server.nio;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.cloud.server.ConfigConstants;
+import net.cloud.server.tracking.StatTracker;
+import net.cloud.server.util.TokenBucket;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+
+/**
+ * Decides whether a newly accepted connection is let in at all. It sits on the server (accepting) channel, ahead of
+ * the part of Netty that registers a new connection and runs NettyServerChannelInitializer on it, so a connection
+ * that is turned away never gets a Player, a PacketHandler, or a timeout. <br>
+ * A connection is turned away if the server already has the most connections it allows, if its address already has
+ * the most connections one address may have, or if its address has been connecting faster than it's allowed to.
+ * Each address gets a token bucket for that last one. <br>
+ * Accepts only happen on the server channel's event loop, so that's the only thread that touches the buckets.
+ * Connections are counted off again from whichever worker closes them, so the counts are atomic.
+ */
+@Sharable
+public class ConnectionAdmissionHandler extends ChannelInboundHandlerAdapter {
+
+	/** Why a connection was turned away */
+	public enum Rejection {
+
+		/** The server had as many connections as it allows */
+		SERVER_FULL,
+
+		/** The address had as many connections as one address may have */
+		ADDRESS_FULL,
+
+		/** The address was connecting too often */
+		CONNECT_RATE
+	}
+
+	/** Most connections the server allows at once */
+	private final int maxConnections;
+
+	/** Most connections one address may have at once */
+	private final int maxPerAddress;
+
+	/** Connections per second an address may make, on average */
+	private final double ratePerAddress;
+
+	/** Connections an address may make in a burst */
+	private final int burstPerAddress;
+
+	/** Connections currently open */
+	private final AtomicInteger connections;
+
+	/** What is known about each address that has connected recently */
+	private final ConcurrentHashMap<InetAddress, Host> hosts;
+
+	/** Whether the sweep of idle addresses has been started */
+	private boolean sweeping;
+
+	/**
+	 * Create an admission handler with the limits from ConfigConstants
+	 */
+	public ConnectionAdmissionHandler()
+	{
+		this(ConfigConstants.MAX_CONNECTIONS, ConfigConstants.MAX_CONNECTIONS_PER_ADDRESS,
+				ConfigConstants.CONNECT_RATE_PER_ADDRESS, ConfigConstants.CONNECT_BURST_PER_ADDRESS);
+	}
+
+	/**
+	 * Create an admission handler with the given limits
+	 * @param maxConnections Most connections the server allows at once
+	 * @param maxPerAddress Most connections one address may have at once
+	 * @param ratePerAddress Connections per second an address may make, on average
+	 * @param burstPerAddress Connections an address may make in a burst
+	 */
+	public ConnectionAdmissionHandler(int maxConnections, int maxPerAddress, double ratePerAddress, int burstPerAddress)
+	{
+		this.maxConnections = maxConnections;
+		this.maxPerAddress = maxPerAddress;
+		this.ratePerAddress = ratePerAddress;
+		this.burstPerAddress = burstPerAddress;
+		this.connections = new AtomicInteger(0);
+		this.hosts = new ConcurrentHashMap<>();
+		this.sweeping = false;
+	}
+
+	/**
+	 * Every message the server channel reads is a newly accepted connection. Only the ones that are admitted are
+	 * passed on to be registered and initialized
+	 */
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception
+	{
+		if(!(msg instanceof Channel))
+		{
+			ctx.fireChannelRead(msg);
+			return;
+		}
+
+		if(!sweeping)
+		{
+			sweeping = true;
+			ctx.executor().scheduleWithFixedDelay(this::sweep, ConfigConstants.ADMISSION_SWEEP_INTERVAL,
+					ConfigConstants.ADMISSION_SWEEP_INTERVAL, TimeUnit.MILLISECONDS);
+		}
+
+		Channel child = (Channel) msg;
+		Rejection rejection = admit(child);
+		if(rejection != null)
+		{
+			StatTracker.instance().updateConnectionsRejected(rejection);
+
+			// Never registered, so it's closed right here rather than through its (empty) pipeline
+			child.unsafe().closeForcibly();
+			return;
+		}
+
+		ctx.fireChannelRead(child);
+	}
+
+	/**
+	 * Check the connection against each limit. If it's let in, it's counted until it closes
+	 * @param child The newly accepted connection
+	 * @return Why it was turned away, or null if it's let in
+	 */
+	private Rejection admit(Channel child)
+	{
+		InetAddress address = addressOf(child.remoteAddress());
+		Host host = hosts.computeIfAbsent(address, (a) -> new Host(new TokenBucket(ratePerAddress, burstPerAddress)));
+
+		// The rate is charged whether or not it gets in, so hammering away at a full server doesn't go unnoticed
+		if(!host.bucket.tryTake())
+		{
+			return Rejection.CONNECT_RATE;
+		}
+
+		if(connections.incrementAndGet() > maxConnections)
+		{
+			connections.decrementAndGet();
+			return Rejection.SERVER_FULL;
+		}
+
+		if(host.connections.incrementAndGet() > maxPerAddress)
+		{
+			host.connections.decrementAndGet();
+			connections.decrementAndGet();
+			return Rejection.ADDRESS_FULL;
+		}
+
+		child.closeFuture().addListener((f) ->
+		{
+			host.connections.decrementAndGet();
+			connections.decrementAndGet();
+		});
+
+		return null;
+	}
+
+	/**
+	 * Forget addresses with no connections open whose bucket has filled back up. They look the same as an
+	 * address that has never connected. Runs on the server channel's event loop, like admit
+	 */
+	private void sweep()
+	{
+		hosts.entrySet().removeIf((entry) ->
+				entry.getValue().connections.get() == 0 && entry.getValue().bucket.tokens() >= burstPerAddress);
+	}
+
+	/**
+	 * @return Connections currently open
+	 */
+	public int getConnections()
+	{
+		return connections.get();
+	}
+
+	/**
+	 * @param address A remote address
+	 * @return Connections currently open from it
+	 */
+	public int getConnections(InetAddress address)
+	{
+		Host host = hosts.get(address);
+
+		return host == null ? 0 : host.connections.get();
+	}
+
+	/**
+	 * @param remote The remote address of a connection
+	 * @return The host part of it. Anything that isn't an internet address (like a local channel) all counts as one
+	 */
+	private static InetAddress addressOf(SocketAddress remote)
+	{
+		if(remote instanceof InetSocketAddress && ((InetSocketAddress) remote).getAddress() != null)
+		{
+			return ((InetSocketAddress) remote).getAddress();
+		}
+
+		return InetAddress.getLoopbackAddress();
+	}
+
+	/** What is known about one remote address */
+	private static class Host {
+
+		/** Connections currently open from the address */
+		private final AtomicInteger connections;
+
+		/** Limits how often the address may connect. Only touched on the server channel's event loop */
+		private final TokenBucket bucket;
+
+		/**
+		 * @param bucket Limits how often the address may connect
+		 */
+		private Host(TokenBucket bucket)
+		{
+			this.connections = new AtomicInteger(0);
+			this.bucket = bucket;
+		}
+	}
+
+}
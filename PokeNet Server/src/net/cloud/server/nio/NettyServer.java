@@ -10,8 +10,6 @@ import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 
 /**
  * Initializes the server, built on the Netty framework. 
@@ -40,19 +38,26 @@ public class NettyServer implements ShutdownService {
 		Logger.writer().println("Starting PokeNet Server...");
 		Logger.writer().flush();
 
+		// Settings come from system properties, if they were given. Epoll is used if it's there
+		NetworkConfig config = NetworkConfig.fromSystemProperties();
+		Transport transport = config.transport();
+		
+		Logger.writer().println("Network: " + config);
+		Logger.writer().flush();
+
 		// First, EventLoopGroups are created - for handling tasks
-		EventLoopGroup bossGroup = new NioEventLoopGroup();
-		EventLoopGroup workerGroup = new NioEventLoopGroup();
+		EventLoopGroup bossGroup = transport.newEventLoopGroup(config.getBossThreads());
+		EventLoopGroup workerGroup = transport.newEventLoopGroup(config.getWorkerThreads());
 		
 		// Bootstrap object handles a lot of start up for us
 		ServerBootstrap bootStrap = new ServerBootstrap();
 
-		// While this configures the server
+		// While this configures the server. Connections are admitted (or not) before they are initialized
 		bootStrap.group(bossGroup, workerGroup);
-		bootStrap.channel(NioServerSocketChannel.class);
+		bootStrap.channel(transport.serverChannelClass());
+		bootStrap.handler(new ConnectionAdmissionHandler());
 		bootStrap.childHandler(new NettyServerChannelInitializer());
-		bootStrap.option(ChannelOption.SO_BACKLOG, 128);
-		bootStrap.childOption(ChannelOption.SO_KEEPALIVE, true);
+		configure(bootStrap, config);
 
 		// This allows for incoming connections, waits until binding is done
 		ChannelFuture future = bootStrap.bind(PORT).sync();
@@ -64,6 +69,35 @@ public class NettyServer implements ShutdownService {
 		shutdownHook = new NettyShutdownHook(future, bossGroup, workerGroup);
 	}
 
+	/**
+	 * Apply the socket and channel options from the configuration to the bootstrap
+	 * @param bootStrap The bootstrap for the server
+	 * @param config The settings to apply
+	 */
+	public static void configure(ServerBootstrap bootStrap, NetworkConfig config)
+	{
+		// Options for the accepting socket
+		bootStrap.option(ChannelOption.SO_BACKLOG, config.getBacklog());
+		bootStrap.option(ChannelOption.ALLOCATOR, config.allocator());
+		
+		// Options for each connection
+		bootStrap.childOption(ChannelOption.SO_KEEPALIVE, true);
+		bootStrap.childOption(ChannelOption.TCP_NODELAY, config.isTcpNoDelay());
+		bootStrap.childOption(ChannelOption.ALLOCATOR, config.allocator());
+		// Both marks at once. Set separately, each is checked against the other's default and may be ignored
+		bootStrap.childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, config.writeBufferWaterMark());
+		
+		// Zero means leave the OS default alone
+		if(config.getSendBufferSize() > 0)
+		{
+			bootStrap.childOption(ChannelOption.SO_SNDBUF, config.getSendBufferSize());
+		}
+		if(config.getReceiveBufferSize() > 0)
+		{
+			bootStrap.childOption(ChannelOption.SO_RCVBUF, config.getReceiveBufferSize());
+		}
+	}
+
 	@Override
 	public ShutdownHook getShutdownHook() throws NullPointerException
 	{
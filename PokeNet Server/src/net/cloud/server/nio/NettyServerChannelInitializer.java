@@ -1,20 +1,26 @@
 package net.cloud.server.nio;
 
+import net.cloud.server.ConfigConstants;
 import net.cloud.server.entity.player.LoginHandler;
 import net.cloud.server.entity.player.Player;
 import net.cloud.server.entity.player.PlayerChannelConfig;
 import net.cloud.server.entity.player.PlayerFactory;
-import net.cloud.server.event.task.TaskEngine;
+import net.cloud.server.event.task.TimeoutService;
 import net.cloud.server.event.task.voidtasks.ConnectTimeoutTask;
-import net.cloud.server.nio.packet.PacketConstants;
+import net.cloud.server.game.GameEngine;
+import net.cloud.server.nio.packet.BackpressureHandler;
+import net.cloud.server.nio.packet.InboundRateLimiter;
+import net.cloud.server.nio.packet.LengthPrepender;
+import net.cloud.server.nio.packet.PacketChunker;
+import net.cloud.server.nio.packet.PacketCompressor;
 import net.cloud.server.nio.packet.PacketDecoder;
 import net.cloud.server.nio.packet.PacketEncoder;
 import net.cloud.server.nio.packet.PacketHandler;
 import net.cloud.server.nio.packet.PacketSender;
+import net.cloud.server.nio.packet.ProtocolHandshakeHandler;
+import net.cloud.server.nio.packet.TickFlushHandler;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
-import io.netty.handler.codec.LengthFieldPrepender;
 
 /**
  * Top level class for the channel initializer. It's a specialized ChannelInboundAdapter
@@ -23,6 +29,9 @@ import io.netty.handler.codec.LengthFieldPrepender;
  */
 public class NettyServerChannelInitializer extends ChannelInitializer<SocketChannel> {
 	
+	/** The compressor has no per-channel state, so every channel shares it */
+	private static final PacketCompressor COMPRESSOR = new PacketCompressor();
+	
 	/**
 	 * Initialize a channel pipeline, which will send packets through various decoders and then a PacketHandler, 
 	 * and also through various encoders going the other direction. 
@@ -36,31 +45,36 @@ public class NettyServerChannelInitializer extends ChannelInitializer<SocketChan
 		PlayerChannelConfig config = new PlayerChannelConfig();
 		Player newPlayer = PlayerFactory.createOnNewConnection(packetSender, config);
 		
-		// Add a listener which will call handle disconnect when the channel is closed
-		config.setDcListener((f) -> LoginHandler.handleDisconnect(newPlayer));
+		// Add a listener which will call handle disconnect when the channel is closed. It changes the world, so it runs on the world thread
+		config.setDcListener((f) -> GameEngine.instance().submit(() -> LoginHandler.handleDisconnect(newPlayer)));
 		channel.closeFuture().addListener(config.getDcListener());
 		
 		// At this point, state is CONNECTED. They should be following up to become VERIFIED soon.
 		// so we use a task to time-out and abort the player if they fail to do so
-		config.setConnectTimeoutTask(new ConnectTimeoutTask(newPlayer));
-		TaskEngine.instance().submitDelayed(LoginHandler.TIMEOUT, config.getConnectTimeoutTask());
+		config.setLoginTimeout(TimeoutService.instance().schedule(LoginHandler.TIMEOUT, new ConnectTimeoutTask(newPlayer)));
 		
 		PacketHandler packetHandler = new PacketHandler(newPlayer);
 		config.setPacketHandler(packetHandler);
 		
-		// Inbound handlers
-		channel.pipeline().addLast(new LengthFieldBasedFrameDecoder(
-				PacketConstants.MAX_PACKET_LENGTH, 
-				PacketConstants.LENGTH_FIELD_OFFSET,
-				PacketConstants.LENGTH_FIELD_LENGTH, 
-				PacketConstants.LENGTH_FIELD_ADJUSTMENT, 
-				PacketConstants.BYTES_TO_STRIP),
+		// The handler only queues packets up. The game engine will drain the queue each tick
+		GameEngine.instance().register(packetHandler);
+		
+		// Closest to the socket, so it sees every outbound byte and every flush. Then the check for clients not reading
+		channel.pipeline().addLast(new TickFlushHandler(), new BackpressureHandler());
+		
+		// Inbound handlers. The handshake settles the protocol version and leaves, the decoder does its own framing
+		channel.pipeline().addLast(new ProtocolHandshakeHandler(),
 				new PacketDecoder(),
+				new InboundRateLimiter(),
 				packetHandler);
 
-		// Outbound handlers
-		channel.pipeline().addLast(new LengthFieldPrepender(PacketConstants.LENGTH_FIELD_LENGTH),
-				new PacketEncoder());
+		// Outbound handlers. Packets too big for one frame are chunked after compression, when it's turned on
+		channel.pipeline().addLast(new LengthPrepender(), new PacketChunker());
+		if(ConfigConstants.COMPRESSION_ENABLED)
+		{
+			channel.pipeline().addLast(COMPRESSOR);
+		}
+		channel.pipeline().addLast(new PacketEncoder());
 		
 	}
 
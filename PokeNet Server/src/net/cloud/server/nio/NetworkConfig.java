@@ -0,0 +1,222 @@
+package net.cloud.server.nio;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.WriteBufferWaterMark;
+import net.cloud.server.ConfigConstants;
+
+/**
+ * The settings the Netty server starts up with. Each one may be given at runtime as a system property
+ * (ie <code>-Dpokenet.net.workerThreads=4</code>), and falls back to the default in ConfigConstants otherwise.
+ * The object is immutable once created.
+ */
+public class NetworkConfig {
+
+	/** All of the system properties share this prefix */
+	public static final String PROPERTY_PREFIX = "pokenet.net.";
+
+	/** Whether the native epoll transport should be used when it's available */
+	private final boolean preferNative;
+
+	/** Threads accepting connections */
+	private final int bossThreads;
+
+	/** Threads doing I/O for established connections. 0 means Netty's default */
+	private final int workerThreads;
+
+	/** How many pending connections the OS will queue up before refusing more */
+	private final int backlog;
+
+	/** Whether Nagle's algorithm is turned off */
+	private final boolean tcpNoDelay;
+
+	/** The socket send buffer size (bytes). 0 leaves it up to the OS */
+	private final int sendBufferSize;
+
+	/** The socket receive buffer size (bytes). 0 leaves it up to the OS */
+	private final int receiveBufferSize;
+
+	/** Once this many bytes are waiting to be written, the channel becomes unwritable */
+	private final int writeBufferHighWaterMark;
+
+	/** Once an unwritable channel is back under this many bytes, it becomes writable again */
+	private final int writeBufferLowWaterMark;
+
+	/** Either "pooled" or "unpooled" */
+	private final String allocator;
+
+	/**
+	 * Create a configuration with every value given directly. Mostly useful for benchmarks and tests,
+	 * the server itself uses <code>fromSystemProperties()</code>
+	 * @param preferNative Whether the native epoll transport should be used when available
+	 * @param bossThreads Threads accepting connections
+	 * @param workerThreads Threads doing I/O for established connections. 0 for Netty's default
+	 * @param backlog Pending connection queue length
+	 * @param tcpNoDelay Whether to turn off Nagle's algorithm
+	 * @param sendBufferSize Socket send buffer size. 0 for the OS default
+	 * @param receiveBufferSize Socket receive buffer size. 0 for the OS default
+	 * @param writeBufferHighWaterMark Bytes waiting before a channel becomes unwritable
+	 * @param writeBufferLowWaterMark Bytes waiting before a channel becomes writable again
+	 * @param allocator Either "pooled" or "unpooled"
+	 * @throws IllegalArgumentException If the low water mark is negative or above the high one
+	 */
+	public NetworkConfig(boolean preferNative, int bossThreads, int workerThreads, int backlog, boolean tcpNoDelay,
+			int sendBufferSize, int receiveBufferSize, int writeBufferHighWaterMark, int writeBufferLowWaterMark, String allocator)
+	{
+		// Netty would only log a bad pair and keep its own defaults, so don't let one get that far
+		if(writeBufferLowWaterMark < 0 || writeBufferLowWaterMark > writeBufferHighWaterMark)
+		{
+			throw new IllegalArgumentException("Write buffer low water mark " + writeBufferLowWaterMark
+					+ " must be between 0 and the high water mark " + writeBufferHighWaterMark);
+		}
+
+		this.preferNative = preferNative;
+		this.bossThreads = bossThreads;
+		this.workerThreads = workerThreads;
+		this.backlog = backlog;
+		this.tcpNoDelay = tcpNoDelay;
+		this.sendBufferSize = sendBufferSize;
+		this.receiveBufferSize = receiveBufferSize;
+		this.writeBufferHighWaterMark = writeBufferHighWaterMark;
+		this.writeBufferLowWaterMark = writeBufferLowWaterMark;
+		this.allocator = allocator;
+	}
+
+	/**
+	 * Create a configuration from the system properties, using the defaults from ConfigConstants for any not given
+	 * @return The configuration the server should run with
+	 * @throws IllegalArgumentException If the water marks given don't make sense together
+	 */
+	public static NetworkConfig fromSystemProperties()
+	{
+		return new NetworkConfig(
+				bool("preferNative", ConfigConstants.NET_PREFER_NATIVE),
+				integer("bossThreads", ConfigConstants.NET_BOSS_THREADS),
+				integer("workerThreads", ConfigConstants.NET_WORKER_THREADS),
+				integer("backlog", ConfigConstants.NET_BACKLOG),
+				bool("tcpNoDelay", ConfigConstants.NET_TCP_NODELAY),
+				integer("sendBufferSize", ConfigConstants.NET_SEND_BUFFER_SIZE),
+				integer("receiveBufferSize", ConfigConstants.NET_RECEIVE_BUFFER_SIZE),
+				integer("writeBufferHighWaterMark", ConfigConstants.NET_WRITE_BUFFER_HIGH_WATER_MARK),
+				integer("writeBufferLowWaterMark", ConfigConstants.NET_WRITE_BUFFER_LOW_WATER_MARK),
+				System.getProperty(PROPERTY_PREFIX + "allocator", ConfigConstants.NET_ALLOCATOR));
+	}
+
+	/**
+	 * @return The transport to use - epoll if preferred and available, NIO otherwise
+	 */
+	public Transport transport()
+	{
+		return Transport.select(preferNative);
+	}
+
+	/**
+	 * @return The allocator channels should use for their buffers
+	 */
+	public ByteBufAllocator allocator()
+	{
+		return "unpooled".equalsIgnoreCase(allocator) ? UnpooledByteBufAllocator.DEFAULT : PooledByteBufAllocator.DEFAULT;
+	}
+
+	/** @return Threads accepting connections */
+	public int getBossThreads()
+	{
+		return bossThreads;
+	}
+
+	/** @return Threads doing I/O for established connections. 0 means Netty's default */
+	public int getWorkerThreads()
+	{
+		return workerThreads;
+	}
+
+	/** @return The accept backlog */
+	public int getBacklog()
+	{
+		return backlog;
+	}
+
+	/** @return Whether Nagle's algorithm is turned off */
+	public boolean isTcpNoDelay()
+	{
+		return tcpNoDelay;
+	}
+
+	/** @return The socket send buffer size, 0 for the OS default */
+	public int getSendBufferSize()
+	{
+		return sendBufferSize;
+	}
+
+	/** @return The socket receive buffer size, 0 for the OS default */
+	public int getReceiveBufferSize()
+	{
+		return receiveBufferSize;
+	}
+
+	/** @return Bytes waiting to be written before a channel is unwritable */
+	public int getWriteBufferHighWaterMark()
+	{
+		return writeBufferHighWaterMark;
+	}
+
+	/** @return Bytes waiting to be written before a channel is writable again */
+	public int getWriteBufferLowWaterMark()
+	{
+		return writeBufferLowWaterMark;
+	}
+
+	/** @return Both water marks, as the channel option takes them */
+	public WriteBufferWaterMark writeBufferWaterMark()
+	{
+		return new WriteBufferWaterMark(writeBufferLowWaterMark, writeBufferHighWaterMark);
+	}
+
+	/**
+	 * A single line describing the configuration, to be logged on startup
+	 */
+	@Override
+	public String toString()
+	{
+		return transport() + " transport, " + bossThreads + " boss / " + (workerThreads == 0 ? "default" : workerThreads) + " worker threads, "
+				+ "backlog " + backlog + ", TCP_NODELAY " + tcpNoDelay + ", "
+				+ "sndbuf " + (sendBufferSize == 0 ? "os" : sendBufferSize) + ", rcvbuf " + (receiveBufferSize == 0 ? "os" : receiveBufferSize) + ", "
+				+ "water marks " + writeBufferLowWaterMark + "-" + writeBufferHighWaterMark + ", " + allocator + " allocator";
+	}
+
+	/**
+	 * Read a boolean system property
+	 * @param name The property, without the prefix
+	 * @param def Value if the property is not set
+	 * @return The value of the property
+	 */
+	private static boolean bool(String name, boolean def)
+	{
+		String value = System.getProperty(PROPERTY_PREFIX + name);
+
+		return value == null ? def : Boolean.parseBoolean(value.trim());
+	}
+
+	/**
+	 * Read an integer system property. A value that isn't a number is ignored
+	 * @param name The property, without the prefix
+	 * @param def Value if the property is not set
+	 * @return The value of the property
+	 */
+	private static int integer(String name, int def)
+	{
+		String value = System.getProperty(PROPERTY_PREFIX + name);
+		if(value == null)
+		{
+			return def;
+		}
+
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			return def;
+		}
+	}
+
+}
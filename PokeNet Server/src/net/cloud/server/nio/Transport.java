@@ -0,0 +1,70 @@
+package net.cloud.server.nio;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+
+/**
+ * The socket implementations Netty can run the server on. Native epoll is only usable on Linux
+ * (and only when its library loads), so NIO is always there to fall back on.
+ * Each transport knows which event loop group and channel types go together.
+ */
+public enum Transport {
+
+	/** Linux native epoll. Less garbage and fewer syscalls than NIO */
+	EPOLL,
+
+	/** Plain java NIO. Works everywhere */
+	NIO;
+
+	/**
+	 * Pick the transport to use. Epoll is chosen if it's preferred and available, otherwise NIO.
+	 * @param preferNative Whether the native transport should be used when possible
+	 * @return The transport to use
+	 */
+	public static Transport select(boolean preferNative)
+	{
+		return preferNative && Epoll.isAvailable() ? EPOLL : NIO;
+	}
+
+	/**
+	 * Create an event loop group for this transport
+	 * @param threads How many threads the group will have. 0 for Netty's default (twice the core count)
+	 * @return A new event loop group
+	 */
+	public EventLoopGroup newEventLoopGroup(int threads)
+	{
+		switch(this)
+		{
+		case EPOLL:
+			return new EpollEventLoopGroup(threads);
+
+		default:
+			return new NioEventLoopGroup(threads);
+		}
+	}
+
+	/**
+	 * @return The class of server channel that goes with this transport
+	 */
+	public Class<? extends ServerChannel> serverChannelClass()
+	{
+		return this == EPOLL ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+	}
+
+	/**
+	 * @return The class of client socket channel that goes with this transport
+	 */
+	public Class<? extends SocketChannel> socketChannelClass()
+	{
+		return this == EPOLL ? EpollSocketChannel.class : NioSocketChannel.class;
+	}
+
+}
@@ -0,0 +1,117 @@
+package net.cloud.server.nio.packet;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import net.cloud.server.ConfigConstants;
+import net.cloud.server.logging.Logger;
+import net.cloud.server.tracking.StatTracker;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPromise;
+
+/**
+ * Looks out for clients that aren't reading what is sent to them. The channel becomes unwritable once more than
+ * the high water mark is waiting to go out (see NetworkConfig). PacketSender drops low priority packets while
+ * it's unwritable, and PacketChunker holds back chunks, but everything else is still written. <br>
+ * So a connection that stays unwritable for SLOW_READER_TIMEOUT, or has more than MAX_PENDING_WRITE_BYTES
+ * waiting at any point, is closed rather than left to build up memory. Sits near the socket end of the pipeline.
+ */
+public class BackpressureHandler extends ChannelDuplexHandler {
+
+	/** Closes the connection if it's still unwritable when it runs. Null while writable */
+	private ScheduledFuture<?> slowReaderTimeout;
+
+	/** Set once the connection has been closed for reading too slowly */
+	private boolean closed;
+
+	/** Create a handler for a single channel. It keeps per-channel state, so it cannot be shared */
+	public BackpressureHandler()
+	{
+		this.slowReaderTimeout = null;
+		this.closed = false;
+	}
+
+	/**
+	 * Pass the write along, then make sure there isn't too much waiting to go out
+	 */
+	@Override
+	public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception
+	{
+		ctx.write(msg, promise);
+
+		ChannelOutboundBuffer outbound = ctx.channel().unsafe().outboundBuffer();
+		if(outbound != null && outbound.totalPendingWriteBytes() > ConfigConstants.MAX_PENDING_WRITE_BYTES)
+		{
+			disconnect(ctx, outbound.totalPendingWriteBytes() + " bytes waiting to be written");
+		}
+	}
+
+	/**
+	 * Start the clock when the channel becomes unwritable, and stop it when it's writable again
+	 */
+	@Override
+	public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception
+	{
+		if(!ctx.channel().isWritable())
+		{
+			if(slowReaderTimeout == null)
+			{
+				slowReaderTimeout = ctx.executor().schedule(() -> {
+					if(!ctx.channel().isWritable())
+					{
+						disconnect(ctx, "unwritable for " + ConfigConstants.SLOW_READER_TIMEOUT + "ms");
+					}
+				}, ConfigConstants.SLOW_READER_TIMEOUT, TimeUnit.MILLISECONDS);
+			}
+		}
+		else {
+			cancelTimeout();
+		}
+
+		ctx.fireChannelWritabilityChanged();
+	}
+
+	/**
+	 * Don't leave the timeout around once the channel is gone
+	 */
+	@Override
+	public void handlerRemoved(ChannelHandlerContext ctx) throws Exception
+	{
+		cancelTimeout();
+	}
+
+	/**
+	 * Cancel the slow reader timeout, if there is one
+	 */
+	private void cancelTimeout()
+	{
+		if(slowReaderTimeout != null)
+		{
+			slowReaderTimeout.cancel(false);
+			slowReaderTimeout = null;
+		}
+	}
+
+	/**
+	 * Close the connection for reading too slowly. Only the first call does anything
+	 * @param ctx The context for this handler
+	 * @param reason What gave it away, for the log
+	 */
+	private void disconnect(ChannelHandlerContext ctx, String reason)
+	{
+		if(closed)
+		{
+			return;
+		}
+
+		closed = true;
+		cancelTimeout();
+
+		Logger.instance().logMessage("Slow reader at " + ctx.channel().remoteAddress() + ", " + reason + ". Closing connection.");
+		StatTracker.instance().updateSlowReaderDisconnects();
+		ctx.close();
+	}
+
+}
@@ -0,0 +1,34 @@
+package net.cloud.server.nio.packet;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The preset dictionary both sides give to the deflater and inflater. Small packets compress poorly on their own, 
+ * since there's no history to find matches in. Starting from bytes that look like our packets fixes most of that. <br>
+ * The contents are the strings that show up in packets the most. Most common goes last, since deflate 
+ * finds closer matches cheaper. <b>Must</b> match the client's CompressionDictionary exactly, 
+ * or nothing compressed will inflate on the other side.
+ */
+public class CompressionDictionary {
+	
+	/** The dictionary itself. Not to be modified */
+	private static final byte[] DICTIONARY = (
+			"server is busy\0username\0password\0invalid\0already logged in\0"
+			+ "reconnect success.\r\nlast login: \0reconnect success.\nlast login: \0reconnect\0"
+			+ "/192.168.\0/10.0.\0/127.0.0.1:\0"
+			+ "login success.\r\nlast login: \0login success.\nlast login: \0login success\0login\0"
+			+ "\0\0\0\0\0\0\0\0\0\0\0\0\0\0\0\1\0\0\0\2\0\0\0\3\0\0\0\4"
+			).getBytes(StandardCharsets.US_ASCII);
+	
+	/** Static class, no instances */
+	private CompressionDictionary() {}
+	
+	/**
+	 * @return The bytes of the dictionary. The same array every time - do not modify it
+	 */
+	public static byte[] get()
+	{
+		return DICTIONARY;
+	}
+
+}
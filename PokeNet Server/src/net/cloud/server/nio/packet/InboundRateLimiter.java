@@ -0,0 +1,160 @@
+package net.cloud.server.nio.packet;
+
+import java.util.concurrent.TimeUnit;
+
+import net.cloud.server.logging.Logger;
+import net.cloud.server.nio.packet.packets.CompositePacket;
+import net.cloud.server.tracking.StatTracker;
+import net.cloud.server.util.TokenBucket;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+
+/**
+ * Limits how fast a connection may send packets. Sits between PacketDecoder and PacketHandler.
+ * Each TrafficClass has its own token bucket, and every decoded packet (every packet inside a composite, too)
+ * takes a token from the bucket for its class. <br>
+ * A packet that arrives when its bucket is empty is still let through, but the bucket goes into debt and the
+ * channel stops reading (autoRead off) until every bucket has paid its debt off. Whatever was already read keeps
+ * on being decoded in the meantime, so a connection that keeps going regardless runs up a debt as big as
+ * the bucket itself. That is flooding, and the connection is closed.
+ */
+public class InboundRateLimiter extends ChannelInboundHandlerAdapter {
+
+	/** A bucket for each TrafficClass, by ordinal */
+	private final TokenBucket[] buckets;
+
+	/** Whether turning reading back on has already been scheduled */
+	private boolean resumeScheduled;
+
+	/** Set once the connection has been closed for flooding. Anything else that comes through is thrown away */
+	private boolean closed;
+
+	/** Create a rate limiter for a single channel. It keeps per-channel state, so it cannot be shared */
+	public InboundRateLimiter()
+	{
+		TrafficClass[] classes = TrafficClass.values();
+
+		this.buckets = new TokenBucket[classes.length];
+		for(TrafficClass trafficClass : classes)
+		{
+			buckets[trafficClass.ordinal()] = trafficClass.newBucket();
+		}
+
+		this.resumeScheduled = false;
+		this.closed = false;
+	}
+
+	/**
+	 * Charge the packet to its bucket, and pass it on unless the connection is flooding
+	 */
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception
+	{
+		if(!(msg instanceof Packet))
+		{
+			ctx.fireChannelRead(msg);
+			return;
+		}
+
+		Packet packet = (Packet) msg;
+		if(closed || !charge(ctx, packet))
+		{
+			packet.discard();
+			packet.recycle();
+			return;
+		}
+
+		ctx.fireChannelRead(packet);
+	}
+
+	/**
+	 * Take a token for the packet, or one for each of the packets in a composite
+	 * @param ctx The context for this handler
+	 * @param packet The packet that was received
+	 * @return False if the connection is flooding and has been closed
+	 */
+	private boolean charge(ChannelHandlerContext ctx, Packet packet)
+	{
+		if(packet instanceof CompositePacket)
+		{
+			for(Packet component : ((CompositePacket) packet).getPackets())
+			{
+				if(!charge(ctx, component))
+				{
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		TokenBucket bucket = buckets[TrafficClass.of(packet.getOpcode()).ordinal()];
+		double tokens = bucket.take();
+
+		if(tokens < -bucket.capacity())
+		{
+			closed = true;
+
+			Logger.instance().logMessage("Packet flood from " + ctx.channel().remoteAddress() + ". Closing connection.");
+			StatTracker.instance().updateFloodDisconnects();
+			ctx.close();
+
+			return false;
+		}
+
+		if(tokens < 0)
+		{
+			pause(ctx, bucket);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Stop reading from the channel until the bucket is out of debt
+	 * @param ctx The context for this handler
+	 * @param bucket The bucket in debt
+	 */
+	private void pause(ChannelHandlerContext ctx, TokenBucket bucket)
+	{
+		if(ctx.channel().config().isAutoRead())
+		{
+			ctx.channel().config().setAutoRead(false);
+			StatTracker.instance().updateReadsThrottled();
+		}
+
+		if(!resumeScheduled)
+		{
+			resumeScheduled = true;
+			ctx.executor().schedule(() -> resume(ctx), bucket.nanosUntil(0), TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/**
+	 * Turn reading back on, unless some bucket is still in debt. Then wait for that one instead
+	 * @param ctx The context for this handler
+	 */
+	private void resume(ChannelHandlerContext ctx)
+	{
+		resumeScheduled = false;
+
+		if(closed)
+		{
+			return;
+		}
+
+		for(TokenBucket bucket : buckets)
+		{
+			long wait = bucket.nanosUntil(0);
+			if(wait > 0)
+			{
+				resumeScheduled = true;
+				ctx.executor().schedule(() -> resume(ctx), wait, TimeUnit.NANOSECONDS);
+				return;
+			}
+		}
+
+		ctx.channel().config().setAutoRead(true);
+	}
+
+}
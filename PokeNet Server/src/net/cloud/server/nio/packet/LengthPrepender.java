@@ -0,0 +1,43 @@
+package net.cloud.server.nio.packet;
+
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.EncoderException;
+import io.netty.handler.codec.MessageToMessageEncoder;
+
+/**
+ * Puts the length field in front of each outgoing packet. Unlike netty's LengthFieldPrepender, the packet's
+ * bytes are not copied into a new buffer. A small header buffer is written, followed by the packet buffer itself.
+ * This matters for broadcasts, where many channels are writing duplicates of the very same buffer. <br>
+ * The length field is an unsigned short under V1, and a VarInt under later protocol versions.
+ */
+public class LengthPrepender extends MessageToMessageEncoder<ByteBuf> {
+
+	/**
+	 * Write out the length header, then pass along the packet data untouched
+	 */
+	@Override
+	protected void encode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out) throws Exception
+	{
+		int length = msg.readableBytes();
+
+		// Anything bigger couldn't be decoded on the other side anyways, whichever way the length is written
+		if(length > 0xFFFF)
+		{
+			throw new EncoderException("Packet length " + length + " does not fit in the length field");
+		}
+
+		ProtocolVersion version = ProtocolVersion.of(ctx.channel());
+		
+		ByteBuf header = ctx.alloc().buffer(version.lengthFieldSize(length));
+		version.writeLength(header, length);
+
+		out.add(header);
+
+		// The encoder releases the message once this returns. We're passing it along, so it needs to stay alive
+		out.add(msg.retain());
+	}
+
+}
@@ -24,16 +24,64 @@ public interface Packet {
 	 */
 	public void encode(ByteBuf buffer) throws BufferableException;
 	
+	/**
+	 * Packs the Packet into a ByteBuf for a channel speaking the given protocol version. 
+	 * Packets with integer fields override this, the rest are the same in every version.
+	 * @param buffer The ByteBuf that data will be placed into, from the current position
+	 * @param version The protocol version of the channel
+	 * @throws BufferableException If there is an issue encoding a Bufferable object
+	 */
+	public default void encode(ByteBuf buffer, ProtocolVersion version) throws BufferableException
+	{
+		encode(buffer);
+	}
+	
+	/**
+	 * How many bytes encode() will write, if that can be worked out ahead of time. 
+	 * Used to size buffers exactly when a packet is encoded into a buffer of its own.
+	 * @param version The protocol version it will be encoded with
+	 * @return The size of the encoded data (without header), or -1 if it isn't known
+	 */
+	public default int encodedSize(ProtocolVersion version)
+	{
+		return -1;
+	}
+	
+	/**
+	 * Whether this Packet is low priority, and may be dropped rather than sent when the connection is backed up 
+	 * (its channel is over the high water mark). Packets the client can do without, like frequent updates 
+	 * that the next one replaces, return true.
+	 * @return True if the packet may be dropped
+	 */
+	public default boolean isDroppable()
+	{
+		return false;
+	}
+	
 	/**
 	 * Decodes the Packet. Takes the data and creates a copy of the specific Packet 
 	 * implementing class.  The Packet returned is a <i>copy</i> with the members 
-	 * set according to the data, <u>not</u> the original.
+	 * set according to the data, <u>not</u> the original. 
+	 * The copy may be taken from a pool, in which case it goes back via recycle().
 	 * @param data The data required for the Packet, assumed to be without header.
 	 * @return A copy of the Packet deserialized to reflect the provided data
 	 * @throws BufferableException If there is an issue decoding a Bufferable object
 	 */
 	public Packet decode(ByteBuf data) throws BufferableException;
 	
+	/**
+	 * Decodes the Packet from a channel speaking the given protocol version. 
+	 * Packets with integer fields override this, the rest are the same in every version.
+	 * @param data The data required for the Packet, assumed to be without header.
+	 * @param version The protocol version of the channel
+	 * @return A copy of the Packet deserialized to reflect the provided data
+	 * @throws BufferableException If there is an issue decoding a Bufferable object
+	 */
+	public default Packet decode(ByteBuf data, ProtocolVersion version) throws BufferableException
+	{
+		return decode(data);
+	}
+	
 	/**
 	 * Executes whatever action the Packet needs to take, to take action on the information 
 	 * stored in it.  Split from the decoding process, but assumes the Packet has been 
@@ -41,5 +89,17 @@ public interface Packet {
 	 * @param player The player receiving the packet
 	 */
 	public void handlePacket(Player player);
+	
+	/**
+	 * Called instead of handlePacket when a decoded Packet is thrown away without being handled, 
+	 * such as when the inbound queue is full. Packets holding on to resources should release them here.
+	 */
+	public default void discard() {}
+	
+	/**
+	 * Called once a received Packet has been handled (or discarded) and will not be touched again. 
+	 * Packets that come from a pool return themselves to it here, the rest do nothing.
+	 */
+	public default void recycle() {}
 
 }
@@ -0,0 +1,241 @@
+package net.cloud.server.nio.packet;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+
+import net.cloud.server.ConfigConstants;
+import net.cloud.server.logging.Logger;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.EncoderException;
+
+/**
+ * Splits packets too big for a single frame into a run of CHUNK packets, which the client puts back together.
+ * Sits between PacketCompressor and LengthPrepender, so it sees the opcode and (possibly compressed) data of
+ * each packet. Anything that fits in a frame goes straight through. <br>
+ * Chunks are not all written at once. Each flush sends at most CHUNK_BYTES_PER_FLUSH of chunk data, taking turns
+ * between every chunked packet in progress, and the rest follows on later event loop iterations. Packets written
+ * in the meantime go out between the chunks rather than waiting behind all of them - which also means a chunked
+ * packet may arrive after packets that were sent later. Nothing more is sent while the channel is unwritable. <br>
+ * A chunk is the CHUNK opcode, then the stream id, the sequence number of the chunk and the total length of the
+ * chunked packet (each with ProtocolVersion.writeInt), then up to CHUNK_DATA_LENGTH bytes of the packet.
+ */
+public class PacketChunker extends ChannelDuplexHandler {
+
+	/** Chunked packets with chunks still to send, in the order they take turns */
+	private final ArrayDeque<Stream> streams;
+
+	/** Id for the next chunked packet */
+	private int nextStreamId;
+
+	/** Whether sending more chunks has been put on the event loop already */
+	private boolean moreScheduled;
+
+	/** Create a chunker for a single channel. It keeps per-channel state, so it cannot be shared */
+	public PacketChunker()
+	{
+		this.streams = new ArrayDeque<>();
+		this.nextStreamId = 0;
+		this.moreScheduled = false;
+	}
+
+	/**
+	 * Pass along packets that fit in a frame, and hold on to the rest until the next flush
+	 */
+	@Override
+	public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception
+	{
+		if(!(msg instanceof ByteBuf) || ((ByteBuf) msg).readableBytes() <= PacketConstants.MAX_PACKET_LENGTH)
+		{
+			ctx.write(msg, promise);
+			return;
+		}
+
+		ByteBuf packet = (ByteBuf) msg;
+		if(packet.readableBytes() > ConfigConstants.MAX_CHUNKED_LENGTH)
+		{
+			// The client wouldn't make room for it anyways
+			EncoderException e = new EncoderException("Packet length " + packet.readableBytes() + " exceeds " + ConfigConstants.MAX_CHUNKED_LENGTH);
+			packet.release();
+			failPromise(promise, e);
+			Logger.instance().logException("Exception caught while chunking packet", e);
+			return;
+		}
+
+		streams.add(new Stream(nextStreamId, packet, promise));
+
+		// Ids only need to be unique among the streams in progress. Kept positive for the sake of VarInts
+		nextStreamId = (nextStreamId + 1) & Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Send the next round of chunks along with the flush
+	 */
+	@Override
+	public void flush(ChannelHandlerContext ctx) throws Exception
+	{
+		writeChunks(ctx);
+
+		ctx.flush();
+	}
+
+	/**
+	 * Pick sending back up once the channel has drained
+	 */
+	@Override
+	public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception
+	{
+		if(ctx.channel().isWritable() && !streams.isEmpty())
+		{
+			scheduleMore(ctx);
+		}
+
+		ctx.fireChannelWritabilityChanged();
+	}
+
+	/**
+	 * Nothing is going to be sent anymore. Let go of whatever is left
+	 */
+	@Override
+	public void handlerRemoved(ChannelHandlerContext ctx) throws Exception
+	{
+		Stream stream;
+		while((stream = streams.poll()) != null)
+		{
+			stream.packet.release();
+			failPromise(stream.promise, new ClosedChannelException());
+		}
+	}
+
+	/**
+	 * Write chunks until the round's budget is used up, going round each stream in turn.
+	 * If there's more to go afterwards, the next round is put on the event loop
+	 * @param ctx The context for this handler
+	 */
+	private void writeChunks(ChannelHandlerContext ctx)
+	{
+		int budget = ConfigConstants.CHUNK_BYTES_PER_FLUSH;
+
+		while(budget > 0 && !streams.isEmpty() && ctx.channel().isWritable())
+		{
+			Stream stream = streams.poll();
+			budget -= writeChunk(ctx, stream);
+
+			if(stream.packet.isReadable())
+			{
+				streams.add(stream);
+			}
+		}
+
+		// While unwritable, channelWritabilityChanged gets things going again instead
+		if(!streams.isEmpty() && ctx.channel().isWritable())
+		{
+			scheduleMore(ctx);
+		}
+	}
+
+	/**
+	 * Send the next round of chunks once whatever is already queued on the event loop has had its turn
+	 * @param ctx The context for this handler
+	 */
+	private void scheduleMore(ChannelHandlerContext ctx)
+	{
+		if(moreScheduled)
+		{
+			return;
+		}
+
+		moreScheduled = true;
+		ctx.executor().execute(() -> {
+			moreScheduled = false;
+			writeChunks(ctx);
+			ctx.flush();
+		});
+	}
+
+	/**
+	 * Write the next chunk of a stream. The last one completes the promise the packet was written with
+	 * @param ctx The context for this handler
+	 * @param stream The stream to take the chunk from
+	 * @return How many bytes of the packet went into the chunk
+	 */
+	private int writeChunk(ChannelHandlerContext ctx, Stream stream)
+	{
+		ProtocolVersion version = ProtocolVersion.of(ctx.channel());
+		ByteBuf packet = stream.packet;
+
+		int length = Math.min(packet.readableBytes(), PacketConstants.CHUNK_DATA_LENGTH);
+		boolean last = length == packet.readableBytes();
+
+		ByteBuf header = ctx.alloc().buffer(PacketConstants.CHUNK_HEADER_LENGTH);
+		version.writeOpcode(header, PacketConstants.CHUNK, false);
+		version.writeInt(header, stream.id);
+		version.writeInt(header, stream.sequence++);
+		version.writeInt(header, stream.totalLength);
+
+		// The piece of the packet is a slice, not a copy. LengthPrepender puts its own header in front of both
+		ByteBuf chunk = ctx.alloc().compositeBuffer(2).addComponents(true, header, packet.readRetainedSlice(length));
+		ctx.write(chunk, last ? stream.promise : ctx.voidPromise());
+
+		if(last)
+		{
+			packet.release();
+		}
+
+		return length;
+	}
+
+	/**
+	 * Fail the promise a packet was written with. A void promise would send the failure through the pipeline 
+	 * as an exception, and the packet handler closes the channel on those, so they're left alone
+	 * @param promise The promise
+	 * @param cause Why the packet wasn't sent
+	 */
+	private void failPromise(ChannelPromise promise, Throwable cause)
+	{
+		if(!promise.isVoid())
+		{
+			promise.tryFailure(cause);
+		}
+	}
+
+
+	/**
+	 * A packet being sent in chunks, and how far along it is
+	 */
+	private static class Stream {
+
+		/** Tells the client which chunks go together */
+		private final int id;
+
+		/** The opcode and data of the packet. Its reader index is at the start of the next chunk */
+		private final ByteBuf packet;
+
+		/** Completed once the last chunk has been written */
+		private final ChannelPromise promise;
+
+		/** Length of the whole packet, sent with every chunk */
+		private final int totalLength;
+
+		/** Sequence number of the next chunk */
+		private int sequence;
+
+		/**
+		 * @param id Id of the stream
+		 * @param packet The packet to send
+		 * @param promise Completed once the last chunk has been written
+		 */
+		private Stream(int id, ByteBuf packet, ChannelPromise promise)
+		{
+			this.id = id;
+			this.packet = packet;
+			this.promise = promise;
+			this.totalLength = packet.readableBytes();
+			this.sequence = 0;
+		}
+
+	}
+
+}
@@ -0,0 +1,228 @@
+package net.cloud.server.nio.packet;
+
+import java.util.List;
+import java.util.zip.Deflater;
+
+import net.cloud.server.ConfigConstants;
+import net.cloud.server.nio.bufferable.BufferableException;
+import net.cloud.server.tracking.StatTracker;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageEncoder;
+
+/**
+ * Compresses the data of outgoing packets that are big enough for it to be worthwhile.
+ * Sits between PacketEncoder and LengthPrepender, so it sees the opcode and data of one packet at a time. <br>
+ * A compressed packet has COMPRESSED_FLAG set in its opcode, followed by the length the data inflates to,
+ * then the deflated data. Under V2 the flag is the lowest bit of the VarInt opcode field instead, and the length
+ * is a VarInt too (see ProtocolVersion). Each packet is compressed on its own (with the preset dictionary),
+ * so the other side can inflate it without any history. If compressing doesn't make the packet
+ * smaller, it goes out as it was. <br>
+ * There is no per-channel state. Deflaters are kept per thread, so one instance serves every channel. <br>
+ * Packets that are already compressed are passed along as they are. Broadcasts are compressed once with 
+ * compressShared() before going out, rather than by every channel they're written to.
+ */
+@Sharable
+public class PacketCompressor extends MessageToMessageEncoder<ByteBuf> {
+
+	/** Each event loop thread has its own deflater and scratch space */
+	private static final ThreadLocal<Deflation> DEFLATION = ThreadLocal.withInitial(Deflation::new);
+
+	/** Packet data smaller than this is left alone */
+	private final int threshold;
+
+	/**
+	 * Create a compressor using the threshold from ConfigConstants
+	 */
+	public PacketCompressor()
+	{
+		this(ConfigConstants.COMPRESSION_THRESHOLD);
+	}
+
+	/**
+	 * Create a compressor that only compresses packets with at least the given amount of data
+	 * @param threshold Bytes of data (not counting the opcode) before compression is tried
+	 */
+	public PacketCompressor(int threshold)
+	{
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Compress the packet if it's big enough and it helps, otherwise pass it along untouched
+	 */
+	@Override
+	protected void encode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out) throws Exception
+	{
+		ByteBuf compressed = tryCompress(ctx.alloc(), msg, ProtocolVersion.of(ctx.channel()), threshold);
+
+		if(compressed == null)
+		{
+			// The encoder releases the message once this returns. We're passing it along, so it needs to stay alive
+			out.add(msg.retain());
+		}
+		else {
+			out.add(compressed);
+		}
+	}
+
+	/**
+	 * Compress a packet that is about to be broadcast, using the threshold from ConfigConstants. 
+	 * See {@link #compressShared(ByteBuf, ProtocolVersion, int)}
+	 * @param encoded A buffer from PacketEncoder.encodeShared(). Released if a compressed one is returned in its place
+	 * @param version The protocol version it was encoded with
+	 * @return The compressed packet, or the buffer given if compressing isn't worth it
+	 * @throws BufferableException If the opcode could not be read. The buffer given is released
+	 */
+	public static ByteBuf compressShared(ByteBuf encoded, ProtocolVersion version) throws BufferableException
+	{
+		return compressShared(encoded, version, ConfigConstants.COMPRESSION_THRESHOLD);
+	}
+
+	/**
+	 * Compress a packet that is about to be broadcast. It's done once here, and the compressors of the 
+	 * channels it's written to pass it straight along, rather than each deflating the same bytes again.
+	 * @param encoded A buffer from PacketEncoder.encodeShared(). Released if a compressed one is returned in its place
+	 * @param version The protocol version it was encoded with
+	 * @param threshold Bytes of data (not counting the opcode) before compression is tried
+	 * @return The compressed packet, or the buffer given if compressing isn't worth it
+	 * @throws BufferableException If the opcode could not be read. The buffer given is released
+	 */
+	public static ByteBuf compressShared(ByteBuf encoded, ProtocolVersion version, int threshold) throws BufferableException
+	{
+		ByteBuf compressed;
+		try {
+			compressed = tryCompress(PooledByteBufAllocator.DEFAULT, encoded, version, threshold);
+		} catch (BufferableException | RuntimeException e) {
+			// The caller is handing it over, so nobody else would release it
+			encoded.release();
+			throw e;
+		}
+
+		if(compressed == null)
+		{
+			return encoded;
+		}
+
+		encoded.release();
+		return compressed;
+	}
+
+	/**
+	 * Compress a packet if it's big enough, not compressed already, and it helps
+	 * @param alloc Where to allocate the compressed packet from
+	 * @param msg The opcode and data of the packet. Left as it was
+	 * @param version The protocol version it was encoded with
+	 * @param threshold Bytes of data (not counting the opcode) before compression is tried
+	 * @return A new buffer with the compressed packet, or null if it should go as it is
+	 * @throws BufferableException If the opcode could not be read
+	 */
+	private static ByteBuf tryCompress(ByteBufAllocator alloc, ByteBuf msg, ProtocolVersion version, int threshold) throws BufferableException
+	{
+		// Peek at the opcode. Whatever happens, the message keeps its reader index where it was
+		int start = msg.readerIndex();
+		short opcode = version.readOpcode(msg);
+		int dataOffset = msg.readerIndex() - start;
+		int dataLength = msg.readableBytes();
+		msg.readerIndex(start);
+
+		// Already done, like a broadcast is before it reaches any channel
+		if((opcode & PacketConstants.COMPRESSED_FLAG) != 0)
+		{
+			return null;
+		}
+
+		// Small packets wouldn't shrink enough to be worth the time
+		if(dataLength < threshold || dataLength > PacketConstants.MAX_INFLATED_LENGTH)
+		{
+			return null;
+		}
+
+		long startTime = System.nanoTime();
+
+		ByteBuf compressed = compress(alloc, msg, version, opcode, dataOffset, dataLength);
+		int headerLength = version.opcodeSize(opcode) + version.inflatedLengthSize(dataLength);
+
+		StatTracker.instance().updateCompression(opcode, dataLength,
+				compressed == null ? dataLength : compressed.readableBytes() - headerLength,
+				System.nanoTime() - startTime);
+
+		return compressed;
+	}
+
+	/**
+	 * Deflate the data of a packet into a new buffer, header included
+	 * @param alloc Where to allocate the buffer from
+	 * @param msg The opcode and data of the packet
+	 * @param version The protocol version of the channel
+	 * @param opcode The opcode of the packet
+	 * @param dataOffset Bytes of opcode before the data
+	 * @param dataLength Bytes of data after the opcode
+	 * @return A buffer with the compressed packet, or null if compressing didn't make it any smaller
+	 */
+	private static ByteBuf compress(ByteBufAllocator alloc, ByteBuf msg, ProtocolVersion version, short opcode, int dataOffset, int dataLength)
+	{
+		Deflation deflation = DEFLATION.get();
+		Deflater deflater = deflation.deflater;
+
+		// Deflater needs an array. Packets are usually direct or composite, so they're copied into the scratch one
+		msg.getBytes(msg.readerIndex() + dataOffset, deflation.input, 0, dataLength);
+
+		deflater.reset();
+		deflater.setDictionary(CompressionDictionary.get());
+		deflater.setInput(deflation.input, 0, dataLength);
+		deflater.finish();
+
+		// Has to come out smaller than the original, header included, or there's no point
+		int opcodeSize = version.opcodeSize(opcode);
+		int headerLength = opcodeSize + version.inflatedLengthSize(dataLength);
+		int limit = dataOffset + dataLength - headerLength - 1;
+		if(limit <= 0)
+		{
+			return null;
+		}
+
+		// Deflate straight into the buffer that will be sent
+		ByteBuf compressed = alloc.heapBuffer(headerLength + limit);
+		version.writeOpcode(compressed, opcode, true);
+		version.writeInflatedLength(compressed, dataLength);
+
+		byte[] array = compressed.array();
+		int offset = compressed.arrayOffset() + headerLength;
+		int written = 0;
+
+		while(!deflater.finished() && written < limit)
+		{
+			written += deflater.deflate(array, offset + written, limit - written);
+		}
+
+		if(!deflater.finished())
+		{
+			// Ran out of room before it was done. It isn't going to get any smaller than the original
+			compressed.release();
+			return null;
+		}
+
+		compressed.writerIndex(headerLength + written);
+
+		return compressed;
+	}
+
+
+	/**
+	 * A deflater and room to copy packet data into, for one thread
+	 */
+	private static class Deflation {
+
+		/** Raw deflate - the length is already in the header, a zlib wrapper would just be extra bytes */
+		private final Deflater deflater = new Deflater(ConfigConstants.COMPRESSION_LEVEL, true);
+
+		/** Packet data is copied here for the deflater */
+		private final byte[] input = new byte[PacketConstants.MAX_INFLATED_LENGTH];
+
+	}
+
+}
@@ -15,10 +15,13 @@ public class PacketConstants {
 	public static final short SHOW_MSG_DIALOG = 6;
 	public static final short BUTTON_ACTION = 7;
 	public static final short LOGOUT = 8;
+	public static final short CHUNK = 9;
+	public static final short RESUME_TOKEN = 10;
+	public static final short RESUME = 11;
 	// End Packet Opcodes //
 	
 	/** The number of packets (Ie the limit on the op code) */
-	public static final int NUM_PACKETS = 9;
+	public static final int NUM_PACKETS = 12;
 	
 	/** Max bytes that can be in a single packet */
 	public static final int MAX_PACKET_LENGTH = 4096;
@@ -38,4 +41,19 @@ public class PacketConstants {
 	/** The number of bytes used by the packet's opcode */
 	public static final int OPCODE_LENGTH = 2;
 	
+	/** Set in the opcode of a packet whose data has been compressed */
+	public static final short COMPRESSED_FLAG = (short) 0x8000;
+	
+	/** Bytes after the opcode of a compressed packet, giving the length of the data once inflated */
+	public static final int INFLATED_LENGTH_LENGTH = 2;
+	
+	/** The most a compressed packet's data may inflate to */
+	public static final int MAX_INFLATED_LENGTH = 0xFFFF;
+	
+	/** Room for the opcode, stream id, sequence number and total length at the start of a chunk, under any version */
+	public static final int CHUNK_HEADER_LENGTH = 16;
+	
+	/** Bytes of a chunked packet carried by each chunk. Header and data together fit in a single packet */
+	public static final int CHUNK_DATA_LENGTH = MAX_PACKET_LENGTH - CHUNK_HEADER_LENGTH;
+	
 }
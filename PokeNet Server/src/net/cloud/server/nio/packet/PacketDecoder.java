@@ -3,38 +3,119 @@ package net.cloud.server.nio.packet;
 import java.util.List;
 
 import net.cloud.server.nio.packet.packets.PacketManager;
+import net.cloud.server.tracking.StatTracker;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.TooLongFrameException;
 
 /**
- * Will wait until a packet has been entirely received, and then 
- * create a Packet, which will then decode itself.  
- * The decoded packet is added to the pipeline for handling. 
+ * Will wait until a packet has been entirely received, and then
+ * create a Packet, which will then decode itself.
+ * The decoded packet is added to the pipeline for handling. <br>
+ * Framing is done here as well. The length field and opcode are read in the same pass, and the packet
+ * decodes itself straight out of the received bytes, so no frame buffer is copied out in between.
+ * Packets that keep a slice of their data around (ButtonActionPacket) will hold the received
+ * buffer until they release it. <br>
+ * Compressed packets (see PacketCompressor) are inflated before being decoded. <br>
+ * How the length and opcode are read depends on the channel's ProtocolVersion. <br>
+ * Each packet is counted in the StatTracker by opcode, along with its size and how long it took to decode.
  */
 public class PacketDecoder extends ByteToMessageDecoder {
 
 	/**
-	 * Figure out which packet is coming through the pipeline (by reading its opcode) 
-	 * then pass it off to the PacketManager
+	 * Wait for a whole packet to arrive, read its header, then pass the rest off to the PacketManager
+	 * @throws TooLongFrameException If the length field is over the maximum packet length
 	 */
 	@Override
 	protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception
 	{
-		// Before this in the pipeline was a length based decoder, so now we need to figure out which Packet 
-		// to create, create it, and pass it on to the PacketHandler, which is next in the pipeline.
+		ProtocolVersion version = ProtocolVersion.of(ctx.channel());
 		
-		// This method occasionally has an empty buffer provided to it.  Need at least the opcode.
-		if(in.readableBytes() <= PacketConstants.OPCODE_LENGTH)
+		// Need the whole length field before we know anything
+		int lengthFieldSize = version.peekLengthFieldSize(in);
+		if(lengthFieldSize == 0)
 		{
 			return;
 		}
+
+		// Peek at the length, nothing is consumed until the entire packet is here
+		int start = in.readerIndex();
+		int length = version.getLength(in) + PacketConstants.LENGTH_FIELD_ADJUSTMENT;
+
+		if(length > PacketConstants.MAX_PACKET_LENGTH)
+		{
+			// Nobody is going to send that legitimately. The handler closes the channel on this
+			throw new TooLongFrameException("Packet length " + length + " exceeds " + PacketConstants.MAX_PACKET_LENGTH);
+		}
+
+		if(in.readableBytes() < lengthFieldSize + length)
+		{
+			return;
+		}
+
+		int end = start + lengthFieldSize + length;
+		in.skipBytes(lengthFieldSize);
+
+		// A frame too short to have an opcode is just skipped
+		if(length < (version == ProtocolVersion.V1 ? PacketConstants.OPCODE_LENGTH : 1))
+		{
+			in.readerIndex(end);
+			return;
+		}
+
+		// Packets see their own data and nothing past it. Much cheaper than slicing the frame off
+		int writerIndex = in.writerIndex();
+		in.writerIndex(end);
+
+		long decodeStart = System.nanoTime();
+		try {
+			// Read the opcode of the Packet, and have a specific instance of that Packet decoded
+			short opcode = version.readOpcode(in);
+			
+			if((opcode & PacketConstants.COMPRESSED_FLAG) == 0)
+			{
+				out.add(PacketManager.decodeCopy(opcode, in, version));
+			}
+			else {
+				opcode = (short) (opcode & ~PacketConstants.COMPRESSED_FLAG);
+				out.add(decodeCompressed(ctx, version, opcode, in));
+			}
+			
+			// Counted as the whole frame, as it came over the wire
+			StatTracker.instance().updatePacketDecoded(opcode, lengthFieldSize + length, System.nanoTime() - decodeStart);
+		} finally {
+			// Whatever the packet left unread, the next one starts at the end of this one
+			in.writerIndex(writerIndex);
+			in.readerIndex(end);
+		}
+	}
+	
+	/**
+	 * Inflate the data of a compressed packet, then decode the packet from that
+	 * @param ctx Context to allocate from
+	 * @param version The protocol version of the channel
+	 * @param opcode The opcode, without the compressed flag
+	 * @param in The rest of the packet after the opcode
+	 * @return The decoded packet
+	 * @throws Exception If the data could not be inflated, or the packet could not be decoded
+	 */
+	private Packet decodeCompressed(ChannelHandlerContext ctx, ProtocolVersion version, short opcode, ByteBuf in) throws Exception
+	{
+		int packetLength = in.readableBytes();
+		long start = System.nanoTime();
 		
-		// Read the opcode of the Packet
-		short opcode = in.readShort();
+		ByteBuf data = PacketInflater.inflate(in, version, ctx.alloc());
 		
-		// Now that we have the opcode, we can create a specific instance of a Packet
-		out.add(PacketManager.decodeCopy(opcode, in));
+		int compressedLength = packetLength - version.inflatedLengthSize(data.readableBytes());
+		StatTracker.instance().updateInflation(opcode, data.readableBytes(), compressedLength, System.nanoTime() - start);
+		
+		try {
+			return PacketManager.decodeCopy(opcode, data, version);
+		} finally {
+			// Packets that hold on to their data retain it themselves
+			data.release();
+		}
 	}
 
 }
@@ -1,34 +1,84 @@
 package net.cloud.server.nio.packet;
 
 import net.cloud.server.logging.Logger;
+import net.cloud.server.nio.bufferable.BufferableException;
+import net.cloud.server.tracking.StatTracker;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
 
 /**
  * Responsible for having packets encode themselves, 
- * where previously a Packet was created, ready to be sent out.
+ * where previously a Packet was created, ready to be sent out. 
+ * Each packet is counted in the StatTracker by opcode, along with its size and how long it took to encode. 
+ * Packets are counted once for each channel they're written to, however they got encoded.
  */
 public class PacketEncoder extends MessageToByteEncoder<Packet> {
+	
+	/**
+	 * Encode a packet into a buffer of its own, outside of any pipeline. The buffer holds the opcode and data, 
+	 * just like what this encoder produces, so it can be written straight to a channel. 
+	 * Used for broadcasts, where the same bytes go out to many channels. 
+	 * Not counted in the StatTracker, since only the caller knows how many channels it goes out to. 
+	 * The caller owns the returned buffer and must release it.
+	 * @param packet The packet to encode
+	 * @return A buffer with the encoded packet, as V1 has it
+	 * @throws BufferableException If the packet could not be encoded
+	 */
+	public static ByteBuf encodeShared(Packet packet) throws BufferableException
+	{
+		return encodeShared(packet, ProtocolVersion.V1);
+	}
+	
+	/**
+	 * Encode a packet into a buffer of its own, for channels speaking the given protocol version. 
+	 * See {@link #encodeShared(Packet)}
+	 * @param packet The packet to encode
+	 * @param version The protocol version to encode it with
+	 * @return A buffer with the encoded packet
+	 * @throws BufferableException If the packet could not be encoded
+	 */
+	public static ByteBuf encodeShared(Packet packet, ProtocolVersion version) throws BufferableException
+	{
+		ByteBuf buffer = PooledByteBufAllocator.DEFAULT.buffer();
+		
+		try {
+			version.writeOpcode(buffer, packet.getOpcode(), false);
+			packet.encode(buffer, version);
+		} catch (BufferableException | RuntimeException e) {
+			// Nobody else will have the chance to release it
+			buffer.release();
+			throw e;
+		}
+		
+		return buffer;
+	}
 
 	/**
 	 * Encodes the given packet into the given byte buffer. 
-	 * The packet's opcode is appended before the packet's data
+	 * The packet's opcode is appended before the packet's data, both as the channel's protocol version has them
 	 */
 	@Override
 	protected void encode(ChannelHandlerContext ctx, Packet msg, ByteBuf out) throws Exception
 	{
+		ProtocolVersion version = ProtocolVersion.of(ctx.channel());
+		int start = out.writerIndex();
+		long startNanos = System.nanoTime();
+		
 		// Packet's opcode goes into a header before its data
-		out.writeShort(msg.getOpcode());
+		version.writeOpcode(out, msg.getOpcode(), false);
 
 		// All this needs to do is have the Packet write bytes into the buffer
 		try {
-			msg.encode(out);
+			msg.encode(out, version);
 		} catch(Exception e) {
 			// We could let the exception go beyond this method, but since we're favoring a VoidPromise 
 			// and no future listener, exceptions otherwise go silent.
 			logException(e);
 		}
+		
+		StatTracker.instance().updatePacketEncoded(msg.getOpcode(), out.writerIndex() - start, System.nanoTime() - startNanos);
 	}
 	
 	/**
@@ -5,6 +5,8 @@ import net.cloud.server.entity.player.Player;
 import net.cloud.server.nio.packet.packets.*;
 import net.cloud.server.nio.packet.packets.LoginPacket.LoginResponsePacket;
 import net.cloud.server.nio.packet.packets.LoginPacket.LoginDataResponsePacket;
+import net.cloud.server.nio.packet.packets.ResumePacket.ResumeTokenPacket;
+import net.cloud.server.util.ResumeToken;
 
 /**
  * Typical factory class, meant to create Packets. 
@@ -70,6 +72,16 @@ public class PacketFactory {
 		return new ShowMessageDialogPacket(title, message);
 	}
 	
+	/**
+	 * Create a packet handing the client a token to resume its session with
+	 * @param token The token the player can resume their session with
+	 * @return A packet to send along with the login data
+	 */
+	public ResumeTokenPacket createResumeTokenPacket(ResumeToken token)
+	{
+		return new ResumeTokenPacket(token);
+	}
+	
 	/**
 	 * Create a packet to make the client log out
 	 * @return A packet to show a modal message dialog with
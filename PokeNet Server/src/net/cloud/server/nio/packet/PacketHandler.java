@@ -1,40 +1,77 @@
 package net.cloud.server.nio.packet;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import net.cloud.server.ConfigConstants;
 import net.cloud.server.entity.player.Player;
 import net.cloud.server.logging.Logger;
+import net.cloud.server.tracking.StatTracker;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 
 /**
- * Once information has been received and decoded, the Packet needs to be handled. 
- * This class will take the packet, and execute its action via handlePacket()
+ * Once information has been received and decoded, the Packet needs to be handled.
+ * This class will take the packet and place it in a queue. The queue is then drained
+ * by the GameEngine on the world thread, where each packet executes its action via handlePacket(). <br>
+ * The queue is bounded. A connection sending more than a few ticks' worth of packets
+ * is either broken or malicious, so it is disconnected rather than allowed to build up memory. 
+ * InboundRateLimiter, ahead of this in the pipeline, normally catches floods well before the queue fills.
  */
 public class PacketHandler extends ChannelInboundHandlerAdapter {
-	
+
 	/** The player object these packets are coming from */
-	private Player player;
-	
+	private volatile Player player;
+
+	/** Packets that have been decoded but not yet handled. Filled by netty, drained by the world thread */
+	private final BlockingQueue<Packet> inbound;
+
+	/** Set once the channel goes inactive. After that, nothing more will be queued */
+	private volatile boolean closed;
+
 	/**
-	 * Create a packet handler linked to the given player. This is like a state variable, 
+	 * Create a packet handler linked to the given player. This is like a state variable,
 	 * so this handler cannot be used in multiple pipelines.
 	 * @param player The player
 	 */
 	public PacketHandler(Player player)
 	{
 		this.player = player;
+		this.inbound = new ArrayBlockingQueue<>(ConfigConstants.INBOUND_QUEUE_CAPACITY);
+		this.closed = false;
 	}
-	
+
 	/**
-	 * Take a constructed packet from the pipeline, and then have it handle itself
+	 * Take a constructed packet from the pipeline, and queue it up to be handled on the next tick
 	 */
 	@Override
 	public void channelRead(ChannelHandlerContext ctx, Object msg)
 	{
 		// The object has been decoded into a Packet. Grab it
 		Packet packet = (Packet) msg;
-		
-		// Then have it handle itself, giving it the player that sent it
-		packet.handlePacket(player);
+
+		// Queue it up for the world thread. If there's no room, they're flooding us. Get rid of them.
+		if(!inbound.offer(packet))
+		{
+			packet.discard();
+			packet.recycle();
+
+			Logger.instance().logMessage("Inbound packet queue full for " + ctx.channel().remoteAddress() + ". Closing connection.");
+			StatTracker.instance().updateFloodDisconnects();
+			ctx.close();
+		}
+	}
+
+	/**
+	 * The channel has closed. Mark it so the GameEngine knows it can drop this handler
+	 * once whatever is left in the queue has been handled
+	 */
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception
+	{
+		closed = true;
+
+		super.channelInactive(ctx);
 	}
 
 	/**
@@ -47,7 +84,41 @@ public class PacketHandler extends ChannelInboundHandlerAdapter {
 		Logger.instance().logException("Exception caught handling packet. Closing connection.", cause);
 		ctx.close();
 	}
-	
+
+	/**
+	 * Handle every packet currently waiting in the queue, in the order they arrived.
+	 * Intended to be called by the GameEngine on the world thread, once per tick.
+	 * A packet that throws while being handled is logged and the connection is closed,
+	 * but the remaining packets are still drained so nothing is left holding resources.
+	 */
+	public void handleQueuedPackets()
+	{
+		Packet packet;
+		while((packet = inbound.poll()) != null)
+		{
+			long start = System.nanoTime();
+			try {
+				// Then have it handle itself, giving it the player that sent it
+				packet.handlePacket(player);
+				StatTracker.instance().updatePacketHandled(packet.getOpcode(), System.nanoTime() - start);
+			} catch (Exception e) {
+				Logger.instance().logException("Exception caught handling packet. Closing connection.", e);
+				player.getPacketSender().channel().close();
+			} finally {
+				// Done with it. Pooled packets can go back to being reused
+				packet.recycle();
+			}
+		}
+	}
+
+	/**
+	 * @return True once the channel has closed. Packets may still be waiting in the queue.
+	 */
+	public boolean isClosed()
+	{
+		return closed;
+	}
+
 	/**
 	 * @return The player we will route packets to
 	 */
@@ -55,7 +126,7 @@ public class PacketHandler extends ChannelInboundHandlerAdapter {
 	{
 		return player;
 	}
-	
+
 	/**
 	 * @param player The player packets will be routed to from now on
 	 */
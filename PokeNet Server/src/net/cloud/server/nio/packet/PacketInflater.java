@@ -0,0 +1,87 @@
+package net.cloud.server.nio.packet;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import net.cloud.server.nio.bufferable.BufferableException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.codec.CorruptedFrameException;
+
+/**
+ * Inflates the data of packets that were compressed by the other side's PacketCompressor.
+ * Inflaters are kept per thread, the same way the compressor keeps its deflaters.
+ */
+public class PacketInflater {
+
+	/** Each event loop thread has its own inflater and scratch space */
+	private static final ThreadLocal<Inflation> INFLATION = ThreadLocal.withInitial(Inflation::new);
+
+	/** Static class, no instances */
+	private PacketInflater() {}
+
+	/**
+	 * Inflate the data of a compressed packet. The buffer should be positioned just after the opcode,
+	 * and is read to its end.
+	 * @param data The inflated length followed by the deflated data
+	 * @param version The protocol version the inflated length was written with
+	 * @param alloc Allocator for the buffer the data is inflated into
+	 * @return A new buffer with the original data of the packet. The caller owns it
+	 * @throws CorruptedFrameException If the data does not inflate to the length it claims to
+	 * @throws BufferableException If the inflated length field is malformed
+	 */
+	public static ByteBuf inflate(ByteBuf data, ProtocolVersion version, ByteBufAllocator alloc) throws CorruptedFrameException, BufferableException
+	{
+		int inflatedLength = version.readInflatedLength(data);
+		int compressedLength = data.readableBytes();
+
+		// A VarInt could claim far more than the compressor will ever send
+		if(inflatedLength < 0 || inflatedLength > PacketConstants.MAX_INFLATED_LENGTH)
+		{
+			throw new CorruptedFrameException("Compressed packet claims to inflate to " + inflatedLength + " bytes");
+		}
+
+		Inflation inflation = INFLATION.get();
+		Inflater inflater = inflation.inflater;
+
+		data.readBytes(inflation.input, 0, compressedLength);
+
+		inflater.reset();
+		inflater.setDictionary(CompressionDictionary.get());
+		inflater.setInput(inflation.input, 0, compressedLength);
+
+		// Inflate right into the buffer that gets decoded from. Never any bigger than the header claims
+		ByteBuf inflated = alloc.heapBuffer(inflatedLength);
+
+		int length;
+		try {
+			length = inflater.inflate(inflated.array(), inflated.arrayOffset(), inflatedLength);
+		} catch (DataFormatException e) {
+			inflated.release();
+			throw new CorruptedFrameException(e);
+		}
+
+		if(length != inflatedLength || !inflater.finished())
+		{
+			inflated.release();
+			throw new CorruptedFrameException("Compressed packet inflated to " + length + " bytes, expected " + inflatedLength);
+		}
+
+		return inflated.writerIndex(length);
+	}
+
+
+	/**
+	 * An inflater and room to copy compressed data into, for one thread
+	 */
+	private static class Inflation {
+
+		/** Raw inflate, to match the compressor */
+		private final Inflater inflater = new Inflater(true);
+
+		/** Compressed data is copied here for the inflater */
+		private final byte[] input = new byte[PacketConstants.MAX_PACKET_LENGTH];
+
+	}
+
+}
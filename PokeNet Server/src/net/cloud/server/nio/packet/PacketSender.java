@@ -2,8 +2,16 @@ package net.cloud.server.nio.packet;
 
 import java.util.function.Consumer;
 
+import io.netty.buffer.ByteBuf;
+
 import net.cloud.server.entity.player.LoginResponse;
 import net.cloud.server.entity.player.Player;
+import net.cloud.server.game.GameEngine;
+import net.cloud.server.logging.Logger;
+import net.cloud.server.nio.bufferable.BufferableException;
+import net.cloud.server.nio.packet.packets.CompositePacket;
+import net.cloud.server.tracking.StatTracker;
+import net.cloud.server.util.ResumeToken;
 import io.netty.channel.socket.SocketChannel;
 
 /**
@@ -24,6 +32,9 @@ public class PacketSender {
 	/** The PacketFactory being used to create Packet objects */
 	private PacketFactory packetFactory;
 	
+	/** Whether the GameEngine has already been asked to flush this sender at the end of the tick. World thread only */
+	private boolean flushQueued;
+	
 	/**
 	 * Creates a PacketSender, where the connection is given by the Channel
 	 * @param channel The Channel for the connection between client and server
@@ -32,6 +43,7 @@ public class PacketSender {
 	{
 		this.channel = channel;
 		this.packetFactory = new PacketFactory();
+		this.flushQueued = false;
 	}
 	
 	/**
@@ -198,6 +210,62 @@ public class PacketSender {
 		this.writeShowMessageDialog(title, message).send();
 	}
 	
+	/**
+	 * Only creates and returns a packet. For a description of the packet, see <br>
+	 * {@link PacketFactory#createResumeTokenPacket(ResumeToken)}
+	 * @param token The token the player can resume their session with
+	 * @return The packet
+	 */
+	public Packet createResumeToken(ResumeToken token)
+	{
+		return packetFactory.createResumeTokenPacket(token);
+	}
+	/**
+	 * Writes, but does not send a packet. For a description of the packet, see <br>
+	 * {@link PacketFactory#createResumeTokenPacket(ResumeToken)}
+	 * @param token The token the player can resume their session with
+	 * @return The packet
+	 */
+	public PacketSender writeResumeToken(ResumeToken token)
+	{
+		write(createResumeToken(token));
+		
+		return this;
+	}
+	/**
+	 * Writes and sends a packet. For a description of the packet, see <br>
+	 * {@link PacketFactory#createResumeTokenPacket(ResumeToken)}
+	 * @param token The token the player can resume their session with
+	 */
+	public void sendResumeToken(ResumeToken token)
+	{
+		this.writeResumeToken(token).send();
+	}
+	
+	/**
+	 * Writes, but does not send, a packet that has already been encoded (opcode and data). 
+	 * The buffer is not consumed - a retained duplicate is written - so the same buffer can be 
+	 * written to any number of channels and released once by its owner afterwards.
+	 * @param encoded A buffer as produced by {@link PacketEncoder#encodeShared(Packet, ProtocolVersion)}
+	 * @return This PacketSender
+	 */
+	public PacketSender writeEncoded(ByteBuf encoded)
+	{
+		// The duplicate has its own indices, but shares the memory and reference count
+		channel.write(encoded.duplicate().retain(), channel.voidPromise());
+		
+		return this;
+	}
+	
+	/**
+	 * Writes and sends a packet that has already been encoded. <br>See {@link #writeEncoded(ByteBuf)}
+	 * @param encoded A buffer as produced by {@link PacketEncoder#encodeShared(Packet, ProtocolVersion)}
+	 */
+	public void sendEncoded(ByteBuf encoded)
+	{
+		this.writeEncoded(encoded).send();
+	}
+	
 	/**
 	 * Writes and sends a logout packet. When this operation completes, the onSend function will be called
 	 * @param player The player to make log out
@@ -243,20 +311,69 @@ public class PacketSender {
 	}
 	
 	/**
-	 * Send all packets that have been created but not yet sent 
+	 * Send all packets that have been created but not yet sent. 
+	 * On the world thread, the flush is put off until the end of the tick (or task), so every packet 
+	 * sent to this player in the meantime goes out together. Elsewhere, the flush is requested right away.
 	 */
 	public void send()
 	{
+		if(GameEngine.instance().inWorldThread())
+		{
+			// Only need to ask the once per tick
+			if(!flushQueued)
+			{
+				flushQueued = true;
+				GameEngine.instance().flushLater(this);
+			}
+		}
+		else {
+			channel.flush();
+		}
+	}
+	
+	/**
+	 * Flush the channel now, regardless of batching. 
+	 * Called by the GameEngine for senders that had packets sent during a tick.
+	 */
+	public void flush()
+	{
+		flushQueued = false;
+		
 		channel.flush();
 	}
 	
 	/**
-	 * Writes a packet but does not flush the channel. Uses a VoidPromise to reduce object creation
+	 * Writes a packet but does not flush the channel. Uses a VoidPromise to reduce object creation. 
+	 * Composite packets are encoded here, into a CompositeByteBuf, so PacketEncoder doesn't copy them into one buffer. 
+	 * Droppable packets are not written at all while the channel is unwritable
 	 * @param packet The packet to write
 	 */
 	private void write(Packet packet)
 	{
-		channel.write(packet, channel.voidPromise());
+		if(packet.isDroppable() && !channel.isWritable())
+		{
+			// The client isn't keeping up. It can do without this one
+			StatTracker.instance().updatePacketsDropped();
+			return;
+		}
+		
+		if(packet instanceof CompositePacket)
+		{
+			try {
+				long start = System.nanoTime();
+				ByteBuf encoded = ((CompositePacket) packet).encodeComposite(channel.alloc(), ProtocolVersion.of(channel));
+				
+				// Counted as PacketEncoder would have, one packet under the composite's opcode
+				StatTracker.instance().updatePacketEncoded(packet.getOpcode(), encoded.readableBytes(), System.nanoTime() - start);
+				channel.write(encoded, channel.voidPromise());
+			} catch (BufferableException | RuntimeException e) {
+				// Same as PacketEncoder would do, the packet just doesn't get sent
+				Logger.instance().logException("Exception caught while encoding packet", e);
+			}
+		}
+		else {
+			channel.write(packet, channel.voidPromise());
+		}
 	}
 
 }
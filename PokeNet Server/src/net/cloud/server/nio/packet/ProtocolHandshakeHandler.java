@@ -0,0 +1,64 @@
+package net.cloud.server.nio.packet;
+
+import java.util.List;
+
+import net.cloud.server.logging.Logger;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+
+/**
+ * First inbound handler on a new channel. Looks at the very first byte the client sends to work out which
+ * ProtocolVersion the channel will use. If it's a handshake, the newest version both sides know is chosen,
+ * and the client is told which one that is. If it isn't, the client doesn't know about handshakes and
+ * stays on V1. Either way, this handler then removes itself, and anything else already received goes on to the decoder.
+ */
+public class ProtocolHandshakeHandler extends ByteToMessageDecoder {
+
+	/**
+	 * Wait for enough bytes to tell whether there's a handshake, then settle the channel's version
+	 */
+	@Override
+	protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception
+	{
+		if(!in.isReadable())
+		{
+			return;
+		}
+
+		// Old clients jump right into sending packets
+		if(in.getByte(in.readerIndex()) != ProtocolVersion.HANDSHAKE_MAGIC)
+		{
+			ctx.pipeline().remove(this);
+			return;
+		}
+
+		if(in.readableBytes() < ProtocolVersion.HANDSHAKE_LENGTH)
+		{
+			return;
+		}
+
+		in.skipBytes(1);
+		int requested = in.readUnsignedByte();
+		ProtocolVersion version = ProtocolVersion.negotiate(requested);
+
+		if(version == null)
+		{
+			Logger.instance().logMessage("Closing " + ctx.channel().remoteAddress() + ", asked for unknown protocol version " + requested);
+			ctx.close();
+			return;
+		}
+
+		// Set before the reply goes out, since the client may send its first packet as soon as it has it
+		ctx.channel().attr(ProtocolVersion.KEY).set(version);
+
+		// Written from here, so it skips the packet encoders on its way out
+		ByteBuf reply = ctx.alloc().buffer(ProtocolVersion.HANDSHAKE_LENGTH);
+		reply.writeByte(ProtocolVersion.HANDSHAKE_MAGIC);
+		reply.writeByte(version.number());
+		ctx.writeAndFlush(reply, ctx.voidPromise());
+
+		ctx.pipeline().remove(this);
+	}
+
+}
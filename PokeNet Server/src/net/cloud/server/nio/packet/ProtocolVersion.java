@@ -0,0 +1,274 @@
+package net.cloud.server.nio.packet;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import net.cloud.server.nio.bufferable.BufferableException;
+import net.cloud.server.nio.bufferable.VarInt;
+
+/**
+ * The versions of the wire protocol the server can speak. They differ in how numbers are written:
+ * V1 uses fixed width fields everywhere, V2 uses VarInts for frame lengths, opcodes, and integer fields in packets. <br>
+ * A client that wants something newer than V1 opens with a handshake - HANDSHAKE_MAGIC then the version it would like.
+ * A V1 frame can never start with that byte, so clients that don't know about the handshake just keep working on V1.
+ * The version in use is kept as an attribute on the channel.
+ */
+public enum ProtocolVersion {
+
+	/** The original protocol. 2 byte lengths and opcodes, 4 byte ints */
+	V1(1),
+
+	/** VarInt lengths, opcodes and integer fields */
+	V2(2);
+
+	/** The newest version, what this side asks for */
+	public static final ProtocolVersion LATEST = V2;
+
+	/** First byte of a handshake. A V1 length field can't start with it, since packets are far shorter than that */
+	public static final byte HANDSHAKE_MAGIC = (byte) 0xFE;
+
+	/** Bytes in a handshake (and its reply): the magic byte and a version number */
+	public static final int HANDSHAKE_LENGTH = 2;
+
+	/** The channel attribute holding the version the channel is using */
+	public static final AttributeKey<ProtocolVersion> KEY = AttributeKey.valueOf("ProtocolVersion");
+
+	/** The number that goes out in the handshake */
+	private final int number;
+
+	/**
+	 * @param number The number that goes out in the handshake
+	 */
+	private ProtocolVersion(int number)
+	{
+		this.number = number;
+	}
+
+	/**
+	 * @return The number that goes out in the handshake
+	 */
+	public int number()
+	{
+		return number;
+	}
+
+	/**
+	 * Work out which version to use when the other side asks for one
+	 * @param requested The version number the other side would like
+	 * @return The newest version both sides know, or null if there isn't one
+	 */
+	public static ProtocolVersion negotiate(int requested)
+	{
+		ProtocolVersion chosen = null;
+		for(ProtocolVersion version : values())
+		{
+			if(version.number <= requested)
+			{
+				chosen = version;
+			}
+		}
+
+		return chosen;
+	}
+
+	/**
+	 * @param channel A channel
+	 * @return The version the channel is using. V1 until a handshake says otherwise
+	 */
+	public static ProtocolVersion of(Channel channel)
+	{
+		ProtocolVersion version = channel.attr(KEY).get();
+
+		return version == null ? V1 : version;
+	}
+
+	/**
+	 * @param length The length of a frame
+	 * @return How many bytes the length field for it takes up
+	 */
+	public int lengthFieldSize(int length)
+	{
+		return this == V1 ? PacketConstants.LENGTH_FIELD_LENGTH : VarInt.sizeOf(length);
+	}
+
+	/**
+	 * Write the length field in front of a frame
+	 * @param buffer Where to write it
+	 * @param length The length of the frame
+	 */
+	public void writeLength(ByteBuf buffer, int length)
+	{
+		if(this == V1)
+		{
+			buffer.writeShort(length);
+		}
+		else {
+			VarInt.write(buffer, length);
+		}
+	}
+
+	/**
+	 * Look at the length field at the reader index, without reading it
+	 * @param buffer The received bytes
+	 * @return The size of the length field, or 0 if it hasn't all arrived yet
+	 * @throws BufferableException If the length field is malformed
+	 */
+	public int peekLengthFieldSize(ByteBuf buffer) throws BufferableException
+	{
+		if(this == V1)
+		{
+			return buffer.readableBytes() < PacketConstants.LENGTH_FIELD_LENGTH ? 0 : PacketConstants.LENGTH_FIELD_LENGTH;
+		}
+
+		return VarInt.peekSize(buffer);
+	}
+
+	/**
+	 * Get the length field at the reader index, without reading it. Check it has arrived with peekLengthFieldSize first
+	 * @param buffer The received bytes
+	 * @return The length of the frame
+	 * @throws BufferableException If the length field is malformed
+	 */
+	public int getLength(ByteBuf buffer) throws BufferableException
+	{
+		return this == V1 ? buffer.getUnsignedShort(buffer.readerIndex()) : VarInt.get(buffer, buffer.readerIndex());
+	}
+
+	/**
+	 * Write a packet's opcode
+	 * @param buffer Where to write it
+	 * @param opcode The opcode
+	 * @param compressed Whether the data that follows is compressed
+	 */
+	public void writeOpcode(ByteBuf buffer, short opcode, boolean compressed)
+	{
+		if(this == V1)
+		{
+			buffer.writeShort(compressed ? opcode | PacketConstants.COMPRESSED_FLAG : opcode);
+		}
+		else {
+			// The flag takes the lowest bit, so small opcodes still fit in a byte
+			VarInt.write(buffer, (opcode << 1) | (compressed ? 1 : 0));
+		}
+	}
+
+	/**
+	 * @param opcode The opcode of a packet
+	 * @return How many bytes writeOpcode will take for it
+	 */
+	public int opcodeSize(short opcode)
+	{
+		return this == V1 ? PacketConstants.OPCODE_LENGTH : VarInt.sizeOf(opcode << 1);
+	}
+
+	/**
+	 * Read a packet's opcode. Whatever the version, it comes back the way V1 has it -
+	 * with COMPRESSED_FLAG set if the data is compressed
+	 * @param buffer Where to read it from
+	 * @return The opcode, possibly flagged
+	 * @throws BufferableException If the opcode is malformed
+	 */
+	public short readOpcode(ByteBuf buffer) throws BufferableException
+	{
+		if(this == V1)
+		{
+			return buffer.readShort();
+		}
+
+		int field = VarInt.read(buffer);
+		short opcode = (short) (field >>> 1);
+
+		return (field & 1) == 0 ? opcode : (short) (opcode | PacketConstants.COMPRESSED_FLAG);
+	}
+
+	/**
+	 * Write a non-negative integer field. Counts, lengths, ordinals and such
+	 * @param buffer Where to write it
+	 * @param value The value
+	 */
+	public void writeInt(ByteBuf buffer, int value)
+	{
+		if(this == V1)
+		{
+			buffer.writeInt(value);
+		}
+		else {
+			VarInt.write(buffer, value);
+		}
+	}
+
+	/**
+	 * Read an integer field written by writeInt
+	 * @param buffer Where to read it from
+	 * @return The value
+	 * @throws BufferableException If the field is malformed
+	 */
+	public int readInt(ByteBuf buffer) throws BufferableException
+	{
+		return this == V1 ? buffer.readInt() : VarInt.read(buffer);
+	}
+
+	/**
+	 * Write an integer field that may well be negative
+	 * @param buffer Where to write it
+	 * @param value The value
+	 */
+	public void writeSignedInt(ByteBuf buffer, int value)
+	{
+		if(this == V1)
+		{
+			buffer.writeInt(value);
+		}
+		else {
+			VarInt.writeSigned(buffer, value);
+		}
+	}
+
+	/**
+	 * Read an integer field written by writeSignedInt
+	 * @param buffer Where to read it from
+	 * @return The value
+	 * @throws BufferableException If the field is malformed
+	 */
+	public int readSignedInt(ByteBuf buffer) throws BufferableException
+	{
+		return this == V1 ? buffer.readInt() : VarInt.readSigned(buffer);
+	}
+
+	/**
+	 * Write the length a compressed packet's data inflates to
+	 * @param buffer Where to write it
+	 * @param length The inflated length
+	 */
+	public void writeInflatedLength(ByteBuf buffer, int length)
+	{
+		if(this == V1)
+		{
+			buffer.writeShort(length);
+		}
+		else {
+			VarInt.write(buffer, length);
+		}
+	}
+
+	/**
+	 * @param length The length a compressed packet's data inflates to
+	 * @return How many bytes writeInflatedLength will take for it
+	 */
+	public int inflatedLengthSize(int length)
+	{
+		return this == V1 ? PacketConstants.INFLATED_LENGTH_LENGTH : VarInt.sizeOf(length);
+	}
+
+	/**
+	 * Read the length a compressed packet's data inflates to
+	 * @param buffer Where to read it from
+	 * @return The inflated length
+	 * @throws BufferableException If the field is malformed
+	 */
+	public int readInflatedLength(ByteBuf buffer) throws BufferableException
+	{
+		return this == V1 ? buffer.readUnsignedShort() : VarInt.read(buffer);
+	}
+
+}
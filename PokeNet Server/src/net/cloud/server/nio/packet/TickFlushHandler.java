@@ -0,0 +1,132 @@
+package net.cloud.server.nio.packet;
+
+import java.util.concurrent.TimeUnit;
+
+import net.cloud.server.ConfigConstants;
+import net.cloud.server.tracking.StatTracker;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+
+/**
+ * Sits closest to the socket on the outbound side, and holds flushes back so that several
+ * packets go out with a single syscall. A flush request is put off until the end of the current
+ * event loop iteration (or up to FLUSH_MAX_DELAY later, if configured). If enough bytes are waiting
+ * to reach FLUSH_BYTE_THRESHOLD, the flush happens right away instead. <br>
+ * Anything still waiting when the channel is closed is flushed first, so a last packet
+ * written just before closing still makes it out. <br>
+ * Netty's own FlushConsolidationHandler counts flushes rather than bytes, and has no delay to hold them back by
+ * or stats to report, so this one does the same job its own way.
+ */
+public class TickFlushHandler extends ChannelOutboundHandlerAdapter {
+
+	/** Bytes written since the last real flush */
+	private long pendingBytes;
+
+	/** Whether a flush has been requested and not yet carried out */
+	private boolean flushScheduled;
+
+	/** Create a handler for a single channel. It keeps per-channel state, so it cannot be shared */
+	public TickFlushHandler()
+	{
+		this.pendingBytes = 0;
+		this.flushScheduled = false;
+	}
+
+	/**
+	 * Keep count of how much has been written, then pass the write along as usual
+	 */
+	@Override
+	public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception
+	{
+		if(msg instanceof ByteBuf)
+		{
+			pendingBytes += ((ByteBuf) msg).readableBytes();
+		}
+
+		ctx.write(msg, promise);
+	}
+
+	/**
+	 * A flush was asked for. Do it now if there's enough waiting, otherwise put it off a little
+	 */
+	@Override
+	public void flush(ChannelHandlerContext ctx) throws Exception
+	{
+		StatTracker.instance().updateFlushRequests();
+
+		// Plenty waiting already. No point holding onto it
+		if(pendingBytes >= ConfigConstants.FLUSH_BYTE_THRESHOLD)
+		{
+			flushNow(ctx);
+			return;
+		}
+
+		// Already going to happen. This request comes along for the ride
+		if(flushScheduled)
+		{
+			return;
+		}
+
+		flushScheduled = true;
+
+		// No delay still means later - after whatever else is queued up on the event loop
+		if(ConfigConstants.FLUSH_MAX_DELAY <= 0)
+		{
+			ctx.executor().execute(() -> flushIfScheduled(ctx));
+		}
+		else {
+			ctx.executor().schedule(() -> flushIfScheduled(ctx), ConfigConstants.FLUSH_MAX_DELAY, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Get out whatever is waiting before the channel closes
+	 */
+	@Override
+	public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception
+	{
+		flushIfScheduled(ctx);
+
+		ctx.close(promise);
+	}
+
+	/**
+	 * Get out whatever is waiting before the channel disconnects
+	 */
+	@Override
+	public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception
+	{
+		flushIfScheduled(ctx);
+
+		ctx.disconnect(promise);
+	}
+
+	/**
+	 * Carry out a delayed flush, unless something else has beaten it to it
+	 * @param ctx The context for this handler
+	 */
+	private void flushIfScheduled(ChannelHandlerContext ctx)
+	{
+		if(flushScheduled)
+		{
+			flushNow(ctx);
+		}
+	}
+
+	/**
+	 * Actually flush the channel, and start counting over
+	 * @param ctx The context for this handler
+	 */
+	private void flushNow(ChannelHandlerContext ctx)
+	{
+		StatTracker.instance().updateFlushes(pendingBytes);
+
+		flushScheduled = false;
+		pendingBytes = 0;
+
+		ctx.flush();
+	}
+
+}
@@ -0,0 +1,67 @@
+package net.cloud.server.nio.packet;
+
+import net.cloud.server.ConfigConstants;
+import net.cloud.server.util.TokenBucket;
+
+/**
+ * Groups incoming packets for rate limiting. Each class has its own rate and burst size,
+ * and each connection has its own bucket for each class (see InboundRateLimiter).
+ */
+public enum TrafficClass {
+
+	/** Logging in and out. Only happens a few times per connection */
+	LOGIN(ConfigConstants.RATE_LOGIN_PER_SECOND, ConfigConstants.RATE_LOGIN_BURST),
+
+	/** Button presses and the like */
+	ACTION(ConfigConstants.RATE_ACTION_PER_SECOND, ConfigConstants.RATE_ACTION_BURST),
+
+	/** Everything else */
+	GENERAL(ConfigConstants.RATE_GENERAL_PER_SECOND, ConfigConstants.RATE_GENERAL_BURST);
+
+	/** Packets per second, on average */
+	private final double perSecond;
+
+	/** Packets that may come in a burst */
+	private final int burst;
+
+	/**
+	 * @param perSecond Packets per second, on average
+	 * @param burst Packets that may come in a burst
+	 */
+	private TrafficClass(double perSecond, int burst)
+	{
+		this.perSecond = perSecond;
+		this.burst = burst;
+	}
+
+	/**
+	 * @param opcode The opcode of an incoming packet
+	 * @return The class the packet falls under
+	 */
+	public static TrafficClass of(short opcode)
+	{
+		switch(opcode)
+		{
+		case PacketConstants.LOGIN:
+		case PacketConstants.RESUME:
+		case PacketConstants.LOGIN_DATA_REQUEST:
+		case PacketConstants.LOGOUT:
+			return LOGIN;
+
+		case PacketConstants.BUTTON_ACTION:
+			return ACTION;
+
+		default:
+			return GENERAL;
+		}
+	}
+
+	/**
+	 * @return A new, full bucket with this class's rate and burst size
+	 */
+	public TokenBucket newBucket()
+	{
+		return new TokenBucket(perSecond, burst);
+	}
+
+}
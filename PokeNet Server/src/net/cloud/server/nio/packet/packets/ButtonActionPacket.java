@@ -1,6 +1,8 @@
 package net.cloud.server.nio.packet.packets;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.util.Recycler;
+import io.netty.util.Recycler.Handle;
 import net.cloud.server.logging.Logger;
 import net.cloud.server.nio.bufferable.Bufferable;
 import net.cloud.server.entity.player.Player;
@@ -9,15 +11,32 @@ import net.cloud.server.game.action.ButtonActionID;
 import net.cloud.server.nio.bufferable.BufferableException;
 import net.cloud.server.nio.packet.Packet;
 import net.cloud.server.nio.packet.PacketConstants;
+import net.cloud.server.nio.packet.ProtocolVersion;
 import net.cloud.server.nio.packet.ReceiveOnlyPacket;
 
 /**
  * This packet indicates that a button was pressed on a client. The packet tells us 
  * which button was pressed, as well as some optional context information. 
- * The action we take in regards to this packet is dynamically generated and cached
+ * The action we take in regards to this packet is dynamically generated and cached. <br>
+ * Buttons get pressed a lot, so decoded packets come out of a pool and go back once they've been handled.
  */
 public class ButtonActionPacket extends ReceiveOnlyPacket {
 	
+	/** Pool of decoded packets, per thread. Netty threads take from it, the world thread gives back */
+	private static final Recycler<ButtonActionPacket> RECYCLER = new Recycler<ButtonActionPacket>() {
+		@Override
+		protected ButtonActionPacket newObject(Handle<ButtonActionPacket> handle)
+		{
+			return new ButtonActionPacket(handle);
+		}
+	};
+	
+	/** Button IDs by ordinal. values() makes a new array every call */
+	private static final ButtonActionID[] BUTTON_IDS = ButtonActionID.values();
+	
+	/** Handle back into the pool. Null for the prototype, which is never recycled */
+	private final Handle<ButtonActionPacket> handle;
+	
 	/** The ID on the action, so the server knows which button was pressed */
 	private ButtonActionID buttonID;
 	
@@ -28,7 +47,19 @@ public class ButtonActionPacket extends ReceiveOnlyPacket {
 	private ByteBuf data;
 	
 	/** Prototype constructor */
-	public ButtonActionPacket() {}
+	public ButtonActionPacket()
+	{
+		this(null);
+	}
+	
+	/**
+	 * Constructor for the pool
+	 * @param handle Handle used to give the packet back to the pool
+	 */
+	private ButtonActionPacket(Handle<ButtonActionPacket> handle)
+	{
+		this.handle = handle;
+	}
 
 	@Override
 	public short getOpcode()
@@ -39,14 +70,20 @@ public class ButtonActionPacket extends ReceiveOnlyPacket {
 	@Override
 	public Packet decode(ByteBuf data) throws BufferableException
 	{
-		ButtonActionPacket packet = new ButtonActionPacket();
+		return decode(data, ProtocolVersion.V1);
+	}
+	
+	@Override
+	public Packet decode(ByteBuf data, ProtocolVersion version) throws BufferableException
+	{
+		ButtonActionPacket packet = RECYCLER.get();
 		
-		packet.buttonID = ButtonActionID.values()[data.readInt()];
+		packet.buttonID = BUTTON_IDS[version.readInt(data)];
 		
 		// How how many arguments are there?
-		int numArgs = data.readInt();
+		int numArgs = version.readInt(data);
 		
-		int argsLength = data.readInt();
+		int argsLength = version.readInt(data);
 		
 		// Are there no arguments?
 		if(numArgs <= 0)
@@ -83,5 +120,32 @@ public class ButtonActionPacket extends ReceiveOnlyPacket {
 			data.release();
 		}
 	}
+	
+	/**
+	 * The packet will never be handled, so the argument data has to be released here instead
+	 */
+	@Override
+	public void discard()
+	{
+		data.release();
+	}
+	
+	/**
+	 * Clear out the packet and put it back in the pool, so the next decode can use it
+	 */
+	@Override
+	public void recycle()
+	{
+		if(handle == null)
+		{
+			return;
+		}
+		
+		buttonID = null;
+		args = null;
+		data = null;
+		
+		handle.recycle(this);
+	}
 
 }
@@ -1,29 +1,65 @@
 package net.cloud.server.nio.packet.packets;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.List;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.util.Recycler;
+import io.netty.util.Recycler.Handle;
 import net.cloud.server.nio.bufferable.BufferableException;
 import net.cloud.server.entity.player.Player;
 import net.cloud.server.nio.packet.Packet;
 import net.cloud.server.nio.packet.PacketConstants;
+import net.cloud.server.nio.packet.ProtocolVersion;
 
 /**
  * A CompositePacket is a Packet made up of other Packets. 
  * This is useful for sending several packets together, and assuring 
  * they will arrive in a determinate order and be handled in that order. 
  * The behavior of each individual packet is the same, and they happen 
- * in the order they are composed in. 
+ * in the order they are composed in. <br>
+ * Each composed packet goes in with its own length and opcode, so the receiving side can hand 
+ * each one a slice of exactly its own data. When sent through the PacketSender, the packets are encoded 
+ * into buffers of their own and gathered up in a CompositeByteBuf rather than copied into one. <br>
+ * Received composites come from a pool, and return the packets they're made of to theirs when recycled. <br>
+ * The count and component lengths are written as the channel's ProtocolVersion has them, as are the composed packets.
  */
 public class CompositePacket implements Packet {
 	
+	/** Pool of decoded composites, per thread */
+	private static final Recycler<CompositePacket> RECYCLER = new Recycler<CompositePacket>() {
+		@Override
+		protected CompositePacket newObject(Handle<CompositePacket> handle)
+		{
+			CompositePacket packet = new CompositePacket(handle);
+			packet.packets = new ArrayList<Packet>();
+			return packet;
+		}
+	};
+	
 	/** Composed via a list of other packets */
 	private List<Packet> packets;
 	
+	/** Handle back into the pool. Null unless the packet came from the pool */
+	private final Handle<CompositePacket> handle;
+	
 	/** Default constructor leaves all data fields default or null */
-	public CompositePacket() {}
+	public CompositePacket()
+	{
+		this((Handle<CompositePacket>) null);
+	}
+	
+	/**
+	 * Constructor for the pool. The list is kept and reused between decodes
+	 * @param handle Handle used to give the packet back to the pool
+	 */
+	private CompositePacket(Handle<CompositePacket> handle)
+	{
+		this.handle = handle;
+	}
 	
 	/** 
 	 * A CompositePacket created from one or more other packets 
@@ -32,7 +68,9 @@ public class CompositePacket implements Packet {
 	 */
 	public CompositePacket(Packet first, Packet... others)
 	{
-		packets = new LinkedList<Packet>();
+		this((Handle<CompositePacket>) null);
+		
+		packets = new ArrayList<Packet>(1 + others.length);
 		
 		// Add the first packet
 		packets.add(first);
@@ -40,6 +78,14 @@ public class CompositePacket implements Packet {
 		// and any that may follow it
 		Arrays.stream(others).forEach(p -> packets.add(p));
 	}
+	
+	/**
+	 * @return The packets this one is composed of, in order. Not to be modified
+	 */
+	public List<Packet> getPackets()
+	{
+		return packets;
+	}
 
 	@Override
 	public short getOpcode()
@@ -49,53 +95,226 @@ public class CompositePacket implements Packet {
 	}
 
 	/** 
-	 * Encode each of the packets this one is composed of, one after the other
+	 * Encode each of the packets this one is composed of, one after the other. 
+	 * Only used when a composite goes through PacketEncoder (or is nested in another composite), 
+	 * otherwise see {@link #encodeComposite(ByteBufAllocator, ProtocolVersion)}
 	 * @throws BufferableException If encoding a Bufferable object fails
 	 */
 	@Override
 	public void encode(ByteBuf buffer) throws BufferableException
+	{
+		encode(buffer, ProtocolVersion.V1);
+	}
+	
+	@Override
+	public void encode(ByteBuf buffer, ProtocolVersion version) throws BufferableException
 	{
 		// Place the number of packets first (may not be necessary, but clears things up)
-		buffer.writeInt(packets.size());
+		version.writeInt(buffer, packets.size());
 		
 		// Encode each packet into the composite, back to back
 		for(Packet p : packets)
 		{
-			// Need the opcode manually written so we can decode it
-			// WARNING: This circumvents PacketEncoder
-			buffer.writeShort(p.getOpcode());
+			encodeComponent(p, buffer, version);
+		}
+	}
+	
+	/**
+	 * Encode the whole packet, opcode included, without copying any of the composed packets together. 
+	 * Each one is encoded into a buffer of its own, sized exactly when the packet knows its size, 
+	 * and the buffers are gathered into one CompositeByteBuf. The result can be written straight to a channel.
+	 * @param alloc The allocator to get buffers from
+	 * @return A buffer holding the opcode and data of this packet, as V1 has it. The caller owns it
+	 * @throws BufferableException If encoding a Bufferable object fails
+	 */
+	public ByteBuf encodeComposite(ByteBufAllocator alloc) throws BufferableException
+	{
+		return encodeComposite(alloc, ProtocolVersion.V1);
+	}
+	
+	/**
+	 * Same as {@link #encodeComposite(ByteBufAllocator)}, for the given protocol version. 
+	 * Under V2, a packet whose size isn't known ahead of time gets its length field in a small buffer of its own, 
+	 * since the field's size depends on the length
+	 * @param alloc The allocator to get buffers from
+	 * @param version The protocol version of the channel it is going out on
+	 * @return A buffer holding the opcode and data of this packet. The caller owns it
+	 * @throws BufferableException If encoding a Bufferable object fails
+	 */
+	public ByteBuf encodeComposite(ByteBufAllocator alloc, ProtocolVersion version) throws BufferableException
+	{
+		CompositeByteBuf composite = alloc.compositeBuffer(1 + 2 * packets.size());
+		
+		try {
+			// Opcode and count, same as PacketEncoder + encode() would give
+			ByteBuf header = alloc.buffer(PacketConstants.OPCODE_LENGTH + 4);
+			version.writeOpcode(header, getOpcode(), false);
+			version.writeInt(header, packets.size());
+			composite.addComponent(true, header);
+			
+			for(Packet p : packets)
+			{
+				int size = p.encodedSize(version);
+				
+				if(size < 0 && version != ProtocolVersion.V1)
+				{
+					encodeUnsized(p, composite, alloc, version);
+					continue;
+				}
+				
+				// Length, opcode, data. Unknown sizes just get a default buffer that can grow
+				ByteBuf component = size < 0 ? alloc.buffer() 
+						: alloc.buffer(version.lengthFieldSize(size) + version.opcodeSize(p.getOpcode()) + size);
+				
+				try {
+					encodeComponent(p, component, version);
+				} catch (BufferableException | RuntimeException e) {
+					// Not part of the composite yet, so it has to be released on its own
+					component.release();
+					throw e;
+				}
+				
+				composite.addComponent(true, component);
+			}
+		} catch (BufferableException | RuntimeException e) {
+			// Releases every component added so far
+			composite.release();
+			throw e;
+		}
+		
+		return composite;
+	}
+	
+	/**
+	 * Add a packet of unknown size to a composite being built, when the length field is a VarInt. 
+	 * The packet is encoded first, then the length field goes in ahead of it as a component of its own
+	 * @param packet The packet to add
+	 * @param composite The composite being built
+	 * @param alloc The allocator to get buffers from
+	 * @param version The protocol version being written
+	 * @throws BufferableException If encoding a Bufferable object fails
+	 */
+	private static void encodeUnsized(Packet packet, CompositeByteBuf composite, ByteBufAllocator alloc, ProtocolVersion version) throws BufferableException
+	{
+		ByteBuf body = alloc.buffer();
+		
+		try {
+			version.writeOpcode(body, packet.getOpcode(), false);
+			packet.encode(body, version);
+		} catch (BufferableException | RuntimeException e) {
+			body.release();
+			throw e;
+		}
+		
+		ByteBuf length = alloc.buffer(version.lengthFieldSize(body.readableBytes()));
+		version.writeLength(length, body.readableBytes());
+		
+		composite.addComponent(true, length);
+		composite.addComponent(true, body);
+	}
+	
+	/**
+	 * Write a single composed packet - length, opcode, then data - to the given buffer
+	 * @param packet The packet to write
+	 * @param buffer Where to write it
+	 * @param version The protocol version being written
+	 * @throws BufferableException If encoding a Bufferable object fails
+	 */
+	private static void encodeComponent(Packet packet, ByteBuf buffer, ProtocolVersion version) throws BufferableException
+	{
+		if(version != ProtocolVersion.V1)
+		{
+			encodeVarComponent(packet, buffer, version);
+			return;
+		}
+		
+		// The length isn't known until the packet is done. Come back to it
+		int lengthIndex = buffer.writerIndex();
+		buffer.writeShort(0);
+		
+		// Need the opcode manually written so we can decode it
+		// WARNING: This circumvents PacketEncoder
+		buffer.writeShort(packet.getOpcode());
+		
+		// And then it can place its data into the buffer
+		packet.encode(buffer);
+		
+		buffer.setShort(lengthIndex, buffer.writerIndex() - lengthIndex - PacketConstants.LENGTH_FIELD_LENGTH);
+	}
+	
+	/**
+	 * Write a single composed packet with a VarInt length field. There's no coming back to fill in a field 
+	 * whose size isn't known, so packets that don't know their size are encoded somewhere else first
+	 * @param packet The packet to write
+	 * @param buffer Where to write it
+	 * @param version The protocol version being written
+	 * @throws BufferableException If encoding a Bufferable object fails
+	 */
+	private static void encodeVarComponent(Packet packet, ByteBuf buffer, ProtocolVersion version) throws BufferableException
+	{
+		int size = packet.encodedSize(version);
+		
+		if(size >= 0)
+		{
+			version.writeLength(buffer, version.opcodeSize(packet.getOpcode()) + size);
+			version.writeOpcode(buffer, packet.getOpcode(), false);
+			packet.encode(buffer, version);
+			return;
+		}
+		
+		ByteBuf body = buffer.alloc().buffer();
+		try {
+			version.writeOpcode(body, packet.getOpcode(), false);
+			packet.encode(body, version);
 			
-			// And then it can place its data into the buffer
-			p.encode(buffer);
+			version.writeLength(buffer, body.readableBytes());
+			buffer.writeBytes(body);
+		} finally {
+			body.release();
 		}
 	}
 
 	/**
 	 * Decode the packet, by decoding each of the packets this one is composed of. 
 	 * Do note that this circumvents PacketDecoder, so each 'composed packet' 
-	 * does not go through the channel pipeline. 
+	 * does not go through the channel pipeline. Each packet decodes from a slice of just its own data.
 	 * @throws BufferableException One of the packets failed to decode a Bufferable object
 	 * @throws IllegalArgumentException This packet has no prototype for some reason
 	 */
 	@Override
 	public Packet decode(ByteBuf data) throws IllegalArgumentException, BufferableException
 	{
-		// Sorta different - create a blank Packet and initialize its list
-		CompositePacket newPacket = new CompositePacket();
-		newPacket.packets = new LinkedList<Packet>();
+		return decode(data, ProtocolVersion.V1);
+	}
+	
+	@Override
+	public Packet decode(ByteBuf data, ProtocolVersion version) throws IllegalArgumentException, BufferableException
+	{
+		// Sorta different - grab a blank Packet from the pool, its list is already there and empty
+		CompositePacket newPacket = RECYCLER.get();
 		
 		// Find out how many packets this one is composed of
-		int numPackets = data.readInt();
+		int numPackets = version.readInt(data);
 		
 		// Each packet should decode itself and consume no more of the data, until data is gone
-		for(int i = 0; i < numPackets; ++i)
-		{
-			// Need the opcode so we know what Packet we're dealing with
-			// WARNING: This circumvents PacketDecoder
-			short opCode = data.readShort();
-			
-			// Then hand it off to PacketManager, which deals with decoding
-			newPacket.packets.add(PacketManager.decodeCopy(opCode, data));
+		try {
+			for(int i = 0; i < numPackets; ++i)
+			{
+				// Slice off this packet's length worth of data. No copying, and it can't read into the next one
+				ByteBuf component = data.readSlice(version == ProtocolVersion.V1 ? data.readUnsignedShort() : version.readInt(data));
+				
+				// Need the opcode so we know what Packet we're dealing with
+				// WARNING: This circumvents PacketDecoder
+				short opCode = version.readOpcode(component);
+				
+				// Then hand it off to PacketManager, which deals with decoding
+				newPacket.packets.add(PacketManager.decodeCopy(opCode, component, version));
+			}
+		} catch (BufferableException | RuntimeException e) {
+			// The packets decoded so far will never be handled
+			newPacket.discard();
+			newPacket.recycle();
+			throw e;
 		}
 		
 		return newPacket;
@@ -106,7 +325,32 @@ public class CompositePacket implements Packet {
 	public void handlePacket(Player player)
 	{
 		// Handle each of the packets in turn
-		packets.stream().forEach(packet -> packet.handlePacket(player));
+		for(Packet packet : packets)
+		{
+			packet.handlePacket(player);
+		}
+	}
+	
+	/** None of the packets this one is composed of will be handled, so each of them is discarded */
+	@Override
+	public void discard()
+	{
+		packets.forEach(Packet::discard);
+	}
+	
+	/** Recycle each of the composed packets, then clear the list and put this one back in the pool */
+	@Override
+	public void recycle()
+	{
+		if(handle == null)
+		{
+			return;
+		}
+		
+		packets.forEach(Packet::recycle);
+		packets.clear();
+		
+		handle.recycle(this);
 	}
 
 }
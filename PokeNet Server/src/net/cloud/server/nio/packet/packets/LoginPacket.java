@@ -2,19 +2,25 @@ package net.cloud.server.nio.packet.packets;
 
 import io.netty.buffer.ByteBuf;
 import net.cloud.server.entity.player.LoginHandler;
+import net.cloud.server.entity.player.LoginPipeline;
 import net.cloud.server.entity.player.LoginResponse;
 import net.cloud.server.entity.player.LoginState;
 import net.cloud.server.entity.player.Player;
 import net.cloud.server.entity.player.PlayerChannelConfig;
-import net.cloud.server.event.task.TaskEngine;
+import net.cloud.server.event.task.TimeoutService;
+import net.cloud.server.game.GameEngine;
 import net.cloud.server.game.World;
 import net.cloud.server.logging.Logger;
 import net.cloud.server.nio.bufferable.BufferableException;
+import net.cloud.server.nio.bufferable.VarInt;
 import net.cloud.server.nio.packet.Packet;
 import net.cloud.server.nio.packet.PacketConstants;
+import net.cloud.server.nio.packet.PacketSender;
+import net.cloud.server.nio.packet.ProtocolVersion;
 import net.cloud.server.nio.packet.ReceiveOnlyPacket;
 import net.cloud.server.nio.packet.SendOnlyPacket;
 import net.cloud.server.util.HashObj;
+import net.cloud.server.util.ResumeToken;
 import net.cloud.server.util.StringUtil;
 
 /**
@@ -53,7 +59,7 @@ public class LoginPacket extends ReceiveOnlyPacket {
 	@Override
 	public Packet decode(ByteBuf data) throws BufferableException
 	{
-		// Pull the username & password from the buffer
+		// Pull the username & password from the buffer. Not interned - anyone can send this, logged in or not
 		String user = StringUtil.getFromBuffer(data);
 		HashObj pass = HashObj.createFrom(data);
 		
@@ -62,14 +68,49 @@ public class LoginPacket extends ReceiveOnlyPacket {
 	}
 
 	/**
-	 * Takes the request to login, and determines what the correct response is. 
-	 * Then replies by sending that response.
+	 * Takes the request to login, and has the LoginPipeline determine what the correct response is. 
+	 * Once it has, replies by sending that response.
 	 */
 	@Override
 	public void handlePacket(Player player)
 	{
-		// What is our response going to be?
-		LoginResponse response = LoginHandler.validationResponseFor(player, username, password);
+		// Only the one login request per connection
+		if(player.getLoginState() != LoginState.CONNECTED)
+		{
+			Logger.instance().logMessage("[NOTICE] Player in invalid state sending login request: " + player.getLoginState().toString());
+			return;
+		}
+		
+		player.setLoginState(LoginState.VALIDATING);
+		
+		// The response is worked out off of this thread. It comes back to the world thread once it's ready
+		LoginPipeline.instance().submit(player, username, password)
+			.thenAccept((response) -> handleResponse(player, response))
+			.exceptionally((ex) ->
+			{
+				Logger.instance().logException("Exception while responding to login", ex);
+				return null;
+			});
+	}
+	
+	/**
+	 * Take action on the response the LoginPipeline came up with. Runs on the world thread.
+	 * @param player The player attempting to login
+	 * @param response The response to the login request
+	 */
+	private void handleResponse(Player player, LoginResponse response)
+	{
+		// The connection may have timed out while the response was being worked out
+		if(player.getLoginState() != LoginState.VALIDATING)
+		{
+			return;
+		}
+		
+		// Hold the username from here on, so no other login for it gets let in while this one finishes
+		if(response == LoginResponse.OKAY && !World.instance().getPlayerMap().reserve(player))
+		{
+			response = LoginResponse.ALREADY_LOGGED_IN;
+		}
 		
 		// Okay, just now logging in
 		if(response == LoginResponse.OKAY)
@@ -97,10 +138,10 @@ public class LoginPacket extends ReceiveOnlyPacket {
 		player.setLoginState(LoginState.VERIFIED);
 
 		// Reply to the client telling them they should proceed with login
-		player.getPacketSender().sendLoginResponse(LoginResponse.OKAY);
+		LoginHandler.sendResponse(player, LoginResponse.OKAY);
 
-		// We expect that soon the client will request login data. Time out on that action
-		TaskEngine.instance().submitDelayed(LoginHandler.TIMEOUT, () ->
+		// We expect that soon the client will request login data. Time out on that action (the check happens on the world thread)
+		player.getChannelConfig().setLoginTimeout(TimeoutService.instance().schedule(LoginHandler.TIMEOUT, () ->
 		{
 			// Body of the task. Is the player still sitting in the VERIFIED state?
 			if(player.getLoginState() == LoginState.VERIFIED)
@@ -111,14 +152,15 @@ public class LoginPacket extends ReceiveOnlyPacket {
 				// Since they are, we never got a login data request from the client
 				LoginHandler.abortConnection(player);
 			}
-		});
+		}));
 	}
 	
 	/**
-	 * Tell the player they can reconnect, timing out on their movement forward in the reconnecting process
+	 * Tell the player they can reconnect, timing out on their movement forward in the reconnecting process. 
+	 * Also how a ResumePacket with a good token picks the session back up
 	 * @param player The player trying to reconnect
 	 */
-	private void reconnectLogin(Player player)
+	static void reconnectLogin(Player player)
 	{
 		// The old player object is still in the reconnect map - get and remove
 		Player oldPlayer = World.instance().getDisconnectMap().remove(player.getUsername());
@@ -126,6 +168,9 @@ public class LoginPacket extends ReceiveOnlyPacket {
 		// Login state of the old player was disconnected, but they're trying to reconnect now
 		oldPlayer.setLoginState(LoginState.RECONNECTING);
 		
+		// Out of the disconnect map, so their username needs holding until they're back in the world
+		World.instance().getPlayerMap().reserve(oldPlayer);
+		
 		// We have two player objects - old and new - we want to pick up using the old one (it's easier to track the new one at this point)
 		// So our aim is to abandon the new object and replace it with the old one everywhere it already exists
 		oldPlayer.setPacketSender(player.getPacketSender());
@@ -133,11 +178,11 @@ public class LoginPacket extends ReceiveOnlyPacket {
 		
 		// Change the disconnect listener to use the old player object
 		player.getPacketSender().channel().closeFuture().removeListener(config.getDcListener());
-		config.setDcListener((f) -> LoginHandler.handleDisconnect(oldPlayer));
+		config.setDcListener((f) -> GameEngine.instance().submit(() -> LoginHandler.handleDisconnect(oldPlayer)));
 		player.getPacketSender().channel().closeFuture().addListener(config.getDcListener());
 		
-		// Cancel the existing timeout task, the new player will not be proceeding. We have a different timeout
-		config.getConnectTimeoutTask().cancel();
+		// The old player made it back in time, so their reconnect timer can go
+		oldPlayer.getChannelConfig().cancelLoginTimeout();
 		
 		// Change the packet handler to use the old player, to correctly route packets
 		config.getPacketHandler().setPlayer(oldPlayer);
@@ -145,12 +190,9 @@ public class LoginPacket extends ReceiveOnlyPacket {
 		// Just like with packet sender, we'll move the config over to the old player, since it has new connection information
 		oldPlayer.setChannelConfig(config);
 		
-		// Tell the client to proceed reconnecting
-		oldPlayer.getPacketSender().sendLoginResponse(LoginResponse.RECONNECT);
-		TaskEngine.instance().submitDelayed(LoginHandler.TIMEOUT, () ->
-		{
-				LoginHandler.reconnectingTimeoutTask(oldPlayer);
-		});
+		// Tell the client to proceed reconnecting. This replaces the new player's timeout, which won't be proceeding
+		LoginHandler.sendResponse(oldPlayer, LoginResponse.RECONNECT);
+		config.setLoginTimeout(TimeoutService.instance().schedule(LoginHandler.TIMEOUT, () -> LoginHandler.reconnectingTimeoutTask(oldPlayer)));
 	}
 	
 	/**
@@ -164,7 +206,7 @@ public class LoginPacket extends ReceiveOnlyPacket {
 		player.setLoginState(LoginState.LOGIN_FAILED);
 
 		// Reply to the client telling them not to proceed
-		player.getPacketSender().sendLoginResponse(response);
+		LoginHandler.sendResponse(player, response);
 
 		// Sever the connection, as login has failed
 		LoginHandler.abortConnection(player);
@@ -200,9 +242,22 @@ public class LoginPacket extends ReceiveOnlyPacket {
 
 		@Override
 		public void encode(ByteBuf buffer) throws BufferableException
+		{
+			encode(buffer, ProtocolVersion.V1);
+		}
+		
+		@Override
+		public void encode(ByteBuf buffer, ProtocolVersion version)
 		{
 			// To keep it simple, we'll use the ordinal of the enum value this time
-			buffer.writeInt(response.ordinal());
+			version.writeInt(buffer, response.ordinal());
+		}
+		
+		/** Just the one int */
+		@Override
+		public int encodedSize(ProtocolVersion version)
+		{
+			return version == ProtocolVersion.V1 ? 4 : VarInt.sizeOf(response.ordinal());
 		}
 		
 	}
@@ -225,8 +280,17 @@ public class LoginPacket extends ReceiveOnlyPacket {
 		@Override
 		public Packet decode(ByteBuf data) throws BufferableException
 		{
-			// There's really nothing to read, but we have a dummy integer to burn
-			data.readInt();
+			return decode(data, ProtocolVersion.V1);
+		}
+		
+		@Override
+		public Packet decode(ByteBuf data, ProtocolVersion version)
+		{
+			// There's really nothing to read. V1 has a dummy integer to burn, since it can't send empty packets
+			if(version == ProtocolVersion.V1)
+			{
+				data.readInt();
+			}
 			
 			return new LoginDataRequestPacket();
 		}
@@ -244,10 +308,14 @@ public class LoginPacket extends ReceiveOnlyPacket {
 			
 			// Getting this request signifies the player finally being totally logged in
 			player.setLoginState(LoginState.LOGGED_IN);
+			player.getChannelConfig().cancelLoginTimeout();
 			
 			// Place the player in the world, now that we consider them logged in
 			World.instance().getPlayerMap().place(player.getPacketSender().channel(), player);
 			
+			// A fresh token either way, should they drop and want back in. Any old one has been used or is stale
+			player.setResumeToken(ResumeToken.generate());
+			
 			// Split decision based on state they came in with
 			if(prevState == LoginState.VERIFIED)
 			{
@@ -268,11 +336,13 @@ public class LoginPacket extends ReceiveOnlyPacket {
 		 */
 		private void handleNormalLogin(Player player)
 		{
-			// TODO: combine into composite packet
-			player.getPacketSender().sendLoginDataResponse(player);
+			PacketSender sender = player.getPacketSender();
 			
 			String loginMsg = player.getLastLogin() == null ? "login success" : "login success."+System.lineSeparator()+"last login: "+player.getLastLogin().toString();
-			player.getPacketSender().sendShowMessageDialog("login", loginMsg);
+			
+			// Data, token and message go out as one frame, the data first so it's in place when the message shows
+			sender.sendCompositePacket(sender.createLoginDataResponse(player), sender.createResumeToken(player.getResumeToken()), 
+					sender.createShowMessageDialog("login", loginMsg));
 		}
 		
 		/**
@@ -281,10 +351,12 @@ public class LoginPacket extends ReceiveOnlyPacket {
 		 */
 		private void handleReconnect(Player player)
 		{
-			player.getPacketSender().sendLoginDataResponse(player);
+			PacketSender sender = player.getPacketSender();
 			
 			String loginMsg = "reconnect success."+System.lineSeparator()+"last login: "+player.getLastLogin().toString();
-			player.getPacketSender().sendShowMessageDialog("reconnect", loginMsg);
+			
+			sender.sendCompositePacket(sender.createLoginDataResponse(player), sender.createResumeToken(player.getResumeToken()), 
+					sender.createShowMessageDialog("reconnect", loginMsg));
 		}
 		
 	}
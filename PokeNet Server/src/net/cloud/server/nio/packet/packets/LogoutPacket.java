@@ -3,6 +3,7 @@ package net.cloud.server.nio.packet.packets;
 import io.netty.buffer.ByteBuf;
 import net.cloud.server.nio.bufferable.BufferableException;
 import net.cloud.server.nio.packet.PacketConstants;
+import net.cloud.server.nio.packet.ProtocolVersion;
 import net.cloud.server.nio.packet.SendOnlyPacket;
 
 /**
@@ -22,8 +23,25 @@ public class LogoutPacket extends SendOnlyPacket {
 	@Override
 	public void encode(ByteBuf buffer) throws BufferableException
 	{
-		// Write a dummy value, don't currently have anything I need to send
-		buffer.writeInt(0xD3AD);
+		encode(buffer, ProtocolVersion.V1);
+	}
+	
+	@Override
+	public void encode(ByteBuf buffer, ProtocolVersion version)
+	{
+		// Write a dummy value, don't currently have anything I need to send. 
+		// V1 clients drop packets without any data, newer ones don't
+		if(version == ProtocolVersion.V1)
+		{
+			buffer.writeInt(0xD3AD);
+		}
+	}
+	
+	/** The dummy int, if there is one */
+	@Override
+	public int encodedSize(ProtocolVersion version)
+	{
+		return version == ProtocolVersion.V1 ? 4 : 0;
 	}
 
 }
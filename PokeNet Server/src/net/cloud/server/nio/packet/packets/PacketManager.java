@@ -4,9 +4,11 @@ import io.netty.buffer.ByteBuf;
 import net.cloud.server.nio.bufferable.BufferableException;
 import net.cloud.server.nio.packet.Packet;
 import net.cloud.server.nio.packet.PacketConstants;
+import net.cloud.server.nio.packet.ProtocolVersion;
 import net.cloud.server.nio.packet.packets.LoginPacket.LoginResponsePacket;
 import net.cloud.server.nio.packet.packets.LoginPacket.LoginDataRequestPacket;
 import net.cloud.server.nio.packet.packets.LoginPacket.LoginDataResponsePacket;
+import net.cloud.server.nio.packet.packets.ResumePacket.ResumeTokenPacket;
 
 /**
  * In short, keeps a record of the different packets. 
@@ -31,11 +33,14 @@ public class PacketManager {
 		packets[PacketConstants.SHOW_MSG_DIALOG] = new ShowMessageDialogPacket();
 		packets[PacketConstants.BUTTON_ACTION] = new ButtonActionPacket();
 		packets[PacketConstants.LOGOUT] = new LogoutPacket();
+		packets[PacketConstants.RESUME_TOKEN] = new ResumeTokenPacket();
+		packets[PacketConstants.RESUME] = new ResumePacket();
 	}
 	
 	/**
 	 * Returns a new Packet, which aligns with the given opcode.  The Packet 
-	 * uses the data provided to reconstruct itself.
+	 * uses the data provided to reconstruct itself. 
+	 * Some packets are pooled, so the caller should recycle() the Packet once it is done with it.
 	 * @param opcode The 2 byte opcode of the packet
 	 * @param data The rest of the data (excluding length and opcode header)
 	 * @return A Packet of the right class, deserialized from the data
@@ -43,6 +48,21 @@ public class PacketManager {
 	 * @throws IllegalArgumentException The packet opcode is unknown
 	 */
 	public static Packet decodeCopy(short opcode, ByteBuf data) throws IllegalArgumentException, BufferableException
+	{
+		return decodeCopy(opcode, data, ProtocolVersion.V1);
+	}
+	
+	/**
+	 * Returns a new Packet, which aligns with the given opcode, decoded as the given protocol version has it. 
+	 * Some packets are pooled, so the caller should recycle() the Packet once it is done with it.
+	 * @param opcode The 2 byte opcode of the packet
+	 * @param data The rest of the data (excluding length and opcode header)
+	 * @param version The protocol version the data was written with
+	 * @return A Packet of the right class, deserialized from the data
+	 * @throws BufferableException There was an issue decoding a Bufferable object
+	 * @throws IllegalArgumentException The packet opcode is unknown
+	 */
+	public static Packet decodeCopy(short opcode, ByteBuf data, ProtocolVersion version) throws IllegalArgumentException, BufferableException
 	{
 		// Make sure the opcode is valid
 		if(opcode < 0 || opcode >= packets.length)
@@ -53,7 +73,7 @@ public class PacketManager {
 		// Get a decoded copy using the existing prototype
 		if(packets[opcode] != null)
 		{
-			return packets[opcode].decode(data);
+			return packets[opcode].decode(data, version);
 		}
 		else {
 			throw new IllegalArgumentException("Packet " + opcode + " does not exist");
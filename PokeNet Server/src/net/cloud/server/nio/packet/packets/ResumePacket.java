@@ -0,0 +1,147 @@
+package net.cloud.server.nio.packet.packets;
+
+import io.netty.buffer.ByteBuf;
+import net.cloud.server.entity.player.LoginHandler;
+import net.cloud.server.entity.player.LoginResponse;
+import net.cloud.server.entity.player.LoginState;
+import net.cloud.server.entity.player.Player;
+import net.cloud.server.game.World;
+import net.cloud.server.logging.Logger;
+import net.cloud.server.nio.bufferable.BufferableException;
+import net.cloud.server.nio.packet.Packet;
+import net.cloud.server.nio.packet.PacketConstants;
+import net.cloud.server.nio.packet.ProtocolVersion;
+import net.cloud.server.nio.packet.ReceiveOnlyPacket;
+import net.cloud.server.nio.packet.SendOnlyPacket;
+import net.cloud.server.util.ResumeToken;
+import net.cloud.server.util.StringUtil;
+
+/**
+ * Sent by a client coming back after dropping, in place of a LoginPacket. Instead of a password, it has the
+ * ResumeToken it was given when it last logged in. The disconnected player is still in memory, so checking
+ * the token is all there is to it - no save file is read, and no password is hashed. <br>
+ * A token that doesn't match is answered with RESUME_REJECTED, and the connection is left open so the client
+ * can log in the long way instead. Only one resume may be tried per connection.
+ */
+public class ResumePacket extends ReceiveOnlyPacket {
+
+	/** Username of the player trying to resume */
+	private String username;
+
+	/** The token they were given */
+	private ResumeToken token;
+
+	/** Default constructor leaves all data fields default or null */
+	public ResumePacket() {}
+
+	/**
+	 * Create a ResumePacket with the given username and token
+	 * @param username Username of the player
+	 * @param token The token they were given
+	 */
+	public ResumePacket(String username, ResumeToken token)
+	{
+		this.username = username;
+		this.token = token;
+	}
+
+	@Override
+	public short getOpcode()
+	{
+		return PacketConstants.RESUME;
+	}
+
+	@Override
+	public Packet decode(ByteBuf data) throws BufferableException
+	{
+		// Not interned - anyone can send this. Once the token checks out, the old player's interned username is used
+		String user = StringUtil.getFromBuffer(data);
+		ResumeToken resumeToken = ResumeToken.createFrom(data);
+
+		return new ResumePacket(user, resumeToken);
+	}
+
+	/**
+	 * Look for the player in the disconnect map, and if the token is theirs, reconnect them just like
+	 * a reconnecting LoginPacket would have
+	 */
+	@Override
+	public void handlePacket(Player player)
+	{
+		// Same as a login request, this has to be the first thing on the connection. And there's only one try
+		if(player.getLoginState() != LoginState.CONNECTED || player.getChannelConfig().isResumeAttempted())
+		{
+			Logger.instance().logMessage("[NOTICE] Player in invalid state sending resume request: " + player.getLoginState().toString());
+			return;
+		}
+		player.getChannelConfig().setResumeAttempted(true);
+
+		Player oldPlayer = World.instance().getDisconnectMap().get(username);
+		if(oldPlayer == null || oldPlayer.getLoginState() != LoginState.DISCONNECTED || !token.matches(oldPlayer.getResumeToken()))
+		{
+			// Nothing to resume. They're still CONNECTED, so they can go on to log in with their password
+			LoginHandler.sendResponse(player, LoginResponse.RESUME_REJECTED);
+			return;
+		}
+
+		// They'll need a slot in the world once they're back. If there isn't one, the token is still good for later
+		if(World.instance().getPlayerMap().isFull())
+		{
+			LoginHandler.sendResponse(player, LoginResponse.SERVER_BUSY);
+			return;
+		}
+		
+		// Each token is good for one resume. They'll get a new one once they're back in
+		oldPlayer.setResumeToken(null);
+
+		// From here it's a reconnect like any other, which goes by the new player's username. 
+		// The old player's was interned when they logged in, the one in this packet never is
+		player.setUsername(oldPlayer.getUsername());
+		player.setLoginState(LoginState.VALIDATING);
+		LoginPacket.reconnectLogin(player);
+	}
+
+
+	/**
+	 * Hands the client the token it can resume its session with. Sent along with the login data,
+	 * whether they logged in or reconnected
+	 */
+	public static class ResumeTokenPacket extends SendOnlyPacket {
+
+		/** The token to send */
+		private ResumeToken token;
+
+		/** Prototype constructor */
+		public ResumeTokenPacket() {}
+
+		/**
+		 * Create a packet that will send the given token
+		 * @param token The token
+		 */
+		public ResumeTokenPacket(ResumeToken token)
+		{
+			this.token = token;
+		}
+
+		@Override
+		public short getOpcode()
+		{
+			return PacketConstants.RESUME_TOKEN;
+		}
+
+		@Override
+		public void encode(ByteBuf buffer) throws BufferableException
+		{
+			token.save(buffer);
+		}
+
+		/** Always the same size, under any version */
+		@Override
+		public int encodedSize(ProtocolVersion version)
+		{
+			return ResumeToken.LENGTH;
+		}
+
+	}
+
+}
@@ -3,6 +3,7 @@ package net.cloud.server.nio.packet.packets;
 import io.netty.buffer.ByteBuf;
 import net.cloud.server.nio.bufferable.BufferableException;
 import net.cloud.server.nio.packet.PacketConstants;
+import net.cloud.server.nio.packet.ProtocolVersion;
 import net.cloud.server.nio.packet.SendOnlyPacket;
 import net.cloud.server.util.StringUtil;
 
@@ -46,5 +47,12 @@ public class ShowMessageDialogPacket extends SendOnlyPacket {
 		// Place the message into the buffer
 		StringUtil.writeStringToBuffer(message, buffer);
 	}
+	
+	/** Both strings in UTF-8, plus their terminators */
+	@Override
+	public int encodedSize(ProtocolVersion version)
+	{
+		return StringUtil.getNumBytesInString(title) + StringUtil.getNumBytesInString(message);
+	}
 
 }
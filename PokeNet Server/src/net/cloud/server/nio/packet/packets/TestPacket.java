@@ -4,7 +4,10 @@ import io.netty.buffer.ByteBuf;
 import net.cloud.server.entity.player.Player;
 import net.cloud.server.logging.Logger;
 import net.cloud.server.nio.packet.Packet;
+import net.cloud.server.nio.bufferable.BufferableException;
+import net.cloud.server.nio.bufferable.VarInt;
 import net.cloud.server.nio.packet.PacketConstants;
+import net.cloud.server.nio.packet.ProtocolVersion;
 
 /** Packet for testing stuff. Like a box of chocolates, never know what it's gonna do */
 public class TestPacket implements Packet {
@@ -37,18 +40,44 @@ public class TestPacket implements Packet {
 	@Override
 	public void encode(ByteBuf buffer)
 	{
-		// Write some data
-		buffer.writeInt(testValue);
+		encode(buffer, ProtocolVersion.V1);
+	}
+	
+	@Override
+	public void encode(ByteBuf buffer, ProtocolVersion version)
+	{
+		// Write some data. The default value is negative, hence signed
+		version.writeSignedInt(buffer, testValue);
 
 		Logger.writer().println("Test packet encoded");
 		Logger.writer().flush();
 	}
+	
+	/** Only for testing, nothing depends on it arriving */
+	@Override
+	public boolean isDroppable()
+	{
+		return true;
+	}
+	
+	/** Only the test value */
+	@Override
+	public int encodedSize(ProtocolVersion version)
+	{
+		return version == ProtocolVersion.V1 ? 4 : VarInt.sizeOf(VarInt.zigZag(testValue));
+	}
 
 	@Override
-	public Packet decode(ByteBuf data)
+	public Packet decode(ByteBuf data) throws BufferableException
+	{
+		return decode(data, ProtocolVersion.V1);
+	}
+	
+	@Override
+	public Packet decode(ByteBuf data, ProtocolVersion version) throws BufferableException
 	{
 		// This needs to create a new TestPacket, with the same data as it had when it was encoded
-		return new TestPacket(data.readInt());
+		return new TestPacket(version.readSignedInt(data));
 	}
 
 	/** Displays a message about the packet */
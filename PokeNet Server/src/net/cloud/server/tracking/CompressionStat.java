@@ -0,0 +1,134 @@
+package net.cloud.server.tracking;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps track of how well packets of one kind compress (or inflate) and how long it takes.
+ * Like TimingStat, records can be added from any thread without locking.
+ */
+public class CompressionStat implements Cloneable {
+
+	/** Nanoseconds in a microsecond, for reporting */
+	private static final double NANOS_PER_MICRO = 1_000.0;
+
+	/** How many packets went through */
+	private LongAdder packets;
+
+	/** How many of those didn't get any smaller, and were sent as they were */
+	private LongAdder incompressible;
+
+	/** Total bytes of data before compression */
+	private LongAdder rawBytes;
+
+	/** Total bytes of data after compression */
+	private LongAdder compressedBytes;
+
+	/** Total time spent compressing or inflating, in nanoseconds */
+	private LongAdder totalNanos;
+
+	/**
+	 * Create a new stat with nothing recorded yet
+	 */
+	public CompressionStat()
+	{
+		packets = new LongAdder();
+		incompressible = new LongAdder();
+		rawBytes = new LongAdder();
+		compressedBytes = new LongAdder();
+		totalNanos = new LongAdder();
+	}
+
+	/**
+	 * Create a copy of this stat as a record of the current moment
+	 */
+	@Override
+	public CompressionStat clone() throws CloneNotSupportedException
+	{
+		CompressionStat c = (CompressionStat) super.clone();
+
+		c.packets = copy(packets);
+		c.incompressible = copy(incompressible);
+		c.rawBytes = copy(rawBytes);
+		c.compressedBytes = copy(compressedBytes);
+		c.totalNanos = copy(totalNanos);
+
+		return c;
+	}
+
+	/**
+	 * Record one more packet
+	 * @param raw Bytes of data before compression
+	 * @param compressed Bytes of data after compression. The same as raw if it didn't get smaller
+	 * @param nanos How long compressing or inflating took
+	 */
+	public void record(int raw, int compressed, long nanos)
+	{
+		packets.increment();
+		if(compressed >= raw)
+		{
+			incompressible.increment();
+		}
+
+		rawBytes.add(raw);
+		compressedBytes.add(compressed);
+		totalNanos.add(nanos);
+	}
+
+	/**
+	 * @return How many packets have been recorded
+	 */
+	public long getCount()
+	{
+		return packets.sum();
+	}
+
+	/**
+	 * @return How many packets were left uncompressed because it didn't help
+	 */
+	public long getIncompressibleCount()
+	{
+		return incompressible.sum();
+	}
+
+	/**
+	 * @return Compressed size over original size, over every packet. 1.0 if nothing was recorded
+	 */
+	public double getRatio()
+	{
+		long raw = rawBytes.sum();
+
+		return raw == 0 ? 1.0 : compressedBytes.sum() / (double) raw;
+	}
+
+	/**
+	 * @return Bytes of data that never had to be sent
+	 */
+	public long getBytesSaved()
+	{
+		return rawBytes.sum() - compressedBytes.sum();
+	}
+
+	/**
+	 * @return The average time per packet, in microseconds. 0 if nothing was recorded
+	 */
+	public double getAverageMicros()
+	{
+		long n = packets.sum();
+
+		return n == 0 ? 0.0 : (totalNanos.sum() / (double) n) / NANOS_PER_MICRO;
+	}
+
+	/**
+	 * Copy an adder, so the copy doesn't change along with the original
+	 * @param adder The adder to copy
+	 * @return A new adder with the same sum
+	 */
+	private static LongAdder copy(LongAdder adder)
+	{
+		LongAdder c = new LongAdder();
+		c.add(adder.sum());
+
+		return c;
+	}
+
+}
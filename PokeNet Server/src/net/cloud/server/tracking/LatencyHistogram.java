@@ -0,0 +1,153 @@
+package net.cloud.server.tracking;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts durations into a fixed set of buckets, so percentiles can be had without keeping every duration.
+ * Bucket 0 holds anything under a microsecond, and each bucket after that is twice as wide as the last -
+ * bucket i holds durations from 2^(i-1) up to 2^i microseconds. The last bucket holds everything longer. <br>
+ * Like TimingStat, records can be added from any thread without locking. A percentile is only as precise
+ * as its bucket, so it is reported as the upper edge of the bucket it falls in.
+ */
+public class LatencyHistogram implements Cloneable {
+
+	/** How many buckets there are. The last one starts a bit over 4 seconds */
+	public static final int BUCKETS = 24;
+
+	/** Nanoseconds in a microsecond */
+	private static final long NANOS_PER_MICRO = 1_000;
+
+	/** How many durations fell in each bucket */
+	private LongAdder[] buckets;
+
+	/** The sum of all recorded durations, in nanoseconds */
+	private LongAdder totalNanos;
+
+	/**
+	 * Create a new histogram with nothing recorded yet
+	 */
+	public LatencyHistogram()
+	{
+		buckets = new LongAdder[BUCKETS];
+		for(int i = 0; i < BUCKETS; ++i)
+		{
+			buckets[i] = new LongAdder();
+		}
+
+		totalNanos = new LongAdder();
+	}
+
+	/**
+	 * Create a copy of this histogram as a record of the current moment
+	 */
+	@Override
+	public LatencyHistogram clone() throws CloneNotSupportedException
+	{
+		LatencyHistogram c = (LatencyHistogram) super.clone();
+
+		c.buckets = new LongAdder[BUCKETS];
+		for(int i = 0; i < BUCKETS; ++i)
+		{
+			c.buckets[i] = new LongAdder();
+			c.buckets[i].add(buckets[i].sum());
+		}
+
+		c.totalNanos = new LongAdder();
+		c.totalNanos.add(totalNanos.sum());
+
+		return c;
+	}
+
+	/**
+	 * Record one more duration
+	 * @param nanos How long it took, in nanoseconds
+	 */
+	public void record(long nanos)
+	{
+		buckets[bucketOf(nanos)].increment();
+		totalNanos.add(nanos);
+	}
+
+	/**
+	 * @return How many durations have been recorded
+	 */
+	public long getCount()
+	{
+		long count = 0;
+		for(LongAdder bucket : buckets)
+		{
+			count += bucket.sum();
+		}
+
+		return count;
+	}
+
+	/**
+	 * @return The average of all recorded durations, in microseconds. 0 if nothing was recorded
+	 */
+	public double getAverageMicros()
+	{
+		long n = getCount();
+
+		return n == 0 ? 0.0 : totalNanos.sum() / (double) n / NANOS_PER_MICRO;
+	}
+
+	/**
+	 * @param percentile Between 0 and 100
+	 * @return The upper edge of the bucket that percentile falls in, in microseconds. 0 if nothing was recorded
+	 */
+	public long getPercentileMicros(double percentile)
+	{
+		// Sum once up front. Records coming in meanwhile might otherwise leave the walk below short of the target
+		long[] counts = new long[BUCKETS];
+		long n = 0;
+		for(int i = 0; i < BUCKETS; ++i)
+		{
+			counts[i] = buckets[i].sum();
+			n += counts[i];
+		}
+
+		if(n == 0)
+		{
+			return 0;
+		}
+
+		long target = Math.max(1, (long) Math.ceil(n * percentile / 100.0));
+		long seen = 0;
+		for(int i = 0; i < BUCKETS; ++i)
+		{
+			seen += counts[i];
+			if(seen >= target)
+			{
+				return upperMicros(i);
+			}
+		}
+
+		return upperMicros(BUCKETS - 1);
+	}
+
+	/**
+	 * @param nanos A duration in nanoseconds
+	 * @return The bucket it falls in
+	 */
+	static int bucketOf(long nanos)
+	{
+		long micros = nanos / NANOS_PER_MICRO;
+		if(micros <= 0)
+		{
+			return 0;
+		}
+
+		return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+	}
+
+	/**
+	 * @param bucket A bucket
+	 * @return The longest duration it holds, in microseconds
+	 */
+	static long upperMicros(int bucket)
+	{
+		return 1L << bucket;
+	}
+
+}
@@ -0,0 +1,95 @@
+package net.cloud.server.tracking;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps track of the traffic for packets of one kind going one way - how many, how many bytes,
+ * and how long it takes to turn them into or out of bytes. Like the other stats, records can be
+ * added from any thread without locking.
+ */
+public class PacketStat implements Cloneable {
+
+	/** How many packets went through */
+	private LongAdder packets;
+
+	/** Total bytes of those packets, opcode and data */
+	private LongAdder bytes;
+
+	/** How long each took to decode or encode */
+	private LatencyHistogram codecTime;
+
+	/**
+	 * Create a new stat with nothing recorded yet
+	 */
+	public PacketStat()
+	{
+		packets = new LongAdder();
+		bytes = new LongAdder();
+		codecTime = new LatencyHistogram();
+	}
+
+	/**
+	 * Create a copy of this stat as a record of the current moment
+	 */
+	@Override
+	public PacketStat clone() throws CloneNotSupportedException
+	{
+		PacketStat c = (PacketStat) super.clone();
+
+		c.packets = new LongAdder();
+		c.packets.add(packets.sum());
+		c.bytes = new LongAdder();
+		c.bytes.add(bytes.sum());
+		c.codecTime = codecTime.clone();
+
+		return c;
+	}
+
+	/**
+	 * Record one more packet
+	 * @param length Bytes in the packet
+	 * @param nanos How long decoding or encoding it took
+	 */
+	public void record(int length, long nanos)
+	{
+		record(length, 1, nanos);
+	}
+
+	/**
+	 * Record a packet that was encoded once, and sent out some number of times
+	 * @param length Bytes in the packet
+	 * @param copies How many times it went out. Each counts as a packet
+	 * @param nanos How long encoding it took, the one time
+	 */
+	public void record(int length, int copies, long nanos)
+	{
+		packets.add(copies);
+		bytes.add((long) length * copies);
+		codecTime.record(nanos);
+	}
+
+	/**
+	 * @return How many packets have been recorded
+	 */
+	public long getCount()
+	{
+		return packets.sum();
+	}
+
+	/**
+	 * @return Total bytes of every packet recorded
+	 */
+	public long getBytes()
+	{
+		return bytes.sum();
+	}
+
+	/**
+	 * @return How long the packets took to decode or encode
+	 */
+	public LatencyHistogram getCodecTime()
+	{
+		return codecTime;
+	}
+
+}
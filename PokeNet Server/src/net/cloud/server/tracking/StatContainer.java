@@ -1,8 +1,16 @@
 package net.cloud.server.tracking;
 
 import java.time.LocalTime;
+import java.util.EnumMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
+import net.cloud.server.ConfigConstants;
 import net.cloud.server.Server;
+import net.cloud.server.entity.player.LoginStage;
+import net.cloud.server.nio.ConnectionAdmissionHandler.Rejection;
+import net.cloud.server.nio.packet.PacketConstants;
 
 /**
  * For lack of a better name, this object contains all of the various statistics that the 
@@ -16,6 +24,78 @@ public class StatContainer implements Cloneable {
 	/** Statistic on how many players are connected */
 	private int playersOnline;
 	
+	/** How long each game tick has been taking */
+	private TimingStat tickTime;
+	
+	/** How many ticks took longer than the tick rate allows */
+	private LongAdder tickOverruns;
+	
+	/** How long each stage of login has been taking */
+	private EnumMap<LoginStage, TimingStat> loginTimes;
+	
+	/** How many logins were turned away because too many were in progress */
+	private LongAdder loginsRejected;
+	
+	/** How many times a channel flush was asked for */
+	private LongAdder flushRequests;
+	
+	/** How many times a channel was actually flushed */
+	private LongAdder flushes;
+	
+	/** Total bytes sent out by those flushes */
+	private LongAdder bytesFlushed;
+	
+	/** How many times a connection had reading paused for going over its packet rate */
+	private LongAdder readsThrottled;
+	
+	/** How many connections were closed for flooding packets */
+	private LongAdder floodDisconnects;
+	
+	/** How many connections were closed for not reading what was sent to them */
+	private LongAdder slowReaderDisconnects;
+	
+	/** How many low priority packets were dropped because their connection was backed up */
+	private LongAdder packetsDropped;
+	
+	/** How many new connections were turned away, by why */
+	private EnumMap<Rejection, LongAdder> connectionsRejected;
+	
+	/** How many saves the periodic save task has started */
+	private LongAdder savesWritten;
+	
+	/** How many players the periodic save task passed over, for having nothing new to save */
+	private LongAdder savesSkipped;
+	
+	/** How many times the periodic save task has run */
+	private LongAdder saveRuns;
+	
+	/** Most saves started in a single run since the last copy. Next to the average, shows how evenly they're spread */
+	private LongAccumulator maxSavesPerRun;
+	
+	/** How long requests waited in each file server lane before being handled */
+	private LatencyHistogram[] fileWaitTimes;
+	
+	/** How long requests took to handle in each file server lane */
+	private LatencyHistogram[] fileHandleTimes;
+	
+	/** Most requests queued in each file server lane at once, since the last copy */
+	private LongAccumulator[] fileQueueDepths;
+	
+	/** Incoming packets, by opcode. The time is how long they took to decode */
+	private PacketStat[] inboundPackets;
+	
+	/** How long incoming packets took to handle on the world thread, by opcode */
+	private LatencyHistogram[] handleTimes;
+	
+	/** Outgoing packets, by opcode. The time is how long they took to encode */
+	private PacketStat[] outboundPackets;
+	
+	/** How outgoing packets compress, by opcode */
+	private CompressionStat[] compression;
+	
+	/** How incoming packets inflate, by opcode */
+	private CompressionStat[] inflation;
+	
 	/**
 	 * Create a new StatContainer with all default or blank values. 
 	 * To create a copy of the statistics as a record of a certain moment, use clone.
@@ -25,6 +105,63 @@ public class StatContainer implements Cloneable {
 		creationTime = LocalTime.now(Server.CLOCK);
 		
 		playersOnline = 0;
+		
+		tickTime = new TimingStat();
+		tickOverruns = new LongAdder();
+		
+		// A timing for each stage. Filled in from the start so the map itself never changes
+		loginTimes = new EnumMap<>(LoginStage.class);
+		for(LoginStage stage : LoginStage.values())
+		{
+			loginTimes.put(stage, new TimingStat());
+		}
+		loginsRejected = new LongAdder();
+		
+		flushRequests = new LongAdder();
+		flushes = new LongAdder();
+		bytesFlushed = new LongAdder();
+		
+		readsThrottled = new LongAdder();
+		floodDisconnects = new LongAdder();
+		slowReaderDisconnects = new LongAdder();
+		packetsDropped = new LongAdder();
+		
+		connectionsRejected = new EnumMap<>(Rejection.class);
+		for(Rejection rejection : Rejection.values())
+		{
+			connectionsRejected.put(rejection, new LongAdder());
+		}
+		
+		savesWritten = new LongAdder();
+		savesSkipped = new LongAdder();
+		saveRuns = new LongAdder();
+		maxSavesPerRun = new LongAccumulator(Long::max, 0L);
+		
+		// One per file server lane
+		fileWaitTimes = new LatencyHistogram[ConfigConstants.FILE_SERVER_LANES];
+		fileHandleTimes = new LatencyHistogram[ConfigConstants.FILE_SERVER_LANES];
+		fileQueueDepths = new LongAccumulator[ConfigConstants.FILE_SERVER_LANES];
+		for(int i = 0; i < ConfigConstants.FILE_SERVER_LANES; ++i)
+		{
+			fileWaitTimes[i] = new LatencyHistogram();
+			fileHandleTimes[i] = new LatencyHistogram();
+			fileQueueDepths[i] = new LongAccumulator(Long::max, 0L);
+		}
+		
+		// One per opcode, filled in from the start like the login timings
+		inboundPackets = new PacketStat[PacketConstants.NUM_PACKETS];
+		handleTimes = new LatencyHistogram[PacketConstants.NUM_PACKETS];
+		outboundPackets = new PacketStat[PacketConstants.NUM_PACKETS];
+		compression = new CompressionStat[PacketConstants.NUM_PACKETS];
+		inflation = new CompressionStat[PacketConstants.NUM_PACKETS];
+		for(int i = 0; i < PacketConstants.NUM_PACKETS; ++i)
+		{
+			inboundPackets[i] = new PacketStat();
+			handleTimes[i] = new LatencyHistogram();
+			outboundPackets[i] = new PacketStat();
+			compression[i] = new CompressionStat();
+			inflation[i] = new CompressionStat();
+		}
 	}
 	
 	/**
@@ -43,6 +180,74 @@ public class StatContainer implements Cloneable {
 		c.playersOnline = playersOnline;
 		
 		// (Can clone fields that are not primitives)
+		c.tickTime = tickTime.clone();
+		c.tickOverruns = new LongAdder();
+		c.tickOverruns.add(tickOverruns.sum());
+		
+		c.loginTimes = new EnumMap<>(LoginStage.class);
+		for(LoginStage stage : LoginStage.values())
+		{
+			c.loginTimes.put(stage, loginTimes.get(stage).clone());
+		}
+		c.loginsRejected = new LongAdder();
+		c.loginsRejected.add(loginsRejected.sum());
+		
+		c.flushRequests = new LongAdder();
+		c.flushRequests.add(flushRequests.sum());
+		c.flushes = new LongAdder();
+		c.flushes.add(flushes.sum());
+		c.bytesFlushed = new LongAdder();
+		c.bytesFlushed.add(bytesFlushed.sum());
+		
+		c.readsThrottled = new LongAdder();
+		c.readsThrottled.add(readsThrottled.sum());
+		c.floodDisconnects = new LongAdder();
+		c.floodDisconnects.add(floodDisconnects.sum());
+		c.slowReaderDisconnects = new LongAdder();
+		c.slowReaderDisconnects.add(slowReaderDisconnects.sum());
+		c.packetsDropped = new LongAdder();
+		c.packetsDropped.add(packetsDropped.sum());
+		
+		c.connectionsRejected = new EnumMap<>(Rejection.class);
+		for(Rejection rejection : Rejection.values())
+		{
+			LongAdder count = new LongAdder();
+			count.add(connectionsRejected.get(rejection).sum());
+			c.connectionsRejected.put(rejection, count);
+		}
+		
+		c.savesWritten = new LongAdder();
+		c.savesWritten.add(savesWritten.sum());
+		c.savesSkipped = new LongAdder();
+		c.savesSkipped.add(savesSkipped.sum());
+		c.saveRuns = new LongAdder();
+		c.saveRuns.add(saveRuns.sum());
+		// Like the timing stats, the maximum starts over for the next period
+		c.maxSavesPerRun = new LongAccumulator(Long::max, maxSavesPerRun.getThenReset());
+		
+		c.fileWaitTimes = new LatencyHistogram[fileWaitTimes.length];
+		c.fileHandleTimes = new LatencyHistogram[fileHandleTimes.length];
+		c.fileQueueDepths = new LongAccumulator[fileQueueDepths.length];
+		for(int i = 0; i < fileWaitTimes.length; ++i)
+		{
+			c.fileWaitTimes[i] = fileWaitTimes[i].clone();
+			c.fileHandleTimes[i] = fileHandleTimes[i].clone();
+			c.fileQueueDepths[i] = new LongAccumulator(Long::max, fileQueueDepths[i].getThenReset());
+		}
+		
+		c.inboundPackets = new PacketStat[inboundPackets.length];
+		c.handleTimes = new LatencyHistogram[handleTimes.length];
+		c.outboundPackets = new PacketStat[outboundPackets.length];
+		c.compression = new CompressionStat[compression.length];
+		c.inflation = new CompressionStat[inflation.length];
+		for(int i = 0; i < compression.length; ++i)
+		{
+			c.inboundPackets[i] = inboundPackets[i].clone();
+			c.handleTimes[i] = handleTimes[i].clone();
+			c.outboundPackets[i] = outboundPackets[i].clone();
+			c.compression[i] = compression[i].clone();
+			c.inflation[i] = inflation[i].clone();
+		}
 		
 		return c;
 	}
@@ -75,4 +280,441 @@ public class StatContainer implements Cloneable {
 		return playersOnline;
 	}
 
+	/**
+	 * Record how long a game tick took
+	 * @param nanos The duration of the tick, in nanoseconds
+	 */
+	public void updateTickTime(long nanos)
+	{
+		tickTime.record(nanos);
+		
+		// Taking longer than the tick rate means the next tick starts late
+		if(nanos > TimeUnit.MILLISECONDS.toNanos(ConfigConstants.TICK_RATE))
+		{
+			tickOverruns.increment();
+		}
+	}
+	
+	/**
+	 * Obtain the timing of game ticks at the time of this record
+	 * @return Timing information on game ticks
+	 */
+	public TimingStat getTickTimeStat()
+	{
+		return tickTime;
+	}
+	
+	/**
+	 * Obtain the number of ticks that ran longer than the tick rate
+	 * @return How many ticks have overrun so far
+	 */
+	public long getTickOverrunsStat()
+	{
+		return tickOverruns.sum();
+	}
+
+	/**
+	 * Record how long a stage of login took
+	 * @param stage The stage of login
+	 * @param nanos The duration of the stage, in nanoseconds
+	 */
+	public void updateLoginTime(LoginStage stage, long nanos)
+	{
+		loginTimes.get(stage).record(nanos);
+	}
+	
+	/**
+	 * Count a login that was turned away because the server was busy
+	 */
+	public void updateLoginsRejected()
+	{
+		loginsRejected.increment();
+	}
+	
+	/**
+	 * Obtain the timing of a stage of login at the time of this record
+	 * @param stage The stage of login
+	 * @return Timing information on the stage
+	 */
+	public TimingStat getLoginTimeStat(LoginStage stage)
+	{
+		return loginTimes.get(stage);
+	}
+	
+	/**
+	 * Obtain the number of logins turned away because too many were in progress
+	 * @return How many logins have been rejected so far
+	 */
+	public long getLoginsRejectedStat()
+	{
+		return loginsRejected.sum();
+	}
+
+	/**
+	 * Count a request to flush a channel
+	 */
+	public void updateFlushRequests()
+	{
+		flushRequests.increment();
+	}
+	
+	/**
+	 * Count a flush that actually took place
+	 * @param bytes How many bytes went out with it
+	 */
+	public void updateFlushes(long bytes)
+	{
+		flushes.increment();
+		bytesFlushed.add(bytes);
+	}
+	
+	/**
+	 * @return How many channel flushes have been asked for
+	 */
+	public long getFlushRequestsStat()
+	{
+		return flushRequests.sum();
+	}
+	
+	/**
+	 * @return How many channel flushes have actually happened
+	 */
+	public long getFlushesStat()
+	{
+		return flushes.sum();
+	}
+	
+	/**
+	 * @return How many bytes have gone out with those flushes
+	 */
+	public long getBytesFlushedStat()
+	{
+		return bytesFlushed.sum();
+	}
+	
+	/**
+	 * Count a connection having reading paused for going over its packet rate
+	 */
+	public void updateReadsThrottled()
+	{
+		readsThrottled.increment();
+	}
+	
+	/**
+	 * Count a connection closed for flooding packets
+	 */
+	public void updateFloodDisconnects()
+	{
+		floodDisconnects.increment();
+	}
+	
+	/**
+	 * Count a connection closed for not reading what was sent to it
+	 */
+	public void updateSlowReaderDisconnects()
+	{
+		slowReaderDisconnects.increment();
+	}
+	
+	/**
+	 * Count a low priority packet dropped because its connection was backed up
+	 */
+	public void updatePacketsDropped()
+	{
+		packetsDropped.increment();
+	}
+	
+	/**
+	 * Count a new connection turned away by the admission handler
+	 * @param rejection Why it was turned away
+	 */
+	public void updateConnectionsRejected(Rejection rejection)
+	{
+		connectionsRejected.get(rejection).increment();
+	}
+	
+	/**
+	 * @return How many times reading has been paused for going over a packet rate
+	 */
+	public long getReadsThrottledStat()
+	{
+		return readsThrottled.sum();
+	}
+	
+	/**
+	 * @return How many connections have been closed for flooding packets
+	 */
+	public long getFloodDisconnectsStat()
+	{
+		return floodDisconnects.sum();
+	}
+	
+	/**
+	 * @return How many connections have been closed as slow readers
+	 */
+	public long getSlowReaderDisconnectsStat()
+	{
+		return slowReaderDisconnects.sum();
+	}
+	
+	/**
+	 * @return How many low priority packets have been dropped
+	 */
+	public long getPacketsDroppedStat()
+	{
+		return packetsDropped.sum();
+	}
+	
+	/**
+	 * @param rejection Why a connection was turned away
+	 * @return How many new connections have been turned away for that reason
+	 */
+	public long getConnectionsRejectedStat(Rejection rejection)
+	{
+		return connectionsRejected.get(rejection).sum();
+	}
+	
+	/**
+	 * Record one run of the periodic player save task
+	 * @param written How many players had a save started
+	 * @param skipped How many players were passed over for having nothing new to save
+	 */
+	public void updatePlayerSaves(int written, int skipped)
+	{
+		savesWritten.add(written);
+		savesSkipped.add(skipped);
+		saveRuns.increment();
+		maxSavesPerRun.accumulate(written);
+	}
+	
+	/**
+	 * @return How many saves the periodic save task has started
+	 */
+	public long getSavesWrittenStat()
+	{
+		return savesWritten.sum();
+	}
+	
+	/**
+	 * @return How many players the periodic save task has passed over
+	 */
+	public long getSavesSkippedStat()
+	{
+		return savesSkipped.sum();
+	}
+	
+	/**
+	 * @return The average number of saves started per run of the save task. 0 if it hasn't run
+	 */
+	public double getAverageSavesPerRunStat()
+	{
+		long runs = saveRuns.sum();
+		
+		return runs == 0 ? 0.0 : savesWritten.sum() / (double) runs;
+	}
+	
+	/**
+	 * @return The most saves started in a single run of the save task, since the previous copy
+	 */
+	public long getMaxSavesPerRunStat()
+	{
+		return maxSavesPerRun.get();
+	}
+	
+	/**
+	 * Record a request handled by a file server lane
+	 * @param lane Which lane handled it
+	 * @param waitNanos How long it was queued, in nanoseconds
+	 * @param handleNanos How long handling it took, in nanoseconds
+	 */
+	public void updateFileRequest(int lane, long waitNanos, long handleNanos)
+	{
+		if(lane >= 0 && lane < fileWaitTimes.length)
+		{
+			fileWaitTimes[lane].record(waitNanos);
+			fileHandleTimes[lane].record(handleNanos);
+		}
+	}
+	
+	/**
+	 * Record how many requests a file server lane has queued
+	 * @param lane Which lane
+	 * @param depth How many requests it has queued
+	 */
+	public void updateFileQueueDepth(int lane, int depth)
+	{
+		if(lane >= 0 && lane < fileQueueDepths.length)
+		{
+			fileQueueDepths[lane].accumulate(depth);
+		}
+	}
+	
+	/**
+	 * @return How many file server lanes there are stats for
+	 */
+	public int getFileLaneCount()
+	{
+		return fileWaitTimes.length;
+	}
+	
+	/**
+	 * @param lane Which file server lane
+	 * @return How long requests waited in the lane before being handled
+	 */
+	public LatencyHistogram getFileWaitTimeStat(int lane)
+	{
+		return fileWaitTimes[lane];
+	}
+	
+	/**
+	 * @param lane Which file server lane
+	 * @return How long requests took to handle in the lane
+	 */
+	public LatencyHistogram getFileHandleTimeStat(int lane)
+	{
+		return fileHandleTimes[lane];
+	}
+	
+	/**
+	 * @param lane Which file server lane
+	 * @return The most requests the lane had queued at once, since the previous copy
+	 */
+	public long getFileQueueDepthStat(int lane)
+	{
+		return fileQueueDepths[lane].get();
+	}
+	
+	/**
+	 * Record an incoming packet that was decoded
+	 * @param opcode The opcode of the packet
+	 * @param length Bytes in the packet as it was received, opcode and data
+	 * @param nanos How long decoding took, in nanoseconds
+	 */
+	public void updatePacketDecoded(short opcode, int length, long nanos)
+	{
+		if(opcode >= 0 && opcode < inboundPackets.length)
+		{
+			inboundPackets[opcode].record(length, nanos);
+		}
+	}
+	
+	/**
+	 * Record an incoming packet that was handled
+	 * @param opcode The opcode of the packet
+	 * @param nanos How long handling took, in nanoseconds
+	 */
+	public void updatePacketHandled(short opcode, long nanos)
+	{
+		if(opcode >= 0 && opcode < handleTimes.length)
+		{
+			handleTimes[opcode].record(nanos);
+		}
+	}
+	
+	/**
+	 * Record an outgoing packet that was encoded
+	 * @param opcode The opcode of the packet
+	 * @param length Bytes the packet was encoded to, opcode and data
+	 * @param nanos How long encoding took, in nanoseconds
+	 */
+	public void updatePacketEncoded(short opcode, int length, long nanos)
+	{
+		updatePacketEncoded(opcode, length, 1, nanos);
+	}
+	
+	/**
+	 * Record an outgoing packet that was encoded once and written to several channels
+	 * @param opcode The opcode of the packet
+	 * @param length Bytes the packet was encoded to, opcode and data
+	 * @param copies How many channels it was written to
+	 * @param nanos How long encoding took, in nanoseconds
+	 */
+	public void updatePacketEncoded(short opcode, int length, int copies, long nanos)
+	{
+		if(opcode >= 0 && opcode < outboundPackets.length)
+		{
+			outboundPackets[opcode].record(length, copies, nanos);
+		}
+	}
+	
+	/**
+	 * Record an outgoing packet that compression was tried on
+	 * @param opcode The opcode of the packet
+	 * @param raw Bytes of data before compression
+	 * @param compressed Bytes of data after compression
+	 * @param nanos How long it took, in nanoseconds
+	 */
+	public void updateCompression(short opcode, int raw, int compressed, long nanos)
+	{
+		if(opcode >= 0 && opcode < compression.length)
+		{
+			compression[opcode].record(raw, compressed, nanos);
+		}
+	}
+	
+	/**
+	 * Record an incoming packet that was inflated
+	 * @param opcode The opcode of the packet
+	 * @param raw Bytes of data once inflated
+	 * @param compressed Bytes of data received
+	 * @param nanos How long it took, in nanoseconds
+	 */
+	public void updateInflation(short opcode, int raw, int compressed, long nanos)
+	{
+		if(opcode >= 0 && opcode < inflation.length)
+		{
+			inflation[opcode].record(raw, compressed, nanos);
+		}
+	}
+	
+	/**
+	 * Obtain traffic information on incoming packets with the given opcode
+	 * @param opcode The opcode of the packet
+	 * @return How many of those packets there have been, their size, and how long they took to decode
+	 */
+	public PacketStat getInboundPacketStat(int opcode)
+	{
+		return inboundPackets[opcode];
+	}
+	
+	/**
+	 * Obtain handling times of incoming packets with the given opcode
+	 * @param opcode The opcode of the packet
+	 * @return How long those packets took to handle
+	 */
+	public LatencyHistogram getHandleTimeStat(int opcode)
+	{
+		return handleTimes[opcode];
+	}
+	
+	/**
+	 * Obtain traffic information on outgoing packets with the given opcode
+	 * @param opcode The opcode of the packet
+	 * @return How many of those packets there have been, their size, and how long they took to encode
+	 */
+	public PacketStat getOutboundPacketStat(int opcode)
+	{
+		return outboundPackets[opcode];
+	}
+	
+	/**
+	 * Obtain compression information on outgoing packets with the given opcode
+	 * @param opcode The opcode of the packet
+	 * @return How those packets have compressed
+	 */
+	public CompressionStat getCompressionStat(int opcode)
+	{
+		return compression[opcode];
+	}
+	
+	/**
+	 * Obtain inflation information on incoming packets with the given opcode
+	 * @param opcode The opcode of the packet
+	 * @return How those packets have inflated
+	 */
+	public CompressionStat getInflationStat(int opcode)
+	{
+		return inflation[opcode];
+	}
+
 }
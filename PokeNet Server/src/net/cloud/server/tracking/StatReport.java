@@ -3,8 +3,11 @@ package net.cloud.server.tracking;
 import java.io.PrintWriter;
 
 import net.cloud.server.ConfigConstants;
+import net.cloud.server.entity.player.LoginStage;
 import net.cloud.server.logging.report.LogReport;
 import net.cloud.server.logging.report.LogSection;
+import net.cloud.server.nio.ConnectionAdmissionHandler.Rejection;
+import net.cloud.server.nio.packet.PacketConstants;
 
 /**
  * A LogReport which will store and print out information about the status 
@@ -47,6 +50,109 @@ public class StatReport extends LogReport {
 		report.append(stats.getPlayersOnlineStat());
 		report.append(System.lineSeparator());
 		
+		// Game tick timing. Max is only since the last report
+		report.append("Tick Time (ms): avg ");
+		report.append(String.format("%.3f", stats.getTickTimeStat().getAverageMillis()));
+		report.append(", max ");
+		report.append(String.format("%.3f", stats.getTickTimeStat().getMaxMillis()));
+		report.append(", ticks ");
+		report.append(stats.getTickTimeStat().getCount());
+		report.append(", overruns ");
+		report.append(stats.getTickOverrunsStat());
+		report.append(System.lineSeparator());
+		
+		// Login pipeline timing, one line per stage
+		for(LoginStage stage : LoginStage.values())
+		{
+			TimingStat time = stats.getLoginTimeStat(stage);
+			report.append("Login ");
+			report.append(stage.name());
+			report.append(" (ms): avg ");
+			report.append(String.format("%.3f", time.getAverageMillis()));
+			report.append(", max ");
+			report.append(String.format("%.3f", time.getMaxMillis()));
+			report.append(", count ");
+			report.append(time.getCount());
+			report.append(System.lineSeparator());
+		}
+		report.append("Logins Rejected (busy): ");
+		report.append(stats.getLoginsRejectedStat());
+		report.append(System.lineSeparator());
+		
+		// Flushes requested vs. the syscalls they turned into
+		report.append("Flushes: requested ");
+		report.append(stats.getFlushRequestsStat());
+		report.append(", performed ");
+		report.append(stats.getFlushesStat());
+		report.append(", bytes ");
+		report.append(stats.getBytesFlushedStat());
+		report.append(System.lineSeparator());
+		
+		// Connections that sent too much, or read too little
+		report.append("Backpressure: reads throttled ");
+		report.append(stats.getReadsThrottledStat());
+		report.append(", flood disconnects ");
+		report.append(stats.getFloodDisconnectsStat());
+		report.append(", slow reader disconnects ");
+		report.append(stats.getSlowReaderDisconnectsStat());
+		report.append(", packets dropped ");
+		report.append(stats.getPacketsDroppedStat());
+		report.append(System.lineSeparator());
+		
+		// Connections turned away before they were set up
+		report.append("Connections Rejected: server full ");
+		report.append(stats.getConnectionsRejectedStat(Rejection.SERVER_FULL));
+		report.append(", address full ");
+		report.append(stats.getConnectionsRejectedStat(Rejection.ADDRESS_FULL));
+		report.append(", connect rate ");
+		report.append(stats.getConnectionsRejectedStat(Rejection.CONNECT_RATE));
+		report.append(System.lineSeparator());
+		
+		// Periodic saves. A max per run well above the average means saves are bunching up
+		report.append("Player Saves: written ");
+		report.append(stats.getSavesWrittenStat());
+		report.append(", skipped ");
+		report.append(stats.getSavesSkippedStat());
+		report.append(", per run avg ");
+		report.append(String.format("%.1f", stats.getAverageSavesPerRunStat()));
+		report.append(", max ");
+		report.append(stats.getMaxSavesPerRunStat());
+		report.append(System.lineSeparator());
+		
+		// File server lanes, only the ones that have handled anything
+		for(int lane = 0; lane < stats.getFileLaneCount(); ++lane)
+		{
+			LatencyHistogram handleTime = stats.getFileHandleTimeStat(lane);
+			if(handleTime.getCount() == 0)
+			{
+				continue;
+			}
+			
+			report.append("File Lane ");
+			report.append(lane);
+			report.append(": requests ");
+			report.append(handleTime.getCount());
+			report.append(", max depth ");
+			report.append(stats.getFileQueueDepthStat(lane));
+			appendLatency(report, "wait", stats.getFileWaitTimeStat(lane));
+			appendLatency(report, "handle", handleTime);
+			report.append(System.lineSeparator());
+		}
+		
+		// Traffic by opcode, only for the opcodes that have had any
+		for(int opcode = 0; opcode < PacketConstants.NUM_PACKETS; ++opcode)
+		{
+			appendPackets(report, "In", opcode, stats.getInboundPacketStat(opcode), "decode", stats.getHandleTimeStat(opcode));
+			appendPackets(report, "Out", opcode, stats.getOutboundPacketStat(opcode), "encode", null);
+		}
+		
+		// Compression, only for the opcodes that have had any
+		for(int opcode = 0; opcode < PacketConstants.NUM_PACKETS; ++opcode)
+		{
+			appendCompression(report, "Compression", opcode, stats.getCompressionStat(opcode));
+			appendCompression(report, "Inflation", opcode, stats.getInflationStat(opcode));
+		}
+		
 		// An extra blank line for some separation
 		report.append(System.lineSeparator());
 		
@@ -60,5 +166,88 @@ public class StatReport extends LogReport {
 			System.out.flush();
 		}
 	}
+	
+	/**
+	 * Add a line on traffic of one opcode to the report, if any packets have been recorded for it
+	 * @param report The report being built
+	 * @param label Which way the packets were going
+	 * @param opcode The opcode the stat is for
+	 * @param stat The traffic stat
+	 * @param codec What the stat's time is spent on
+	 * @param handleTime How long the packets took to handle. Null for outgoing packets
+	 */
+	private void appendPackets(StringBuilder report, String label, int opcode, PacketStat stat, String codec, LatencyHistogram handleTime)
+	{
+		if(stat.getCount() == 0)
+		{
+			return;
+		}
+		
+		report.append("Packets ");
+		report.append(label);
+		report.append(" (opcode ");
+		report.append(opcode);
+		report.append("): count ");
+		report.append(stat.getCount());
+		report.append(", bytes ");
+		report.append(stat.getBytes());
+		appendLatency(report, codec, stat.getCodecTime());
+		if(handleTime != null)
+		{
+			appendLatency(report, "handle", handleTime);
+		}
+		report.append(System.lineSeparator());
+	}
+	
+	/**
+	 * Add the average and a few percentiles of a histogram to a line of the report
+	 * @param report The report being built
+	 * @param label What the time was spent on
+	 * @param histogram The times
+	 */
+	private void appendLatency(StringBuilder report, String label, LatencyHistogram histogram)
+	{
+		report.append(", ");
+		report.append(label);
+		report.append(" (us) avg ");
+		report.append(String.format("%.1f", histogram.getAverageMicros()));
+		report.append(" p50 <");
+		report.append(histogram.getPercentileMicros(50));
+		report.append(" p99 <");
+		report.append(histogram.getPercentileMicros(99));
+		report.append(" p99.9 <");
+		report.append(histogram.getPercentileMicros(99.9));
+	}
+	
+	/**
+	 * Add a line on compression of one opcode to the report, if any packets have been recorded for it
+	 * @param report The report being built
+	 * @param label What kind of compression it is
+	 * @param opcode The opcode the stat is for
+	 * @param stat The compression stat
+	 */
+	private void appendCompression(StringBuilder report, String label, int opcode, CompressionStat stat)
+	{
+		if(stat.getCount() == 0)
+		{
+			return;
+		}
+		
+		report.append(label);
+		report.append(" (opcode ");
+		report.append(opcode);
+		report.append("): packets ");
+		report.append(stat.getCount());
+		report.append(", incompressible ");
+		report.append(stat.getIncompressibleCount());
+		report.append(", ratio ");
+		report.append(String.format("%.3f", stat.getRatio()));
+		report.append(", saved ");
+		report.append(stat.getBytesSaved());
+		report.append(" bytes, avg ");
+		report.append(String.format("%.1f", stat.getAverageMicros()));
+		report.append(" us");
+		report.append(System.lineSeparator());
+	}
 
 }
@@ -1,8 +1,10 @@
 package net.cloud.server.tracking;
 
 import net.cloud.server.ConfigConstants;
+import net.cloud.server.entity.player.LoginStage;
 import net.cloud.server.event.task.TaskEngine;
 import net.cloud.server.event.task.voidtasks.CancellableVoidTask;
+import net.cloud.server.nio.ConnectionAdmissionHandler.Rejection;
 
 /**
  * A class which can be updated with various game statistics to keep 
@@ -148,6 +150,286 @@ public class StatTracker {
 		stats.updatePlayersOnline(change);
 	}
 	
+	/**
+	 * Update statistics on how long the game tick is taking
+	 * @param nanos How long the latest tick took, in nanoseconds
+	 */
+	public void updateTickTime(long nanos)
+	{
+		if(!tracking())
+		{
+			return;
+		}
+		
+		stats.updateTickTime(nanos);
+	}
+	
+	/**
+	 * Update statistics on how long a stage of login is taking
+	 * @param stage The stage of login that finished
+	 * @param nanos How long it took, in nanoseconds
+	 */
+	public void updateLoginTime(LoginStage stage, long nanos)
+	{
+		if(!tracking())
+		{
+			return;
+		}
+		
+		stats.updateLoginTime(stage, nanos);
+	}
+	
+	/**
+	 * Update statistics on logins turned away because the server is busy
+	 */
+	public void updateLoginsRejected()
+	{
+		if(!tracking())
+		{
+			return;
+		}
+		
+		stats.updateLoginsRejected();
+	}
+	
+	/**
+	 * Update statistics on how often channel flushes are asked for
+	 */
+	public void updateFlushRequests()
+	{
+		if(!tracking())
+		{
+			return;
+		}
+		
+		stats.updateFlushRequests();
+	}
+	
+	/**
+	 * Update statistics on channel flushes that actually happen
+	 * @param bytes How many bytes went out with the flush
+	 */
+	public void updateFlushes(long bytes)
+	{
+		if(!tracking())
+		{
+			return;
+		}
+		
+		stats.updateFlushes(bytes);
+	}
+	
+	/**
+	 * Update statistics on connections having reading paused for going over their packet rate
+	 */
+	public void updateReadsThrottled()
+	{
+		if(!tracking())
+		{
+			return;
+		}
+		
+		stats.updateReadsThrottled();
+	}
+	
+	/**
+	 * Update statistics on connections closed for flooding packets
+	 */
+	public void updateFloodDisconnects()
+	{
+		if(!tracking())
+		{
+			return;
+		}
+		
+		stats.updateFloodDisconnects();
+	}
+	
+	/**
+	 * Update statistics on connections closed for not reading what is sent to them
+	 */
+	public void updateSlowReaderDisconnects()
+	{
+		if(!tracking())
+		{
+			return;
+		}
+		
+		stats.updateSlowReaderDisconnects();
+	}
+	
+	/**
+	 * Update statistics on low priority packets dropped because their connection was backed up
+	 */
+	public void updatePacketsDropped()
+	{
+		if(!tracking())
+		{
+			return;
+		}
+		
+		stats.updatePacketsDropped();
+	}
+	
+	/**
+	 * Update statistics on new connections turned away by the admission handler
+	 * @param rejection Why the connection was turned away
+	 */
+	public void updateConnectionsRejected(Rejection rejection)
+	{
+		if(!tracking())
+		{
+			return;
+		}
+		
+		stats.updateConnectionsRejected(rejection);
+	}
+	
+	/**
+	 * Update statistics on one run of the periodic player save task
+	 * @param written How many players had a save started
+	 * @param skipped How many players were passed over for having nothing new to save
+	 */
+	public void updatePlayerSaves(int written, int skipped)
+	{
+		if(!tracking())
+		{
+			return;
+		}
+		
+		stats.updatePlayerSaves(written, skipped);
+	}
+	
+	/**
+	 * Update statistics on a request handled by one of the file server's lanes
+	 * @param lane Which lane handled it
+	 * @param waitNanos How long it was queued before being handled
+	 * @param handleNanos How long handling it took
+	 */
+	public void updateFileRequest(int lane, long waitNanos, long handleNanos)
+	{
+		if(!tracking())
+		{
+			return;
+		}
+		
+		stats.updateFileRequest(lane, waitNanos, handleNanos);
+	}
+	
+	/**
+	 * Update statistics on how many requests are queued in one of the file server's lanes
+	 * @param lane Which lane
+	 * @param depth How many requests it has queued, just after one was added
+	 */
+	public void updateFileQueueDepth(int lane, int depth)
+	{
+		if(!tracking())
+		{
+			return;
+		}
+		
+		stats.updateFileQueueDepth(lane, depth);
+	}
+	
+	/**
+	 * Update statistics on incoming packets
+	 * @param opcode The opcode of the packet
+	 * @param length Bytes in the packet as it was received, opcode and data
+	 * @param nanos How long decoding took
+	 */
+	public void updatePacketDecoded(short opcode, int length, long nanos)
+	{
+		if(!tracking())
+		{
+			return;
+		}
+		
+		stats.updatePacketDecoded(opcode, length, nanos);
+	}
+	
+	/**
+	 * Update statistics on handling incoming packets
+	 * @param opcode The opcode of the packet
+	 * @param nanos How long handling took
+	 */
+	public void updatePacketHandled(short opcode, long nanos)
+	{
+		if(!tracking())
+		{
+			return;
+		}
+		
+		stats.updatePacketHandled(opcode, nanos);
+	}
+	
+	/**
+	 * Update statistics on outgoing packets
+	 * @param opcode The opcode of the packet
+	 * @param length Bytes the packet was encoded to, opcode and data
+	 * @param nanos How long encoding took
+	 */
+	public void updatePacketEncoded(short opcode, int length, long nanos)
+	{
+		if(!tracking())
+		{
+			return;
+		}
+		
+		stats.updatePacketEncoded(opcode, length, nanos);
+	}
+	
+	/**
+	 * Update statistics on an outgoing packet that was encoded once and written to several channels, 
+	 * like a broadcast. It counts as a packet for each channel, but only one encoding
+	 * @param opcode The opcode of the packet
+	 * @param length Bytes the packet was encoded to, opcode and data
+	 * @param copies How many channels it was written to
+	 * @param nanos How long encoding took
+	 */
+	public void updatePacketEncoded(short opcode, int length, int copies, long nanos)
+	{
+		if(!tracking())
+		{
+			return;
+		}
+		
+		stats.updatePacketEncoded(opcode, length, copies, nanos);
+	}
+	
+	/**
+	 * Update statistics on compressing outgoing packets
+	 * @param opcode The opcode of the packet
+	 * @param raw Bytes of data before compression
+	 * @param compressed Bytes of data after compression, the same as raw if it was sent uncompressed
+	 * @param nanos How long compressing took
+	 */
+	public void updateCompression(short opcode, int raw, int compressed, long nanos)
+	{
+		if(!tracking())
+		{
+			return;
+		}
+		
+		stats.updateCompression(opcode, raw, compressed, nanos);
+	}
+	
+	/**
+	 * Update statistics on inflating incoming packets
+	 * @param opcode The opcode of the packet
+	 * @param raw Bytes of data once inflated
+	 * @param compressed Bytes of data as they were received
+	 * @param nanos How long inflating took
+	 */
+	public void updateInflation(short opcode, int raw, int compressed, long nanos)
+	{
+		if(!tracking())
+		{
+			return;
+		}
+		
+		stats.updateInflation(opcode, raw, compressed, nanos);
+	}
+	
 	/**
 	 * Check to see if we are currently tracking statistics
 	 * @return True if tracking should be done
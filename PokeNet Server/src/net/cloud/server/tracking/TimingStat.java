@@ -0,0 +1,93 @@
+package net.cloud.server.tracking;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps track of how long something takes, over and over. Records are added from any thread
+ * without locking. The average is over the lifetime of the stat, while the maximum only covers
+ * the time since the last copy was made (so each report shows the worst case for its period).
+ */
+public class TimingStat implements Cloneable {
+
+	/** Nanoseconds in a millisecond, for reporting */
+	private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+	/** How many times a duration has been recorded */
+	private LongAdder count;
+
+	/** The sum of all recorded durations, in nanoseconds */
+	private LongAdder totalNanos;
+
+	/** The longest recorded duration since the last copy, in nanoseconds */
+	private LongAccumulator maxNanos;
+
+	/**
+	 * Create a new stat with nothing recorded yet
+	 */
+	public TimingStat()
+	{
+		count = new LongAdder();
+		totalNanos = new LongAdder();
+		maxNanos = new LongAccumulator(Long::max, 0L);
+	}
+
+	/**
+	 * Create a copy of this stat as a record of the current moment. The maximum of this
+	 * stat is reset, so the next copy will only reflect durations recorded after now.
+	 */
+	@Override
+	public TimingStat clone() throws CloneNotSupportedException
+	{
+		TimingStat c = (TimingStat) super.clone();
+
+		// New adders, otherwise the copy would keep changing along with this one
+		c.count = new LongAdder();
+		c.count.add(count.sum());
+
+		c.totalNanos = new LongAdder();
+		c.totalNanos.add(totalNanos.sum());
+
+		c.maxNanos = new LongAccumulator(Long::max, maxNanos.getThenReset());
+
+		return c;
+	}
+
+	/**
+	 * Record one more duration
+	 * @param nanos How long it took, in nanoseconds
+	 */
+	public void record(long nanos)
+	{
+		count.increment();
+		totalNanos.add(nanos);
+		maxNanos.accumulate(nanos);
+	}
+
+	/**
+	 * @return How many durations have been recorded
+	 */
+	public long getCount()
+	{
+		return count.sum();
+	}
+
+	/**
+	 * @return The average of all recorded durations, in milliseconds. 0 if nothing was recorded
+	 */
+	public double getAverageMillis()
+	{
+		long n = count.sum();
+
+		return n == 0 ? 0.0 : (totalNanos.sum() / (double) n) / NANOS_PER_MILLI;
+	}
+
+	/**
+	 * @return The longest recorded duration since the previous copy, in milliseconds
+	 */
+	public double getMaxMillis()
+	{
+		return maxNanos.get() / NANOS_PER_MILLI;
+	}
+
+}
@@ -0,0 +1,87 @@
+package net.cloud.server.util;
+
+import io.netty.buffer.ByteBuf;
+
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+import net.cloud.server.nio.bufferable.Bufferable;
+
+/**
+ * A random token handed to a player once they're logged in. If they drop, the token lets them pick their session
+ * back up without their password - the server already has them in memory, so there's no file to read and no hash
+ * to check. Only the one token is ever valid for a player, and it's good for one resume. <br>
+ * Tokens are never saved, they only last as long as the server holds on to the player. This object is immutable.
+ */
+public final class ResumeToken implements Bufferable {
+
+	/** Bytes in a token. Far too many to guess within a reconnect window */
+	public static final int LENGTH = 16;
+
+	/** Where tokens come from */
+	private static final SecureRandom RANDOM = new SecureRandom();
+
+	/** The token itself */
+	private byte[] token;
+
+	/**
+	 * Constructor for deserialization to use
+	 */
+	private ResumeToken() {}
+
+	/**
+	 * @return A new random token
+	 */
+	public static ResumeToken generate()
+	{
+		ResumeToken newToken = new ResumeToken();
+		newToken.token = new byte[LENGTH];
+		RANDOM.nextBytes(newToken.token);
+
+		return newToken;
+	}
+
+	/**
+	 * Create a new ResumeToken by deserializing it from the given buffer
+	 * @param buffer The buffer the data is in
+	 * @return A new ResumeToken
+	 */
+	public static ResumeToken createFrom(ByteBuf buffer)
+	{
+		ResumeToken newToken = new ResumeToken();
+		newToken.restore(buffer);
+
+		return newToken;
+	}
+
+	/**
+	 * Check a token someone presented against this one. Takes the same time however much of it matches,
+	 * so nothing can be learned from how long the answer takes
+	 * @param other The token presented. May be null
+	 * @return True if they're the same token
+	 */
+	public boolean matches(ResumeToken other)
+	{
+		return other != null && MessageDigest.isEqual(token, other.token);
+	}
+
+	/**
+	 * Writes the token's bytes. Will not throw BufferableException
+	 */
+	@Override
+	public void save(ByteBuf buffer)
+	{
+		buffer.writeBytes(token);
+	}
+
+	/**
+	 * Reads a token's bytes. Will not throw BufferableException
+	 */
+	@Override
+	public void restore(ByteBuf buffer)
+	{
+		token = new byte[LENGTH];
+		buffer.readBytes(token);
+	}
+
+}
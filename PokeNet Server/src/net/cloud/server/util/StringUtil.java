@@ -1,9 +1,14 @@
 package net.cloud.server.util;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import io.netty.buffer.ByteBuf;
@@ -16,6 +21,21 @@ public class StringUtil {
 	/** The line terminator character */
 	public static final char TERMINATOR = 0;
 	
+	/** Character set strings are written in. Same as one byte per char for ASCII, which is all the older code could write */
+	public static final Charset CHARSET = StandardCharsets.UTF_8;
+	
+	/** The terminator, as it appears in a buffer */
+	private static final byte TERMINATOR_BYTE = (byte) TERMINATOR;
+	
+	/** Bytes read from a file at a time, while looking for the terminator */
+	private static final int RAF_CHUNK_SIZE = 64;
+	
+	/** Most strings that will be interned. Plenty for every username that'd be online. Nothing is ever evicted */
+	private static final int MAX_INTERNED = 8192;
+	
+	/** Interned strings, each mapped to itself */
+	private static final ConcurrentHashMap<String, String> INTERNED = new ConcurrentHashMap<>();
+	
 	/** Re-usable pattern for alphanumeric regular expressions */
 	private static final Pattern ALPHA_NUMERIC = Pattern.compile("[a-zA-Z0-9_]+");
 	
@@ -69,55 +89,140 @@ public class StringUtil {
 	 * The string terminator is the TERMINATOR constant character.
 	 * @param buffer The Buffer to read from.
 	 * @return The String of chars from the start pos to the pos of the first TERMINATOR char.
+	 * @throws IndexOutOfBoundsException If there is no terminator before the limit
 	 */
 	public static String getFromBuffer(ByteBuffer buffer)
 	{
-		StringBuilder builder = new StringBuilder();
-		char c = (char) buffer.get();
+		// ByteBuffer has nothing to search with, but at least nothing is copied while looking
+		int start = buffer.position();
+		int end = start;
+		while(buffer.get(end) != TERMINATOR_BYTE)
+		{
+			end++;
+		}
 		
-		while(c != TERMINATOR) {
-			builder.append(c);
-			c = (char) buffer.get();
+		String string;
+		if(buffer.hasArray())
+		{
+			string = new String(buffer.array(), buffer.arrayOffset() + start, end - start, CHARSET);
+		}
+		else {
+			byte[] bytes = new byte[end - start];
+			buffer.get(bytes);
+			string = new String(bytes, CHARSET);
 		}
 		
-		return builder.toString();
+		buffer.position(end + 1);
+		
+		return string;
 	}
 	
 	/** 
 	 * A variant that uses the Netty ByteBuf rather than the NIO ByteBuffer
 	 * @param buffer The buffer to read the string from
 	 * @return A string from the data in the buffer
+	 * @throws IndexOutOfBoundsException If there is no terminator in the readable bytes
 	 */
 	public static String getFromBuffer(ByteBuf buffer)
 	{
-		StringBuilder builder = new StringBuilder();
-		char c = (char) buffer.readByte();
+		int length = buffer.bytesBefore(TERMINATOR_BYTE);
+		if(length < 0)
+		{
+			throw new IndexOutOfBoundsException("No string terminator in " + buffer.readableBytes() + " readable bytes");
+		}
 		
-		while(c != TERMINATOR) {
-			builder.append(c);
-			c = (char) buffer.readByte();
+		int index = buffer.readerIndex();
+		String string;
+		if(buffer.hasArray())
+		{
+			// Straight out of the backing array, no intermediate copy
+			string = new String(buffer.array(), buffer.arrayOffset() + index, length, CHARSET);
+		}
+		else {
+			string = buffer.toString(index, length, CHARSET);
 		}
 		
-		return builder.toString();
+		buffer.skipBytes(length + 1);
+		
+		return string;
+	}
+	
+	/**
+	 * Same as getFromBuffer(ByteBuf), but the string is interned. For strings that come up over and over 
+	 * and are held onto, like usernames, so there's only one copy of each kept around. 
+	 * Only so many strings are interned, after that they're returned as they are. 
+	 * Only use it for strings that have been vouched for, like the username of a player whose password 
+	 * checked out - never for what a client sends before it's logged in, or it could fill the table with junk.
+	 * @param buffer The buffer to read the string from
+	 * @return A string from the data in the buffer
+	 */
+	public static String getInternedFromBuffer(ByteBuf buffer)
+	{
+		return intern(getFromBuffer(buffer));
+	}
+	
+	/**
+	 * Get the one shared copy of a string, if there is room to keep one. 
+	 * Unlike String.intern(), the table is bounded. Strings are kept for good once they're in, though, 
+	 * so see getInternedFromBuffer(ByteBuf) for what should and shouldn't be interned.
+	 * @param string The string
+	 * @return An equal string, the same object every time if it could be interned
+	 */
+	public static String intern(String string)
+	{
+		String interned = INTERNED.get(string);
+		if(interned != null)
+		{
+			return interned;
+		}
+		
+		if(INTERNED.size() >= MAX_INTERNED)
+		{
+			return string;
+		}
+		
+		interned = INTERNED.putIfAbsent(string, string);
+		
+		return interned == null ? string : interned;
 	}
 	
 	/** 
-	 * A variant that uses a RandomAccessFile directly rather than a memory mapped buffer 
+	 * A variant that uses a RandomAccessFile directly rather than a memory mapped buffer. 
+	 * The file is read in chunks, then the pointer is put back to just after the terminator.
 	 * @param raf The file to get the string from
 	 * @return The string read from the file
 	 * @throws IOException If could not read from file
 	 */
 	public static String getFromRAF(RandomAccessFile raf) throws IOException
 	{
-		StringBuilder builder = new StringBuilder();
-		char c = (char) raf.readByte();
+		long start = raf.getFilePointer();
+		byte[] bytes = new byte[RAF_CHUNK_SIZE];
+		int length = 0;
 		
-		while(c != TERMINATOR) {
-			builder.append(c);
-			c = (char) raf.readByte();
+		while(true)
+		{
+			if(length == bytes.length)
+			{
+				bytes = Arrays.copyOf(bytes, bytes.length * 2);
+			}
+			
+			int read = raf.read(bytes, length, bytes.length - length);
+			if(read < 0)
+			{
+				throw new EOFException("No string terminator before the end of the file");
+			}
+			
+			for(int i = length; i < length + read; ++i)
+			{
+				if(bytes[i] == TERMINATOR_BYTE)
+				{
+					raf.seek(start + i + 1);
+					return new String(bytes, 0, i, CHARSET);
+				}
+			}
+			
+			length += read;
 		}
-		
-		return builder.toString();
 	}
 	
 	/**
@@ -128,26 +233,21 @@ public class StringUtil {
 	 */
 	public static void writeStringToBuffer(String string, ByteBuffer buffer)
 	{
-		for(int i = 0; i < string.length(); ++i) {
-			buffer.put((byte) string.charAt(i));
-		}
-		
-		buffer.put((byte) TERMINATOR);
+		buffer.put(string.getBytes(CHARSET));
+		buffer.put(TERMINATOR_BYTE);
 	}
 	
 	/**
 	 * Write a String to a ByteBuf, terminating it with TERMINATOR.  
-	 * This can be in turn read back with <code>StringUtil.getFromBuffer(ByteBuffer)</code>
+	 * This can be in turn read back with <code>StringUtil.getFromBuffer(ByteBuf)</code>
 	 * @param string The text to write
 	 * @param buffer The buffer to write to.
 	 */
 	public static void writeStringToBuffer(String string, ByteBuf buffer)
 	{
-		for(int i = 0; i < string.length(); ++i) {
-			buffer.writeByte((byte) string.charAt(i));
-		}
-		
-		buffer.writeByte((byte) TERMINATOR);
+		// Same as the ByteBuffer one. The JDK's encoder beats walking the string ourselves, see StringUtilBenchmarks
+		buffer.writeBytes(string.getBytes(CHARSET));
+		buffer.writeByte(TERMINATOR_BYTE);
 	}
 	
 	/**
@@ -156,7 +256,45 @@ public class StringUtil {
 	 */
 	public static int getNumBytesInString(String string)
 	{
-		return string.length() + 1;
+		return utf8Length(string) + 1;
+	}
+	
+	/**
+	 * Work out how long a string is in UTF-8, without encoding it
+	 * @param string The string
+	 * @return How many bytes it encodes to
+	 */
+	private static int utf8Length(String string)
+	{
+		int length = string.length();
+		int bytes = length;
+		
+		for(int i = 0; i < length; ++i)
+		{
+			char c = string.charAt(i);
+			if(c < 0x80)
+			{
+				continue;
+			}
+			
+			if(c < 0x800)
+			{
+				bytes += 1;
+			}
+			else if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(string.charAt(i + 1)))
+			{
+				// The pair is 4 bytes, for 2 chars
+				bytes += 2;
+				i++;
+			}
+			else if(!Character.isSurrogate(c))
+			{
+				bytes += 2;
+			}
+			// An unpaired surrogate is replaced with a single '?' by the encoder
+		}
+		
+		return bytes;
 	}
 	
 	/**
@@ -0,0 +1,132 @@
+package net.cloud.server.util;
+
+import java.util.function.LongSupplier;
+
+/**
+ * A token bucket, for limiting how often something may happen. The bucket holds up to a set number of tokens,
+ * and refills at a steady rate. Each time the thing happens, a token is taken. <br>
+ * Tokens may also be taken when there are none left, in which case the bucket goes into debt (negative tokens)
+ * and has to refill past zero first. That suits limits where the thing has already happened by the time it's
+ * counted, like a packet that has already been received. <br>
+ * Not synchronized. A bucket belongs to one thread, or is guarded by its owner.
+ */
+public class TokenBucket {
+
+	/** Nanoseconds in a second */
+	private static final double NANOS_PER_SECOND = 1_000_000_000d;
+
+	/** Where the current time comes from, in nanoseconds */
+	private final LongSupplier clock;
+
+	/** How many tokens are added back per second */
+	private final double perSecond;
+
+	/** Most tokens the bucket holds */
+	private final int capacity;
+
+	/** Tokens in the bucket as of the last refill. Negative when in debt */
+	private double tokens;
+
+	/** When the bucket was last refilled */
+	private long lastRefill;
+
+	/**
+	 * Create a full bucket
+	 * @param perSecond Tokens added back per second
+	 * @param capacity Most tokens the bucket holds, which is also how many may be taken in a burst
+	 */
+	public TokenBucket(double perSecond, int capacity)
+	{
+		this(perSecond, capacity, System::nanoTime);
+	}
+
+	/**
+	 * Create a full bucket that tells the time with the given clock
+	 * @param perSecond Tokens added back per second
+	 * @param capacity Most tokens the bucket holds, which is also how many may be taken in a burst
+	 * @param clock Gives the current time in nanoseconds
+	 */
+	public TokenBucket(double perSecond, int capacity, LongSupplier clock)
+	{
+		this.clock = clock;
+		this.perSecond = perSecond;
+		this.capacity = capacity;
+		this.tokens = capacity;
+		this.lastRefill = clock.getAsLong();
+	}
+
+	/**
+	 * Take a token if there is one
+	 * @return True if a token was taken, false if the bucket was empty
+	 */
+	public boolean tryTake()
+	{
+		refill();
+
+		if(tokens < 1)
+		{
+			return false;
+		}
+
+		tokens -= 1;
+		return true;
+	}
+
+	/**
+	 * Take a token whether there is one or not. The bucket goes into debt if there isn't
+	 * @return Tokens left afterwards. Negative if the bucket is in debt
+	 */
+	public double take()
+	{
+		refill();
+
+		tokens -= 1;
+		return tokens;
+	}
+
+	/**
+	 * @return Tokens in the bucket right now. Negative if the bucket is in debt
+	 */
+	public double tokens()
+	{
+		refill();
+
+		return tokens;
+	}
+
+	/**
+	 * @param level A number of tokens
+	 * @return How long until the bucket has refilled to that many tokens, in nanoseconds. 0 if it already has
+	 */
+	public long nanosUntil(double level)
+	{
+		refill();
+
+		if(tokens >= level)
+		{
+			return 0;
+		}
+
+		return (long) Math.ceil((level - tokens) * NANOS_PER_SECOND / perSecond);
+	}
+
+	/**
+	 * @return Most tokens the bucket holds
+	 */
+	public int capacity()
+	{
+		return capacity;
+	}
+
+	/**
+	 * Add back whatever tokens have come in since the last refill, up to the capacity
+	 */
+	private void refill()
+	{
+		long now = clock.getAsLong();
+
+		tokens = Math.min(capacity, tokens + (now - lastRefill) * perSecond / NANOS_PER_SECOND);
+		lastRefill = now;
+	}
+
+}
@@ -1,9 +1,20 @@
 package net.cloud.server;
 
 import net.cloud.server.command.CommandSuite;
+import net.cloud.server.entity.player.save.PlayerSaveTaskTest;
+import net.cloud.server.entity.player.save.PlayerStoreTest;
 import net.cloud.server.file.FileSuite;
+import net.cloud.server.game.PlayerSlotTableTest;
 import net.cloud.server.game.WorldPlayerMapTest;
+import net.cloud.server.nio.CompositePacketTest;
+import net.cloud.server.nio.ConnectionAdmissionHandlerTest;
+import net.cloud.server.nio.InboundRateLimiterTest;
+import net.cloud.server.nio.PacketChunkerTest;
+import net.cloud.server.nio.PacketCompressorTest;
+import net.cloud.server.nio.PacketDecoderTest;
+import net.cloud.server.nio.ProtocolVersionTest;
 import net.cloud.server.task.TaskSuite;
+import net.cloud.server.tracking.LatencyHistogramTest;
 import net.cloud.server.util.UtilSuite;
 
 import org.junit.runner.RunWith;
@@ -17,7 +28,18 @@ import org.junit.runners.Suite.SuiteClasses;
 	CommandSuite.class,
 	FileSuite.class,
 	
-	WorldPlayerMapTest.class
+	WorldPlayerMapTest.class,
+	PlayerSlotTableTest.class,
+	PlayerStoreTest.class,
+	PlayerSaveTaskTest.class,
+	PacketDecoderTest.class,
+	CompositePacketTest.class,
+	PacketCompressorTest.class,
+	PacketChunkerTest.class,
+	InboundRateLimiterTest.class,
+	ConnectionAdmissionHandlerTest.class,
+	ProtocolVersionTest.class,
+	LatencyHistogramTest.class
 })
 public class AllTests {
 	// Nothing goes here. Annotations are all we need
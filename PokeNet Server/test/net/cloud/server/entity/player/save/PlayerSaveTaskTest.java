@@ -0,0 +1,68 @@
+package net.cloud.server.entity.player.save;
+
+import static org.junit.Assert.*;
+
+import net.cloud.server.entity.player.Player;
+import net.cloud.server.entity.player.PlayerFactory;
+
+import org.junit.Test;
+
+/** Making sure only changed players get saved, and that saves are spread out */
+public class PlayerSaveTaskTest {
+
+	/**
+	 * A player is dirty until a save of their latest data finishes, and a late save of older data doesn't count
+	 */
+	@Test
+	public void testDirtyTracking()
+	{
+		Player player = PlayerFactory.createNewPlayer("Alice", "1234");
+		assertTrue(player.isDirty());
+
+		long first = player.getDataVersion();
+		player.markSaved(first);
+		assertFalse(player.isDirty());
+
+		player.markDirty();
+		assertTrue(player.isDirty());
+
+		// A save that started before the change finishes
+		player.markSaved(first);
+		assertTrue(player.isDirty());
+
+		player.markSaved(player.getDataVersion());
+		assertFalse(player.isDirty());
+	}
+
+	/**
+	 * Packed slots end up spread evenly over the buckets
+	 */
+	@Test
+	public void testBuckets()
+	{
+		final int buckets = 7;
+		int[] counts = new int[buckets];
+
+		for(int slot = 0; slot < buckets * 10; ++slot)
+		{
+			int bucket = PlayerSaveTask.bucketOf(slot, buckets);
+			assertTrue(bucket >= 0 && bucket < buckets);
+			counts[bucket]++;
+		}
+
+		for(int count : counts)
+		{
+			assertEquals(10, count);
+		}
+	}
+
+	/**
+	 * There has to be somewhere to put players
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoBuckets()
+	{
+		new PlayerSaveTask(0);
+	}
+
+}
@@ -0,0 +1,318 @@
+package net.cloud.server.entity.player.save;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.cloud.server.file.address.AddressConstants;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Making sure saves come back out of the log, across reopening, crashes and compaction */
+public class PlayerStoreTest {
+
+	/** Small enough that a handful of saves spans several segments */
+	private static final long SEGMENT_SIZE = 256;
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	/** Where the segments go */
+	private Path directory;
+
+	/** The store under test */
+	private PlayerStore store;
+
+	@Before
+	public void before() throws IOException
+	{
+		directory = tempFolder.newFolder("store").toPath();
+		store = new PlayerStore(directory, SEGMENT_SIZE);
+	}
+
+	@After
+	public void after() throws IOException
+	{
+		store.close();
+	}
+
+	/**
+	 * What goes in comes back out, whatever case the username is in
+	 */
+	@Test
+	public void testSaveRead() throws Exception
+	{
+		store.save("Alice", data("first")).get();
+
+		assertTrue(store.contains("alice"));
+		assertFalse(store.contains("Bob"));
+		assertEquals(1, store.size());
+		assertEquals("first", text(store.read("ALICE")));
+	}
+
+	/**
+	 * Saving again replaces what was there
+	 */
+	@Test
+	public void testOverwrite() throws Exception
+	{
+		store.save("Alice", data("first")).get();
+		store.save("alice", data("second")).get();
+
+		assertEquals(1, store.size());
+		assertEquals("second", text(store.read("Alice")));
+	}
+
+	/**
+	 * Reading for someone that was never saved is an error
+	 */
+	@Test(expected = IOException.class)
+	public void testReadMissing() throws IOException
+	{
+		store.read("Nobody");
+	}
+
+	/**
+	 * The index is built back up when the store is opened again
+	 */
+	@Test
+	public void testReopen() throws Exception
+	{
+		for(int i = 0; i < 20; ++i)
+		{
+			store.save("Player" + (i % 5), data("save " + i)).get();
+		}
+		assertTrue(store.segmentCount() > 1);
+
+		store.close();
+		store = new PlayerStore(directory, SEGMENT_SIZE);
+
+		assertEquals(5, store.size());
+		for(int i = 0; i < 5; ++i)
+		{
+			assertEquals("save " + (15 + i), text(store.read("Player" + i)));
+		}
+	}
+
+	/**
+	 * A record cut short at the end of the log is dropped, and the one before it is still good
+	 */
+	@Test
+	public void testTornTail() throws Exception
+	{
+		store.save("Alice", data("first")).get();
+		store.save("Alice", data("second")).get();
+		store.close();
+
+		// Chop the last few bytes off, as if the process died part way through the write
+		try (FileChannel channel = FileChannel.open(directory.resolve("segment-00000001.log"), StandardOpenOption.WRITE))
+		{
+			channel.truncate(channel.size() - 3);
+		}
+
+		store = new PlayerStore(directory, SEGMENT_SIZE);
+		assertEquals("first", text(store.read("Alice")));
+
+		// And appending carries on cleanly after it
+		store.save("Alice", data("third")).get();
+		store.close();
+		store = new PlayerStore(directory, SEGMENT_SIZE);
+		assertEquals("third", text(store.read("Alice")));
+	}
+
+	/**
+	 * Crash part way through writing a save at every possible byte. Whatever was saved before it is what's left
+	 */
+	@Test
+	public void testCrashAtEveryByte() throws Exception
+	{
+		Path segment = directory.resolve("segment-00000001.log");
+
+		store.save("Alice", data("first")).get();
+		long before = Files.size(segment);
+		store.save("Alice", data("second")).get();
+		store.close();
+
+		byte[] whole = Files.readAllBytes(segment);
+		assertTrue(whole.length > before);
+
+		for(int cut = (int) before; cut < whole.length; ++cut)
+		{
+			Files.write(segment, Arrays.copyOf(whole, cut));
+
+			store = new PlayerStore(directory, SEGMENT_SIZE);
+			assertEquals("Crash after " + cut + " bytes", "first", text(store.read("Alice")));
+			store.close();
+		}
+
+		// And with the whole record there, it's the one read
+		Files.write(segment, whole);
+		store = new PlayerStore(directory, SEGMENT_SIZE);
+		assertEquals("second", text(store.read("Alice")));
+	}
+
+	/**
+	 * A record that was written in full but came back damaged is dropped just the same
+	 */
+	@Test
+	public void testCorruptTail() throws Exception
+	{
+		store.save("Alice", data("first")).get();
+		store.save("Alice", data("second")).get();
+		store.close();
+
+		// Flip a bit in the last byte, which is in the data of the second record
+		Path segment = directory.resolve("segment-00000001.log");
+		byte[] bytes = Files.readAllBytes(segment);
+		bytes[bytes.length - 1] ^= 1;
+		Files.write(segment, bytes);
+
+		store = new PlayerStore(directory, SEGMENT_SIZE);
+		assertEquals("first", text(store.read("Alice")));
+	}
+
+	/**
+	 * A durable store finishes saves made together with a shared sync, across segments, and they're all there after
+	 */
+	@Test
+	public void testDurable() throws Exception
+	{
+		store.close();
+		store = new PlayerStore(directory, SEGMENT_SIZE, true, 5);
+
+		List<CompletableFuture<Void>> saves = new ArrayList<>();
+		for(int i = 0; i < 50; ++i)
+		{
+			saves.add(store.save("Player" + i, data("save " + i)));
+		}
+		CompletableFuture.allOf(saves.toArray(new CompletableFuture<?>[saves.size()])).get();
+		assertTrue(store.segmentCount() > 1);
+
+		store.close();
+		store = new PlayerStore(directory, SEGMENT_SIZE, true, 5);
+		assertEquals(50, store.size());
+		assertEquals("save 49", text(store.read("Player49")));
+	}
+
+	/**
+	 * Closing a durable store still finishes the saves that were waiting on a sync
+	 */
+	@Test
+	public void testDurableClose() throws Exception
+	{
+		store.close();
+		store = new PlayerStore(directory, SEGMENT_SIZE, true, 60000);
+
+		CompletableFuture<Void> save = store.save("Alice", data("first"));
+		store.close();
+
+		assertTrue(save.isDone());
+		save.get();
+	}
+
+	/**
+	 * Segments that are all garbage go away, and nothing current goes with them
+	 */
+	@Test
+	public void testCompact() throws Exception
+	{
+		for(int i = 0; i < 40; ++i)
+		{
+			store.save("Player" + (i % 3), data("save " + i)).get();
+		}
+		int before = store.segmentCount();
+		assertTrue(before > 2);
+
+		int removed = store.compact(0.5).get();
+		assertTrue(removed > 0);
+		assertTrue(store.segmentCount() < before);
+
+		assertEquals("save 39", text(store.read("Player0")));
+		assertEquals("save 37", text(store.read("Player1")));
+		assertEquals("save 38", text(store.read("Player2")));
+
+		// Still all there after reopening
+		store.close();
+		store = new PlayerStore(directory, SEGMENT_SIZE);
+		assertEquals(3, store.size());
+		assertEquals("save 39", text(store.read("Player0")));
+	}
+
+	/**
+	 * A save too big for a record fails, rather than leave a record that recovery would stop at
+	 */
+	@Test
+	public void testTooBig() throws Exception
+	{
+		assertTrue(store.save("Alice", Unpooled.wrappedBuffer(new byte[1 << 20])).isCompletedExceptionally());
+
+		char[] name = new char[0x10000];
+		Arrays.fill(name, 'a');
+		assertTrue(store.save(new String(name), data("first")).isCompletedExceptionally());
+
+		// Nothing saved after them is lost
+		store.save("Bob", data("second")).get();
+		store.close();
+		store = new PlayerStore(directory, SEGMENT_SIZE);
+
+		assertEquals(1, store.size());
+		assertEquals("second", text(store.read("Bob")));
+	}
+
+	/**
+	 * Old player files are brought in, and the store remembers it. An import that was cut short
+	 * picks up where it left off, and doesn't go back over players already in the store
+	 */
+	@Test
+	public void testImport() throws Exception
+	{
+		Path files = tempFolder.newFolder("files").toPath();
+		for(String name : Arrays.asList("Alice", "Bob", "Carol"))
+		{
+			Files.write(files.resolve(name + "." + AddressConstants.EXT_P_DATA), ("file " + name).getBytes(StandardCharsets.UTF_8));
+		}
+
+		// As if the last import got as far as Alice, and she has saved since
+		store.save("Alice", data("saved")).get();
+		assertFalse(store.imported());
+
+		assertEquals(2, store.importFiles(files));
+		assertTrue(store.imported());
+		assertEquals("saved", text(store.read("Alice")));
+		assertEquals("file Bob", text(store.read("Bob")));
+
+		// Still done after reopening
+		store.close();
+		store = new PlayerStore(directory, SEGMENT_SIZE);
+		assertTrue(store.imported());
+		assertEquals(3, store.size());
+	}
+
+	/** @return A buffer holding the text */
+	private static ByteBuf data(String text)
+	{
+		return Unpooled.copiedBuffer(text, StandardCharsets.UTF_8);
+	}
+
+	/** @return The text held in the buffer */
+	private static String text(ByteBuf buffer)
+	{
+		return buffer.toString(StandardCharsets.UTF_8);
+	}
+
+}
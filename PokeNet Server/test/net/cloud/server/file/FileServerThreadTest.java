@@ -0,0 +1,129 @@
+package net.cloud.server.file;
+
+import static org.junit.Assert.*;
+
+import net.cloud.server.file.address.FileAddress;
+import net.cloud.server.file.request.BufferedReaderRequest;
+import net.cloud.server.file.request.FileRequest;
+import net.cloud.server.file.request.PrintWriterRequest;
+import net.cloud.server.file.request.RequestPriority;
+import net.cloud.server.file.request.handler.RequestHandler;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/** Making sure a lane hands requests out by priority, without reordering requests for the same file */
+public class FileServerThreadTest {
+	
+	// Files to make requests for. They're never actually opened
+	private final FileAddress fileA = new FileAddress("./data/test/a.txt");
+	private final FileAddress fileB = new FileAddress("./data/test/b.txt");
+	private final FileAddress fileC = new FileAddress("./data/test/c.txt");
+	
+	/** A fresh lane for each test. It's never run, requests are taken straight out */
+	private FileServerThread lane;
+	
+	@Before
+	public void before()
+	{
+		lane = new FileServerThread(0, new RequestHandler());
+	}
+	
+	/**
+	 * More urgent requests come out first
+	 */
+	@Test
+	public void testPriority() throws Exception
+	{
+		FileRequest<?> save = new PrintWriterRequest(fileA);
+		FileRequest<?> load = new BufferedReaderRequest(fileB);
+		FileRequest<?> urgent = new BufferedReaderRequest(fileC);
+		urgent.setPriority(RequestPriority.URGENT);
+		
+		assertEquals(RequestPriority.BACKGROUND, save.getPriority());
+		assertEquals(RequestPriority.LOAD, load.getPriority());
+		
+		lane.submit(save);
+		lane.submit(load);
+		lane.submit(urgent);
+		assertEquals(3, lane.depth());
+		
+		assertTrue(lane.take().request == urgent);
+		assertTrue(lane.take().request == load);
+		assertTrue(lane.take().request == save);
+		assertEquals(0, lane.depth());
+	}
+	
+	/**
+	 * A request doesn't overtake an earlier one for the same file, however urgent it is. 
+	 * It doesn't hold up other files either
+	 */
+	@Test
+	public void testSameFileOrder() throws Exception
+	{
+		FileRequest<?> save = new PrintWriterRequest(fileA);
+		FileRequest<?> reload = new BufferedReaderRequest(new FileAddress("data/test/../test/a.txt"));
+		reload.setPriority(RequestPriority.URGENT);
+		FileRequest<?> other = new BufferedReaderRequest(fileB);
+		
+		lane.submit(save);
+		lane.submit(reload);
+		lane.submit(other);
+		
+		assertTrue(lane.take().request == other);
+		assertTrue(lane.take().request == save);
+		assertTrue(lane.take().request == reload);
+		
+		// Once the file has nothing queued, it goes back to jumping ahead
+		FileRequest<?> background = new PrintWriterRequest(fileB);
+		FileRequest<?> urgent = new BufferedReaderRequest(fileA);
+		urgent.setPriority(RequestPriority.URGENT);
+		lane.submit(background);
+		lane.submit(urgent);
+		
+		assertTrue(lane.take().request == urgent);
+		assertTrue(lane.take().request == background);
+	}
+	
+	/**
+	 * A stopped lane takes nothing new, but still hands out what it already had
+	 */
+	@Test
+	public void testStop() throws Exception
+	{
+		FileRequest<?> queued = new PrintWriterRequest(fileA);
+		lane.submit(queued);
+		
+		lane.setRunning(false);
+		try {
+			lane.submit(new PrintWriterRequest(fileB));
+			fail("A stopped lane should not accept requests");
+		} catch (FileRequestException e) {
+			// Expected
+		}
+		
+		assertTrue(lane.take().request == queued);
+		assertNull(lane.take());
+	}
+	
+	/**
+	 * Different ways of writing the same file's path are the same address, and go to the same lane
+	 */
+	@Test
+	public void testLaneFor()
+	{
+		FileAddress other = new FileAddress("data/test/../test/a.txt");
+		
+		assertEquals(fileA, other);
+		assertEquals(fileA.hashCode(), other.hashCode());
+		assertFalse(fileA.equals(fileB));
+		
+		for(int lanes = 1; lanes <= 8; ++lanes)
+		{
+			int laneA = FileServer.laneFor(fileA, lanes);
+			assertEquals(laneA, FileServer.laneFor(other, lanes));
+			assertTrue(laneA >= 0 && laneA < lanes);
+		}
+	}
+	
+}
@@ -9,6 +9,7 @@ import org.junit.runners.Suite.SuiteClasses;
 @RunWith(Suite.class)
 @SuiteClasses({ 
 	FileServerTest.class,
+	FileServerThreadTest.class,
 	AddressBuilderTest.class,
 	RequestHandlerTest.class,
 	XmlRequestTest.class,
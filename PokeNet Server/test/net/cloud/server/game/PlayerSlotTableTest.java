@@ -0,0 +1,105 @@
+package net.cloud.server.game;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.cloud.server.entity.player.Player;
+import net.cloud.server.entity.player.PlayerFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/** Making sure slots are handed out, reused and walked over as they should be */
+public class PlayerSlotTableTest {
+
+	/** Slots in the table being tested */
+	private static final int CAPACITY = 4;
+
+	/** A fresh table for each test */
+	private PlayerSlotTable table;
+
+	// Players to put in it
+	private final Player p1 = PlayerFactory.createNewPlayer("Alice", "1234");
+	private final Player p2 = PlayerFactory.createNewPlayer("Bob", "password");
+	private final Player p3 = PlayerFactory.createNewPlayer("Charles", "apple");
+
+	@Before
+	public void before()
+	{
+		table = new PlayerSlotTable(CAPACITY);
+	}
+
+	/**
+	 * Slots are handed out from the front, and released ones are handed out again first
+	 */
+	@Test
+	public void testClaimRelease()
+	{
+		assertEquals(0, table.claim(p1));
+		assertEquals(1, table.claim(p2));
+		assertEquals(2, table.claim(p3));
+		assertEquals(3, table.size());
+
+		assertTrue(table.get(1) == p2);
+
+		// Only the player in the slot can release it
+		assertFalse(table.release(1, p1));
+		assertTrue(table.release(1, p2));
+		assertFalse(table.release(1, p2));
+		assertNull(table.get(1));
+		assertEquals(2, table.size());
+
+		assertEquals(1, table.claim(p2));
+
+		// Nothing out of range
+		assertNull(table.get(-1));
+		assertNull(table.get(CAPACITY));
+		assertFalse(table.release(PlayerSlotTable.NO_SLOT, p1));
+	}
+
+	/**
+	 * Once every slot is taken, there are no more to give
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testFull()
+	{
+		for(int i = 0; i <= CAPACITY; ++i)
+		{
+			table.claim(p1);
+		}
+	}
+
+	/**
+	 * Going over the table should skip empty slots, in slot order
+	 */
+	@Test
+	public void testForEach()
+	{
+		table.claim(p1);
+		table.claim(p2);
+		table.claim(p3);
+		table.release(1, p2);
+
+		List<Player> seen = new ArrayList<>();
+		table.forEach(seen::add);
+
+		assertEquals(2, seen.size());
+		assertTrue(seen.get(0) == p1);
+		assertTrue(seen.get(1) == p3);
+
+		assertTrue(table.search((p) -> p.getUsername().equals("Charles")) == p3);
+		assertNull(table.search((p) -> p.getUsername().equals("Bob")));
+	}
+
+	/**
+	 * The capacity has to make sense, and fit slot indices in 2 bytes
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testBadCapacity()
+	{
+		new PlayerSlotTable(PlayerSlotTable.MAX_CAPACITY + 1);
+	}
+
+}
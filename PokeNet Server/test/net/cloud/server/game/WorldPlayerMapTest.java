@@ -75,6 +75,79 @@ public class WorldPlayerMapTest {
 		assertFalse(map.hasMatchingPlayer((p) -> p.getUsername().equals("not anyones username")));
 	}
 	
+	/**
+	 * Usernames should be found no matter their case, and only while someone holds them
+	 */
+	@Test
+	public void testUsernameIndex()
+	{
+		assertTrue(map.get(user1) == p1);
+		assertTrue(map.get(user2.toUpperCase()) == p2);
+		assertTrue(map.hasUsername(user3.toLowerCase()));
+		
+		assertNull(map.get("not anyones username"));
+		assertFalse(map.hasUsername("not anyones username"));
+	}
+	
+	/**
+	 * A reserved username can't be taken by anyone else, and is free again once released
+	 */
+	@Test
+	public void testReserve()
+	{
+		Player first = PlayerFactory.createNewPlayer("Dana", pass1);
+		Player second = PlayerFactory.createNewPlayer("DANA", pass2);
+		
+		// Online players already have theirs
+		assertFalse(map.reserve(PlayerFactory.createNewPlayer(user1.toUpperCase(), pass1)));
+		
+		assertTrue(map.reserve(first));
+		assertTrue(map.reserve(first));
+		assertFalse(map.reserve(second));
+		assertTrue(map.hasUsername("dana"));
+		
+		// Only the holder can let it go
+		map.release(second);
+		assertTrue(map.get("Dana") == first);
+		
+		map.release(first);
+		assertFalse(map.hasUsername("Dana"));
+		assertTrue(map.reserve(second));
+		map.release(second);
+	}
+	
+	/**
+	 * Removing a player from the map frees their username
+	 */
+	@Test
+	public void testRemoveFreesUsername()
+	{
+		Channel ch4 = EasyMock.createMock(Channel.class);
+		Player p4 = PlayerFactory.createNewPlayer("Eve", pass3);
+		
+		assertTrue(map.reserve(p4));
+		map.place(ch4, p4);
+		assertTrue(map.get("eve") == p4);
+		
+		map.remove(ch4);
+		assertFalse(map.hasUsername("Eve"));
+		assertNull(map.get(ch4));
+	}
+	
+	/**
+	 * Everyone in the map has their own slot, and can be found by it
+	 */
+	@Test
+	public void testSlots()
+	{
+		assertTrue(p1.getSlot() != PlayerSlotTable.NO_SLOT);
+		assertTrue(p1.getSlot() != p2.getSlot() && p2.getSlot() != p3.getSlot() && p1.getSlot() != p3.getSlot());
+		
+		assertTrue(map.get(p1.getSlot()) == p1);
+		assertTrue(map.get(p3.getSlot()) == p3);
+		assertEquals(3, map.size());
+	}
+	
 	@AfterClass
 	public static void afterClass()
 	{
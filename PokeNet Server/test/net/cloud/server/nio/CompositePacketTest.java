@@ -0,0 +1,104 @@
+package net.cloud.server.nio;
+
+import static org.junit.Assert.*;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import net.cloud.server.entity.player.LoginResponse;
+import net.cloud.server.nio.packet.PacketConstants;
+import net.cloud.server.nio.packet.ProtocolVersion;
+import net.cloud.server.nio.packet.packets.CompositePacket;
+import net.cloud.server.nio.packet.packets.LogoutPacket;
+import net.cloud.server.nio.packet.packets.ShowMessageDialogPacket;
+import net.cloud.server.nio.packet.packets.LoginPacket.LoginResponsePacket;
+
+import org.junit.Test;
+
+/** The gathered encoding of a composite has to match what PacketEncoder would have produced */
+public class CompositePacketTest {
+
+	/** @return A composite of a few packets that all know their size */
+	private static CompositePacket testPacket()
+	{
+		return new CompositePacket(new LoginResponsePacket(LoginResponse.OKAY), 
+				new ShowMessageDialogPacket("title", "message"), 
+				new LogoutPacket());
+	}
+
+	@Test
+	public void testMatchesFlatEncoding() {
+		CompositePacket packet = testPacket();
+		ByteBuf flat = Unpooled.buffer();
+		ByteBuf gathered = null;
+
+		try {
+			// What PacketEncoder would write
+			flat.writeShort(packet.getOpcode());
+			packet.encode(flat);
+
+			gathered = packet.encodeComposite(UnpooledByteBufAllocator.DEFAULT);
+
+			assertTrue(ByteBufUtil.equals(flat, gathered));
+		} catch (Exception e) {
+			fail("No exceptions expected");
+		} finally {
+			flat.release();
+			if(gathered != null)
+			{
+				gathered.release();
+			}
+		}
+	}
+
+	@Test
+	public void testMatchesFlatEncodingV2() {
+		// The nested composite doesn't know its size, so it gets its length field some other way
+		CompositePacket packet = new CompositePacket(testPacket(), new LogoutPacket());
+		ByteBuf flat = Unpooled.buffer();
+		ByteBuf gathered = null;
+
+		try {
+			ProtocolVersion.V2.writeOpcode(flat, packet.getOpcode(), false);
+			packet.encode(flat, ProtocolVersion.V2);
+
+			gathered = packet.encodeComposite(UnpooledByteBufAllocator.DEFAULT, ProtocolVersion.V2);
+
+			assertTrue(ByteBufUtil.equals(flat, gathered));
+		} catch (Exception e) {
+			fail("No exceptions expected");
+		} finally {
+			flat.release();
+			if(gathered != null)
+			{
+				gathered.release();
+			}
+		}
+	}
+
+	@Test
+	public void testExactSize() {
+		CompositePacket packet = testPacket();
+		ByteBuf gathered = null;
+
+		try {
+			gathered = packet.encodeComposite(UnpooledByteBufAllocator.DEFAULT);
+
+			// Header, then length + opcode + data for each of the three
+			int header = PacketConstants.OPCODE_LENGTH + 4;
+			int perPacket = PacketConstants.LENGTH_FIELD_LENGTH + PacketConstants.OPCODE_LENGTH;
+			int expected = header + (perPacket + 4) + (perPacket + "title".length() + 1 + "message".length() + 1) + (perPacket + 4);
+
+			assertEquals(expected, gathered.readableBytes());
+			assertEquals(expected, gathered.capacity());
+		} catch (Exception e) {
+			fail("No exceptions expected");
+		} finally {
+			if(gathered != null)
+			{
+				gathered.release();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,102 @@
+package net.cloud.server.nio;
+
+import static org.junit.Assert.*;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import org.junit.Test;
+
+/** New connections are turned away before they're initialized once a limit is hit, and let in again once it isn't */
+public class ConnectionAdmissionHandlerTest {
+
+	/**
+	 * Hand a new connection to the server channel, the way the accept loop would
+	 * @param server The server channel with the admission handler on it
+	 * @return The connection. Every embedded channel has the same remote address
+	 */
+	private static EmbeddedChannel accept(EmbeddedChannel server)
+	{
+		EmbeddedChannel child = new EmbeddedChannel();
+		server.writeInbound(child);
+
+		return child;
+	}
+
+	/**
+	 * Check a connection was let in - passed on, and still open
+	 * @param server The server channel with the admission handler on it
+	 * @param child The connection
+	 */
+	private static void assertAdmitted(EmbeddedChannel server, EmbeddedChannel child)
+	{
+		assertSame(child, server.readInbound());
+		assertTrue(child.isOpen());
+	}
+
+	/**
+	 * Check a connection was turned away - not passed on, and closed
+	 * @param server The server channel with the admission handler on it
+	 * @param child The connection
+	 */
+	private static void assertRejected(EmbeddedChannel server, EmbeddedChannel child)
+	{
+		assertNull(server.readInbound());
+		assertFalse(child.isOpen());
+	}
+
+	@Test
+	public void testPerAddress() {
+		ConnectionAdmissionHandler handler = new ConnectionAdmissionHandler(100, 2, 1000, 1000);
+		EmbeddedChannel server = new EmbeddedChannel(handler);
+
+		EmbeddedChannel first = accept(server);
+		assertAdmitted(server, first);
+		assertAdmitted(server, accept(server));
+		assertRejected(server, accept(server));
+		assertEquals(2, handler.getConnections());
+
+		// Closing one makes room for another
+		first.close();
+		assertEquals(1, handler.getConnections());
+		assertAdmitted(server, accept(server));
+
+		server.finish();
+	}
+
+	@Test
+	public void testGlobal() {
+		ConnectionAdmissionHandler handler = new ConnectionAdmissionHandler(3, 100, 1000, 1000);
+		EmbeddedChannel server = new EmbeddedChannel(handler);
+
+		for(int i = 0; i < 3; ++i)
+		{
+			assertAdmitted(server, accept(server));
+		}
+		assertRejected(server, accept(server));
+		assertEquals(3, handler.getConnections());
+
+		server.finish();
+	}
+
+	@Test
+	public void testRate() {
+		// Refills so slowly it may as well not
+		ConnectionAdmissionHandler handler = new ConnectionAdmissionHandler(100, 100, 0.001, 4);
+		EmbeddedChannel server = new EmbeddedChannel(handler);
+
+		// A burst gets in, even if they close right away
+		for(int i = 0; i < 4; ++i)
+		{
+			EmbeddedChannel child = accept(server);
+			assertAdmitted(server, child);
+			child.close();
+		}
+
+		// The next one is too soon
+		assertRejected(server, accept(server));
+		assertEquals(0, handler.getConnections());
+
+		server.finish();
+	}
+
+}
@@ -0,0 +1,54 @@
+package net.cloud.server.nio;
+
+import static org.junit.Assert.*;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import net.cloud.server.ConfigConstants;
+import net.cloud.server.nio.packet.InboundRateLimiter;
+import net.cloud.server.nio.packet.PacketConstants;
+import net.cloud.server.nio.packet.TrafficClass;
+import net.cloud.server.nio.packet.packets.TestPacket;
+
+import org.junit.Test;
+
+/** A connection over its packet rate stops being read from, and one that keeps going is cut off */
+public class InboundRateLimiterTest {
+
+	@Test
+	public void testClasses() {
+		assertEquals(TrafficClass.LOGIN, TrafficClass.of(PacketConstants.LOGIN));
+		assertEquals(TrafficClass.ACTION, TrafficClass.of(PacketConstants.BUTTON_ACTION));
+		assertEquals(TrafficClass.GENERAL, TrafficClass.of(PacketConstants.TEST));
+	}
+
+	@Test
+	public void testThrottleThenClose() {
+		EmbeddedChannel channel = new EmbeddedChannel(new InboundRateLimiter());
+		int burst = ConfigConstants.RATE_GENERAL_BURST;
+
+		// A whole burst is fine
+		for(int i = 0; i < burst; ++i)
+		{
+			channel.writeInbound(new TestPacket(i));
+		}
+		assertTrue(channel.config().isAutoRead());
+
+		// One more and reading stops, though the packet still gets through
+		channel.writeInbound(new TestPacket(burst));
+		assertFalse(channel.config().isAutoRead());
+		for(int i = 0; i <= burst; ++i)
+		{
+			assertNotNull(channel.readInbound());
+		}
+
+		// Keep sending anyways, and the connection is closed
+		for(int i = 0; i < 2 * burst && channel.isOpen(); ++i)
+		{
+			channel.writeInbound(new TestPacket(i));
+		}
+		assertFalse(channel.isOpen());
+
+		channel.finishAndReleaseAll();
+	}
+
+}
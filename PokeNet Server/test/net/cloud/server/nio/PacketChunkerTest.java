@@ -0,0 +1,167 @@
+package net.cloud.server.nio;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import net.cloud.server.ConfigConstants;
+import net.cloud.server.nio.packet.PacketChunker;
+import net.cloud.server.nio.packet.PacketConstants;
+
+import org.junit.Test;
+
+/** Packets bigger than a frame go out in chunks, a round at a time, with other packets in between */
+public class PacketChunkerTest {
+
+	/**
+	 * Some random bytes, standing in for an encoded packet
+	 * @param length How many bytes
+	 * @return The packet
+	 */
+	private static ByteBuf packet(int length)
+	{
+		byte[] bytes = new byte[length];
+		new Random(length).nextBytes(bytes);
+
+		return Unpooled.wrappedBuffer(bytes);
+	}
+
+	/**
+	 * Read a chunk's V1 header and check it's what it should be
+	 * @param chunk A chunk that was written out
+	 * @param id The stream id it should have
+	 * @param sequence The sequence number it should have
+	 * @param totalLength The total length it should have
+	 */
+	private static void assertHeader(ByteBuf chunk, int id, int sequence, int totalLength)
+	{
+		assertEquals(PacketConstants.CHUNK, chunk.readShort());
+		assertEquals(id, chunk.readInt());
+		assertEquals(sequence, chunk.readInt());
+		assertEquals(totalLength, chunk.readInt());
+		assertTrue(chunk.readableBytes() <= PacketConstants.CHUNK_DATA_LENGTH);
+	}
+
+	@Test
+	public void testSmallPassesThrough() {
+		EmbeddedChannel channel = new EmbeddedChannel(new PacketChunker());
+		ByteBuf small = packet(PacketConstants.MAX_PACKET_LENGTH);
+
+		channel.writeOutbound(small.retain());
+
+		// Not touched at all
+		assertSame(small, channel.readOutbound());
+		assertNull(channel.readOutbound());
+
+		small.release(2);
+		channel.finish();
+	}
+
+	@Test
+	public void testChunksAddUp() {
+		EmbeddedChannel channel = new EmbeddedChannel(new PacketChunker());
+		ByteBuf large = packet(10000);
+		ByteBuf expected = large.copy();
+
+		channel.writeOutbound(large);
+
+		// Fits in one round, so every chunk should be out already
+		ByteBuf reassembled = Unpooled.buffer();
+		ByteBuf chunk;
+		int sequence = 0;
+		while((chunk = (ByteBuf) channel.readOutbound()) != null)
+		{
+			assertHeader(chunk, 0, sequence++, 10000);
+			reassembled.writeBytes(chunk);
+			chunk.release();
+		}
+
+		assertEquals(3, sequence);
+		assertTrue(ByteBufUtil.equals(expected, reassembled));
+		assertEquals(0, large.refCnt());
+
+		channel.finish();
+	}
+
+	@Test
+	public void testInterleaved() {
+		// Chunks are kept short of the channel itself, since its flush would run every round left on the event loop
+		Captured captured = new Captured();
+		EmbeddedChannel channel = new EmbeddedChannel(captured, new PacketChunker());
+		int length = 2 * ConfigConstants.CHUNK_BYTES_PER_FLUSH;
+
+		// Two big ones take turns
+		channel.write(packet(length));
+		channel.write(packet(length));
+		channel.flush();
+
+		int rounds = ConfigConstants.CHUNK_BYTES_PER_FLUSH / PacketConstants.CHUNK_DATA_LENGTH + 1;
+		for(int i = 0; i < rounds; ++i)
+		{
+			ByteBuf chunk = (ByteBuf) captured.written.poll();
+			assertHeader(chunk, i % 2, i / 2, length);
+			chunk.release();
+		}
+		assertNull(captured.written.poll());
+
+		// A small packet sent now goes out ahead of the rest of the chunks
+		ByteBuf small = packet(16);
+		channel.writeAndFlush(small);
+		assertSame(small, captured.written.poll());
+		small.release();
+
+		// That flush sent another round along behind it
+		ByteBuf chunk;
+		while((chunk = (ByteBuf) captured.written.poll()) != null)
+		{
+			assertEquals(PacketConstants.CHUNK, chunk.getShort(chunk.readerIndex()));
+			chunk.release();
+		}
+
+		// And without any more flushes, the next round follows on the event loop
+		channel.runPendingTasks();
+		chunk = (ByteBuf) captured.written.poll();
+		assertNotNull(chunk);
+		chunk.release();
+
+		// Whatever was still waiting is let go
+		while((chunk = (ByteBuf) captured.written.poll()) != null)
+		{
+			chunk.release();
+		}
+		assertFalse(channel.finish());
+	}
+
+
+	/**
+	 * Keeps whatever is written to it rather than passing it on
+	 */
+	private static class Captured extends ChannelOutboundHandlerAdapter {
+
+		/** Everything written, oldest first */
+		private final ArrayDeque<Object> written = new ArrayDeque<>();
+
+		@Override
+		public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+		{
+			written.add(msg);
+			promise.trySuccess();
+		}
+
+		@Override
+		public void flush(ChannelHandlerContext ctx)
+		{
+			// Nothing reaches the channel
+		}
+
+	}
+
+}
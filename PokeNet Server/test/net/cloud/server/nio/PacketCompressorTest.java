@@ -0,0 +1,118 @@
+package net.cloud.server.nio;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import net.cloud.server.nio.packet.LengthPrepender;
+import net.cloud.server.nio.packet.PacketCompressor;
+import net.cloud.server.nio.packet.PacketConstants;
+import net.cloud.server.nio.packet.PacketDecoder;
+import net.cloud.server.nio.packet.ProtocolVersion;
+import net.cloud.server.nio.packet.packets.LoginPacket.LoginDataRequestPacket;
+
+import org.junit.Test;
+
+/** Packets compressed on the way out should come back out of PacketDecoder the same as ever */
+public class PacketCompressorTest {
+	
+	/** Anything at least this big gets compressed in these tests */
+	private static final int THRESHOLD = 64;
+
+	/**
+	 * Run an encoded packet (opcode and data) out through the compressor and length prepender
+	 * @param packet The encoded packet
+	 * @return The bytes that would have gone to the socket
+	 */
+	private static ByteBuf sendThrough(ByteBuf packet)
+	{
+		EmbeddedChannel channel = new EmbeddedChannel(new LengthPrepender(), new PacketCompressor(THRESHOLD));
+		channel.writeOutbound(packet);
+		
+		ByteBuf wire = Unpooled.buffer();
+		ByteBuf part;
+		while((part = (ByteBuf) channel.readOutbound()) != null)
+		{
+			wire.writeBytes(part);
+			part.release();
+		}
+		channel.finish();
+		
+		return wire;
+	}
+	
+	/**
+	 * Make a login data request with some extra data on the end of it, which the packet won't read
+	 * @param extra The extra data
+	 * @return The encoded packet
+	 */
+	private static ByteBuf dataRequest(byte[] extra)
+	{
+		ByteBuf packet = Unpooled.buffer();
+		packet.writeShort(PacketConstants.LOGIN_DATA_REQUEST);
+		packet.writeInt(0);
+		packet.writeBytes(extra);
+		
+		return packet;
+	}
+
+	@Test
+	public void testCompressedRoundTrip() {
+		// Zeros compress about as well as anything can
+		ByteBuf wire = sendThrough(dataRequest(new byte[1000]));
+		
+		// The opcode is flagged, and the whole thing is a lot smaller
+		assertTrue((wire.getShort(PacketConstants.LENGTH_FIELD_LENGTH) & PacketConstants.COMPRESSED_FLAG) != 0);
+		assertTrue(wire.readableBytes() < 100);
+		
+		EmbeddedChannel channel = new EmbeddedChannel(new PacketDecoder());
+		channel.writeInbound(wire);
+		
+		assertTrue(channel.readInbound() instanceof LoginDataRequestPacket);
+		assertNull(channel.readInbound());
+		channel.finish();
+	}
+	
+	@Test
+	public void testIncompressibleSentAsIs() {
+		byte[] noise = new byte[1000];
+		new Random(42).nextBytes(noise);
+		
+		ByteBuf wire = sendThrough(dataRequest(noise));
+		
+		// Random bytes don't shrink, so the packet goes out like it would have without compression
+		assertEquals(PacketConstants.LOGIN_DATA_REQUEST, wire.getShort(PacketConstants.LENGTH_FIELD_LENGTH));
+		assertEquals(PacketConstants.LENGTH_FIELD_LENGTH + PacketConstants.OPCODE_LENGTH + 4 + noise.length, wire.readableBytes());
+	}
+	
+	@Test
+	public void testSharedCompressedOnce() throws Exception {
+		// Compressed up front, the way a broadcast is
+		ByteBuf shared = PacketCompressor.compressShared(dataRequest(new byte[1000]), ProtocolVersion.V1, THRESHOLD);
+		assertTrue((shared.getShort(0) & PacketConstants.COMPRESSED_FLAG) != 0);
+		
+		int sharedLength = shared.readableBytes();
+		ByteBuf wire = sendThrough(shared.duplicate().retain());
+		
+		// The channel's compressor leaves it be, so it only gains the length
+		assertEquals(PacketConstants.LENGTH_FIELD_LENGTH + sharedLength, wire.readableBytes());
+		shared.release();
+		
+		EmbeddedChannel channel = new EmbeddedChannel(new PacketDecoder());
+		channel.writeInbound(wire);
+		
+		assertTrue(channel.readInbound() instanceof LoginDataRequestPacket);
+		channel.finish();
+	}
+	
+	@Test
+	public void testSmallSentAsIs() {
+		ByteBuf wire = sendThrough(dataRequest(new byte[THRESHOLD / 2]));
+		
+		assertEquals(PacketConstants.LOGIN_DATA_REQUEST, wire.getShort(PacketConstants.LENGTH_FIELD_LENGTH));
+	}
+
+}
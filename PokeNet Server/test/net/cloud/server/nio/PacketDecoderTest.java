@@ -0,0 +1,100 @@
+package net.cloud.server.nio;
+
+import static org.junit.Assert.*;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DecoderException;
+import net.cloud.server.nio.packet.Packet;
+import net.cloud.server.nio.packet.PacketConstants;
+import net.cloud.server.nio.packet.PacketDecoder;
+import net.cloud.server.nio.packet.packets.PacketManager;
+import net.cloud.server.nio.packet.packets.LoginPacket.LoginDataRequestPacket;
+
+import org.junit.Test;
+
+/** Framing and decoding in one handler, plus the packet pooling that goes along with it */
+public class PacketDecoderTest {
+
+	/**
+	 * Write a LoginDataRequestPacket frame. It's the simplest packet there is - just a dummy int
+	 * @param buffer Where the frame goes
+	 * @param extra How many unread bytes to pad the frame with
+	 * @return The same buffer
+	 */
+	private static ByteBuf dataRequestFrame(ByteBuf buffer, int extra)
+	{
+		buffer.writeShort(PacketConstants.OPCODE_LENGTH + 4 + extra);
+		buffer.writeShort(PacketConstants.LOGIN_DATA_REQUEST);
+		buffer.writeInt(0);
+		buffer.writeZero(extra);
+
+		return buffer;
+	}
+
+	@Test
+	public void testSplitFrame() {
+		EmbeddedChannel channel = new EmbeddedChannel(new PacketDecoder());
+		ByteBuf frame = dataRequestFrame(Unpooled.buffer(), 0);
+
+		// Only part of the packet has shown up, nothing should come out yet
+		channel.writeInbound(frame.readBytes(3));
+		assertNull(channel.readInbound());
+
+		// The rest of it arrives
+		channel.writeInbound(frame);
+		assertTrue(channel.readInbound() instanceof LoginDataRequestPacket);
+		assertNull(channel.readInbound());
+
+		channel.finish();
+	}
+
+	@Test
+	public void testBackToBack() {
+		EmbeddedChannel channel = new EmbeddedChannel(new PacketDecoder());
+
+		// Two packets in one read, the first with bytes it won't read. They can't spill into the second
+		ByteBuf frames = dataRequestFrame(dataRequestFrame(Unpooled.buffer(), 3), 0);
+		channel.writeInbound(frames);
+
+		assertTrue(channel.readInbound() instanceof LoginDataRequestPacket);
+		assertTrue(channel.readInbound() instanceof LoginDataRequestPacket);
+		assertNull(channel.readInbound());
+
+		channel.finish();
+	}
+
+	@Test(expected = DecoderException.class)
+	public void testTooLong() {
+		EmbeddedChannel channel = new EmbeddedChannel(new PacketDecoder());
+
+		ByteBuf frame = Unpooled.buffer();
+		frame.writeShort(PacketConstants.MAX_PACKET_LENGTH + 1);
+
+		channel.writeInbound(frame);
+	}
+
+	@Test
+	public void testButtonActionRecycled() {
+		// Button id, no arguments, no argument bytes
+		ByteBuf data = Unpooled.buffer();
+		data.writeInt(0).writeInt(0).writeInt(0);
+		data.writeInt(0).writeInt(0).writeInt(0);
+
+		try {
+			Packet first = PacketManager.decodeCopy(PacketConstants.BUTTON_ACTION, data);
+			first.discard();
+			first.recycle();
+
+			// Same thread, so the pool should hand the same object right back
+			Packet second = PacketManager.decodeCopy(PacketConstants.BUTTON_ACTION, data);
+			assertSame(first, second);
+
+			second.discard();
+			second.recycle();
+		} catch (Exception e) {
+			fail("No exceptions expected");
+		}
+	}
+
+}
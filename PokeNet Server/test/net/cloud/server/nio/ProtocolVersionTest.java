@@ -0,0 +1,140 @@
+package net.cloud.server.nio;
+
+import static org.junit.Assert.*;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import net.cloud.server.nio.bufferable.BufferableException;
+import net.cloud.server.nio.bufferable.VarInt;
+import net.cloud.server.nio.packet.LengthPrepender;
+import net.cloud.server.nio.packet.PacketCompressor;
+import net.cloud.server.nio.packet.PacketConstants;
+import net.cloud.server.nio.packet.PacketDecoder;
+import net.cloud.server.nio.packet.ProtocolHandshakeHandler;
+import net.cloud.server.nio.packet.ProtocolVersion;
+import net.cloud.server.nio.packet.packets.LoginPacket.LoginDataRequestPacket;
+
+import org.junit.Test;
+
+/** VarInts should survive the trip, and the handshake should leave each channel on the right version */
+public class ProtocolVersionTest {
+
+	/** Values around every size boundary, and the extremes */
+	private static final int[] VALUES = { 0, 1, 127, 128, 16383, 16384, 2097151, 2097152, Integer.MAX_VALUE, -1, Integer.MIN_VALUE };
+
+	@Test
+	public void testVarIntRoundTrip() throws BufferableException {
+		for(int value : VALUES)
+		{
+			ByteBuf buffer = Unpooled.buffer();
+			VarInt.write(buffer, value);
+
+			assertEquals(VarInt.sizeOf(value), buffer.readableBytes());
+			assertEquals(buffer.readableBytes(), VarInt.peekSize(buffer));
+			assertEquals(value, VarInt.get(buffer, 0));
+			assertEquals(value, VarInt.read(buffer));
+
+			VarInt.writeSigned(buffer, value);
+			assertEquals(value, VarInt.readSigned(buffer));
+		}
+	}
+
+	@Test
+	public void testSmallNegativesStaySmall() {
+		assertEquals(1, VarInt.sizeOf(VarInt.zigZag(-1)));
+		assertEquals(1, VarInt.sizeOf(VarInt.zigZag(-64)));
+		assertEquals(5, VarInt.sizeOf(-1));
+	}
+
+	@Test
+	public void testPeekIncomplete() throws BufferableException {
+		ByteBuf buffer = Unpooled.buffer();
+		buffer.writeByte(0x80);
+
+		assertEquals(0, VarInt.peekSize(buffer));
+	}
+
+	@Test(expected = BufferableException.class)
+	public void testTooLong() throws BufferableException {
+		ByteBuf buffer = Unpooled.buffer();
+		buffer.writeBytes(new byte[] { (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0 });
+
+		VarInt.read(buffer);
+	}
+
+	@Test
+	public void testNegotiate() {
+		assertNull(ProtocolVersion.negotiate(0));
+		assertSame(ProtocolVersion.V1, ProtocolVersion.negotiate(1));
+		assertSame(ProtocolVersion.V2, ProtocolVersion.negotiate(2));
+		assertSame(ProtocolVersion.LATEST, ProtocolVersion.negotiate(100));
+	}
+
+	@Test
+	public void testHandshake() {
+		EmbeddedChannel channel = new EmbeddedChannel(new ProtocolHandshakeHandler(), new PacketDecoder());
+
+		// The handshake and the first V2 packet arrive together. A data request is only its opcode now
+		ByteBuf in = Unpooled.buffer();
+		in.writeByte(ProtocolVersion.HANDSHAKE_MAGIC);
+		in.writeByte(ProtocolVersion.V2.number());
+		VarInt.write(in, 1);
+		VarInt.write(in, PacketConstants.LOGIN_DATA_REQUEST << 1);
+		channel.writeInbound(in);
+
+		assertSame(ProtocolVersion.V2, ProtocolVersion.of(channel));
+
+		ByteBuf reply = (ByteBuf) channel.readOutbound();
+		assertEquals(ProtocolVersion.HANDSHAKE_MAGIC, reply.readByte());
+		assertEquals(ProtocolVersion.V2.number(), reply.readByte());
+		reply.release();
+
+		assertTrue(channel.readInbound() instanceof LoginDataRequestPacket);
+		assertNull(channel.pipeline().get(ProtocolHandshakeHandler.class));
+		channel.finish();
+	}
+
+	@Test
+	public void testNoHandshake() {
+		EmbeddedChannel channel = new EmbeddedChannel(new ProtocolHandshakeHandler(), new PacketDecoder());
+
+		// Exactly what an old client sends
+		ByteBuf in = Unpooled.buffer();
+		in.writeShort(PacketConstants.OPCODE_LENGTH + 4);
+		in.writeShort(PacketConstants.LOGIN_DATA_REQUEST);
+		in.writeInt(0);
+		channel.writeInbound(in);
+
+		assertSame(ProtocolVersion.V1, ProtocolVersion.of(channel));
+		assertNull(channel.readOutbound());
+		assertTrue(channel.readInbound() instanceof LoginDataRequestPacket);
+		channel.finish();
+	}
+
+	@Test
+	public void testCompressedV2RoundTrip() {
+		EmbeddedChannel out = new EmbeddedChannel(new LengthPrepender(), new PacketCompressor(64));
+		out.attr(ProtocolVersion.KEY).set(ProtocolVersion.V2);
+
+		// Opcode and a pile of zeros the packet won't read
+		ByteBuf packet = Unpooled.buffer();
+		VarInt.write(packet, PacketConstants.LOGIN_DATA_REQUEST << 1);
+		packet.writeZero(1000);
+		out.writeOutbound(packet);
+
+		EmbeddedChannel in = new EmbeddedChannel(new PacketDecoder());
+		in.attr(ProtocolVersion.KEY).set(ProtocolVersion.V2);
+
+		ByteBuf part;
+		while((part = (ByteBuf) out.readOutbound()) != null)
+		{
+			in.writeInbound(part);
+		}
+
+		assertTrue(in.readInbound() instanceof LoginDataRequestPacket);
+		out.finish();
+		in.finish();
+	}
+
+}
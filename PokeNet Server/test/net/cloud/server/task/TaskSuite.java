@@ -6,7 +6,8 @@ import org.junit.runners.Suite.SuiteClasses;
 
 @RunWith(Suite.class)
 @SuiteClasses({
-	TaskTest.class
+	TaskTest.class,
+	TimeoutServiceTest.class
 })
 public class TaskSuite {
 
@@ -0,0 +1,51 @@
+package net.cloud.server.task;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import net.cloud.server.event.task.TimeoutService;
+import net.cloud.server.game.GameEngine;
+import io.netty.util.Timeout;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/** Timeouts go off on the world thread, unless they're cancelled first */
+public class TimeoutServiceTest {
+
+	@Test
+	public void testGoesOffOnWorldThread() throws InterruptedException
+	{
+		CountDownLatch latch = new CountDownLatch(1);
+		AtomicBoolean onWorldThread = new AtomicBoolean(false);
+
+		TimeoutService.instance().schedule(50, () ->
+		{
+			onWorldThread.set(GameEngine.instance().inWorldThread());
+			latch.countDown();
+		});
+
+		assertTrue("Timeout should have gone off", latch.await(5, TimeUnit.SECONDS));
+		assertTrue(onWorldThread.get());
+	}
+
+	@Test
+	public void testCancelled() throws InterruptedException
+	{
+		AtomicBoolean ran = new AtomicBoolean(false);
+
+		Timeout timeout = TimeoutService.instance().schedule(200, () -> ran.set(true));
+		assertTrue(timeout.cancel());
+
+		// Wait well past when it would have gone off, then once more for the world thread
+		CountDownLatch after = new CountDownLatch(1);
+		TimeoutService.instance().schedule(500, after::countDown);
+		assertTrue(after.await(5, TimeUnit.SECONDS));
+
+		assertFalse(ran.get());
+		assertTrue(timeout.isCancelled());
+	}
+
+}
@@ -0,0 +1,54 @@
+package net.cloud.server.tracking;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/** Durations land in power of two buckets, and percentiles come out as the top of their bucket */
+public class LatencyHistogramTest {
+
+	@Test
+	public void testBuckets() {
+		assertEquals(0, LatencyHistogram.bucketOf(0));
+		assertEquals(0, LatencyHistogram.bucketOf(999));
+		assertEquals(1, LatencyHistogram.bucketOf(1_000));
+		assertEquals(2, LatencyHistogram.bucketOf(2_000));
+		assertEquals(2, LatencyHistogram.bucketOf(3_999));
+		assertEquals(3, LatencyHistogram.bucketOf(4_000));
+
+		// Anything very long goes in the last one
+		assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getPercentileMicros(50));
+
+		// 99 quick ones, and one slow one
+		for(int i = 0; i < 99; ++i)
+		{
+			histogram.record(1_500);
+		}
+		histogram.record(100_000);
+
+		assertEquals(100, histogram.getCount());
+		assertEquals(2, histogram.getPercentileMicros(50));
+		assertEquals(2, histogram.getPercentileMicros(99));
+		assertEquals(128, histogram.getPercentileMicros(99.9));
+		assertEquals(2.485, histogram.getAverageMicros(), 0.0001);
+	}
+
+	@Test
+	public void testCloneIndependent() throws CloneNotSupportedException {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(10_000);
+
+		LatencyHistogram copy = histogram.clone();
+		histogram.record(10_000);
+
+		assertEquals(1, copy.getCount());
+		assertEquals(2, histogram.getCount());
+	}
+
+}
@@ -0,0 +1,38 @@
+package net.cloud.server.util;
+
+import static org.junit.Assert.*;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import org.junit.Test;
+
+/** Tokens only match themselves, including after a trip through a buffer */
+public class ResumeTokenTest {
+
+	@Test
+	public void testMatches() {
+		ResumeToken token = ResumeToken.generate();
+		ResumeToken other = ResumeToken.generate();
+
+		assertTrue(token.matches(token));
+		assertFalse(token.matches(other));
+		assertFalse(token.matches(null));
+	}
+
+	@Test
+	public void testSaveRestore() {
+		ResumeToken token = ResumeToken.generate();
+
+		ByteBuf buffer = Unpooled.buffer();
+		token.save(buffer);
+		assertEquals(ResumeToken.LENGTH, buffer.readableBytes());
+
+		ResumeToken restored = ResumeToken.createFrom(buffer);
+		assertTrue(token.matches(restored));
+		assertEquals(0, buffer.readableBytes());
+
+		buffer.release();
+	}
+
+}
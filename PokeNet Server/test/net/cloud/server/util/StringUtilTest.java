@@ -1,6 +1,12 @@
 package net.cloud.server.util;
 
 import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import net.cloud.server.util.StringUtil;
 
 import org.junit.Test;
@@ -80,4 +86,59 @@ public class StringUtilTest {
 		assertTrue(StringUtil.isAlphaNumericSpecial(t4));
 	}
 
+
+	@Test
+	public void testBufferRoundTrip() {
+		// Plain, accented, and one outside the BMP (a surrogate pair)
+		String[] strings = { "", "Ash_Ketchum", "Pok\u00e9mon", "\u30dd\u30b1\u30e2\u30f3", "\ud83d\ude00 smile" };
+		
+		for(String string : strings)
+		{
+			ByteBuf buf = Unpooled.buffer();
+			StringUtil.writeStringToBuffer(string, buf);
+			assertEquals(StringUtil.getNumBytesInString(string), buf.readableBytes());
+			assertEquals(string, StringUtil.getFromBuffer(buf));
+			assertFalse(buf.isReadable());
+			
+			// And again through a direct buffer, which can't be read out of an array
+			ByteBuf direct = Unpooled.directBuffer();
+			StringUtil.writeStringToBuffer(string, direct);
+			assertEquals(string, StringUtil.getFromBuffer(direct));
+			direct.release();
+			
+			ByteBuffer buffer = ByteBuffer.allocate(64);
+			StringUtil.writeStringToBuffer(string, buffer);
+			assertEquals(StringUtil.getNumBytesInString(string), buffer.position());
+			buffer.flip();
+			assertEquals(string, StringUtil.getFromBuffer(buffer));
+			assertEquals(buffer.limit(), buffer.position());
+		}
+	}
+	
+	@Test
+	public void testAsciiUnchanged() {
+		// Whatever was written before UTF-8 has to read back the same
+		ByteBuf buf = Unpooled.buffer();
+		StringUtil.writeStringToBuffer("user1", buf);
+		
+		assertArrayEquals(new byte[] { 'u', 's', 'e', 'r', '1', 0 }, Arrays.copyOf(buf.array(), buf.writerIndex()));
+	}
+	
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testNoTerminator() {
+		ByteBuf buf = Unpooled.buffer();
+		buf.writeBytes(new byte[] { 'a', 'b', 'c' });
+		
+		StringUtil.getFromBuffer(buf);
+	}
+	
+	@Test
+	public void testIntern() {
+		ByteBuf buf = Unpooled.buffer();
+		StringUtil.writeStringToBuffer("SomeUser", buf);
+		StringUtil.writeStringToBuffer("SomeUser", buf);
+		
+		assertSame(StringUtil.getInternedFromBuffer(buf), StringUtil.getInternedFromBuffer(buf));
+	}
+	
 }
@@ -0,0 +1,54 @@
+package net.cloud.server.util;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/** Token buckets, with a clock that only moves when told to */
+public class TokenBucketTest {
+
+	/** The current time, as far as the buckets know */
+	private long now = 0;
+
+	@Test
+	public void testBurstThenRefill() {
+		TokenBucket bucket = new TokenBucket(10, 5, () -> now);
+
+		// A full bucket allows a burst, then nothing
+		for(int i = 0; i < 5; ++i)
+		{
+			assertTrue(bucket.tryTake());
+		}
+		assertFalse(bucket.tryTake());
+
+		// 10 per second is one every 100ms
+		now += TimeUnit.MILLISECONDS.toNanos(100);
+		assertTrue(bucket.tryTake());
+		assertFalse(bucket.tryTake());
+
+		// Never fills past capacity
+		now += TimeUnit.SECONDS.toNanos(60);
+		assertEquals(5, bucket.tokens(), 0.0001);
+	}
+
+	@Test
+	public void testDebt() {
+		TokenBucket bucket = new TokenBucket(10, 2, () -> now);
+
+		bucket.take();
+		bucket.take();
+		assertEquals(-1, bucket.take(), 0.0001);
+
+		// Has to pay off the debt before there's anything to take
+		assertFalse(bucket.tryTake());
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(100), bucket.nanosUntil(0));
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(200), bucket.nanosUntil(1));
+
+		now += TimeUnit.MILLISECONDS.toNanos(200);
+		assertEquals(0, bucket.nanosUntil(1));
+		assertTrue(bucket.tryTake());
+	}
+
+}
@@ -7,7 +7,9 @@ import org.junit.runners.Suite.SuiteClasses;
 @RunWith(Suite.class)
 @SuiteClasses({
 	BoundedCircularIntArrayTest.class,
-	StringUtilTest.class
+	ResumeTokenTest.class,
+	StringUtilTest.class,
+	TokenBucketTest.class
 })
 public class UtilSuite {
 